@@ -0,0 +1,88 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.AlmacenColumnar;
+import es.guillearana.ejercicioe.model.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la lectura de filas de {@link AlmacenColumnar} frente a una lista de objetos.
+ * La memoria retenida de cada representación se compara con {@link HuellaMemoria}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class AlmacenColumnarBenchmark {
+
+    /** Número de personas. */
+    @Param({"1000", "100000", "1000000"})
+    public int filas;
+
+    /** Personas como objetos. */
+    private List<Persona> objetos;
+
+    /** Las mismas personas en columnas. */
+    private AlmacenColumnar columnar;
+
+    /** Fila que se lee en cada invocación. */
+    private int indice;
+
+    /**
+     * Crea ambas representaciones con los mismos datos.
+     */
+    @Setup
+    public void preparar() {
+        objetos = DatosPrueba.personasRealistas(filas);
+        columnar = new AlmacenColumnar();
+        columnar.agregarTodas(objetos);
+        columnar.ajustar();
+    }
+
+    /**
+     * Lectura de una fila de la lista de objetos.
+     *
+     * @return la persona leída.
+     */
+    @Benchmark
+    public Persona leerObjeto() {
+        indice = (indice + 7919) % filas;
+        return objetos.get(indice);
+    }
+
+    /**
+     * Creación de la vista de una fila del almacén columnar.
+     *
+     * @return la vista de la persona.
+     */
+    @Benchmark
+    public Persona leerColumnar() {
+        indice = (indice + 7919) % filas;
+        return columnar.get(indice);
+    }
+
+    /**
+     * Lectura de la edad de una fila del almacén columnar, sin crear objetos.
+     *
+     * @return la edad leída.
+     */
+    @Benchmark
+    public int leerEdadColumnar() {
+        indice = (indice + 7919) % filas;
+        return columnar.edad(indice);
+    }
+}
@@ -0,0 +1,227 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.metricas.Histograma;
+import es.guillearana.ejercicioe.servicio.ServicioPersonas;
+import es.guillearana.ejercicioe.servicio.ServidorPersonas;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de carga para {@link ServidorPersonas}: muchos clientes concurrentes, cada uno en su hilo virtual,
+ * hacen peticiones seguidas durante un tiempo fijo y al final se muestran, por tipo de petición, las peticiones
+ * por segundo y los percentiles 50, 99 y 99,9 de la latencia vista por el cliente.
+ *
+ * <p>
+ * Cada cliente elige al azar: 70 % lecturas de una persona, 20 % páginas de 50 personas y 10 % escrituras,
+ * repartidas entre altas, modificaciones y bajas. Los primeros segundos son de calentamiento y no cuentan.
+ * Si no se indica la URL de un servidor, se arranca uno en el mismo proceso con personas de prueba.
+ * Se ejecuta con
+ * {@code java -cp target/benchmarks.jar es.guillearana.ejercicioe.benchmark.CargaServidor [clientes] [segundos] [filas] [url]}.
+ * </p>
+ */
+public final class CargaServidor {
+
+    /** Segundos de calentamiento antes de empezar a medir. */
+    private static final int CALENTAMIENTO = 3;
+
+    /** Tipos de petición, en el orden de {@link #latencias}. */
+    private static final String[] TIPOS = {"GET /personas/ID", "GET /personas", "POST", "PUT", "DELETE"};
+
+    /** Latencias de cada tipo de petición. */
+    private static final Histograma[] latencias = new Histograma[TIPOS.length];
+
+    /** Latencias de todas las peticiones. */
+    private static final Histograma total = new Histograma("Total");
+
+    /** Respuestas con un código inesperado o que no han llegado. */
+    private static final AtomicLong errores = new AtomicLong();
+
+    /** Indica si las peticiones en curso deben contarse. */
+    private static volatile boolean midiendo;
+
+    /** Indica si los clientes deben terminar. */
+    private static volatile boolean terminar;
+
+    /**
+     * Constructor privado: la clase solo contiene el método main.
+     */
+    private CargaServidor() {
+    }
+
+    /**
+     * Lanza la carga y muestra los resultados.
+     *
+     * @param args clientes concurrentes (64), segundos de medida (10), personas iniciales si se arranca
+     *             el servidor (100.000) y URL base de un servidor ya arrancado (ninguna).
+     * @throws Exception si no se puede arrancar el servidor o se interrumpe la espera.
+     */
+    public static void main(String[] args) throws Exception {
+        int clientes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int filas = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        ServidorPersonas local = null;
+        String base;
+        if (args.length > 3) {
+            base = args[3];
+        } else {
+            local = new ServidorPersonas(new ServicioPersonas(DatosPrueba.personasRealistas(filas)), 0);
+            base = "http://localhost:" + local.puerto();
+        }
+        for (int i = 0; i < TIPOS.length; i++) {
+            latencias[i] = new Histograma(TIPOS[i]);
+        }
+        int maximoId = maximoId(base);
+        System.out.printf("Carga sobre %s: %d clientes, %d s (+%d s de calentamiento), identificadores hasta %,d%n",
+                base, clientes, segundos, CALENTAMIENTO, maximoId);
+
+        HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clientes; i++) {
+                hilos.submit(() -> cliente(cliente, base, maximoId));
+            }
+            Thread.sleep(CALENTAMIENTO * 1000L);
+            midiendo = true;
+            long inicio = System.nanoTime();
+            Thread.sleep(segundos * 1000L);
+            midiendo = false;
+            double transcurrido = (System.nanoTime() - inicio) / 1e9;
+            terminar = true;
+            mostrar(transcurrido);
+        } finally {
+            if (local != null) {
+                local.close();
+            }
+        }
+    }
+
+    /**
+     * Bucle de un cliente: hace peticiones hasta que se indica terminar.
+     *
+     * @param cliente  el cliente HTTP compartido.
+     * @param base     la URL base del servidor.
+     * @param maximoId el mayor identificador al empezar, para elegir personas que probablemente existen.
+     */
+    private static void cliente(HttpClient cliente, String base, int maximoId) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        List<Integer> propias = new ArrayList<>();
+        while (!terminar) {
+            int sorteo = aleatorio.nextInt(100);
+            int tipo;
+            HttpRequest.Builder peticion;
+            if (sorteo < 70) {
+                tipo = 0;
+                peticion = HttpRequest.newBuilder(URI.create(base + "/personas/" + (1 + aleatorio.nextInt(maximoId))));
+            } else if (sorteo < 90) {
+                tipo = 1;
+                peticion = HttpRequest.newBuilder(URI.create(base + "/personas?limite=50&despuesDe=" + aleatorio.nextInt(maximoId)));
+            } else if (sorteo < 94 || propias.isEmpty()) {
+                tipo = 2;
+                peticion = HttpRequest.newBuilder(URI.create(base + "/personas"))
+                        .POST(HttpRequest.BodyPublishers.ofString(cuerpo(aleatorio)));
+            } else if (sorteo < 97) {
+                tipo = 3;
+                peticion = HttpRequest.newBuilder(URI.create(base + "/personas/" + propias.get(aleatorio.nextInt(propias.size()))))
+                        .PUT(HttpRequest.BodyPublishers.ofString(cuerpo(aleatorio)));
+            } else {
+                tipo = 4;
+                peticion = HttpRequest.newBuilder(URI.create(base + "/personas/" + propias.remove(propias.size() - 1))).DELETE();
+            }
+            boolean contar = midiendo;
+            long inicio = System.nanoTime();
+            try {
+                HttpResponse<String> respuesta = cliente.send(peticion.build(), HttpResponse.BodyHandlers.ofString());
+                long nanos = System.nanoTime() - inicio;
+                int codigo = respuesta.statusCode();
+                if (codigo == 201) {
+                    String location = respuesta.headers().firstValue("Location").orElse("");
+                    propias.add(Integer.parseInt(location.substring(location.lastIndexOf('/') + 1)));
+                }
+                // Un 404 en lecturas o un 409 en escrituras son respuestas válidas: la persona no existe o está repetida
+                if (codigo >= 500 || codigo == 400 || codigo == 404 && tipo >= 3) {
+                    errores.incrementAndGet();
+                }
+                if (contar && midiendo) {
+                    latencias[tipo].registrar(nanos);
+                    total.registrar(nanos);
+                }
+            } catch (IOException e) {
+                errores.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Crea el cuerpo JSON de una persona al azar.
+     *
+     * @param aleatorio el generador de números aleatorios.
+     * @return el cuerpo.
+     */
+    private static String cuerpo(ThreadLocalRandom aleatorio) {
+        return "{\"nombre\":\"Carga" + aleatorio.nextInt(1_000_000) + "\",\"apellidos\":\"Prueba "
+                + aleatorio.nextInt(1_000_000) + "\",\"edad\":" + aleatorio.nextInt(121) + "}";
+    }
+
+    /**
+     * Averigua el mayor identificador del servidor recorriendo las páginas de la lista.
+     *
+     * @param base la URL base del servidor.
+     * @return el mayor identificador, o 1 si está vacío.
+     * @throws IOException          si falla alguna petición.
+     * @throws InterruptedException si se interrumpe la espera.
+     */
+    private static int maximoId(String base) throws IOException, InterruptedException {
+        try (HttpClient cliente = HttpClient.newHttpClient()) {
+            int ultimo = 0;
+            while (true) {
+                String pagina = cliente.send(HttpRequest.newBuilder(URI.create(base + "/personas?limite=10000&despuesDe=" + ultimo)).build(),
+                        HttpResponse.BodyHandlers.ofString()).body();
+                int posicion = pagina.lastIndexOf("{\"idPersona\":");
+                if (posicion < 0) {
+                    return Math.max(1, ultimo);
+                }
+                int desde = posicion + "{\"idPersona\":".length();
+                ultimo = Integer.parseInt(pagina.substring(desde, pagina.indexOf(',', desde)));
+            }
+        }
+    }
+
+    /**
+     * Muestra las peticiones por segundo y los percentiles de cada tipo de petición y del total.
+     *
+     * @param segundos la duración de la medida.
+     */
+    private static void mostrar(double segundos) {
+        System.out.printf("%-18s %12s %10s %10s %10s %10s%n", "Petición", "peticiones/s", "p50 ms", "p99 ms", "p99,9 ms", "máx ms");
+        for (Histograma histograma : latencias) {
+            linea(histograma, segundos);
+        }
+        linea(total, segundos);
+        System.out.printf("Errores: %,d%n", errores.get());
+    }
+
+    /**
+     * Muestra la línea de resultados de un histograma.
+     *
+     * @param histograma el histograma.
+     * @param segundos   la duración de la medida.
+     */
+    private static void linea(Histograma histograma, double segundos) {
+        System.out.printf("%-18s %,12.0f %10.3f %10.3f %10.3f %10.3f%n", histograma.nombre(),
+                histograma.getMuestras() / segundos, histograma.getP50Ms(), histograma.getP99Ms(),
+                histograma.getP999Ms(), histograma.getMaximoMs());
+    }
+}
@@ -0,0 +1,159 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Callback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el coste de obtener los valores de las celdas de la tabla en una pasada de desplazamiento.
+ *
+ * <p>
+ * Cada invocación recorre una ventana de filas visibles y pide el valor de las tres columnas, como hace la
+ * tabla al desplazarse. Se comparan tres formas de hacerlo:
+ * </p>
+ * <ul>
+ *     <li>{@code envoltorioPorCelda}: lo que hacía {@link PropertyValueFactory} cuando {@link Persona} solo tenía
+ *     getters, es decir, invocar el getter por reflexión y envolver el valor en un {@link ReadOnlyObjectWrapper} nuevo.</li>
+ *     <li>{@code propertyValueFactory}: {@link PropertyValueFactory} con las propiedades actuales de {@link Persona}.</li>
+ *     <li>{@code accesoresPropiedad}: las lambdas tipadas que usa ahora el controlador.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CeldasBenchmark {
+
+    /** Número de filas visibles en una pasada. */
+    private static final int FILAS_VISIBLES = 40;
+
+    /** Número de personas de la tabla. */
+    private static final int FILAS = 10_000;
+
+    /** Celdas de cada fila, tal y como las recibe la fábrica de valores. */
+    private List<TableColumn.CellDataFeatures<Persona, Object>> celdas;
+
+    /** Getters de las tres columnas, como los resolvía {@link PropertyValueFactory}. */
+    private Method[] getters;
+
+    /** Fábricas reflexivas de las tres columnas. */
+    private List<Callback<TableColumn.CellDataFeatures<Persona, Object>, ObservableValue<Object>>> fabricas;
+
+    /** Primera fila de la ventana visible en la invocación actual. */
+    private int primera;
+
+    /**
+     * Prepara las personas, sus celdas y las fábricas de valores.
+     *
+     * @throws NoSuchMethodException si {@link Persona} no tiene los getters esperados.
+     */
+    @Setup
+    public void preparar() throws NoSuchMethodException {
+        List<Persona> personas = DatosPrueba.personasRealistas(FILAS);
+        celdas = new ArrayList<>(personas.size());
+        for (Persona persona : personas) {
+            celdas.add(new TableColumn.CellDataFeatures<>(null, null, persona));
+        }
+        getters = new Method[]{
+                Persona.class.getMethod("getNombre"),
+                Persona.class.getMethod("getApellidos"),
+                Persona.class.getMethod("getEdad")};
+        fabricas = List.of(
+                new PropertyValueFactory<>("nombre"),
+                new PropertyValueFactory<>("apellidos"),
+                new PropertyValueFactory<>("edad"));
+    }
+
+    /**
+     * Getter por reflexión y envoltorio nuevo por celda, como antes de añadir las propiedades a {@link Persona}.
+     *
+     * @param agujero consumidor de los valores.
+     * @throws ReflectiveOperationException si falla la invocación del getter.
+     */
+    @Benchmark
+    public void envoltorioPorCelda(Blackhole agujero) throws ReflectiveOperationException {
+        int desde = siguienteVentana();
+        for (int i = desde; i < desde + FILAS_VISIBLES; i++) {
+            Persona persona = celdas.get(i).getValue();
+            for (Method getter : getters) {
+                agujero.consume(new ReadOnlyObjectWrapper<>(invocar(getter, persona)));
+            }
+        }
+    }
+
+    /**
+     * {@link PropertyValueFactory}, que ahora encuentra los métodos {@code ...Property()} de {@link Persona}.
+     *
+     * @param agujero consumidor de los valores.
+     */
+    @Benchmark
+    public void propertyValueFactory(Blackhole agujero) {
+        int desde = siguienteVentana();
+        for (int i = desde; i < desde + FILAS_VISIBLES; i++) {
+            for (Callback<TableColumn.CellDataFeatures<Persona, Object>, ObservableValue<Object>> fabrica : fabricas) {
+                agujero.consume(fabrica.call(celdas.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Lambdas tipadas sobre las propiedades guardadas en cada persona, como en el controlador.
+     *
+     * @param agujero consumidor de los valores.
+     */
+    @Benchmark
+    public void accesoresPropiedad(Blackhole agujero) {
+        int desde = siguienteVentana();
+        for (int i = desde; i < desde + FILAS_VISIBLES; i++) {
+            Persona persona = celdas.get(i).getValue();
+            agujero.consume(persona.nombreProperty());
+            agujero.consume(persona.apellidosProperty());
+            agujero.consume(persona.edadProperty());
+        }
+    }
+
+    /**
+     * Avanza la ventana visible una fila, como al desplazar la tabla.
+     *
+     * @return la primera fila de la ventana.
+     */
+    private int siguienteVentana() {
+        primera = primera + 1 < celdas.size() - FILAS_VISIBLES ? primera + 1 : 0;
+        return primera;
+    }
+
+    /**
+     * Invoca un getter por reflexión.
+     *
+     * @param getter  el getter.
+     * @param persona la persona.
+     * @return el valor devuelto.
+     * @throws IllegalAccessException    si el getter no es accesible.
+     * @throws InvocationTargetException si el getter lanza una excepción.
+     */
+    private static Object invocar(Method getter, Persona persona) throws IllegalAccessException, InvocationTargetException {
+        return getter.invoke(persona);
+    }
+}
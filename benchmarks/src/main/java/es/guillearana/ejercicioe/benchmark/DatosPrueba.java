@@ -0,0 +1,111 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.Persona;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generador de personas de prueba con una distribución de nombres realista.
+ *
+ * <p>
+ * Los nombres y apellidos se eligen de listas fijas con una distribución sesgada (unos pocos
+ * muy frecuentes y muchos raros), y cada persona tiene dos apellidos. Cada texto se crea como una
+ * instancia nueva de {@link String}, igual que los que llegan desde los campos de texto de la interfaz.
+ * La semilla es fija para que todas las ejecuciones usen los mismos datos.
+ * </p>
+ */
+public final class DatosPrueba {
+
+    /** Número de nombres distintos. */
+    private static final int NOMBRES = 300;
+
+    /** Número de apellidos distintos. */
+    private static final int APELLIDOS = 2000;
+
+    /** Apellidos más frecuentes, que ocupan las primeras posiciones de la lista. */
+    private static final String[] APELLIDOS_COMUNES = {
+            "García", "Rodríguez", "González", "Fernández", "López", "Martínez", "Sánchez", "Pérez",
+            "Gómez", "Martín", "Jiménez", "Ruiz", "Hernández", "Díaz", "Moreno", "Muñoz", "Álvarez"
+    };
+
+    /** Nombres más frecuentes, que ocupan las primeras posiciones de la lista. */
+    private static final String[] NOMBRES_COMUNES = {
+            "Antonio", "Manuel", "José", "Francisco", "David", "Juan", "Javier", "Daniel",
+            "María", "Carmen", "Ana", "Isabel", "Laura", "Cristina", "Marta", "Lucía", "Elena"
+    };
+
+    /**
+     * Constructor privado: la clase solo contiene métodos estáticos.
+     */
+    private DatosPrueba() {
+    }
+
+    /**
+     * Genera una lista de personas distintas entre sí, con identificadores consecutivos desde 1.
+     *
+     * @param cantidad el número de personas.
+     * @return la lista de personas.
+     */
+    public static List<Persona> personas(int cantidad) {
+        Random aleatorio = new Random(42);
+        String[] nombres = textos(NOMBRES_COMUNES, NOMBRES, "Nombre");
+        String[] apellidos = textos(APELLIDOS_COMUNES, APELLIDOS, "Apellido");
+        List<Persona> personas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            String nombre = new String(elegir(nombres, aleatorio));
+            String dosApellidos = elegir(apellidos, aleatorio) + " " + elegir(apellidos, aleatorio);
+            // El sufijo garantiza que no haya personas iguales aunque coincidan nombre, apellidos y edad
+            personas.add(new Persona(i + 1, nombre + (i / 121 == 0 ? "" : " " + (i / 121)), dosApellidos, i % 121));
+        }
+        return personas;
+    }
+
+    /**
+     * Genera personas con la misma distribución pero sin forzar que sean distintas,
+     * para medir la memoria con la repetición natural de textos.
+     *
+     * @param cantidad el número de personas.
+     * @return la lista de personas.
+     */
+    public static List<Persona> personasRealistas(int cantidad) {
+        Random aleatorio = new Random(42);
+        String[] nombres = textos(NOMBRES_COMUNES, NOMBRES, "Nombre");
+        String[] apellidos = textos(APELLIDOS_COMUNES, APELLIDOS, "Apellido");
+        List<Persona> personas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            personas.add(new Persona(i + 1, new String(elegir(nombres, aleatorio)),
+                    elegir(apellidos, aleatorio) + " " + elegir(apellidos, aleatorio), aleatorio.nextInt(121)));
+        }
+        return personas;
+    }
+
+    /**
+     * Construye una lista de textos que empieza por los comunes y se completa con textos numerados.
+     *
+     * @param comunes  los textos más frecuentes.
+     * @param cantidad el número total de textos.
+     * @param prefijo  el prefijo de los textos numerados.
+     * @return la lista de textos.
+     */
+    private static String[] textos(String[] comunes, int cantidad, String prefijo) {
+        String[] textos = new String[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            textos[i] = i < comunes.length ? comunes[i] : prefijo + i;
+        }
+        return textos;
+    }
+
+    /**
+     * Elige un texto con una distribución sesgada hacia los primeros de la lista.
+     *
+     * @param textos    la lista de textos.
+     * @param aleatorio el generador de números aleatorios.
+     * @return el texto elegido.
+     */
+    private static String elegir(String[] textos, Random aleatorio) {
+        int indice = (int) Math.abs(aleatorio.nextGaussian() * textos.length / 6.0);
+        return textos[Math.min(indice, textos.length - 1)];
+    }
+}
@@ -0,0 +1,40 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de {@code benchmarks.jar}.
+ *
+ * <p>
+ * Acepta las mismas opciones que la línea de comandos de JMH, pero añade siempre el perfilador de
+ * memoria ({@code -prof gc}) para que cada resultado incluya los bytes reservados por operación.
+ * </p>
+ */
+public final class EjecutarBenchmarks {
+
+    /**
+     * Constructor privado: la clase solo contiene el método main.
+     */
+    private EjecutarBenchmarks() {
+    }
+
+    /**
+     * Ejecuta los benchmarks seleccionados con el perfilador de memoria activado.
+     *
+     * @param args opciones de JMH, por ejemplo {@code ListaPersonasBenchmark -p filas=1000}.
+     * @throws CommandLineOptionException si las opciones no son válidas.
+     * @throws RunnerException            si falla la ejecución de algún benchmark.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions opciones = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(opciones)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.AlmacenColumnar;
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.PoolCadenas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara la memoria que ocupan las mismas personas guardadas como objetos y en {@link AlmacenColumnar}.
+ *
+ * <p>
+ * JMH mide tiempos y memoria reservada, pero no memoria retenida, así que esta comparación es un programa
+ * aparte: construye cada representación, fuerza la recolección de basura y mide el montículo ocupado.
+ * Se ejecuta con {@code java -cp target/benchmarks.jar es.guillearana.ejercicioe.benchmark.HuellaMemoria [filas]};
+ * con {@code -Dejercicioe.cadenas.capacidad=0} las personas no comparten sus textos mediante {@link PoolCadenas}.
+ * </p>
+ */
+public final class HuellaMemoria {
+
+    /**
+     * Constructor privado: la clase solo contiene el método main.
+     */
+    private HuellaMemoria() {
+    }
+
+    /**
+     * Mide y muestra la memoria de ambas representaciones.
+     *
+     * @param args número de filas opcional (1.000.000 por defecto).
+     */
+    public static void main(String[] args) {
+        int filas = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long base = memoriaUsada();
+        List<Persona> objetos = new ArrayList<>(DatosPrueba.personasRealistas(filas));
+        long memoriaObjetos = memoriaUsada() - base;
+
+        AlmacenColumnar columnar = new AlmacenColumnar();
+        columnar.agregarTodas(objetos);
+        columnar.ajustar();
+        int personas = objetos.size();
+        objetos = null;
+        long memoriaColumnar = memoriaUsada() - base;
+
+        System.out.printf("Filas: %,d (%,d nombres y %,d apellidos distintos)%n",
+                personas, columnar.nombresDistintos(), columnar.apellidosDistintos());
+        System.out.println("Cadenas compartidas: " + (PoolCadenas.activada() ? "sí" : "no"));
+        System.out.printf("List<Persona>:   %,12d bytes (%.1f bytes/fila)%n", memoriaObjetos, (double) memoriaObjetos / personas);
+        System.out.printf("AlmacenColumnar: %,12d bytes (%.1f bytes/fila)%n", memoriaColumnar, (double) memoriaColumnar / personas);
+        System.out.printf("Reducción:       %.1fx%n", (double) memoriaObjetos / memoriaColumnar);
+        // Mantener vivo el almacén hasta después de la medición
+        System.out.println(columnar.tamano() == personas ? "" : "Error: tamaños distintos");
+    }
+
+    /**
+     * Devuelve la memoria ocupada del montículo tras forzar varias recolecciones de basura.
+     *
+     * @return los bytes ocupados.
+     */
+    static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
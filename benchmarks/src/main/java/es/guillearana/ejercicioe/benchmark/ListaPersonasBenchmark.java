@@ -0,0 +1,139 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.PersonaRepositorio;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las operaciones de las acciones del controlador sobre la lista de personas.
+ *
+ * <p>
+ * Cada operación se mide de dos formas: como la hacía originalmente el controlador, directamente
+ * sobre la {@link ObservableList} ({@code contains}, {@code indexOf} + {@code set}, {@code remove}),
+ * y a través de {@link PersonaRepositorio}, que usa índices hash.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class ListaPersonasBenchmark {
+
+    /** Número de personas de la lista. */
+    @Param({"1000", "100000", "1000000"})
+    public int filas;
+
+    /** Lista observable, usada como en la versión original del controlador. */
+    private ObservableList<Persona> lista;
+
+    /** Repositorio con los mismos datos. */
+    private PersonaRepositorio repositorio;
+
+    /** Persona que no está en la lista (el caso habitual al agregar). */
+    private Persona nueva;
+
+    /** Persona de la mitad de la lista, que se modifica y se elimina. */
+    private Persona seleccionada;
+
+    /** Copia modificada de la persona seleccionada. */
+    private Persona modificada;
+
+    /**
+     * Crea la lista y el repositorio con las mismas personas.
+     */
+    @Setup
+    public void preparar() {
+        List<Persona> personas = DatosPrueba.personas(filas);
+        lista = FXCollections.observableArrayList(personas);
+        repositorio = new PersonaRepositorio();
+        repositorio.agregarTodas(personas);
+        nueva = new Persona("Nueva", "Persona Prueba", 50);
+        seleccionada = personas.get(filas / 2);
+        modificada = seleccionada.conEdad((seleccionada.getEdad() + 1) % 121).conNombre(seleccionada.getNombre() + "*");
+    }
+
+    /**
+     * Comprobación de duplicados de {@code accionAgregar} con {@code contains}.
+     *
+     * @return si la persona está en la lista.
+     */
+    @Benchmark
+    public boolean duplicadoLista() {
+        return lista.contains(nueva);
+    }
+
+    /**
+     * Comprobación de duplicados con el índice hash del repositorio.
+     *
+     * @return si la persona está en el repositorio.
+     */
+    @Benchmark
+    public boolean duplicadoRepositorio() {
+        return repositorio.contiene(nueva);
+    }
+
+    /**
+     * Reemplazo de {@code accionModificar} con {@code indexOf} y {@code set}.
+     * Se hace y se deshace para que la lista no cambie entre invocaciones.
+     *
+     * @return la persona que queda en la lista.
+     */
+    @Benchmark
+    public Persona modificarLista() {
+        lista.set(lista.indexOf(seleccionada), modificada);
+        return lista.set(lista.indexOf(modificada), seleccionada);
+    }
+
+    /**
+     * Reemplazo a través del repositorio. Se hace y se deshace para que no cambie entre invocaciones.
+     *
+     * @return si se ha podido deshacer el reemplazo.
+     */
+    @Benchmark
+    public boolean modificarRepositorio() {
+        repositorio.reemplazar(seleccionada, modificada);
+        return repositorio.reemplazar(modificada, seleccionada);
+    }
+
+    /**
+     * Eliminación de {@code accionEliminar} con {@code remove}. La persona se vuelve a añadir al final
+     * para mantener el tamaño, así que cada invocación elimina una persona de la mitad de la lista.
+     *
+     * @return si se ha añadido de nuevo.
+     */
+    @Benchmark
+    public boolean eliminarLista() {
+        Persona persona = lista.get(filas / 2);
+        lista.remove(persona);
+        return lista.add(persona);
+    }
+
+    /**
+     * Eliminación a través del repositorio, volviendo a añadir la persona al final.
+     *
+     * @return si se ha añadido de nuevo.
+     */
+    @Benchmark
+    public boolean eliminarRepositorio() {
+        Persona persona = repositorio.getPersonas().get(filas / 2);
+        repositorio.eliminar(persona);
+        return repositorio.agregar(persona);
+    }
+}
@@ -0,0 +1,101 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.metricas.Histograma;
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.PersonaRepositorio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el coste de las métricas en una operación caliente del modelo, la comprobación de duplicados
+ * del repositorio, y el de registrar un valor en un {@link Histograma}.
+ *
+ * <p>
+ * Las métricas se activan con una propiedad del sistema que se lee una sola vez, así que cada variante
+ * se ejecuta en su propia JVM: {@code duplicadoSinMetricas} con las métricas desactivadas, que debe costar
+ * lo mismo que {@code duplicadoRepositorio} de {@link ListaPersonasBenchmark}, y {@code duplicadoConMetricas}
+ * con ellas activas.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class MetricasBenchmark {
+
+    /** Número de personas del repositorio. */
+    private static final int FILAS = 100_000;
+
+    /** Repositorio con las personas de prueba. */
+    private PersonaRepositorio repositorio;
+
+    /** Persona que no está en el repositorio. */
+    private Persona nueva;
+
+    /** Histograma compartido por todos los hilos. */
+    private Histograma histograma;
+
+    /**
+     * Crea el repositorio y el histograma.
+     */
+    @Setup
+    public void preparar() {
+        repositorio = new PersonaRepositorio();
+        repositorio.agregarTodas(DatosPrueba.personas(FILAS));
+        nueva = new Persona("Nueva", "Persona Prueba", 50);
+        histograma = new Histograma("benchmark");
+    }
+
+    /**
+     * Comprobación de duplicados con las métricas desactivadas.
+     *
+     * @return si la persona está en el repositorio.
+     */
+    @Benchmark
+    @Fork(1)
+    public boolean duplicadoSinMetricas() {
+        return repositorio.contiene(nueva);
+    }
+
+    /**
+     * Comprobación de duplicados con las métricas activas, sin volcado periódico.
+     *
+     * @return si la persona está en el repositorio.
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Dejercicioe.metricas=true", "-Dejercicioe.metricas.intervalo=0"})
+    public boolean duplicadoConMetricas() {
+        return repositorio.contiene(nueva);
+    }
+
+    /**
+     * Registro de un valor en el histograma desde un solo hilo.
+     */
+    @Benchmark
+    @Fork(1)
+    public void registrarHistograma() {
+        histograma.registrar(System.nanoTime() & 0xFFFFF);
+    }
+
+    /**
+     * Registro de un valor en el mismo histograma desde cuatro hilos a la vez.
+     */
+    @Benchmark
+    @Fork(1)
+    @Threads(4)
+    public void registrarHistogramaConcurrente() {
+        histograma.registrar(System.nanoTime() & 0xFFFFF);
+    }
+}
@@ -0,0 +1,92 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el coste de {@link Persona#hashCode()} y {@link Persona#equals(Object)}.
+ *
+ * <p>
+ * Incluye como referencia el cálculo con {@code Objects.hash}, que es el que hacía
+ * {@code hashCode} antes de guardar el valor en la propia persona.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersonaBenchmark {
+
+    /** Persona de referencia. */
+    private Persona persona;
+
+    /** Persona igual a la de referencia, pero otra instancia con otras cadenas. */
+    private Persona igual;
+
+    /** Persona que solo se diferencia en el nombre. */
+    private Persona distinta;
+
+    /**
+     * Prepara las personas a comparar.
+     */
+    @Setup
+    public void preparar() {
+        persona = new Persona(1, "María", "García López", 33);
+        igual = new Persona(2, new String("María"), new String("García López"), 33);
+        distinta = new Persona(3, "Marta", "García López", 33);
+    }
+
+    /**
+     * Código hash de una persona.
+     *
+     * @return el código hash.
+     */
+    @Benchmark
+    public int hashCodePersona() {
+        return persona.hashCode();
+    }
+
+    /**
+     * Código hash calculado con {@code Objects.hash}, como referencia.
+     *
+     * @return el código hash.
+     */
+    @Benchmark
+    public int hashCodeObjectsHash() {
+        return Objects.hash(persona.getApellidos(), persona.getEdad(), persona.getNombre());
+    }
+
+    /**
+     * Comparación de dos personas iguales.
+     *
+     * @return el resultado de la comparación.
+     */
+    @Benchmark
+    public boolean equalsIguales() {
+        return persona.equals(igual);
+    }
+
+    /**
+     * Comparación de dos personas distintas.
+     *
+     * @return el resultado de la comparación.
+     */
+    @Benchmark
+    public boolean equalsDistintas() {
+        return persona.equals(distinta);
+    }
+}
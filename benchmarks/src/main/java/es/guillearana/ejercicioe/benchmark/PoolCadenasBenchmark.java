@@ -0,0 +1,147 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.PoolCadenas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el efecto de {@link PoolCadenas} en la creación y la comparación de personas con nombres y apellidos
+ * repetidos como en {@link DatosPrueba}.
+ *
+ * <p>
+ * Los métodos {@code ...SinPool} ejecutan lo mismo en un proceso con {@code -Dejercicioe.cadenas.capacidad=0},
+ * es decir, con cada persona guardando sus propias cadenas. La memoria ahorrada se mide con
+ * {@link HuellaMemoria}, ejecutándolo con y sin esa propiedad.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PoolCadenasBenchmark {
+
+    /** Número de personas de cada invocación. */
+    private static final int REGISTROS = 1024;
+
+    /** Personas de referencia. */
+    private Persona[] personas;
+
+    /** Las mismas personas, creadas otra vez a partir de cadenas nuevas. */
+    private Persona[] iguales;
+
+    /** Nombres de las personas, como cadenas nuevas que no han pasado por la tabla. */
+    private String[] nombres;
+
+    /** Apellidos de las personas, como cadenas nuevas que no han pasado por la tabla. */
+    private String[] apellidos;
+
+    /** Personas creadas en cada invocación, guardadas para que no se eliminen sus reservas de memoria. */
+    private Persona[] creadas;
+
+    /**
+     * Genera las personas y los textos.
+     */
+    @Setup
+    public void preparar() {
+        List<Persona> lista = DatosPrueba.personasRealistas(REGISTROS);
+        personas = lista.toArray(new Persona[0]);
+        iguales = DatosPrueba.personasRealistas(REGISTROS).toArray(new Persona[0]);
+        nombres = new String[REGISTROS];
+        apellidos = new String[REGISTROS];
+        creadas = new Persona[REGISTROS];
+        for (int i = 0; i < REGISTROS; i++) {
+            nombres[i] = new String(personas[i].getNombre());
+            apellidos[i] = new String(personas[i].getApellidos());
+        }
+    }
+
+    /**
+     * Comparación de cada persona con otra igual creada aparte.
+     *
+     * @return el número de personas iguales.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REGISTROS)
+    public int equalsIguales() {
+        return compararIguales();
+    }
+
+    /**
+     * Comparación de cada persona con otra igual creada aparte, sin compartir cadenas.
+     *
+     * @return el número de personas iguales.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REGISTROS)
+    @Fork(value = 1, jvmArgsAppend = "-Dejercicioe.cadenas.capacidad=0")
+    public int equalsIgualesSinPool() {
+        return compararIguales();
+    }
+
+    /**
+     * Creación de personas a partir de textos nuevos, como en la importación.
+     *
+     * @return la suma de los códigos hash, para que no se descarte el trabajo.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REGISTROS)
+    public int crear() {
+        return crearPersonas();
+    }
+
+    /**
+     * Creación de personas a partir de textos nuevos, sin compartir cadenas.
+     *
+     * @return la suma de los códigos hash, para que no se descarte el trabajo.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REGISTROS)
+    @Fork(value = 1, jvmArgsAppend = "-Dejercicioe.cadenas.capacidad=0")
+    public int crearSinPool() {
+        return crearPersonas();
+    }
+
+    /**
+     * Compara cada persona con su igual.
+     *
+     * @return el número de personas iguales.
+     */
+    private int compararIguales() {
+        int iguales = 0;
+        for (int i = 0; i < REGISTROS; i++) {
+            if (personas[i].equals(this.iguales[i])) {
+                iguales++;
+            }
+        }
+        return iguales;
+    }
+
+    /**
+     * Crea una persona por cada par de textos.
+     *
+     * @return la suma de los códigos hash.
+     */
+    private int crearPersonas() {
+        int suma = 0;
+        for (int i = 0; i < REGISTROS; i++) {
+            creadas[i] = new Persona(i, nombres[i], apellidos[i], 30);
+            suma += creadas[i].hashCode();
+        }
+        return suma;
+    }
+}
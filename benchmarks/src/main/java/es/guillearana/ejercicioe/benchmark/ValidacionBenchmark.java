@@ -0,0 +1,157 @@
+package es.guillearana.ejercicioe.benchmark;
+
+import es.guillearana.ejercicioe.model.ValidadorPersona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la validación de registros importados con {@link ValidadorPersona} frente a la forma anterior,
+ * que construía siempre los mensajes y leía la edad con {@code Integer.parseInt} capturando
+ * {@link NumberFormatException}.
+ *
+ * <p>
+ * Cada invocación valida {@value #REGISTROS} registros, de los que el porcentaje indicado por
+ * {@code invalidos} tiene algún dato incorrecto: sobre todo edades que no son números, como en un CSV con
+ * columnas desplazadas, y también campos vacíos y edades fuera de rango.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidacionBenchmark {
+
+    /** Número de registros validados en cada invocación. */
+    private static final int REGISTROS = 1024;
+
+    /** Porcentaje de registros con datos incorrectos. */
+    @Param({"0", "50", "100"})
+    private int invalidos;
+
+    /** Nombre de cada registro. */
+    private String[] nombres;
+
+    /** Apellidos de cada registro. */
+    private String[] apellidos;
+
+    /** Edad de cada registro, como texto. */
+    private String[] edades;
+
+    /**
+     * Genera los registros.
+     */
+    @Setup
+    public void preparar() {
+        Random aleatorio = new Random(42);
+        nombres = new String[REGISTROS];
+        apellidos = new String[REGISTROS];
+        edades = new String[REGISTROS];
+        for (int i = 0; i < REGISTROS; i++) {
+            nombres[i] = "José María";
+            apellidos[i] = "García Núñez";
+            edades[i] = String.valueOf(aleatorio.nextInt(121));
+            if (aleatorio.nextInt(100) < invalidos) {
+                switch (aleatorio.nextInt(6)) {
+                    case 0 -> edades[i] = "García";
+                    case 1 -> edades[i] = "3a";
+                    case 2 -> edades[i] = "";
+                    case 3 -> edades[i] = "250";
+                    case 4 -> nombres[i] = "";
+                    default -> {
+                        nombres[i] = "";
+                        edades[i] = "n/d";
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Validación anterior: mensajes siempre y excepciones para las edades que no son números.
+     *
+     * @return el número de registros válidos.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REGISTROS)
+    public int anterior() {
+        int validos = 0;
+        for (int i = 0; i < REGISTROS; i++) {
+            if (validarAnterior(nombres[i], apellidos[i], edades[i]).isEmpty()) {
+                validos++;
+            }
+        }
+        return validos;
+    }
+
+    /**
+     * Validación por códigos, como en la importación: sin mensajes.
+     *
+     * @return el número de registros válidos.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REGISTROS)
+    public int codigos() {
+        int validos = 0;
+        for (int i = 0; i < REGISTROS; i++) {
+            if (ValidadorPersona.comprobar(nombres[i], apellidos[i], edades[i]) == 0) {
+                validos++;
+            }
+        }
+        return validos;
+    }
+
+    /**
+     * Validación por códigos construyendo los mensajes de los registros inválidos, como en el servidor HTTP.
+     *
+     * @return la longitud total de los mensajes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REGISTROS)
+    public int codigosConMensajes() {
+        int longitud = 0;
+        for (int i = 0; i < REGISTROS; i++) {
+            longitud += ValidadorPersona.validar(nombres[i], apellidos[i], edades[i]).length();
+        }
+        return longitud;
+    }
+
+    /**
+     * Copia de la validación anterior a los códigos de error.
+     *
+     * @param nombre    el nombre.
+     * @param apellidos los apellidos.
+     * @param edad      la edad, como texto.
+     * @return los mensajes de error, o una cadena vacía.
+     */
+    private static String validarAnterior(String nombre, String apellidos, String edad) {
+        String errores = nombre == null || nombre.isEmpty() ? "Debe ingresar un nombre.\n" : "";
+        errores += apellidos == null || apellidos.isEmpty() ? "Debe ingresar apellidos.\n" : "";
+        if (edad == null || edad.isEmpty()) {
+            return errores + "Debe ingresar una edad.\n";
+        }
+        try {
+            int valor = Integer.parseInt(edad);
+            if (valor < ValidadorPersona.EDAD_MINIMA || valor > ValidadorPersona.EDAD_MAXIMA) {
+                return errores + "La edad debe estar entre 0 y 120 años.\n";
+            }
+            return errores;
+        } catch (NumberFormatException e) {
+            return errores + "La edad debe ser un número.\n";
+        }
+    }
+}
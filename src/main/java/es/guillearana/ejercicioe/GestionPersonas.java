@@ -1,51 +1,232 @@
 package es.guillearana.ejercicioe;
 
+import es.guillearana.ejercicioe.controlador.EjercicioEcontroller;
+import es.guillearana.ejercicioe.metricas.Metricas;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.scene.image.Image; // Asegúrate de importar esta clase.
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Clase principal para la gestión de personas en la aplicación.
  * Hereda de {@link javafx.application.Application} para ejecutar una aplicación de JavaFX.
  * Esta clase contiene el método `start` que configura y muestra la interfaz gráfica de usuario (GUI).
+ *
+ * <p>
+ * El arranque se hace por fases para mostrar algo cuanto antes: primero se muestra una ventana mínima
+ * y después se cargan en paralelo, en hilos de fondo, el FXML de la vista principal, el icono y las personas
+ * guardadas. Cuando el FXML y las personas están listos, la vista principal sustituye a la ventana mínima.
+ * La duración de cada fase se escribe en la salida estándar, junto con el tiempo hasta el primer fotograma
+ * y su objetivo, que se puede cambiar con la propiedad del sistema {@code ejercicioe.objetivoPrimerFotograma}
+ * (en milisegundos).
+ * </p>
+ *
+ * <p>
+ * Con la propiedad del sistema {@code ejercicioe.metricas=true} se recogen además las métricas de
+ * {@link Metricas}, incluida la duración de los pulsos de JavaFX.
+ * </p>
  */
 public class GestionPersonas extends Application {
 
+    /** Tiempo objetivo, en milisegundos desde la llamada a {@code start}, para mostrar el primer fotograma. */
+    private static final long OBJETIVO_PRIMER_FOTOGRAMA = Long.getLong("ejercicioe.objetivoPrimerFotograma", 200);
+
+    /** Número de hilos para las fases de carga en paralelo: FXML, icono y datos. */
+    private static final int HILOS_ARRANQUE = 3;
+
+    /** Controlador de la vista principal, para cerrarlo al terminar la aplicación. */
+    private EjercicioEcontroller controlador;
+
+    /**
+     * Resultado de las fases de carga que necesita la vista principal.
+     *
+     * @param loader el cargador del FXML, con la vista y el controlador ya creados.
+     * @param datos  las personas guardadas y sus índices.
+     */
+    private record VistaCargada(FXMLLoader loader, EjercicioEcontroller.DatosIniciales datos) {
+    }
+
     /**
      * Método de entrada para iniciar la interfaz gráfica de la aplicación.
      * Este método se ejecuta automáticamente cuando la aplicación es lanzada usando JavaFX.
-     * Carga la interfaz definida en el archivo FXML, establece el título de la ventana y ajusta la escena.
+     * Muestra enseguida una ventana mínima con el título y las dimensiones definitivas, y lanza en paralelo
+     * la carga del FXML, del icono y de las personas guardadas.
      *
      * @param stage La ventana principal (o "escenario") de la aplicación, proporcionada por el sistema JavaFX.
-     * @throws IOException Si ocurre algún error al cargar el archivo FXML, como si el archivo no existe.
      */
     @Override
-    public void start(Stage stage) throws IOException {
-        // Cargar el archivo FXML que define la interfaz de usuario.
-        FXMLLoader fxmlLoader = new FXMLLoader(GestionPersonas.class.getResource("ejercicioE.fxml"));
+    public void start(Stage stage) {
+        long inicio = System.nanoTime();
+        Metricas.iniciar();
 
-        // Crear una nueva escena a partir del contenido cargado del FXML.
-        Scene scene = new Scene(fxmlLoader.load(), 967, 591);
+        // Ventana mínima que se muestra mientras se carga el resto.
+        Label estado = new Label("Cargando personas...");
+        VBox cargando = new VBox(10, new ProgressIndicator(), estado);
+        cargando.setAlignment(Pos.CENTER);
+        Scene scene = new Scene(cargando, 967, 591);
 
         // Establecer el título de la ventana.
         stage.setTitle("Personas");
 
-        // Añadir un icono a la ventana. Cambia el nombre del archivo por el de tu icono en la ruta correcta.
-        stage.getIcons().add(new Image(getClass().getResourceAsStream("/imagenes/agenda.png")));
-
         // Establecer las dimensiones mínimas para la ventana principal.
         stage.setMinWidth(550);
         stage.setMinHeight(550);
 
-        // Establecer la escena en la ventana principal.
         stage.setScene(scene);
-
-        // Mostrar la ventana.
         stage.show();
+        registrar("ventana inicial", inicio);
+        medirPrimerFotograma(inicio);
+        if (Metricas.ACTIVAS) {
+            medirPulsos(scene);
+        }
+
+        AtomicInteger hilos = new AtomicInteger();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(HILOS_ARRANQUE, tarea -> {
+            Thread hilo = new Thread(tarea, "arranque-" + hilos.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        CompletableFuture<Image> icono = CompletableFuture.supplyAsync(
+                () -> medir("icono", () -> new Image(getClass().getResourceAsStream("/imagenes/agenda.png"))), ejecutor);
+        CompletableFuture<FXMLLoader> vista = CompletableFuture.supplyAsync(
+                () -> medir("FXML", GestionPersonas::cargarVista), ejecutor);
+        CompletableFuture<EjercicioEcontroller.DatosIniciales> datos = CompletableFuture.supplyAsync(
+                () -> medir("datos", EjercicioEcontroller::cargarDatos), ejecutor);
+        ejecutor.shutdown();
+
+        // Añadir el icono a la ventana en cuanto esté decodificado.
+        icono.whenCompleteAsync((imagen, error) -> {
+            if (error != null) {
+                System.err.println("No se ha podido cargar el icono: " + error.getMessage());
+            } else {
+                stage.getIcons().add(imagen);
+            }
+        }, Platform::runLater);
+
+        // Sustituir la ventana mínima por la vista principal cuando el FXML y los datos estén listos.
+        vista.thenCombine(datos, VistaCargada::new).whenCompleteAsync((cargada, error) -> {
+            if (error != null) {
+                Throwable causa = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                estado.setText("No se ha podido cargar la aplicación: " + causa.getMessage());
+                causa.printStackTrace();
+                return;
+            }
+            long inicioVista = System.nanoTime();
+            controlador = cargada.loader().getController();
+            controlador.iniciar(cargada.datos());
+            scene.setRoot(cargada.loader().getRoot());
+            registrar("vista principal", inicioVista);
+            registrar("arranque completo", inicio);
+        }, Platform::runLater);
+    }
+
+    /**
+     * Carga el FXML de la vista principal. Se ejecuta en un hilo de fondo: la vista todavía no está en ninguna escena.
+     *
+     * @return el cargador, con la vista y el controlador ya creados.
+     */
+    private static FXMLLoader cargarVista() {
+        FXMLLoader fxmlLoader = new FXMLLoader(GestionPersonas.class.getResource("ejercicioE.fxml"));
+        try {
+            fxmlLoader.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return fxmlLoader;
+    }
+
+    /**
+     * Ejecuta una fase del arranque y registra su duración.
+     *
+     * @param fase   el nombre de la fase.
+     * @param accion la acción de la fase.
+     * @param <T>    el tipo del resultado.
+     * @return el resultado de la acción.
+     */
+    private static <T> T medir(String fase, Supplier<T> accion) {
+        long inicio = System.nanoTime();
+        T resultado = accion.get();
+        registrar(fase, inicio);
+        return resultado;
+    }
+
+    /**
+     * Registra en la salida estándar la duración de una fase del arranque.
+     *
+     * @param fase   el nombre de la fase.
+     * @param inicio el instante de inicio de la fase, en nanosegundos.
+     */
+    private static void registrar(String fase, long inicio) {
+        System.out.printf("Arranque: %s en %.1f ms (%s)%n",
+                fase, (System.nanoTime() - inicio) / 1_000_000.0, Thread.currentThread().getName());
+    }
+
+    /**
+     * Registra el tiempo hasta el primer fotograma, que se dibuja en el primer pulso tras mostrar la ventana,
+     * y lo compara con {@link #OBJETIVO_PRIMER_FOTOGRAMA}. También indica el tiempo desde el inicio del proceso,
+     * que incluye el arranque de la JVM y de JavaFX.
+     *
+     * @param inicio el instante de la llamada a {@code start}, en nanosegundos.
+     */
+    private static void medirPrimerFotograma(long inicio) {
+        new AnimationTimer() {
+            @Override
+            public void handle(long ahora) {
+                stop();
+                long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+                String desdeProceso = ProcessHandle.current().info().startInstant()
+                        .map(arranque -> String.format(", %d ms desde el inicio del proceso",
+                                Duration.between(arranque, Instant.now()).toMillis()))
+                        .orElse("");
+                System.out.printf("Arranque: primer fotograma en %d ms (objetivo %d ms%s)%s%n", milisegundos,
+                        OBJETIVO_PRIMER_FOTOGRAMA, milisegundos > OBJETIVO_PRIMER_FOTOGRAMA ? ", no alcanzado" : "",
+                        desdeProceso);
+            }
+        }.start();
+    }
+
+    /**
+     * Registra en {@link Metricas#PULSO_LAYOUT} la parte de cada pulso de JavaFX que se dedica a aplicar
+     * estilos y a disponer la escena, entre los oyentes anterior y posterior a la disposición.
+     * El dibujado posterior ocurre en otro hilo y no se incluye.
+     *
+     * @param scene la escena principal.
+     */
+    private static void medirPulsos(Scene scene) {
+        long[] inicioPulso = new long[1];
+        scene.addPreLayoutPulseListener(() -> inicioPulso[0] = Metricas.inicio());
+        scene.addPostLayoutPulseListener(() -> Metricas.registrar(Metricas.PULSO_LAYOUT, inicioPulso[0]));
+    }
+
+    /**
+     * Método que se ejecuta al cerrar la aplicación.
+     * Cierra el controlador principal para que guarde los datos pendientes
+     * y escribe el último resumen de las métricas si están activas.
+     */
+    @Override
+    public void stop() {
+        if (controlador != null) {
+            controlador.cerrar();
+        }
+        Metricas.detener();
     }
 
     /**
@@ -1,13 +1,18 @@
 package es.guillearana.ejercicioe.controlador;
 
 import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.ValidadorPersona;
+import es.guillearana.ejercicioe.servicio.DetectorDuplicados;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
+import java.util.List;
+
 /**
  * Controlador para la gestión de la ventana modal de entrada de datos de una persona.
  * Este controlador maneja la lógica de negocio y la interacción con la interfaz de usuario
@@ -41,6 +46,12 @@ public class ControllerModalEjerE {
     /** Indica si se está modificando una persona existente. */
     private boolean isEditing = false;
 
+    /** Número máximo de personas parecidas que se muestran en el aviso. */
+    private static final int PARECIDAS_MOSTRADAS = 5;
+
+    /** Detector de personas parecidas; {@code null} si no se debe avisar. */
+    private DetectorDuplicados detector;
+
     /**
      * Constructor por defecto.
      */
@@ -50,8 +61,10 @@ public class ControllerModalEjerE {
 
     /**
      * Maneja la acción de guardar una persona.
-     * Valida los campos de entrada y crea o modifica un objeto {@link Persona} si los campos son válidos.
-     * Si los datos son incorrectos, muestra una alerta con el mensaje de error.
+     * Valida los campos de entrada y crea un objeto {@link Persona} si los campos son válidos.
+     * Al modificar, la persona original no se altera: se crea una nueva con el mismo identificador.
+     * Si los datos son incorrectos, muestra una alerta con el mensaje de error. Si ya hay personas
+     * parecidas, pide confirmación antes de guardar.
      *
      * @param event el evento de acción del botón "Guardar"
      */
@@ -59,15 +72,20 @@ public class ControllerModalEjerE {
     void guardarPersona(ActionEvent event) {
         String errores = validarCampos();
         if (errores.isEmpty()) {
+            Persona guardada;
             if (isEditing) {
-                // Modificar la persona existente
-                persona.setNombre(txtNombre.getText());
-                persona.setApellidos(txtApellidos.getText());
-                persona.setEdad(Integer.parseInt(txtEdad.getText()));
+                // Obtener una copia modificada; la persona original es inmutable y sigue indexada
+                guardada = persona.conNombre(txtNombre.getText())
+                        .conApellidos(txtApellidos.getText())
+                        .conEdad(ValidadorPersona.leerEdad(txtEdad.getText()));
             } else {
                 // Crear nueva persona
-                persona = new Persona(txtNombre.getText(), txtApellidos.getText(), Integer.parseInt(txtEdad.getText()));
+                guardada = new Persona(txtNombre.getText(), txtApellidos.getText(), ValidadorPersona.leerEdad(txtEdad.getText()));
             }
+            if (!confirmarParecidas(guardada)) {
+                return;
+            }
+            persona = guardada;
             cerrarVentana();
         } else {
             mostrarAlertaError(errores);
@@ -85,6 +103,15 @@ public class ControllerModalEjerE {
         cerrarVentana();
     }
 
+    /**
+     * Establece el detector de personas parecidas que se consulta al guardar.
+     *
+     * @param detector el detector, o {@code null} para no avisar.
+     */
+    public void setDetectorDuplicados(DetectorDuplicados detector) {
+        this.detector = detector;
+    }
+
     /**
      * Devuelve el objeto {@link Persona} creado o modificado.
      *
@@ -94,6 +121,19 @@ public class ControllerModalEjerE {
         return persona;
     }
 
+    /**
+     * Prepara la ventana para dar de alta una persona nueva: vacía los campos y olvida la persona anterior.
+     * Se usa al reutilizar la misma ventana en varias aperturas.
+     */
+    public void reiniciar() {
+        this.persona = null;
+        this.isEditing = false;
+        txtNombre.clear();
+        txtApellidos.clear();
+        txtEdad.clear();
+        txtNombre.requestFocus();
+    }
+
     /**
      * Establece los datos de una persona existente para editarla.
      * Rellena los campos de texto con los datos de la persona.
@@ -108,6 +148,7 @@ public class ControllerModalEjerE {
         txtNombre.setText(persona.getNombre());
         txtApellidos.setText(persona.getApellidos());
         txtEdad.setText(String.valueOf(persona.getEdad()));
+        txtNombre.requestFocus();
     }
 
     /**
@@ -121,32 +162,40 @@ public class ControllerModalEjerE {
     /**
      * Valida los campos de entrada y devuelve un mensaje de error si hay campos inválidos.
      * Verifica que el nombre, apellidos y edad estén correctamente ingresados.
-     * La edad debe ser un número entre 0 y 120.
+     * La edad debe ser un número entre 0 y 120. Las reglas están en {@link ValidadorPersona}, y los mensajes
+     * solo se construyen si hay errores.
      *
      * @return un mensaje de error si hay errores; de lo contrario, una cadena vacía
      */
     private String validarCampos() {
-        StringBuilder errores = new StringBuilder();
+        return ValidadorPersona.validar(txtNombre.getText(), txtApellidos.getText(), txtEdad.getText());
+    }
 
-        if (txtNombre.getText().isEmpty()) {
-            errores.append("Debe ingresar un nombre.\n");
-        }
-        if (txtApellidos.getText().isEmpty()) {
-            errores.append("Debe ingresar apellidos.\n");
+    /**
+     * Busca personas parecidas a la que se va a guardar y, si las hay, pide confirmación.
+     * Las personas exactamente iguales no se consultan aquí: la lista ya las rechaza.
+     *
+     * @param guardada la persona que se va a guardar.
+     * @return {@code true} si no hay parecidas o se confirma que se quiere guardar.
+     */
+    private boolean confirmarParecidas(Persona guardada) {
+        if (detector == null) {
+            return true;
         }
-        if (txtEdad.getText().isEmpty()) {
-            errores.append("Debe ingresar una edad.\n");
-        } else {
-            try {
-                int edad = Integer.parseInt(txtEdad.getText());
-                if (edad < 0 || edad > 120) {
-                    errores.append("La edad debe estar entre 0 y 120 años.\n");
-                }
-            } catch (NumberFormatException e) {
-                errores.append("La edad debe ser un número.\n");
-            }
+        List<DetectorDuplicados.Coincidencia> parecidas = detector.buscarParecidas(guardada, isEditing ? persona : null)
+                .stream().filter(c -> !c.persona().equals(guardada)).toList();
+        if (parecidas.isEmpty()) {
+            return true;
         }
-        return errores.toString();
+        StringBuilder mensaje = new StringBuilder("Ya hay personas parecidas:\n");
+        parecidas.stream().limit(PARECIDAS_MOSTRADAS).forEach(c -> mensaje.append(String.format("%n%s %s, %d años (%.0f %%)",
+                c.persona().getNombre(), c.persona().getApellidos(), c.persona().getEdad(), c.puntuacion() * 100)));
+        mensaje.append("\n\n¿Guardar de todas formas?");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Posible duplicado");
+        alert.setHeaderText(null);
+        alert.setContentText(mensaje.toString());
+        return alert.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK;
     }
 
     /**
@@ -0,0 +1,142 @@
+package es.guillearana.ejercicioe.controlador;
+
+import es.guillearana.ejercicioe.metricas.Metricas;
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.servicio.DetectorDuplicados;
+import javafx.concurrent.Task;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Ventana modal de alta y modificación de personas, que se carga una sola vez y se reutiliza.
+ *
+ * <p>
+ * El fichero {@code ejerEmodal.fxml} se analiza al arrancar, en un hilo de fondo, y en el hilo de JavaFX
+ * se crean la escena y la ventana y se les aplican los estilos. Cada vez que se abre la ventana solo se
+ * reinician los campos de {@link ControllerModalEjerE}, sin volver a leer el FXML ni crear nodos.
+ * </p>
+ *
+ * <p>
+ * El tiempo desde que se pide la ventana hasta que se muestra se registra en {@link Metricas} junto con
+ * el de cierre.
+ * </p>
+ */
+class DialogoPersona {
+
+    /** Ruta del FXML de la ventana modal. */
+    private static final String FXML = "/es/guillearana/ejercicioe/ejerEmodal.fxml";
+
+    /** Detector de personas parecidas que usa la ventana al guardar; puede ser {@code null}. */
+    private final DetectorDuplicados detector;
+
+    /** Tarea que analiza el FXML en segundo plano. */
+    private final Task<FXMLLoader> carga;
+
+    /** Ventana reutilizada; {@code null} hasta que se prepara. */
+    private Stage ventana;
+
+    /** Controlador de la ventana reutilizada. */
+    private ControllerModalEjerE controlador;
+
+    /** Instante en que la ventana ha empezado a cerrarse, para las métricas. */
+    private long inicioCierre;
+
+    /**
+     * Empieza a cargar la ventana en segundo plano. Cuando termina, la ventana se prepara en el hilo de JavaFX.
+     *
+     * @param detector el detector de personas parecidas que se consulta al guardar, o {@code null} para no avisar.
+     */
+    DialogoPersona(DetectorDuplicados detector) {
+        this.detector = detector;
+        carga = new Task<>() {
+            @Override
+            protected FXMLLoader call() throws IOException {
+                FXMLLoader loader = new FXMLLoader(DialogoPersona.class.getResource(FXML));
+                loader.load();
+                return loader;
+            }
+        };
+        carga.setOnSucceeded(e -> prepararVentana(carga.getValue()));
+        carga.setOnFailed(e -> {
+            System.err.println("Error al precargar la ventana modal: " + carga.getException().getMessage());
+            carga.getException().printStackTrace();
+        });
+        Thread hilo = new Thread(carga, "precarga-ventana-modal");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Muestra la ventana y espera a que se cierre.
+     *
+     * @param titulo  el título de la ventana.
+     * @param persona la persona a modificar, o {@code null} para dar de alta una nueva.
+     * @return la persona creada o modificada; al modificar, la misma persona si se cancela,
+     * y al dar de alta, {@code null} si se cancela.
+     * @throws IOException si no se ha podido cargar la ventana.
+     */
+    Persona mostrar(String titulo, Persona persona) throws IOException {
+        long inicio = System.nanoTime();
+        if (ventana == null) {
+            prepararVentana(esperarCarga());
+        }
+        if (persona == null) {
+            controlador.reiniciar();
+        } else {
+            controlador.setPersona(persona);
+        }
+        ventana.setTitle(titulo);
+        ventana.setOnShown(e -> Metricas.registrar(Metricas.DIALOGO_APERTURA, inicio));
+        ventana.showAndWait();
+        Persona resultado = controlador.getPersona();
+        Metricas.registrar(Metricas.DIALOGO_CIERRE, inicioCierre);
+        return resultado;
+    }
+
+    /**
+     * Espera a que termine la carga en segundo plano. Si ha fallado, vuelve a cargar el FXML en este hilo.
+     *
+     * @return el cargador con el FXML ya analizado.
+     * @throws IOException si no se puede cargar el FXML.
+     */
+    private FXMLLoader esperarCarga() throws IOException {
+        try {
+            return carga.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carga de la ventana modal interrumpida", e);
+        } catch (ExecutionException e) {
+            FXMLLoader loader = new FXMLLoader(DialogoPersona.class.getResource(FXML));
+            loader.load();
+            return loader;
+        }
+    }
+
+    /**
+     * Crea la escena y la ventana a partir del FXML analizado y les aplica los estilos,
+     * para que la primera apertura no tenga que hacerlo.
+     *
+     * @param loader el cargador con el FXML ya analizado.
+     */
+    private void prepararVentana(FXMLLoader loader) {
+        if (ventana != null) {
+            return;
+        }
+        Parent raiz = loader.getRoot();
+        controlador = loader.getController();
+        controlador.setDetectorDuplicados(detector);
+        ventana = new Stage();
+        ventana.initModality(Modality.APPLICATION_MODAL);
+        ventana.setResizable(false);
+        ventana.setOnHiding(e -> inicioCierre = Metricas.inicio());
+        ventana.setScene(new Scene(raiz));
+        raiz.applyCss();
+        raiz.layout();
+    }
+}
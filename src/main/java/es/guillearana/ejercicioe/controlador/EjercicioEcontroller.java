@@ -1,21 +1,54 @@
 package es.guillearana.ejercicioe.controlador;
 
+import es.guillearana.ejercicioe.eventos.FlujoCambios;
+import es.guillearana.ejercicioe.metricas.Metricas;
+import es.guillearana.ejercicioe.model.EstadisticasPersonas;
+import es.guillearana.ejercicioe.model.HistorialCambios;
+import es.guillearana.ejercicioe.model.IndiceBusqueda;
+import es.guillearana.ejercicioe.model.ListaPaginada;
 import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.PersonaRepositorio;
+import es.guillearana.ejercicioe.model.ValidadorPersona;
+import es.guillearana.ejercicioe.persistencia.AlmacenPersistente;
+import es.guillearana.ejercicioe.persistencia.EscritorDiferido;
+import es.guillearana.ejercicioe.servicio.DetectorDuplicados;
+import es.guillearana.ejercicioe.servicio.ExportadorPersonas;
+import es.guillearana.ejercicioe.servicio.ImportadorPersonas;
+import es.guillearana.ejercicioe.servicio.OrdenadorPersonas;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Dialog;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.Spinner;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.stage.Modality;
-import javafx.stage.Stage;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Controlador para la gestión de la vista principal de la aplicación.
@@ -24,6 +57,27 @@ import java.io.IOException;
  */
 public class EjercicioEcontroller {
 
+    /**
+     * Número de personas guardadas a partir del cual la tabla se muestra paginada, sin cargarlas todas en memoria.
+     * Se puede cambiar con la propiedad del sistema {@code ejercicioe.umbralPaginado}.
+     */
+    private static final int UMBRAL_PAGINADO = Integer.getInteger("ejercicioe.umbralPaginado", 1_000_000);
+
+    /** Número máximo de pasos del historial de deshacer. Propiedad del sistema {@code ejercicioe.historial.pasos}. */
+    private static final int PASOS_HISTORIAL = Integer.getInteger("ejercicioe.historial.pasos", 1000);
+
+    /**
+     * Memoria máxima aproximada, en bytes, que puede retener el historial de deshacer.
+     * Propiedad del sistema {@code ejercicioe.historial.bytes}.
+     */
+    private static final long BYTES_HISTORIAL = Long.getLong("ejercicioe.historial.bytes", 16L * 1024 * 1024);
+
+    /** Anchura en años de cada barra del gráfico de edades. */
+    private static final int ANCHO_TRAMO_EDAD = 10;
+
+    /** Número de apellidos que se muestran en el panel de estadísticas. */
+    private static final int APELLIDOS_MOSTRADOS = 10;
+
     /** Botón para agregar una nueva persona. */
     @FXML
     private Button btnAgregar;
@@ -32,17 +86,65 @@ public class EjercicioEcontroller {
     @FXML
     private Button btnModificar;
 
-    /** Botón para eliminar una persona seleccionada. */
+    /** Botón para cambiar un dato de todas las personas seleccionadas. */
+    @FXML
+    private Button btnEditarSeleccion;
+
+    /** Botón para eliminar las personas seleccionadas. */
     @FXML
     private Button btnEliminar;
 
+    /** Botón para deshacer el último cambio. */
+    @FXML
+    private Button btnDeshacer;
+
+    /** Botón para rehacer el último cambio deshecho. */
+    @FXML
+    private Button btnRehacer;
+
+    /** Botón para importar personas desde un fichero. */
+    @FXML
+    private Button btnImportar;
+
+    /** Botón para exportar las personas de la tabla a un fichero. */
+    @FXML
+    private Button btnExportar;
+
+    /** Botón para buscar personas parecidas en toda la lista. */
+    @FXML
+    private Button btnDuplicados;
+
+    /** Barra de progreso de la importación o la exportación. */
+    @FXML
+    private ProgressBar prgImportacion;
+
+    /** Etiqueta con el estado de la importación. */
+    @FXML
+    private Label lblEstado;
+
+    /** Campo de búsqueda por nombre o apellidos. */
+    @FXML
+    private TextField txtBuscar;
+
+    /** Edad mínima del filtro. */
+    @FXML
+    private Spinner<Integer> spnEdadMinima;
+
+    /** Edad máxima del filtro. */
+    @FXML
+    private Spinner<Integer> spnEdadMaxima;
+
+    /** Etiqueta con el número de resultados de la búsqueda. */
+    @FXML
+    private Label lblResultados;
+
     /** Columna para mostrar los apellidos de las personas. */
     @FXML
     private TableColumn<Persona, String> colApellidos;
 
     /** Columna para mostrar la edad de las personas. */
     @FXML
-    private TableColumn<Persona, Integer> colEdad;
+    private TableColumn<Persona, Number> colEdad;
 
     /** Columna para mostrar el nombre de las personas. */
     @FXML
@@ -52,49 +154,390 @@ public class EjercicioEcontroller {
     @FXML
     private TableView<Persona> tableInfo;
 
-    /** Lista observable que contiene las personas. */
-    private ObservableList<Persona> personas;
+    /** Repositorio con la lista de personas y sus índices de búsqueda. */
+    private PersonaRepositorio repositorio;
+
+    /** Almacén donde se guardan las personas entre ejecuciones; {@code null} si no se ha podido abrir. */
+    private AlmacenPersistente almacen;
+
+    /** Escritor que guarda en segundo plano los cambios de la lista; {@code null} sin almacén o en modo paginado. */
+    private EscritorDiferido escritor;
+
+    /** Lista paginada que se muestra cuando el almacén es demasiado grande; {@code null} en modo normal. */
+    private ListaPaginada vistaPaginada;
+
+    /** Índice de búsqueda por prefijo y edad sobre las personas del repositorio. */
+    private IndiceBusqueda indiceBusqueda;
+
+    /** Detector de personas parecidas sobre las personas del repositorio. */
+    private DetectorDuplicados detector;
+
+    /** Estadísticas de las personas del repositorio, mantenidas con cada cambio. */
+    private EstadisticasPersonas estadisticas;
+
+    /** Flujo de cambios de las personas del repositorio; {@code null} en modo paginado o si no se ha podido abrir. */
+    private FlujoCambios flujoCambios;
+
+    /** Barras del gráfico de edades, una por tramo de {@link #ANCHO_TRAMO_EDAD} años. */
+    private final List<XYChart.Data<String, Number>> barrasEdad = new ArrayList<>();
+
+    /** Indica que ya hay un refresco del panel de estadísticas pendiente en el hilo de JavaFX. */
+    private boolean refrescoEstadisticasPendiente;
+
+    /** Panel de estadísticas. */
+    @FXML
+    private VBox panelEstadisticas;
+
+    /** Número de personas del panel de estadísticas. */
+    @FXML
+    private Label lblTotal;
+
+    /** Media, mínima y máxima de la edad del panel de estadísticas. */
+    @FXML
+    private Label lblEdades;
+
+    /** Histograma de edades del panel de estadísticas. */
+    @FXML
+    private BarChart<String, Number> graficoEdades;
+
+    /** Apellidos más frecuentes del panel de estadísticas. */
+    @FXML
+    private ListView<String> lstApellidos;
+
+    /** Historial de altas, modificaciones y bajas para deshacer y rehacer. */
+    private HistorialCambios historial;
+
+    /** Ventana modal de alta y modificación, cargada una sola vez. */
+    private DialogoPersona dialogo;
+
+    /** Ordenador de la lista de personas en segundo plano. */
+    private OrdenadorPersonas ordenador;
+
+    /** Resultados de la búsqueda que se muestran en la tabla mientras hay un filtro activo. */
+    private final ObservableList<Persona> resultados = FXCollections.observableArrayList();
+
+    /**
+     * Datos que necesita la vista principal, preparados antes de mostrarla.
+     *
+     * @param repositorio    el repositorio con las personas guardadas.
+     * @param almacen        el almacén de personas, o {@code null} si no se ha podido abrir.
+     * @param escritor       el escritor de los cambios de la lista en el almacén, o {@code null} sin almacén
+     *                       o en modo paginado.
+     * @param vistaPaginada  la lista paginada si el almacén es demasiado grande para cargarlo, o {@code null}.
+     * @param indiceBusqueda el índice de búsqueda sobre el repositorio, o {@code null} en modo paginado.
+     * @param detector       el detector de personas parecidas sobre el repositorio, o {@code null} en modo paginado.
+     * @param estadisticas   las estadísticas de las personas del repositorio, o {@code null} en modo paginado.
+     * @param flujoCambios   el flujo de cambios de las personas del repositorio, o {@code null} en modo paginado
+     *                       o si no se ha podido abrir su fichero.
+     */
+    public record DatosIniciales(PersonaRepositorio repositorio, AlmacenPersistente almacen, EscritorDiferido escritor,
+                                 ListaPaginada vistaPaginada, IndiceBusqueda indiceBusqueda,
+                                 DetectorDuplicados detector, EstadisticasPersonas estadisticas,
+                                 FlujoCambios flujoCambios) {
+    }
 
     /**
      * Método que se llama al inicializar el controlador.
-     * Configura las columnas de la tabla y la lista de personas.
+     * Solo configura las columnas de la tabla, de modo que el FXML se puede cargar en un hilo de fondo;
+     * los datos se enlazan después con {@link #iniciar(DatosIniciales)}.
      */
     @FXML
     public void initialize() {
-        personas = FXCollections.observableArrayList();
-        colNombre.setCellValueFactory(new PropertyValueFactory<>("nombre"));
-        colApellidos.setCellValueFactory(new PropertyValueFactory<>("apellidos"));
-        colEdad.setCellValueFactory(new PropertyValueFactory<>("edad"));
+        // Las propiedades se guardan en cada persona: no hay reflexión ni objetos nuevos en cada pasada de la tabla
+        colNombre.setCellValueFactory(celda -> celda.getValue().nombreProperty());
+        colApellidos.setCellValueFactory(celda -> celda.getValue().apellidosProperty());
+        colEdad.setCellValueFactory(celda -> celda.getValue().edadProperty());
+        tableInfo.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+    }
+
+    /**
+     * Abre el almacén de personas, carga su contenido en un repositorio nuevo y construye el índice de búsqueda.
+     * Si el almacén supera {@link #UMBRAL_PAGINADO} personas no se cargan: se prepara una {@link ListaPaginada}.
+     * Si el almacén no se puede abrir, la aplicación funciona sin persistencia.
+     *
+     * <p>
+     * No toca la vista, por lo que se puede ejecutar en un hilo de fondo mientras se carga el FXML.
+     * </p>
+     *
+     * @return los datos para {@link #iniciar(DatosIniciales)}.
+     */
+    public static DatosIniciales cargarDatos() {
+        PersonaRepositorio repositorio = new PersonaRepositorio();
+        AlmacenPersistente almacen = null;
+        EscritorDiferido escritor = null;
+        try {
+            almacen = AlmacenPersistente.abrirPorDefecto();
+            if (almacen.tamano() > UMBRAL_PAGINADO) {
+                return new DatosIniciales(repositorio, almacen, null, new ListaPaginada(almacen), null, null, null,
+                        null);
+            }
+            repositorio.setGeneradorIds(almacen.generadorIds());
+            repositorio.agregarTodas(Arrays.asList(almacen.cargar()));
+            escritor = almacen.crearEscritor();
+            escritor.vincular(repositorio.getPersonas());
+        } catch (IOException e) {
+            almacen = null;
+            System.err.println("No se ha podido abrir el almacén de personas: " + e.getMessage());
+            e.printStackTrace();
+        }
+        IndiceBusqueda indice = new IndiceBusqueda();
+        indice.vincular(repositorio.getPersonas());
+        DetectorDuplicados detector = new DetectorDuplicados();
+        detector.vincular(repositorio.getPersonas());
+        EstadisticasPersonas estadisticas = new EstadisticasPersonas();
+        estadisticas.vincular(repositorio.getPersonas());
+        FlujoCambios flujoCambios = null;
+        try {
+            flujoCambios = FlujoCambios.crear();
+            flujoCambios.vincular(repositorio.getPersonas());
+        } catch (IOException e) {
+            System.err.println("No se ha podido abrir el fichero de cambios: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return new DatosIniciales(repositorio, almacen, escritor, null, indice, detector, estadisticas, flujoCambios);
+    }
+
+    /**
+     * Enlaza la vista con los datos cargados. Se llama en el hilo de JavaFX, después de cargar el FXML.
+     *
+     * @param datos los datos obtenidos con {@link #cargarDatos()}.
+     */
+    public void iniciar(DatosIniciales datos) {
+        repositorio = datos.repositorio();
+        almacen = datos.almacen();
+        escritor = datos.escritor();
+        vistaPaginada = datos.vistaPaginada();
+        indiceBusqueda = datos.indiceBusqueda();
+        detector = datos.detector();
+        estadisticas = datos.estadisticas();
+        flujoCambios = datos.flujoCambios();
+        if (vistaPaginada != null) {
+            mostrarPaginado();
+        } else {
+            tableInfo.setItems(repositorio.getPersonas());
+            prepararBusqueda();
+            prepararOrdenacion();
+            prepararHistorial();
+            prepararEstadisticas();
+            dialogo = new DialogoPersona(detector);
+            if (escritor != null) {
+                escritor.setAlFallar(e -> Platform.runLater(() -> {
+                    mostrarEstado("Hay cambios sin guardar; se reintenta cada segundo");
+                    mostrarAlerta("No se han podido guardar los cambios en el almacén: " + e.getMessage());
+                }));
+                escritor.setAlRecuperar(() -> Platform.runLater(
+                        () -> mostrarEstado("Se han guardado los cambios pendientes")));
+            }
+        }
+    }
+
+    /**
+     * Devuelve el flujo de cambios de las personas, al que se pueden suscribir otros componentes.
+     *
+     * @return el flujo, o {@code null} en modo paginado o si no se ha podido abrir su fichero.
+     */
+    public FlujoCambios getFlujoCambios() {
+        return flujoCambios;
+    }
+
+    /**
+     * Guarda los cambios pendientes y cierra el almacén de personas. Se llama al terminar la aplicación.
+     */
+    public void cerrar() {
+        if (ordenador != null) {
+            ordenador.cerrar();
+        }
+        if (flujoCambios != null) {
+            flujoCambios.close();
+        }
+        if (escritor != null) {
+            escritor.close();
+        }
+        if (almacen != null) {
+            try {
+                almacen.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el almacén de personas: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Muestra el almacén en la tabla mediante la lista paginada, en modo de solo consulta.
+     * Las personas se leen del fichero a medida que se desplaza la tabla, por lo que se desactivan
+     * la ordenación y las acciones que modifican la lista.
+     */
+    private void mostrarPaginado() {
+        tableInfo.setItems(vistaPaginada);
+        colNombre.setSortable(false);
+        colApellidos.setSortable(false);
+        colEdad.setSortable(false);
+        btnAgregar.setDisable(true);
+        btnModificar.setDisable(true);
+        btnEditarSeleccion.setDisable(true);
+        btnEliminar.setDisable(true);
+        btnImportar.setDisable(true);
+        btnDuplicados.setDisable(true);
+        btnDeshacer.setDisable(true);
+        btnRehacer.setDisable(true);
+        txtBuscar.setDisable(true);
+        spnEdadMinima.setDisable(true);
+        spnEdadMaxima.setDisable(true);
+        lblEstado.setText(String.format("%,d personas (vista paginada de solo consulta)", vistaPaginada.size()));
+        lblTotal.setText(String.format("%,d personas", vistaPaginada.size()));
+        lblEdades.setText("Sin estadísticas en la vista paginada");
+        panelEstadisticas.setDisable(true);
+    }
+
+    /**
+     * Prepara el panel de estadísticas y lo refresca cada vez que cambia la lista.
+     * Las estadísticas ya se actualizan con cada cambio; el panel se redibuja como mucho una vez por pulso,
+     * aunque en ese tiempo lleguen muchos cambios.
+     */
+    private void prepararEstadisticas() {
+        XYChart.Series<String, Number> serie = new XYChart.Series<>();
+        for (int desde = ValidadorPersona.EDAD_MINIMA; desde <= ValidadorPersona.EDAD_MAXIMA; desde += ANCHO_TRAMO_EDAD) {
+            int hasta = Math.min(desde + ANCHO_TRAMO_EDAD - 1, ValidadorPersona.EDAD_MAXIMA);
+            XYChart.Data<String, Number> barra = new XYChart.Data<>(desde == hasta ? "" + desde : desde + "-" + hasta, 0);
+            barrasEdad.add(barra);
+            serie.getData().add(barra);
+        }
+        graficoEdades.getData().add(serie);
+        repositorio.getPersonas().addListener((ListChangeListener<Persona>) cambio -> {
+            if (!refrescoEstadisticasPendiente) {
+                refrescoEstadisticasPendiente = true;
+                Platform.runLater(this::refrescarEstadisticas);
+            }
+        });
+        refrescarEstadisticas();
+    }
+
+    /**
+     * Muestra en el panel los valores actuales de las estadísticas.
+     */
+    private void refrescarEstadisticas() {
+        refrescoEstadisticasPendiente = false;
+        lblTotal.setText(String.format("%,d personas", estadisticas.total()));
+        lblEdades.setText(estadisticas.total() == 0 ? "Edad: sin datos" : String.format("Edad media %.1f (mín. %d, máx. %d)",
+                estadisticas.mediaEdad(), estadisticas.edadMinima(), estadisticas.edadMaxima()));
+        for (int i = 0; i < barrasEdad.size(); i++) {
+            int desde = ValidadorPersona.EDAD_MINIMA + i * ANCHO_TRAMO_EDAD;
+            barrasEdad.get(i).setYValue(estadisticas.personasEntre(desde, desde + ANCHO_TRAMO_EDAD - 1));
+        }
+        lstApellidos.getItems().setAll(estadisticas.apellidosMasFrecuentes(APELLIDOS_MOSTRADOS).stream()
+                .map(a -> String.format("%s (%,d)", a.apellidos(), a.personas()))
+                .toList());
+    }
+
+    /**
+     * Conecta el campo de búsqueda y el filtro de edad con el índice de búsqueda.
+     * Cada pulsación consulta el índice en lugar de recorrer la lista, y los resultados
+     * se vuelven a calcular cuando cambia la lista mientras hay un filtro activo.
+     */
+    private void prepararBusqueda() {
+        txtBuscar.textProperty().addListener((observable, anterior, actual) -> aplicarFiltro());
+        spnEdadMinima.valueProperty().addListener((observable, anterior, actual) -> aplicarFiltro());
+        spnEdadMaxima.valueProperty().addListener((observable, anterior, actual) -> aplicarFiltro());
+        repositorio.getPersonas().addListener((ListChangeListener<Persona>) cambio -> {
+            if (filtroActivo()) {
+                aplicarFiltro();
+            }
+        });
+    }
+
+    /**
+     * Sustituye la ordenación de la tabla por la del {@link OrdenadorPersonas}: al pulsar en las cabeceras
+     * se pide la ordenación, que se calcula en segundo plano y se aplica cuando termina.
+     */
+    private void prepararOrdenacion() {
+        ordenador = new OrdenadorPersonas(repositorio);
+        ordenador.setAlOrdenar(milisegundos -> {
+            mostrarEstado(String.format("Ordenado en %,d ms", milisegundos));
+        });
+        tableInfo.setSortPolicy(tabla -> {
+            List<OrdenadorPersonas.Criterio> criterios = new ArrayList<>();
+            for (TableColumn<Persona, ?> columna : tabla.getSortOrder()) {
+                OrdenadorPersonas.Campo campo = columna == colNombre ? OrdenadorPersonas.Campo.NOMBRE
+                        : columna == colApellidos ? OrdenadorPersonas.Campo.APELLIDOS
+                        : OrdenadorPersonas.Campo.EDAD;
+                criterios.add(new OrdenadorPersonas.Criterio(campo, columna.getSortType() == TableColumn.SortType.ASCENDING));
+            }
+            ordenador.solicitar(criterios);
+            return true;
+        });
+    }
+
+    /**
+     * Crea el historial de cambios, enlaza los botones de deshacer y rehacer con él y añade los atajos
+     * de teclado habituales (Ctrl+Z y Ctrl+Y) cuando la vista se coloca en su escena.
+     */
+    private void prepararHistorial() {
+        historial = new HistorialCambios(repositorio, PASOS_HISTORIAL, BYTES_HISTORIAL);
+        btnDeshacer.disableProperty().bind(historial.puedeDeshacerProperty().not());
+        btnRehacer.disableProperty().bind(historial.puedeRehacerProperty().not());
+        tableInfo.sceneProperty().addListener((observable, anterior, escena) -> {
+            if (escena != null) {
+                escena.getAccelerators().put(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), btnDeshacer::fire);
+                escena.getAccelerators().put(new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), btnRehacer::fire);
+            }
+        });
+    }
+
+    /**
+     * Indica si hay algún criterio de búsqueda o de edad activo.
+     *
+     * @return {@code true} si la tabla debe mostrar solo los resultados de la búsqueda.
+     */
+    private boolean filtroActivo() {
+        return !txtBuscar.getText().isBlank()
+                || spnEdadMinima.getValue() > ValidadorPersona.EDAD_MINIMA
+                || spnEdadMaxima.getValue() < ValidadorPersona.EDAD_MAXIMA;
+    }
+
+    /**
+     * Muestra en la tabla los resultados de la búsqueda, o la lista completa si no hay filtro.
+     */
+    private void aplicarFiltro() {
+        if (!filtroActivo()) {
+            tableInfo.setItems(repositorio.getPersonas());
+            lblResultados.setText("");
+            return;
+        }
+        long inicio = System.nanoTime();
+        List<Persona> encontradas = indiceBusqueda.buscar(txtBuscar.getText(), spnEdadMinima.getValue(), spnEdadMaxima.getValue());
+        if (ordenador != null && ordenador.activo()) {
+            encontradas.sort(ordenador.comparador());
+        }
+        resultados.setAll(encontradas);
+        long microsegundos = (System.nanoTime() - inicio) / 1000;
+        if (tableInfo.getItems() != resultados) {
+            tableInfo.setItems(resultados);
+        }
+        lblResultados.setText(String.format("%,d resultados (%,.1f ms)", resultados.size(), microsegundos / 1000.0));
     }
 
     /**
      * Maneja la acción de agregar una nueva persona.
-     * Abre una ventana modal para ingresar los datos de la nueva persona
-     * y la agrega a la lista si es válida.
+     * Abre la ventana modal para ingresar los datos de la nueva persona
+     * y la agrega a la lista si es válida. La ventana se reutiliza entre aperturas.
      *
      * @param event el evento de acción del botón "Agregar"
      */
     @FXML
     void accionAgregar(ActionEvent event) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/es/guillearana/ejercicioe/ejerEmodal.fxml"));
-            Parent root = loader.load();
-
-            ControllerModalEjerE modalController = loader.getController();
-
-            Stage modalStage = new Stage();
-            modalStage.initModality(Modality.APPLICATION_MODAL);
-            modalStage.setTitle("Agregar Persona");
-            modalStage.setScene(new Scene(root));
-            modalStage.setResizable(false);
-            modalStage.showAndWait();
-
-            Persona nuevaPersona = modalController.getPersona();
-            if (nuevaPersona != null && !personas.contains(nuevaPersona)) {
-                personas.add(nuevaPersona);
-                tableInfo.setItems(personas);
-            } else {
-                mostrarAlerta("La persona ya existe en la lista");
+            Persona nuevaPersona = dialogo.mostrar("Agregar Persona", null);
+            if (nuevaPersona != null) {
+                long inicio = Metricas.inicio();
+                boolean agregada = historial.agregar(nuevaPersona);
+                if (agregada) {
+                    ordenador.recolocar(nuevaPersona);
+                }
+                Metricas.registrar(Metricas.ACCION_AGREGAR, inicio);
+                if (!agregada) {
+                    mostrarAlerta("La persona ya existe en la lista");
+                }
             }
 
         } catch (IOException e) {
@@ -108,7 +551,7 @@ public class EjercicioEcontroller {
 
     /**
      * Maneja la acción de modificar una persona seleccionada.
-     * Abre una ventana modal para editar los datos de la persona seleccionada.
+     * Abre la ventana modal, ya cargada, para editar los datos de la persona seleccionada.
      *
      * @param event el evento de acción del botón "Modificar"
      */
@@ -117,24 +560,18 @@ public class EjercicioEcontroller {
         Persona personaSeleccionada = tableInfo.getSelectionModel().getSelectedItem();
         if (personaSeleccionada != null) {
             try {
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/es/guillearana/ejercicioe/ejerEmodal.fxml"));
-                Parent root = loader.load();
-
-                ControllerModalEjerE modalController = loader.getController();
-                modalController.setPersona(personaSeleccionada); // Establece la persona a modificar
-
-                Stage modalStage = new Stage();
-                modalStage.initModality(Modality.APPLICATION_MODAL);
-                modalStage.setTitle("Modificar Persona");
-                modalStage.setScene(new Scene(root));
-                modalStage.setResizable(false);
-                modalStage.showAndWait();
-
-                Persona personaModificada = modalController.getPersona();
-                if (personaModificada != null) {
-                    int index = personas.indexOf(personaSeleccionada);
-                    personas.set(index, personaModificada); // Reemplaza la persona modificada en la lista
-                    tableInfo.setItems(personas);
+                Persona personaModificada = dialogo.mostrar("Modificar Persona", personaSeleccionada);
+                if (personaModificada != personaSeleccionada) {
+                    long inicio = Metricas.inicio();
+                    boolean reemplazada = historial.reemplazar(personaSeleccionada, personaModificada);
+                    if (reemplazada) {
+                        // Solo ha cambiado una fila: se recoloca en lugar de volver a ordenar toda la lista
+                        ordenador.recolocar(personaModificada);
+                    }
+                    Metricas.registrar(Metricas.ACCION_MODIFICAR, inicio);
+                    if (!reemplazada) {
+                        mostrarAlerta("La persona ya existe en la lista");
+                    }
                 }
 
             } catch (IOException e) {
@@ -150,23 +587,342 @@ public class EjercicioEcontroller {
     }
 
     /**
-     * Maneja la acción de eliminar una persona seleccionada.
-     * Elimina la persona de la lista y actualiza la tabla.
+     * Maneja la acción de eliminar las personas seleccionadas.
+     * Si hay varias, se eliminan todas con un único cambio de la lista y un solo paso del historial.
      *
      * @param event el evento de acción del botón "Eliminar"
      */
     @FXML
     void accionEliminar(ActionEvent event) {
-        Persona personaSeleccionada = tableInfo.getSelectionModel().getSelectedItem();
-        if (personaSeleccionada != null) {
-            personas.remove(personaSeleccionada);
-            tableInfo.setItems(personas);
-            mostrarAlerta("Persona eliminada correctamente.");
+        List<Persona> seleccionadas = List.copyOf(tableInfo.getSelectionModel().getSelectedItems());
+        if (seleccionadas.size() == 1) {
+            long inicio = Metricas.inicio();
+            historial.eliminar(seleccionadas.get(0));
+            Metricas.registrar(Metricas.ACCION_ELIMINAR, inicio);
+            mostrarAlerta("Persona eliminada correctamente. Se puede recuperar con Deshacer (Ctrl+Z).");
+        } else if (!seleccionadas.isEmpty()) {
+            long inicio = System.nanoTime();
+            tableInfo.getSelectionModel().clearSelection();
+            int eliminadas = historial.eliminarTodas(seleccionadas);
+            Metricas.registrar(Metricas.ACCION_ELIMINAR, inicio);
+            mostrarEstado(String.format("%,d personas eliminadas en %,.1f ms. Se pueden recuperar con Deshacer (Ctrl+Z).",
+                    eliminadas, (System.nanoTime() - inicio) / 1_000_000.0));
         } else {
             mostrarAlerta("Debes seleccionar una persona para eliminar.");
         }
     }
 
+    /**
+     * Maneja la acción de cambiar un dato de todas las personas seleccionadas.
+     * Pide el dato y su nuevo valor y aplica todos los cambios con un único cambio de la lista
+     * y un solo paso del historial. Las personas que quedarían repetidas no se modifican.
+     *
+     * @param event el evento de acción del botón "Editar selección"
+     */
+    @FXML
+    void accionEditarSeleccion(ActionEvent event) {
+        List<Persona> seleccionadas = List.copyOf(tableInfo.getSelectionModel().getSelectedItems());
+        if (seleccionadas.isEmpty()) {
+            mostrarAlerta("Debes seleccionar al menos una persona para editar.");
+            return;
+        }
+        UnaryOperator<Persona> cambio = pedirCambioSeleccion(seleccionadas.size());
+        if (cambio == null) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        List<PersonaRepositorio.Reemplazo> reemplazos = new ArrayList<>(seleccionadas.size());
+        for (Persona persona : seleccionadas) {
+            reemplazos.add(new PersonaRepositorio.Reemplazo(persona, cambio.apply(persona)));
+        }
+        tableInfo.getSelectionModel().clearSelection();
+        List<Persona> modificadas = historial.reemplazarTodas(reemplazos);
+        ordenador.recolocarTodas(modificadas);
+        Metricas.registrar(Metricas.ACCION_EDITAR_SELECCION, inicio);
+        mostrarEstado(String.format("%,d personas modificadas en %,.1f ms", modificadas.size(),
+                (System.nanoTime() - inicio) / 1_000_000.0));
+        if (modificadas.size() < seleccionadas.size()) {
+            mostrarAlerta(String.format("%,d personas no se han modificado porque quedarían repetidas.",
+                    seleccionadas.size() - modificadas.size()));
+        }
+    }
+
+    /**
+     * Pide el dato a cambiar en las personas seleccionadas y su nuevo valor, y lo valida.
+     *
+     * @param seleccionadas el número de personas seleccionadas, para el texto del diálogo.
+     * @return la función que aplica el cambio a cada persona, o {@code null} si se cancela o el valor no es válido.
+     */
+    private UnaryOperator<Persona> pedirCambioSeleccion(int seleccionadas) {
+        ChoiceBox<String> campo = new ChoiceBox<>(FXCollections.observableArrayList("Nombre", "Apellidos", "Edad"));
+        campo.setValue("Edad");
+        TextField valor = new TextField();
+        GridPane contenido = new GridPane();
+        contenido.setHgap(10);
+        contenido.setVgap(10);
+        contenido.addRow(0, new Label("Dato:"), campo);
+        contenido.addRow(1, new Label("Nuevo valor:"), valor);
+
+        Dialog<ButtonType> dialogoLote = new Dialog<>();
+        dialogoLote.setTitle("Editar selección");
+        dialogoLote.setHeaderText(String.format("Cambiar un dato de %,d personas", seleccionadas));
+        dialogoLote.getDialogPane().setContent(contenido);
+        dialogoLote.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialogoLote.setOnShown(e -> valor.requestFocus());
+        if (dialogoLote.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return null;
+        }
+
+        String texto = valor.getText().trim();
+        String errores = switch (campo.getValue()) {
+            case "Nombre" -> ValidadorPersona.validarNombre(texto);
+            case "Apellidos" -> ValidadorPersona.validarApellidos(texto);
+            default -> ValidadorPersona.validarEdad(texto);
+        };
+        if (!errores.isEmpty()) {
+            mostrarAlerta(errores);
+            return null;
+        }
+        return switch (campo.getValue()) {
+            case "Nombre" -> persona -> persona.conNombre(texto);
+            case "Apellidos" -> persona -> persona.conApellidos(texto);
+            default -> {
+                int edad = ValidadorPersona.leerEdad(texto);
+                yield persona -> persona.conEdad(edad);
+            }
+        };
+    }
+
+    /**
+     * Maneja la acción de deshacer el último cambio.
+     *
+     * @param event el evento de acción del botón "Deshacer"
+     */
+    @FXML
+    void accionDeshacer(ActionEvent event) {
+        long inicio = Metricas.inicio();
+        recolocar(historial.deshacer(), "deshacer");
+        Metricas.registrar(Metricas.ACCION_HISTORIAL, inicio);
+    }
+
+    /**
+     * Maneja la acción de rehacer el último cambio deshecho.
+     *
+     * @param event el evento de acción del botón "Rehacer"
+     */
+    @FXML
+    void accionRehacer(ActionEvent event) {
+        long inicio = Metricas.inicio();
+        recolocar(historial.rehacer(), "rehacer");
+        Metricas.registrar(Metricas.ACCION_HISTORIAL, inicio);
+    }
+
+    /**
+     * Lleva a su sitio, si la tabla está ordenada, las personas que han vuelto a la lista o han cambiado
+     * al deshacer o rehacer, o avisa si el cambio no se ha podido aplicar.
+     *
+     * @param afectadas las personas afectadas, o {@code null} si el cambio no se ha podido aplicar.
+     * @param accion    el nombre de la acción, para el mensaje de aviso.
+     */
+    private void recolocar(List<Persona> afectadas, String accion) {
+        if (afectadas == null) {
+            mostrarAlerta("No se puede " + accion + " el cambio: la lista ha cambiado desde entonces.");
+            return;
+        }
+        ordenador.recolocarTodas(afectadas);
+    }
+
+    /**
+     * Muestra un mensaje en la etiqueta de estado, salvo que la esté usando una importación en curso.
+     *
+     * @param mensaje el mensaje a mostrar.
+     */
+    private void mostrarEstado(String mensaje) {
+        if (!lblEstado.textProperty().isBound()) {
+            lblEstado.setText(mensaje);
+        }
+    }
+
+    /**
+     * Maneja la acción de importar personas desde un fichero CSV o JSON.
+     * La lectura se realiza en un hilo de fondo y las personas se agregan a la tabla por lotes,
+     * mostrando el progreso sin bloquear la interfaz.
+     *
+     * @param event el evento de acción del botón "Importar"
+     */
+    @FXML
+    void accionImportar(ActionEvent event) {
+        FileChooser selector = new FileChooser();
+        selector.setTitle("Importar personas");
+        selector.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV o JSON", "*.csv", "*.json", "*.jsonl"),
+                new FileChooser.ExtensionFilter("Todos los ficheros", "*.*"));
+        File fichero = selector.showOpenDialog(tableInfo.getScene().getWindow());
+        if (fichero == null) {
+            return;
+        }
+
+        ImportadorPersonas importador = new ImportadorPersonas(fichero, repositorio);
+        btnImportar.setDisable(true);
+        btnExportar.setDisable(true);
+        prgImportacion.setVisible(true);
+        prgImportacion.progressProperty().bind(importador.progressProperty());
+        lblEstado.textProperty().bind(importador.messageProperty());
+
+        importador.setOnSucceeded(e -> {
+            terminarImportacion();
+            ImportadorPersonas.Resultado resultado = importador.getValue();
+            lblEstado.setText(String.format("%,d personas importadas", resultado.agregadas()));
+            mostrarAlerta(String.format("Importación terminada en %,d ms.%nLeídos: %,d%nAgregados: %,d%nInválidos: %,d%nDuplicados: %,d",
+                    resultado.milisegundos(), resultado.leidos(), resultado.agregadas(), resultado.invalidos(), resultado.duplicados()));
+        });
+        importador.setOnFailed(e -> {
+            terminarImportacion();
+            lblEstado.setText("");
+            mostrarAlerta("Error al importar el fichero: " + importador.getException().getMessage());
+            importador.getException().printStackTrace();
+        });
+
+        Thread hilo = new Thread(importador, "importador-personas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Maneja la acción de exportar las personas de la tabla a un fichero CSV, JSON Lines o columnar.
+     * Se exporta lo que muestra la tabla, con su filtro y su orden, a partir de una copia de las referencias
+     * tomada aquí; incluye los cambios que el escritor aún no ha guardado. En la vista paginada, que no se
+     * puede ordenar ni modificar, se lee directamente del almacén. La escritura se realiza en un hilo de fondo
+     * mostrando el progreso.
+     *
+     * @param event el evento de acción del botón "Exportar"
+     */
+    @FXML
+    void accionExportar(ActionEvent event) {
+        FileChooser selector = new FileChooser();
+        selector.setTitle("Exportar personas");
+        selector.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl"),
+                new FileChooser.ExtensionFilter("Columnar binario", "*.col"));
+        File fichero = selector.showSaveDialog(tableInfo.getScene().getWindow());
+        if (fichero == null) {
+            return;
+        }
+
+        ObservableList<Persona> vista = tableInfo.getItems();
+        ExportadorPersonas exportador;
+        if (vista == vistaPaginada) {
+            exportador = new ExportadorPersonas(almacen, fichero.toPath());
+        } else {
+            // Solo se copian las referencias; la codificación se hace en el hilo del exportador
+            Persona[] personas = vista == resultados ? resultados.toArray(Persona[]::new) : repositorio.instantanea();
+            exportador = new ExportadorPersonas(personas, fichero.toPath());
+        }
+        btnImportar.setDisable(true);
+        btnExportar.setDisable(true);
+        prgImportacion.setVisible(true);
+        prgImportacion.progressProperty().bind(exportador.progressProperty());
+        lblEstado.textProperty().bind(exportador.messageProperty());
+
+        exportador.setOnSucceeded(e -> {
+            terminarImportacion();
+            ExportadorPersonas.Resultado resultado = exportador.getValue();
+            lblEstado.setText(String.format("%,d personas exportadas", resultado.filas()));
+            mostrarAlerta(String.format("Exportación terminada en %,d ms.%nFilas: %,d%nTamaño: %,d bytes",
+                    resultado.milisegundos(), resultado.filas(), resultado.bytes()));
+        });
+        exportador.setOnFailed(e -> {
+            terminarImportacion();
+            lblEstado.setText("");
+            mostrarAlerta("Error al exportar el fichero: " + exportador.getException().getMessage());
+            exportador.getException().printStackTrace();
+        });
+
+        Thread hilo = new Thread(exportador, "exportador-personas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Maneja la acción de buscar personas parecidas en toda la lista.
+     * La búsqueda se hace en un hilo de fondo, repartida entre todos los núcleos, sobre una copia de la lista.
+     * Al terminar se seleccionan en la tabla las personas que se parecen a otra anterior, para revisarlas
+     * o eliminarlas de una vez.
+     *
+     * @param event el evento de acción del botón "Buscar duplicados"
+     */
+    @FXML
+    void accionBuscarDuplicados(ActionEvent event) {
+        Persona[] personas = repositorio.instantanea();
+        Task<List<DetectorDuplicados.Coincidencia>> busqueda = new Task<>() {
+            @Override
+            protected List<DetectorDuplicados.Coincidencia> call() {
+                return DetectorDuplicados.buscarTodas(personas, DetectorDuplicados.UMBRAL);
+            }
+        };
+        long inicio = System.nanoTime();
+        btnDuplicados.setDisable(true);
+        mostrarEstado(String.format("Buscando duplicados entre %,d personas...", personas.length));
+        busqueda.setOnSucceeded(e -> {
+            btnDuplicados.setDisable(false);
+            List<DetectorDuplicados.Coincidencia> coincidencias = busqueda.getValue();
+            mostrarEstado(String.format("%,d parejas parecidas en %,d ms", coincidencias.size(),
+                    (System.nanoTime() - inicio) / 1_000_000));
+            if (coincidencias.isEmpty()) {
+                mostrarAlerta("No se han encontrado personas parecidas.");
+                return;
+            }
+            seleccionarParecidas(coincidencias);
+            StringBuilder mensaje = new StringBuilder(String.format(
+                    "Se han encontrado %,d parejas de personas parecidas. Las más parecidas:%n", coincidencias.size()));
+            coincidencias.stream().limit(10).forEach(c -> mensaje.append(String.format("%n%s %s (%d) ~ %s %s (%d): %.0f %%",
+                    c.persona().getNombre(), c.persona().getApellidos(), c.persona().getEdad(),
+                    c.parecida().getNombre(), c.parecida().getApellidos(), c.parecida().getEdad(), c.puntuacion() * 100)));
+            mostrarAlerta(mensaje.toString());
+        });
+        busqueda.setOnFailed(e -> {
+            btnDuplicados.setDisable(false);
+            mostrarEstado("");
+            mostrarAlerta("Error al buscar duplicados: " + busqueda.getException().getMessage());
+            busqueda.getException().printStackTrace();
+        });
+        Thread hilo = new Thread(busqueda, "detector-duplicados");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Selecciona en la tabla, si muestra la lista completa, las personas que se parecen a otra anterior
+     * y que siguen en la lista.
+     *
+     * @param coincidencias las parejas de personas parecidas.
+     */
+    private void seleccionarParecidas(List<DetectorDuplicados.Coincidencia> coincidencias) {
+        if (tableInfo.getItems() != repositorio.getPersonas()) {
+            return;
+        }
+        int[] indices = coincidencias.stream().mapToInt(c -> repositorio.indiceDe(c.parecida()))
+                .filter(indice -> indice >= 0).distinct().toArray();
+        tableInfo.getSelectionModel().clearSelection();
+        if (indices.length > 0) {
+            tableInfo.getSelectionModel().selectIndices(indices[0], Arrays.copyOfRange(indices, 1, indices.length));
+            tableInfo.scrollTo(indices[0]);
+        }
+    }
+
+    /**
+     * Restablece los controles de la importación o la exportación cuando esta termina.
+     * En la vista paginada la importación sigue desactivada.
+     */
+    private void terminarImportacion() {
+        prgImportacion.progressProperty().unbind();
+        lblEstado.textProperty().unbind();
+        prgImportacion.setVisible(false);
+        btnImportar.setDisable(tableInfo.getItems() == vistaPaginada);
+        btnExportar.setDisable(false);
+    }
+
     /**
      * Muestra un mensaje de alerta con la información proporcionada.
      *
@@ -0,0 +1,36 @@
+package es.guillearana.ejercicioe.eventos;
+
+import es.guillearana.ejercicioe.model.Persona;
+
+/**
+ * Cambio de una persona de la lista, tal y como lo publica un {@link FlujoCambios}.
+ *
+ * @param secuencia número de orden del cambio, consecutivo desde 1 y que continúa entre ejecuciones si hay fichero.
+ * @param tipo      el tipo de cambio.
+ * @param anterior  la persona antes del cambio; {@code null} en las altas.
+ * @param nueva     la persona después del cambio; {@code null} en las bajas.
+ * @param instante  el momento del cambio, en milisegundos desde 1970.
+ */
+public record EventoPersona(long secuencia, Tipo tipo, Persona anterior, Persona nueva, long instante) {
+
+    /**
+     * Tipos de cambio.
+     */
+    public enum Tipo {
+        /** Se ha agregado una persona. */
+        ALTA,
+        /** Se han cambiado los datos de una persona, que conserva su identificador. */
+        MODIFICACION,
+        /** Se ha eliminado una persona. */
+        BAJA
+    }
+
+    /**
+     * Devuelve el identificador de la persona afectada.
+     *
+     * @return el identificador.
+     */
+    public int idPersona() {
+        return nueva != null ? nueva.getIdPersona() : anterior.getIdPersona();
+    }
+}
@@ -0,0 +1,207 @@
+package es.guillearana.ejercicioe.eventos;
+
+import es.guillearana.ejercicioe.model.Persona;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Fichero donde se guardan, en orden, todos los cambios publicados por un {@link FlujoCambios},
+ * para reproducirlos aunque ya no estén en el anillo o después de reiniciar la aplicación.
+ *
+ * <p>
+ * Cada registro va precedido de su longitud: {@code int longitud | long secuencia | byte tipo | long instante |
+ * persona anterior | persona nueva}, y cada persona es {@code byte presente} seguido, si lo está, de
+ * {@code int idPersona | UTF nombre | UTF apellidos | int edad}. Los registros se escriben por tandas y cada tanda
+ * se sincroniza con el disco antes de darla por guardada. Al abrir se descarta un registro a medias al final,
+ * como en {@link es.guillearana.ejercicioe.persistencia.AlmacenPersonas}.
+ * </p>
+ */
+final class FicheroCambios implements AutoCloseable {
+
+    /** Ruta del fichero. */
+    private final Path ruta;
+
+    /** Canal de escritura, para sincronizar con el disco. */
+    private final FileChannel canal;
+
+    /** Flujo de escritura sobre el canal. */
+    private final DataOutputStream salida;
+
+    /** Buffer donde se codifica cada registro antes de escribir su longitud. */
+    private final ByteArrayOutputStream registro = new ByteArrayOutputStream(128);
+
+    /** Flujo de codificación sobre {@link #registro}. */
+    private final DataOutputStream codificador = new DataOutputStream(registro);
+
+    /** Secuencia del último registro completo del fichero al abrirlo. */
+    private final long ultimaSecuencia;
+
+    /**
+     * Abre el fichero, creándolo si no existe, y lo deja listo para añadir registros.
+     *
+     * @param ruta la ruta del fichero.
+     * @throws IOException si no se puede abrir o leer.
+     */
+    FicheroCambios(Path ruta) throws IOException {
+        this.ruta = ruta;
+        if (ruta.getParent() != null) {
+            Files.createDirectories(ruta.getParent());
+        }
+        long[] ultima = new long[1];
+        long fin = leer(ruta, 0, 0, evento -> ultima[0] = evento.secuencia());
+        this.ultimaSecuencia = ultima[0];
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (canal.size() > fin) {
+            System.err.println("Fichero de cambios: se descarta un registro incompleto al final de " + ruta);
+            canal.truncate(fin);
+        }
+        canal.position(fin);
+        salida = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16));
+    }
+
+    /**
+     * Devuelve la ruta del fichero.
+     *
+     * @return la ruta.
+     */
+    Path ruta() {
+        return ruta;
+    }
+
+    /**
+     * Devuelve la secuencia del último cambio guardado al abrir el fichero.
+     *
+     * @return la secuencia, o 0 si estaba vacío.
+     */
+    long ultimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    /**
+     * Añade un cambio a la tanda en curso. No queda guardado hasta llamar a {@link #confirmar()}.
+     *
+     * @param evento el cambio.
+     * @throws IOException si no se puede escribir.
+     */
+    void escribir(EventoPersona evento) throws IOException {
+        registro.reset();
+        codificador.writeLong(evento.secuencia());
+        codificador.writeByte(evento.tipo().ordinal());
+        codificador.writeLong(evento.instante());
+        escribirPersona(evento.anterior());
+        escribirPersona(evento.nueva());
+        salida.writeInt(registro.size());
+        registro.writeTo(salida);
+    }
+
+    /**
+     * Escribe en el fichero la tanda en curso y la sincroniza con el disco.
+     *
+     * @throws IOException si no se puede escribir.
+     */
+    void confirmar() throws IOException {
+        salida.flush();
+        canal.force(false);
+    }
+
+    /**
+     * Guarda la tanda en curso y cierra el fichero.
+     *
+     * @throws IOException si no se puede escribir.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            confirmar();
+        } finally {
+            salida.close();
+        }
+    }
+
+    /**
+     * Lee los registros completos de un fichero de cambios a partir de una posición.
+     * Se puede llamar mientras otro hilo añade registros: se detiene en el primero incompleto.
+     *
+     * @param ruta     la ruta del fichero.
+     * @param posicion el byte desde el que se lee, que debe ser el comienzo de un registro.
+     * @param desde    la primera secuencia que se entrega; las anteriores se saltan.
+     * @param entregar acción a realizar con cada cambio.
+     * @return la posición tras el último registro completo leído.
+     * @throws IOException si no se puede leer el fichero o un registro está mal formado.
+     */
+    static long leer(Path ruta, long posicion, long desde, Consumer<EventoPersona> entregar) throws IOException {
+        if (!Files.exists(ruta)) {
+            return 0;
+        }
+        try (FileChannel lectura = FileChannel.open(ruta, StandardOpenOption.READ);
+             DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                     Channels.newInputStream(lectura.position(posicion)), 1 << 16))) {
+            byte[] bytes = new byte[128];
+            while (true) {
+                int longitud;
+                try {
+                    longitud = entrada.readInt();
+                    if (longitud > bytes.length) {
+                        bytes = new byte[Math.max(longitud, bytes.length * 2)];
+                    }
+                    entrada.readFully(bytes, 0, longitud);
+                } catch (EOFException e) {
+                    return posicion;
+                }
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(bytes, 0, longitud));
+                long secuencia = registro.readLong();
+                EventoPersona.Tipo tipo = EventoPersona.Tipo.values()[registro.readByte()];
+                long instante = registro.readLong();
+                Persona anterior = leerPersona(registro);
+                Persona nueva = leerPersona(registro);
+                posicion += Integer.BYTES + longitud;
+                if (secuencia >= desde) {
+                    entregar.accept(new EventoPersona(secuencia, tipo, anterior, nueva, instante));
+                }
+            }
+        }
+    }
+
+    /**
+     * Codifica una persona en el registro en curso.
+     *
+     * @param persona la persona, o {@code null}.
+     * @throws IOException si no se puede codificar.
+     */
+    private void escribirPersona(Persona persona) throws IOException {
+        codificador.writeBoolean(persona != null);
+        if (persona != null) {
+            codificador.writeInt(persona.getIdPersona());
+            codificador.writeUTF(persona.getNombre());
+            codificador.writeUTF(persona.getApellidos());
+            codificador.writeInt(persona.getEdad());
+        }
+    }
+
+    /**
+     * Decodifica una persona de un registro.
+     *
+     * @param entrada el registro.
+     * @return la persona, o {@code null} si no estaba.
+     * @throws IOException si el registro está mal formado.
+     */
+    private static Persona leerPersona(DataInputStream entrada) throws IOException {
+        if (!entrada.readBoolean()) {
+            return null;
+        }
+        return new Persona(entrada.readInt(), entrada.readUTF(), entrada.readUTF(), entrada.readInt());
+    }
+}
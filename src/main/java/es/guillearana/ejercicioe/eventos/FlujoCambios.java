@@ -0,0 +1,556 @@
+package es.guillearana.ejercicioe.eventos;
+
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Publica los cambios de la lista de personas como una secuencia de {@link EventoPersona} numerados,
+ * que reciben en orden cualquier número de suscriptores, cada uno en su propio hilo.
+ *
+ * <p>
+ * El oyente de la lista, que se ejecuta en el hilo de JavaFX, convierte cada cambio en altas, modificaciones y
+ * bajas igual que {@link es.guillearana.ejercicioe.persistencia.EscritorDiferido}, con la persona anterior y la
+ * nueva, les asigna su secuencia y los deja en una cola sin límite, sin esperar nunca. Un hilo publicador los
+ * saca de la cola y los escribe en un anillo de capacidad fija sin tomar ningún cerrojo. Cada suscriptor lleva
+ * su propio cursor con la última secuencia que ha procesado y lee del anillo hasta la última publicada. El
+ * publicador no sobrescribe un evento que algún suscriptor no haya procesado todavía: si el anillo se llena,
+ * espera a que el más lento avance, de modo que no se pierde ningún evento. Mientras tanto los eventos nuevos
+ * se acumulan en la cola; un suscriptor lento o bloqueado retrasa a los demás y hace crecer la memoria usada,
+ * pero no frena la interfaz.
+ * </p>
+ *
+ * <p>
+ * Los suscriptores pueden empezar en cualquier secuencia ({@link #suscribir(String, long, Consumer)}): los
+ * eventos que siguen en el anillo se reproducen desde él y los anteriores, desde el fichero de cambios si hay
+ * uno. El fichero es un suscriptor más, que guarda cada tanda de eventos y la sincroniza con el disco antes de
+ * dejar que el anillo la sobrescriba; con él la secuencia continúa entre ejecuciones.
+ * </p>
+ *
+ * <p>
+ * Se configura con dos propiedades del sistema:
+ * </p>
+ * <ul>
+ *     <li>{@code ejercicioe.eventos.capacidad}: eventos que caben en el anillo (65.536 por defecto; se redondea
+ *     a potencia de dos).</li>
+ *     <li>{@code ejercicioe.eventos.fichero}: ruta del fichero de cambios. Sin ella no se guarda nada y solo se
+ *     pueden reproducir los eventos que siguen en el anillo.</li>
+ * </ul>
+ */
+public class FlujoCambios implements AutoCloseable {
+
+    /** Capacidad del anillo. Propiedad del sistema {@code ejercicioe.eventos.capacidad}. */
+    private static final int CAPACIDAD = Integer.getInteger("ejercicioe.eventos.capacidad", 1 << 16);
+
+    /** Ruta del fichero de cambios. Propiedad del sistema {@code ejercicioe.eventos.fichero}. */
+    private static final String FICHERO = System.getProperty("ejercicioe.eventos.fichero");
+
+    /** Nanosegundos de espera del publicador cuando el anillo está lleno. */
+    private static final long ESPERA_LLENO = 100_000;
+
+    /** Nanosegundos de espera de un suscriptor que reproduce el fichero y alcanza su final. */
+    private static final long ESPERA_FICHERO = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** Nanosegundos que espera el cierre a que se publiquen y procesen los eventos pendientes. */
+    private static final long ESPERA_CIERRE = TimeUnit.SECONDS.toNanos(5);
+
+    /** Eventos publicados; el de secuencia {@code s} está en la posición {@code s & mascara}. */
+    private final EventoPersona[] anillo;
+
+    /** Máscara de las posiciones del anillo. */
+    private final int mascara;
+
+    /** Última secuencia publicada. Se escribe después de poner el evento en el anillo. */
+    private final AtomicLong publicada = new AtomicLong();
+
+    /** Eventos con secuencia asignada que el publicador aún no ha puesto en el anillo, en orden. */
+    private final ConcurrentLinkedQueue<EventoPersona> porPublicar = new ConcurrentLinkedQueue<>();
+
+    /** Hilo que pasa los eventos de la cola al anillo. */
+    private final Thread publicador;
+
+    /** Suscriptores activos, incluido el del fichero; protegida por {@code this} para altas y recálculos. */
+    private final List<Suscripcion> suscripciones = new CopyOnWriteArrayList<>();
+
+    /** Oyente que publica los cambios de la lista. */
+    private final ListChangeListener<Persona> oyente = this::publicarCambio;
+
+    /** Fichero de cambios, o {@code null} si no se guardan. */
+    private final FicheroCambios fichero;
+
+    /**
+     * Secuencia más alta que el publicador puede escribir sin volver a consultar los cursores.
+     * Solo se modifica bajo {@code this}; por debajo de {@code limite - capacidad} el anillo ya no es fiable.
+     */
+    private long limite;
+
+    /** Última secuencia asignada a un evento; solo la usa el hilo de JavaFX. */
+    private long asignada;
+
+    /** Lista vinculada; {@code null} antes de vincular o después de cerrar. */
+    private ObservableList<Persona> personas;
+
+    /** Indica que se ha pedido cerrar: el publicador pone en el anillo lo que queda en la cola y termina. */
+    private volatile boolean cerrando;
+
+    /** Indica que ya no se publicará nada más: los suscriptores procesan lo publicado y terminan. */
+    private volatile boolean terminado;
+
+    /**
+     * Suscripción a un flujo de cambios, con su hilo. Al cerrarla el hilo termina tras el evento en curso.
+     */
+    public final class Suscripcion implements AutoCloseable {
+
+        /** Acción que recibe cada evento. */
+        private final Consumer<EventoPersona> consumidor;
+
+        /** Acción que se ejecuta al terminar cada tanda de eventos, antes de avanzar el cursor; puede ser nula. */
+        private final Runnable finTanda;
+
+        /** Última secuencia procesada; mientras no se registra en el anillo vale {@code Long.MIN_VALUE}. */
+        private final AtomicLong cursor = new AtomicLong(Long.MIN_VALUE);
+
+        /** Hilo del suscriptor. */
+        private final Thread hilo;
+
+        /** Indica que se ha cerrado la suscripción. */
+        private volatile boolean cerrada;
+
+        /**
+         * Crea la suscripción sin arrancar su hilo.
+         *
+         * @param nombre     el nombre del hilo.
+         * @param consumidor la acción que recibe cada evento.
+         * @param finTanda   la acción al terminar cada tanda, o {@code null}.
+         * @param desde      la primera secuencia que se entrega.
+         */
+        private Suscripcion(String nombre, Consumer<EventoPersona> consumidor, Runnable finTanda, long desde) {
+            this.consumidor = consumidor;
+            this.finTanda = finTanda;
+            hilo = new Thread(() -> ejecutar(desde), nombre);
+            hilo.setDaemon(true);
+        }
+
+        /**
+         * Devuelve la última secuencia que ha procesado el suscriptor.
+         *
+         * @return la secuencia, o la anterior a la primera pedida si aún está reproduciendo el fichero.
+         */
+        public long getUltimaProcesada() {
+            long valor = cursor.get();
+            return valor == Long.MIN_VALUE ? -1 : valor;
+        }
+
+        /**
+         * Deja de recibir eventos y espera a que termine el hilo, salvo que se cierre desde el propio suscriptor.
+         * Los eventos que quedaban por procesar se descartan.
+         */
+        @Override
+        public void close() {
+            cerrada = true;
+            quitar(this);
+            LockSupport.unpark(hilo);
+            if (Thread.currentThread() != hilo) {
+                try {
+                    hilo.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Bucle del hilo del suscriptor: reproduce del fichero lo que ya no está en el anillo y después
+         * procesa los eventos del anillo a medida que se publican.
+         *
+         * @param desde la primera secuencia que se entrega.
+         */
+        private void ejecutar(long desde) {
+            if (cursor.get() == Long.MIN_VALUE && !reproducirFichero(desde)) {
+                return;
+            }
+            while (!cerrada) {
+                long hasta = publicada.get();
+                long actual = cursor.get();
+                if (actual >= hasta) {
+                    if (terminado) {
+                        break;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+                for (long secuencia = actual + 1; secuencia <= hasta && !cerrada; secuencia++) {
+                    entregar(anillo[(int) secuencia & mascara]);
+                }
+                if (finTanda != null) {
+                    finTanda.run();
+                }
+                cursor.set(hasta);
+            }
+            quitar(this);
+        }
+
+        /**
+         * Entrega al suscriptor los eventos del fichero desde la secuencia indicada hasta enlazar con el anillo,
+         * y entonces lo registra en él.
+         *
+         * @param desde la primera secuencia que se entrega.
+         * @return {@code true} si se ha registrado en el anillo; {@code false} si se ha cerrado o ha fallado.
+         */
+        private boolean reproducirFichero(long desde) {
+            long[] siguiente = {desde};
+            long posicion = 0;
+            while (!cerrada && !cerrando) {
+                if (registrar(this, siguiente[0])) {
+                    return true;
+                }
+                try {
+                    long anterior = posicion;
+                    posicion = FicheroCambios.leer(fichero.ruta(), posicion, siguiente[0], evento -> {
+                        if (!cerrada) {
+                            entregar(evento);
+                        }
+                        siguiente[0] = evento.secuencia() + 1;
+                    });
+                    if (posicion == anterior) {
+                        // El fichero va por detrás del anillo: se espera a que guarde la tanda en curso
+                        LockSupport.parkNanos(this, ESPERA_FICHERO);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Flujo de cambios: no se ha podido reproducir el fichero " + fichero.ruta());
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Entrega un evento al consumidor. Sus errores se muestran y no detienen la suscripción.
+         *
+         * @param evento el evento.
+         */
+        private void entregar(EventoPersona evento) {
+            try {
+                consumidor.accept(evento);
+            } catch (RuntimeException e) {
+                System.err.println("Flujo de cambios: error del suscriptor " + hilo.getName()
+                        + " con el evento " + evento.secuencia());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Crea el flujo con la configuración de las propiedades del sistema.
+     *
+     * @return el flujo.
+     * @throws IOException si no se puede abrir el fichero de cambios.
+     */
+    public static FlujoCambios crear() throws IOException {
+        return new FlujoCambios(CAPACIDAD, FICHERO == null || FICHERO.isBlank() ? null : Path.of(FICHERO));
+    }
+
+    /**
+     * Crea el flujo. Si hay fichero de cambios, la secuencia continúa tras el último evento guardado en él.
+     *
+     * @param capacidad los eventos que caben en el anillo; se redondea a potencia de dos.
+     * @param fichero   la ruta del fichero de cambios, o {@code null} para no guardarlos.
+     * @throws IOException si no se puede abrir el fichero de cambios.
+     */
+    public FlujoCambios(int capacidad, Path fichero) throws IOException {
+        int tamano = Integer.highestOneBit(Math.max(2, Math.min(capacidad, 1 << 30)) * 2 - 1);
+        anillo = new EventoPersona[tamano];
+        mascara = tamano - 1;
+        this.fichero = fichero == null ? null : new FicheroCambios(fichero);
+        long inicial = this.fichero == null ? 0 : this.fichero.ultimaSecuencia();
+        publicada.set(inicial);
+        asignada = inicial;
+        // Las posiciones anteriores del anillo están vacías: lo anterior a la secuencia inicial sale del fichero
+        limite = inicial + tamano;
+        if (this.fichero != null) {
+            Suscripcion guardado = new Suscripcion("eventos-fichero", this::guardar, this::confirmar, inicial + 1);
+            guardado.cursor.set(inicial);
+            suscripciones.add(guardado);
+            guardado.hilo.start();
+        }
+        publicador = new Thread(this::publicarPendientes, "eventos-publicador");
+        publicador.setDaemon(true);
+        publicador.start();
+    }
+
+    /**
+     * Empieza a publicar los cambios de la lista indicada.
+     * Debe llamarse después de cargar las personas en la lista, para no publicarlas como altas.
+     *
+     * @param personas la lista cuyos cambios se publican.
+     */
+    public void vincular(ObservableList<Persona> personas) {
+        this.personas = personas;
+        personas.addListener(oyente);
+    }
+
+    /**
+     * Devuelve la secuencia del último evento publicado.
+     *
+     * @return la secuencia, o 0 si no se ha publicado ninguno.
+     */
+    public long getUltimaSecuencia() {
+        return publicada.get();
+    }
+
+    /**
+     * Suscribe una acción a los eventos a partir de una secuencia. La acción se ejecuta en un hilo propio
+     * de la suscripción, con los eventos en orden de secuencia y sin huecos; los errores que lance se muestran
+     * y no detienen la suscripción.
+     *
+     * @param nombre     el nombre del hilo de la suscripción.
+     * @param desde      la primera secuencia que se entrega; {@code getUltimaSecuencia() + 1} para recibir
+     *                   solo los eventos nuevos. Si es anterior al primer evento del fichero se empieza por este.
+     * @param consumidor la acción que recibe cada evento.
+     * @return la suscripción, que hay que cerrar para dejar de recibir eventos.
+     * @throws IllegalArgumentException si {@code desde} es posterior al siguiente evento, o si ya no está
+     *                                  en el anillo y no hay fichero de cambios.
+     * @throws IllegalStateException    si el flujo está cerrado.
+     */
+    public Suscripcion suscribir(String nombre, long desde, Consumer<EventoPersona> consumidor) {
+        if (cerrando) {
+            throw new IllegalStateException("El flujo de cambios está cerrado");
+        }
+        if (desde > publicada.get() + 1) {
+            throw new IllegalArgumentException("La secuencia " + desde + " todavía no existe; la última es "
+                    + publicada.get());
+        }
+        Suscripcion suscripcion = new Suscripcion(nombre, consumidor, null, desde);
+        if (!registrar(suscripcion, desde) && fichero == null) {
+            throw new IllegalArgumentException("La secuencia " + desde + " ya no está en el anillo y no hay"
+                    + " fichero de cambios");
+        }
+        suscripcion.hilo.start();
+        return suscripcion;
+    }
+
+    /**
+     * Deja de publicar cambios, espera a que se publiquen los pendientes y a que los suscriptores los procesen,
+     * y cierra el fichero de cambios. La espera dura como mucho cinco segundos en total:
+     * si un suscriptor no termina a tiempo se abandonan sus eventos pendientes, para que un suscriptor bloqueado
+     * no impida cerrar la aplicación.
+     */
+    @Override
+    public void close() {
+        if (personas != null) {
+            personas.removeListener(oyente);
+            personas = null;
+        }
+        cerrando = true;
+        long plazo = System.nanoTime() + ESPERA_CIERRE;
+        LockSupport.unpark(publicador);
+        if (!esperar(publicador, plazo)) {
+            System.err.println("Flujo de cambios: se abandonan " + porPublicar.size() + " eventos sin publicar");
+        }
+        terminado = true;
+        for (Suscripcion suscripcion : suscripciones) {
+            LockSupport.unpark(suscripcion.hilo);
+            if (!esperar(suscripcion.hilo, plazo)) {
+                System.err.println("Flujo de cambios: el suscriptor " + suscripcion.hilo.getName()
+                        + " no ha terminado; se abandonan sus eventos pendientes");
+            }
+        }
+        if (fichero != null) {
+            try {
+                fichero.close();
+            } catch (IOException e) {
+                System.err.println("Flujo de cambios: no se ha podido cerrar el fichero " + fichero.ruta());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Espera a que termine un hilo, como mucho hasta el plazo indicado.
+     *
+     * @param hilo  el hilo.
+     * @param plazo el instante límite, según {@link System#nanoTime()}.
+     * @return {@code true} si el hilo ha terminado.
+     */
+    private static boolean esperar(Thread hilo, long plazo) {
+        try {
+            long restante = plazo - System.nanoTime();
+            if (restante > 0) {
+                hilo.join(TimeUnit.NANOSECONDS.toMillis(restante) + 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !hilo.isAlive();
+    }
+
+    /**
+     * Registra una suscripción en el anillo si la secuencia pedida sigue en él.
+     *
+     * @param suscripcion la suscripción.
+     * @param desde       la primera secuencia que debe recibir.
+     * @return {@code true} si se ha registrado; {@code false} si la secuencia ya no está en el anillo.
+     */
+    private synchronized boolean registrar(Suscripcion suscripcion, long desde) {
+        if (desde - 1 < limite - anillo.length || suscripcion.cerrada) {
+            return false;
+        }
+        suscripcion.cursor.set(desde - 1);
+        suscripciones.add(suscripcion);
+        return true;
+    }
+
+    /**
+     * Quita una suscripción del anillo para que deje de frenar al publicador.
+     *
+     * @param suscripcion la suscripción.
+     */
+    private synchronized void quitar(Suscripcion suscripcion) {
+        suscripciones.remove(suscripcion);
+    }
+
+    /**
+     * Calcula de nuevo hasta qué secuencia se puede escribir sin pisar eventos pendientes. Con suscriptores al
+     * día solo se avanza un cuarto del anillo, para que los tres cuartos restantes se puedan seguir reproduciendo.
+     *
+     * @return el nuevo límite.
+     */
+    private synchronized long recalcularLimite() {
+        long minimo = publicada.get();
+        for (Suscripcion suscripcion : suscripciones) {
+            minimo = Math.min(minimo, suscripcion.cursor.get());
+        }
+        limite = Math.min(minimo + anillo.length, publicada.get() + anillo.length / 4);
+        return limite;
+    }
+
+    /**
+     * Convierte un cambio de la lista en eventos y los deja en la cola del publicador. Las reordenaciones
+     * no se publican; un reemplazo de la misma persona se publica como modificación.
+     *
+     * @param cambio el cambio de la lista.
+     */
+    private void publicarCambio(ListChangeListener.Change<? extends Persona> cambio) {
+        long instante = System.currentTimeMillis();
+        while (cambio.next()) {
+            if (cambio.wasPermutated()) {
+                continue;
+            }
+            List<? extends Persona> eliminadas = cambio.getRemoved();
+            List<? extends Persona> agregadas = cambio.getAddedSubList();
+            int comunes = Math.min(eliminadas.size(), agregadas.size());
+            for (int i = 0; i < comunes; i++) {
+                if (eliminadas.get(i).getIdPersona() == agregadas.get(i).getIdPersona()) {
+                    publicar(EventoPersona.Tipo.MODIFICACION, eliminadas.get(i), agregadas.get(i), instante);
+                } else {
+                    publicar(EventoPersona.Tipo.BAJA, eliminadas.get(i), null, instante);
+                    publicar(EventoPersona.Tipo.ALTA, null, agregadas.get(i), instante);
+                }
+            }
+            for (int i = comunes; i < eliminadas.size(); i++) {
+                publicar(EventoPersona.Tipo.BAJA, eliminadas.get(i), null, instante);
+            }
+            for (int i = comunes; i < agregadas.size(); i++) {
+                publicar(EventoPersona.Tipo.ALTA, null, agregadas.get(i), instante);
+            }
+        }
+        LockSupport.unpark(publicador);
+    }
+
+    /**
+     * Asigna al evento la siguiente secuencia y lo deja en la cola del publicador. No espera nunca.
+     *
+     * @param tipo     el tipo de cambio.
+     * @param anterior la persona antes del cambio, o {@code null}.
+     * @param nueva    la persona después del cambio, o {@code null}.
+     * @param instante el momento del cambio.
+     */
+    private void publicar(EventoPersona.Tipo tipo, Persona anterior, Persona nueva, long instante) {
+        porPublicar.add(new EventoPersona(++asignada, tipo, anterior, nueva, instante));
+    }
+
+    /**
+     * Bucle del hilo publicador: pasa al anillo los eventos de la cola y despierta a los suscriptores
+     * después de cada tanda. Al cerrar, publica lo que queda en la cola y termina.
+     */
+    private void publicarPendientes() {
+        while (true) {
+            // Se lee antes de vaciar la cola: todo lo encolado antes de cerrar se publica en esta vuelta
+            boolean ultimaVuelta = cerrando;
+            EventoPersona evento = porPublicar.poll();
+            if (evento == null) {
+                if (ultimaVuelta) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            do {
+                ponerEnAnillo(evento);
+            } while ((evento = porPublicar.poll()) != null);
+            despertar();
+        }
+    }
+
+    /**
+     * Escribe un evento en el anillo. Si está lleno, despierta a los suscriptores y espera a que el más lento
+     * deje sitio.
+     *
+     * @param evento el evento, con la siguiente secuencia a la última publicada.
+     */
+    private void ponerEnAnillo(EventoPersona evento) {
+        long secuencia = evento.secuencia();
+        while (secuencia > limite && secuencia > recalcularLimite()) {
+            despertar();
+            LockSupport.parkNanos(this, ESPERA_LLENO);
+        }
+        anillo[(int) secuencia & mascara] = evento;
+        publicada.set(secuencia);
+    }
+
+    /**
+     * Despierta a todos los suscriptores para que procesen los eventos publicados.
+     */
+    private void despertar() {
+        for (Suscripcion suscripcion : suscripciones) {
+            LockSupport.unpark(suscripcion.hilo);
+        }
+    }
+
+    /**
+     * Añade un evento a la tanda en curso del fichero de cambios.
+     *
+     * @param evento el evento.
+     */
+    private void guardar(EventoPersona evento) {
+        try {
+            fichero.escribir(evento);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Guarda en el disco la tanda en curso del fichero de cambios.
+     */
+    private void confirmar() {
+        try {
+            fichero.confirmar();
+        } catch (IOException e) {
+            System.err.println("Flujo de cambios: no se ha podido guardar el fichero " + fichero.ruta());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package es.guillearana.ejercicioe.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias en nanosegundos, con cubos de tamaño logarítmico-lineal como los de HdrHistogram.
+ *
+ * <p>
+ * Los valores menores que 128 ns tienen su propio cubo; a partir de ahí cada potencia de dos se divide en
+ * 64 cubos iguales, de modo que el error relativo de cualquier percentil es menor del 1,6 %. El número de
+ * cubos es fijo (unos 3.700, 30 KB), registrar un valor no reserva memoria ni toma cerrojos y se puede hacer
+ * desde cualquier hilo: solo incrementa su cubo y, si es el mayor hasta ahora, actualiza el máximo.
+ * El número de valores y la media se calculan recorriendo los cubos al leerlos, por lo que la media es
+ * aproximada con el mismo error que los percentiles. Las lecturas no son atómicas respecto a las escrituras:
+ * un resumen tomado mientras se registran valores puede no incluir los últimos.
+ * </p>
+ */
+public final class Histograma implements HistogramaMXBean {
+
+    /** Bits de precisión dentro de cada potencia de dos. */
+    private static final int BITS_PRECISION = 6;
+
+    /** Número de cubos por potencia de dos. */
+    private static final int SUBCUBOS = 1 << BITS_PRECISION;
+
+    /** Número total de cubos, suficiente para cualquier {@code long} positivo. */
+    private static final int CUBOS = (63 - BITS_PRECISION) * SUBCUBOS + 2 * SUBCUBOS;
+
+    /** Nombre de la métrica. */
+    private final String nombre;
+
+    /** Número de valores de cada cubo. */
+    private final AtomicLongArray cubos = new AtomicLongArray(CUBOS);
+
+    /** Mayor valor registrado. */
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Crea un histograma vacío.
+     *
+     * @param nombre el nombre de la métrica.
+     */
+    public Histograma(String nombre) {
+        this.nombre = nombre;
+    }
+
+    /**
+     * Registra una duración. Los valores negativos se cuentan como cero.
+     *
+     * @param nanos la duración, en nanosegundos.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cubos.incrementAndGet(cubo(valor));
+        long anterior = maximo.get();
+        while (valor > anterior && !maximo.compareAndSet(anterior, valor)) {
+            anterior = maximo.get();
+        }
+    }
+
+    /**
+     * Devuelve el valor por debajo del cual están el porcentaje indicado de los valores registrados,
+     * redondeado al límite superior de su cubo.
+     *
+     * @param porcentaje el percentil, entre 0 y 100.
+     * @return el valor del percentil en nanosegundos, o 0 si no hay valores.
+     */
+    public long percentil(double porcentaje) {
+        long cuenta = getMuestras();
+        if (cuenta == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(cuenta * Math.min(100, Math.max(0, porcentaje)) / 100));
+        long acumulado = 0;
+        for (int i = 0; i < CUBOS; i++) {
+            acumulado += cubos.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    /**
+     * Devuelve el nombre de la métrica.
+     *
+     * @return el nombre.
+     */
+    public String nombre() {
+        return nombre;
+    }
+
+    @Override
+    public long getMuestras() {
+        long cuenta = 0;
+        for (int i = 0; i < CUBOS; i++) {
+            cuenta += cubos.get(i);
+        }
+        return cuenta;
+    }
+
+    @Override
+    public double getMediaMs() {
+        long cuenta = 0;
+        double total = 0;
+        for (int i = 0; i < CUBOS; i++) {
+            long valores = cubos.get(i);
+            if (valores > 0) {
+                cuenta += valores;
+                // Cada valor se cuenta por el punto medio de su cubo
+                total += valores * ((limiteInferior(i) + limiteSuperior(i)) / 2.0);
+            }
+        }
+        return cuenta == 0 ? 0 : total / cuenta / 1_000_000.0;
+    }
+
+    @Override
+    public double getP50Ms() {
+        return percentil(50) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP90Ms() {
+        return percentil(90) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP99Ms() {
+        return percentil(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP999Ms() {
+        return percentil(99.9) / 1_000_000.0;
+    }
+
+    @Override
+    public double getMaximoMs() {
+        return maximo.get() / 1_000_000.0;
+    }
+
+    @Override
+    public void reiniciar() {
+        for (int i = 0; i < CUBOS; i++) {
+            cubos.set(i, 0);
+        }
+        maximo.set(0);
+    }
+
+    /**
+     * Devuelve un resumen de una línea del histograma.
+     *
+     * @return el resumen, con los tiempos en milisegundos.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s n=%,d media=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms",
+                nombre, getMuestras(), getMediaMs(), getP50Ms(), getP90Ms(), getP99Ms(), getP999Ms(), getMaximoMs());
+    }
+
+    /**
+     * Calcula el cubo de un valor.
+     *
+     * @param valor el valor, no negativo.
+     * @return la posición del cubo.
+     */
+    private static int cubo(long valor) {
+        if (valor < 2 * SUBCUBOS) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_PRECISION;
+        return desplazamiento * SUBCUBOS + (int) (valor >>> desplazamiento);
+    }
+
+    /**
+     * Calcula el menor valor que cae en un cubo.
+     *
+     * @param cubo la posición del cubo.
+     * @return el límite inferior del cubo.
+     */
+    private static long limiteInferior(int cubo) {
+        if (cubo < 2 * SUBCUBOS) {
+            return cubo;
+        }
+        int desplazamiento = cubo / SUBCUBOS - 1;
+        return (cubo - (long) desplazamiento * SUBCUBOS) << desplazamiento;
+    }
+
+    /**
+     * Calcula el mayor valor que cae en un cubo.
+     *
+     * @param cubo la posición del cubo.
+     * @return el límite superior del cubo.
+     */
+    private static long limiteSuperior(int cubo) {
+        if (cubo < 2 * SUBCUBOS) {
+            return cubo;
+        }
+        int desplazamiento = cubo / SUBCUBOS - 1;
+        long subcubo = cubo - (long) desplazamiento * SUBCUBOS;
+        return ((subcubo + 1) << desplazamiento) - 1;
+    }
+}
@@ -0,0 +1,61 @@
+package es.guillearana.ejercicioe.metricas;
+
+/**
+ * Vista JMX de un {@link Histograma} de latencias. Todos los tiempos están en milisegundos.
+ */
+public interface HistogramaMXBean {
+
+    /**
+     * Devuelve el número de valores registrados.
+     *
+     * @return el número de muestras.
+     */
+    long getMuestras();
+
+    /**
+     * Devuelve la media de los valores registrados.
+     *
+     * @return la media, en milisegundos.
+     */
+    double getMediaMs();
+
+    /**
+     * Devuelve la mediana.
+     *
+     * @return el percentil 50, en milisegundos.
+     */
+    double getP50Ms();
+
+    /**
+     * Devuelve el percentil 90.
+     *
+     * @return el percentil 90, en milisegundos.
+     */
+    double getP90Ms();
+
+    /**
+     * Devuelve el percentil 99.
+     *
+     * @return el percentil 99, en milisegundos.
+     */
+    double getP99Ms();
+
+    /**
+     * Devuelve el percentil 99,9.
+     *
+     * @return el percentil 99,9, en milisegundos.
+     */
+    double getP999Ms();
+
+    /**
+     * Devuelve el mayor valor registrado.
+     *
+     * @return el máximo, en milisegundos.
+     */
+    double getMaximoMs();
+
+    /**
+     * Descarta los valores registrados.
+     */
+    void reiniciar();
+}
@@ -0,0 +1,286 @@
+package es.guillearana.ejercicioe.metricas;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro de las métricas de la aplicación: histogramas de latencia de las acciones del controlador,
+ * de la ventana modal, de las operaciones del modelo y de los pulsos de JavaFX, y muestras del uso del heap.
+ *
+ * <p>
+ * Las métricas solo se recogen si se arranca con la propiedad del sistema {@code ejercicioe.metricas=true}.
+ * Como {@link #ACTIVAS} es una constante, con las métricas desactivadas el compilador JIT elimina las llamadas
+ * a {@link #inicio()} y {@link #registrar(String, long)}: no se lee el reloj ni se toca ningún histograma.
+ * </p>
+ *
+ * <p>
+ * Con las métricas activas, {@link #iniciar()} publica cada histograma como un MXBean
+ * ({@code es.guillearana.ejercicioe:type=Latencia,name=...}) junto con uno general
+ * ({@code es.guillearana.ejercicioe:type=Metricas}), muestrea el heap cada segundo y escribe un resumen
+ * en la salida estándar cada {@code ejercicioe.metricas.intervalo} segundos (60 por defecto; 0 lo desactiva).
+ * </p>
+ *
+ * <p>
+ * Uso habitual:
+ * </p>
+ * <pre>{@code
+ * long inicio = Metricas.inicio();
+ * ...
+ * Metricas.registrar(Metricas.ACCION_AGREGAR, inicio);
+ * }</pre>
+ */
+public final class Metricas {
+
+    /** Indica si se recogen métricas. Propiedad del sistema {@code ejercicioe.metricas}. */
+    public static final boolean ACTIVAS = Boolean.getBoolean("ejercicioe.metricas");
+
+    /** Alta de una persona, sin contar el tiempo que la ventana modal espera al usuario. */
+    public static final String ACCION_AGREGAR = "accion.agregar";
+
+    /** Modificación de una persona, sin contar el tiempo que la ventana modal espera al usuario. */
+    public static final String ACCION_MODIFICAR = "accion.modificar";
+
+    /** Baja de las personas seleccionadas, sin contar el aviso posterior. */
+    public static final String ACCION_ELIMINAR = "accion.eliminar";
+
+    /** Cambio de un dato de las personas seleccionadas, sin contar el diálogo. */
+    public static final String ACCION_EDITAR_SELECCION = "accion.editarSeleccion";
+
+    /** Deshacer o rehacer un cambio. */
+    public static final String ACCION_HISTORIAL = "accion.historial";
+
+    /** Tiempo desde que se pide la ventana modal hasta que se muestra. */
+    public static final String DIALOGO_APERTURA = "dialogo.apertura";
+
+    /** Tiempo desde que la ventana modal empieza a cerrarse hasta que se devuelve su resultado. */
+    public static final String DIALOGO_CIERRE = "dialogo.cierre";
+
+    /** Comprobación de duplicados en el repositorio. */
+    public static final String MODELO_DUPLICADO = "modelo.duplicado";
+
+    /** Búsqueda de la posición de una persona en el repositorio. */
+    public static final String MODELO_POSICION = "modelo.posicion";
+
+    /** Búsqueda por texto y edad en el índice. */
+    public static final String MODELO_BUSQUEDA = "modelo.busqueda";
+
+    /** Escritura y sincronización con el disco de un lote de cambios en el almacén. */
+    public static final String PERSISTENCIA_LOTE = "persistencia.lote";
+
+    /** Atención de una petición por el servidor HTTP de personas. */
+    public static final String SERVIDOR_PETICION = "servidor.peticion";
+
+    /** Parte de cada pulso de JavaFX dedicada a estilos y disposición de la escena principal. */
+    public static final String PULSO_LAYOUT = "fx.pulso";
+
+    /** Segundos entre volcados del resumen. Propiedad del sistema {@code ejercicioe.metricas.intervalo}. */
+    private static final long INTERVALO_VOLCADO = Long.getLong("ejercicioe.metricas.intervalo", 60);
+
+    /** Dominio de los nombres JMX. */
+    private static final String DOMINIO = "es.guillearana.ejercicioe";
+
+    /** Histogramas por nombre. */
+    private static final Map<String, Histograma> histogramas = new ConcurrentHashMap<>();
+
+    /** Vista JMX general. */
+    private static final General general = new General();
+
+    /** Hilo que muestrea el heap y vuelca el resumen; {@code null} si no se ha iniciado. */
+    private static ScheduledExecutorService programador;
+
+    /** Bytes del heap en uso en la última muestra. */
+    private static volatile long heapUsado;
+
+    /** Mayor número de bytes del heap en uso observado. */
+    private static volatile long heapMaximo;
+
+    private Metricas() {
+    }
+
+    /**
+     * Devuelve el instante de inicio de una medida.
+     *
+     * @return el instante actual en nanosegundos, o 0 si las métricas están desactivadas.
+     */
+    public static long inicio() {
+        return ACTIVAS ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Registra la duración de una operación desde el instante indicado. No hace nada si las métricas
+     * están desactivadas.
+     *
+     * @param nombre el nombre de la métrica.
+     * @param inicio el instante devuelto por {@link #inicio()}.
+     */
+    public static void registrar(String nombre, long inicio) {
+        if (ACTIVAS) {
+            histograma(nombre).registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Devuelve el histograma de una métrica, creándolo y publicándolo por JMX si no existía.
+     *
+     * @param nombre el nombre de la métrica.
+     * @return el histograma.
+     */
+    public static Histograma histograma(String nombre) {
+        Histograma histograma = histogramas.get(nombre);
+        return histograma != null ? histograma : histogramas.computeIfAbsent(nombre, Metricas::crear);
+    }
+
+    /**
+     * Publica las métricas por JMX y arranca el muestreo del heap y el volcado periódico.
+     * No hace nada si las métricas están desactivadas o ya se habían iniciado.
+     */
+    public static synchronized void iniciar() {
+        if (!ACTIVAS || programador != null) {
+            return;
+        }
+        publicar("type=Metricas", general);
+        histogramas.values().forEach(Metricas::publicar);
+        programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "metricas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleAtFixedRate(Metricas::muestrearHeap, 0, 1, TimeUnit.SECONDS);
+        if (INTERVALO_VOLCADO > 0) {
+            programador.scheduleAtFixedRate(Metricas::volcar, INTERVALO_VOLCADO, INTERVALO_VOLCADO, TimeUnit.SECONDS);
+        }
+        System.out.printf("Métricas activas: JMX en %s, volcado cada %d s%n", DOMINIO, INTERVALO_VOLCADO);
+    }
+
+    /**
+     * Detiene el muestreo y escribe un último resumen. Se llama al terminar la aplicación.
+     */
+    public static synchronized void detener() {
+        if (programador == null) {
+            return;
+        }
+        programador.shutdownNow();
+        programador = null;
+        muestrearHeap();
+        volcar();
+    }
+
+    /**
+     * Devuelve el resumen de todas las métricas.
+     *
+     * @return una línea por histograma, ordenados por nombre, y una con el uso del heap.
+     */
+    public static String resumen() {
+        StringBuilder texto = new StringBuilder();
+        new TreeMap<>(histogramas).values().forEach(h -> texto.append(h).append(System.lineSeparator()));
+        texto.append(String.format("heap usado=%.1f MB maximo observado=%.1f MB", heapUsado / 1048576.0, heapMaximo / 1048576.0));
+        return texto.toString();
+    }
+
+    /**
+     * Escribe el resumen de todas las métricas en la salida estándar.
+     */
+    private static void volcar() {
+        for (String linea : resumen().split(System.lineSeparator())) {
+            System.out.println("Métricas: " + linea);
+        }
+    }
+
+    /**
+     * Toma una muestra del uso del heap.
+     */
+    private static void muestrearHeap() {
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        long usado = memoria.getHeapMemoryUsage().getUsed();
+        heapUsado = usado;
+        if (usado > heapMaximo) {
+            heapMaximo = usado;
+        }
+    }
+
+    /**
+     * Crea un histograma y lo publica por JMX si las métricas ya se han iniciado.
+     *
+     * @param nombre el nombre de la métrica.
+     * @return el histograma.
+     */
+    private static Histograma crear(String nombre) {
+        Histograma histograma = new Histograma(nombre);
+        synchronized (Metricas.class) {
+            if (programador != null) {
+                publicar(histograma);
+            }
+        }
+        return histograma;
+    }
+
+    /**
+     * Publica un histograma por JMX.
+     *
+     * @param histograma el histograma.
+     */
+    private static void publicar(Histograma histograma) {
+        publicar("type=Latencia,name=" + ObjectName.quote(histograma.nombre()), histograma);
+    }
+
+    /**
+     * Registra un MXBean en el servidor de la plataforma. Los errores se escriben en la salida de error:
+     * sin JMX la aplicación sigue funcionando y las métricas siguen volcándose.
+     *
+     * @param propiedades las propiedades del nombre JMX dentro del dominio de la aplicación.
+     * @param mxbean      el MXBean.
+     */
+    private static void publicar(String propiedades, Object mxbean) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objeto = new ObjectName(DOMINIO + ":" + propiedades);
+            if (!servidor.isRegistered(objeto)) {
+                servidor.registerMBean(mxbean, objeto);
+            }
+        } catch (JMException e) {
+            System.err.println("No se ha podido publicar la métrica " + propiedades + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Implementación de la vista JMX general.
+     */
+    private static final class General implements MetricasMXBean {
+
+        @Override
+        public double getHeapUsadoMb() {
+            return heapUsado / 1048576.0;
+        }
+
+        @Override
+        public double getHeapMaximoObservadoMb() {
+            return heapMaximo / 1048576.0;
+        }
+
+        @Override
+        public String[] getNombres() {
+            return histogramas.keySet().stream().sorted().toArray(String[]::new);
+        }
+
+        @Override
+        public String getResumen() {
+            return resumen();
+        }
+
+        @Override
+        public void reiniciar() {
+            histogramas.values().forEach(Histograma::reiniciar);
+            heapMaximo = heapUsado;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package es.guillearana.ejercicioe.metricas;
+
+/**
+ * Vista JMX general de las métricas de la aplicación: uso de memoria y resumen de todos los histogramas.
+ */
+public interface MetricasMXBean {
+
+    /**
+     * Devuelve la memoria del heap en uso en la última muestra.
+     *
+     * @return los megabytes en uso.
+     */
+    double getHeapUsadoMb();
+
+    /**
+     * Devuelve la mayor memoria del heap en uso observada desde el arranque o el último reinicio.
+     *
+     * @return los megabytes.
+     */
+    double getHeapMaximoObservadoMb();
+
+    /**
+     * Devuelve los nombres de los histogramas registrados.
+     *
+     * @return los nombres, ordenados.
+     */
+    String[] getNombres();
+
+    /**
+     * Devuelve el resumen de todas las métricas, una por línea, como en el volcado periódico.
+     *
+     * @return el resumen.
+     */
+    String getResumen();
+
+    /**
+     * Descarta los valores de todos los histogramas y el máximo de memoria observado.
+     */
+    void reiniciar();
+}
@@ -0,0 +1,299 @@
+package es.guillearana.ejercicioe.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Almacenamiento en memoria de personas organizado por columnas.
+ *
+ * <p>
+ * En lugar de un objeto {@link Persona} por fila, las edades y los identificadores se guardan en
+ * arrays de {@code int} y los nombres y apellidos se codifican como índices a un diccionario de textos
+ * distintos. Los apellidos se separan por el primer espacio y cada parte se codifica por separado, ya que
+ * los apellidos sueltos se repiten mucho más que sus combinaciones. Así cada texto se guarda una sola vez
+ * y cada fila ocupa solo cinco enteros.
+ * </p>
+ *
+ * <p>
+ * Las filas se leen como vistas ligeras: {@link #get(int)} crea una {@link Persona} que comparte las
+ * cadenas del diccionario, de modo que solo las filas que se muestran existen como objetos. Como
+ * {@link FuentePaginada} puede alimentar directamente a una {@link ListaPaginada}.
+ * </p>
+ *
+ * <p>
+ * Esta clase no es segura para su uso concurrente.
+ * </p>
+ */
+public class AlmacenColumnar implements FuentePaginada {
+
+    /** Capacidad inicial de las columnas. */
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    /** Columna de identificadores. */
+    private int[] ids = new int[CAPACIDAD_INICIAL];
+
+    /** Columna de edades. */
+    private int[] edades = new int[CAPACIDAD_INICIAL];
+
+    /** Columna de nombres, como códigos del diccionario de nombres. */
+    private int[] nombres = new int[CAPACIDAD_INICIAL];
+
+    /** Columna con el primer apellido, como código del diccionario de apellidos. */
+    private int[] primerosApellidos = new int[CAPACIDAD_INICIAL];
+
+    /** Columna con el resto de los apellidos, como código del diccionario de apellidos, o -1 si no hay. */
+    private int[] segundosApellidos = new int[CAPACIDAD_INICIAL];
+
+    /** Diccionario de nombres distintos. */
+    private final Diccionario diccionarioNombres = new Diccionario();
+
+    /** Diccionario de apellidos distintos. */
+    private final Diccionario diccionarioApellidos = new Diccionario();
+
+    /** Número de filas almacenadas. */
+    private int tamano;
+
+    /**
+     * Agrega una persona al final del almacén.
+     *
+     * @param persona la persona a agregar.
+     */
+    public void agregar(Persona persona) {
+        if (tamano == ids.length) {
+            crecer();
+        }
+        ids[tamano] = persona.getIdPersona();
+        edades[tamano] = persona.getEdad();
+        codificarTextos(tamano, persona);
+        tamano++;
+    }
+
+    /**
+     * Agrega todas las personas indicadas.
+     *
+     * @param personas las personas a agregar.
+     */
+    public void agregarTodas(Iterable<Persona> personas) {
+        for (Persona persona : personas) {
+            agregar(persona);
+        }
+    }
+
+    /**
+     * Sustituye la persona de una posición.
+     *
+     * @param indice  la posición a sustituir.
+     * @param persona la persona nueva.
+     */
+    public void reemplazar(int indice, Persona persona) {
+        comprobarIndice(indice);
+        ids[indice] = persona.getIdPersona();
+        edades[indice] = persona.getEdad();
+        codificarTextos(indice, persona);
+    }
+
+    /**
+     * Elimina la persona de una posición, desplazando las siguientes.
+     * Los textos del diccionario no se liberan, ya que suelen seguir usándose en otras filas.
+     *
+     * @param indice la posición a eliminar.
+     */
+    public void eliminar(int indice) {
+        comprobarIndice(indice);
+        int siguientes = tamano - indice - 1;
+        System.arraycopy(ids, indice + 1, ids, indice, siguientes);
+        System.arraycopy(edades, indice + 1, edades, indice, siguientes);
+        System.arraycopy(nombres, indice + 1, nombres, indice, siguientes);
+        System.arraycopy(primerosApellidos, indice + 1, primerosApellidos, indice, siguientes);
+        System.arraycopy(segundosApellidos, indice + 1, segundosApellidos, indice, siguientes);
+        tamano--;
+    }
+
+    /**
+     * Devuelve una vista de la persona de una posición. El nombre y los apellidos de una sola palabra
+     * se comparten con el diccionario; los apellidos compuestos se vuelven a unir al crear la vista.
+     *
+     * @param indice la posición de la persona.
+     * @return la persona de esa posición.
+     */
+    public Persona get(int indice) {
+        comprobarIndice(indice);
+        String apellidos = diccionarioApellidos.texto(primerosApellidos[indice]);
+        if (segundosApellidos[indice] >= 0) {
+            apellidos = apellidos + ' ' + diccionarioApellidos.texto(segundosApellidos[indice]);
+        }
+        return new Persona(ids[indice], diccionarioNombres.texto(nombres[indice]), apellidos, edades[indice]);
+    }
+
+    /**
+     * Devuelve la edad de una posición sin crear ningún objeto.
+     *
+     * @param indice la posición de la persona.
+     * @return la edad de la persona.
+     */
+    public int edad(int indice) {
+        comprobarIndice(indice);
+        return edades[indice];
+    }
+
+    /**
+     * Devuelve el identificador de una posición sin crear ningún objeto.
+     *
+     * @param indice la posición de la persona.
+     * @return el identificador de la persona.
+     */
+    public int idPersona(int indice) {
+        comprobarIndice(indice);
+        return ids[indice];
+    }
+
+    /**
+     * Devuelve el número de personas almacenadas.
+     *
+     * @return el número de filas.
+     */
+    @Override
+    public int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Crea las vistas de un tramo consecutivo de personas.
+     *
+     * @param desde    la posición de la primera persona.
+     * @param destino  el array donde se guardan las personas.
+     * @param cantidad el número de personas.
+     */
+    @Override
+    public void leerPagina(int desde, Persona[] destino, int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            destino[i] = get(desde + i);
+        }
+    }
+
+    /**
+     * Devuelve el número de nombres distintos almacenados.
+     *
+     * @return el tamaño del diccionario de nombres.
+     */
+    public int nombresDistintos() {
+        return diccionarioNombres.tamano();
+    }
+
+    /**
+     * Devuelve el número de apellidos sueltos distintos almacenados.
+     *
+     * @return el tamaño del diccionario de apellidos.
+     */
+    public int apellidosDistintos() {
+        return diccionarioApellidos.tamano();
+    }
+
+    /**
+     * Ajusta la capacidad de las columnas al número de filas, liberando el espacio sobrante.
+     */
+    public void ajustar() {
+        ids = Arrays.copyOf(ids, tamano);
+        edades = Arrays.copyOf(edades, tamano);
+        nombres = Arrays.copyOf(nombres, tamano);
+        primerosApellidos = Arrays.copyOf(primerosApellidos, tamano);
+        segundosApellidos = Arrays.copyOf(segundosApellidos, tamano);
+    }
+
+    /**
+     * Duplica la capacidad de todas las columnas.
+     */
+    private void crecer() {
+        int capacidad = Math.max(CAPACIDAD_INICIAL, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacidad);
+        edades = Arrays.copyOf(edades, capacidad);
+        nombres = Arrays.copyOf(nombres, capacidad);
+        primerosApellidos = Arrays.copyOf(primerosApellidos, capacidad);
+        segundosApellidos = Arrays.copyOf(segundosApellidos, capacidad);
+    }
+
+    /**
+     * Guarda en las columnas de texto los códigos del nombre y los apellidos de una persona.
+     * Los apellidos se parten por el primer espacio, lo que permite reconstruirlos exactamente.
+     *
+     * @param indice  la posición de la fila.
+     * @param persona la persona cuyos textos se codifican.
+     */
+    private void codificarTextos(int indice, Persona persona) {
+        nombres[indice] = diccionarioNombres.codificar(persona.getNombre());
+        String apellidos = persona.getApellidos();
+        int espacio = apellidos.indexOf(' ');
+        if (espacio < 0) {
+            primerosApellidos[indice] = diccionarioApellidos.codificar(apellidos);
+            segundosApellidos[indice] = -1;
+        } else {
+            primerosApellidos[indice] = diccionarioApellidos.codificar(apellidos.substring(0, espacio));
+            segundosApellidos[indice] = diccionarioApellidos.codificar(apellidos.substring(espacio + 1));
+        }
+    }
+
+    /**
+     * Comprueba que una posición está dentro del almacén.
+     *
+     * @param indice la posición a comprobar.
+     */
+    private void comprobarIndice(int indice) {
+        if (indice < 0 || indice >= tamano) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fuera del almacén de tamaño " + tamano);
+        }
+    }
+
+    /**
+     * Diccionario que asigna a cada texto distinto un código entero consecutivo.
+     */
+    private static class Diccionario {
+
+        /** Código de cada texto. */
+        private final Map<String, Integer> codigos = new HashMap<>();
+
+        /** Texto de cada código. */
+        private String[] textos = new String[CAPACIDAD_INICIAL];
+
+        /** Número de textos distintos. */
+        private int tamano;
+
+        /**
+         * Devuelve el código de un texto, añadiéndolo al diccionario si es nuevo.
+         *
+         * @param texto el texto a codificar.
+         * @return el código del texto.
+         */
+        int codificar(String texto) {
+            Integer codigo = codigos.get(texto);
+            if (codigo == null) {
+                if (tamano == textos.length) {
+                    textos = Arrays.copyOf(textos, textos.length * 2);
+                }
+                codigo = tamano;
+                textos[tamano++] = texto;
+                codigos.put(texto, codigo);
+            }
+            return codigo;
+        }
+
+        /**
+         * Devuelve el texto de un código.
+         *
+         * @param codigo el código.
+         * @return el texto correspondiente.
+         */
+        String texto(int codigo) {
+            return textos[codigo];
+        }
+
+        /**
+         * Devuelve el número de textos distintos.
+         *
+         * @return el tamaño del diccionario.
+         */
+        int tamano() {
+            return tamano;
+        }
+    }
+}
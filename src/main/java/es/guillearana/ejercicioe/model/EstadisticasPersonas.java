@@ -0,0 +1,259 @@
+package es.guillearana.ejercicioe.model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Estadísticas de una lista de personas que se mantienen al día con cada cambio, sin recorrerla:
+ * número de personas, media, mínima y máxima de la edad, histograma de edades y apellidos más frecuentes.
+ *
+ * <p>
+ * El histograma tiene una casilla por edad entre {@link ValidadorPersona#EDAD_MINIMA} y
+ * {@link ValidadorPersona#EDAD_MAXIMA}; las edades fuera de ese rango, que solo pueden llegar de una
+ * importación, cuentan en la casilla del extremo más cercano, como en {@link IndiceBusqueda}. La mínima
+ * y la máxima se obtienen recorriendo esas 121 casillas, de modo que no dependen del número de personas.
+ * </p>
+ *
+ * <p>
+ * Los apellidos se cuentan tal como están escritos en una tabla hash, y además se mantienen ordenados por
+ * número de personas en un {@link TreeSet}: cada alta o baja cambia su contador y lo recoloca en O(log n),
+ * y los más frecuentes son los primeros del conjunto.
+ * </p>
+ */
+public class EstadisticasPersonas {
+
+    /** Orden de los apellidos: más personas primero y, a igualdad, alfabético. */
+    private static final Comparator<Contador> POR_FRECUENCIA = Comparator
+            .comparingInt((Contador contador) -> -contador.personas)
+            .thenComparing(contador -> contador.apellidos);
+
+    /** Número de personas de cada edad, desde la mínima admitida. */
+    private final int[] histograma = new int[ValidadorPersona.EDAD_MAXIMA - ValidadorPersona.EDAD_MINIMA + 1];
+
+    /** Contador de personas por apellidos. */
+    private final Map<String, Contador> porApellidos = new HashMap<>();
+
+    /** Los contadores de {@link #porApellidos}, ordenados por frecuencia. */
+    private final TreeSet<Contador> ranking = new TreeSet<>(POR_FRECUENCIA);
+
+    /** Oyente que mantiene las estadísticas al día. */
+    private final ListChangeListener<Persona> oyente = this::actualizar;
+
+    /** Número de personas. */
+    private int total;
+
+    /** Suma de las edades de todas las personas. */
+    private long sumaEdades;
+
+    /**
+     * Apellidos junto al número de personas que los tienen.
+     *
+     * @param apellidos los apellidos.
+     * @param personas  el número de personas.
+     */
+    public record ApellidosFrecuentes(String apellidos, int personas) {
+    }
+
+    /**
+     * Número de personas con unos apellidos. Se saca del ranking antes de cambiar el contador
+     * y se vuelve a meter después, porque su posición depende de él.
+     */
+    private static final class Contador {
+
+        /** Los apellidos. */
+        private final String apellidos;
+
+        /** Número de personas con esos apellidos. */
+        private int personas;
+
+        Contador(String apellidos) {
+            this.apellidos = apellidos;
+        }
+    }
+
+    /**
+     * Calcula las estadísticas del contenido actual de la lista y empieza a seguir sus cambios.
+     *
+     * @param personas la lista.
+     */
+    public void vincular(ObservableList<Persona> personas) {
+        // Se cuenta todo antes de ordenar: un solo ordenado de los apellidos distintos en lugar de uno por persona
+        for (Persona persona : personas) {
+            total++;
+            sumaEdades += persona.getEdad();
+            histograma[casilla(persona.getEdad())]++;
+            porApellidos.computeIfAbsent(persona.getApellidos(), Contador::new).personas++;
+        }
+        ranking.addAll(porApellidos.values());
+        personas.addListener(oyente);
+    }
+
+    /**
+     * Deja de seguir los cambios de la lista y vacía las estadísticas.
+     *
+     * @param personas la lista vinculada.
+     */
+    public void desvincular(ObservableList<Persona> personas) {
+        personas.removeListener(oyente);
+        Arrays.fill(histograma, 0);
+        porApellidos.clear();
+        ranking.clear();
+        total = 0;
+        sumaEdades = 0;
+    }
+
+    /**
+     * Devuelve el número de personas.
+     *
+     * @return el número de personas.
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * Devuelve la edad media.
+     *
+     * @return la media, o 0 si no hay personas.
+     */
+    public double mediaEdad() {
+        return total == 0 ? 0 : (double) sumaEdades / total;
+    }
+
+    /**
+     * Devuelve la menor edad, limitada al rango admitido.
+     *
+     * @return la edad mínima, o -1 si no hay personas.
+     */
+    public int edadMinima() {
+        for (int i = 0; i < histograma.length; i++) {
+            if (histograma[i] > 0) {
+                return i + ValidadorPersona.EDAD_MINIMA;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Devuelve la mayor edad, limitada al rango admitido.
+     *
+     * @return la edad máxima, o -1 si no hay personas.
+     */
+    public int edadMaxima() {
+        for (int i = histograma.length - 1; i >= 0; i--) {
+            if (histograma[i] > 0) {
+                return i + ValidadorPersona.EDAD_MINIMA;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Devuelve el número de personas con una edad.
+     *
+     * @param edad la edad, entre {@link ValidadorPersona#EDAD_MINIMA} y {@link ValidadorPersona#EDAD_MAXIMA}.
+     * @return el número de personas.
+     */
+    public int personasConEdad(int edad) {
+        return histograma[edad - ValidadorPersona.EDAD_MINIMA];
+    }
+
+    /**
+     * Devuelve el número de personas con edad dentro de un rango.
+     *
+     * @param desde la primera edad del rango.
+     * @param hasta la última edad del rango, incluida.
+     * @return el número de personas.
+     */
+    public int personasEntre(int desde, int hasta) {
+        int personas = 0;
+        for (int edad = Math.max(desde, ValidadorPersona.EDAD_MINIMA);
+             edad <= Math.min(hasta, ValidadorPersona.EDAD_MAXIMA); edad++) {
+            personas += personasConEdad(edad);
+        }
+        return personas;
+    }
+
+    /**
+     * Devuelve los apellidos más frecuentes.
+     *
+     * @param cuantos el número máximo de apellidos.
+     * @return los apellidos, del más frecuente al menos; a igual frecuencia, en orden alfabético.
+     */
+    public List<ApellidosFrecuentes> apellidosMasFrecuentes(int cuantos) {
+        List<ApellidosFrecuentes> resultado = new ArrayList<>(Math.min(cuantos, ranking.size()));
+        Iterator<Contador> contadores = ranking.iterator();
+        while (resultado.size() < cuantos && contadores.hasNext()) {
+            Contador contador = contadores.next();
+            resultado.add(new ApellidosFrecuentes(contador.apellidos, contador.personas));
+        }
+        return resultado;
+    }
+
+    /**
+     * Cuenta una persona.
+     *
+     * @param persona la persona.
+     */
+    private void agregar(Persona persona) {
+        total++;
+        sumaEdades += persona.getEdad();
+        histograma[casilla(persona.getEdad())]++;
+        Contador contador = porApellidos.computeIfAbsent(persona.getApellidos(), Contador::new);
+        ranking.remove(contador);
+        contador.personas++;
+        ranking.add(contador);
+    }
+
+    /**
+     * Descuenta una persona.
+     *
+     * @param persona la persona.
+     */
+    private void quitar(Persona persona) {
+        total--;
+        sumaEdades -= persona.getEdad();
+        histograma[casilla(persona.getEdad())]--;
+        Contador contador = porApellidos.get(persona.getApellidos());
+        ranking.remove(contador);
+        if (--contador.personas == 0) {
+            porApellidos.remove(persona.getApellidos());
+        } else {
+            ranking.add(contador);
+        }
+    }
+
+    /**
+     * Devuelve la casilla del histograma de una edad, llevando las de fuera del rango al extremo más cercano.
+     *
+     * @param edad la edad.
+     * @return la posición en el histograma.
+     */
+    private int casilla(int edad) {
+        return Math.max(ValidadorPersona.EDAD_MINIMA, Math.min(ValidadorPersona.EDAD_MAXIMA, edad))
+                - ValidadorPersona.EDAD_MINIMA;
+    }
+
+    /**
+     * Actualiza las estadísticas con un cambio de la lista. Las reordenaciones no las cambian.
+     *
+     * @param cambio el cambio de la lista.
+     */
+    private void actualizar(ListChangeListener.Change<? extends Persona> cambio) {
+        while (cambio.next()) {
+            if (!cambio.wasPermutated()) {
+                cambio.getRemoved().forEach(this::quitar);
+                cambio.getAddedSubList().forEach(this::agregar);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package es.guillearana.ejercicioe.model;
+
+/**
+ * Origen de datos de personas con acceso por posición, del que se pueden leer páginas sueltas
+ * sin tener todas las personas en memoria.
+ *
+ * <p>
+ * Lo utiliza {@link ListaPaginada} para materializar solo las filas que se muestran en la tabla.
+ * </p>
+ */
+public interface FuentePaginada {
+
+    /**
+     * Devuelve el número total de personas del origen.
+     *
+     * @return el número de personas.
+     */
+    int tamano();
+
+    /**
+     * Lee un tramo consecutivo de personas.
+     *
+     * @param desde    la posición de la primera persona a leer.
+     * @param destino  el array donde se guardan las personas leídas, a partir de la posición 0.
+     * @param cantidad el número de personas a leer.
+     */
+    void leerPagina(int desde, Persona[] destino, int cantidad);
+
+    /**
+     * Fija el contenido actual del origen para recorrerlo entero por páginas aunque después cambie,
+     * como hace la exportación. Por defecto devuelve el propio origen: los que pueden cambiar mientras
+     * se leen deben devolver una vista que no se vea afectada por esos cambios.
+     *
+     * @return un origen con las personas actuales, que no cambia mientras se lee.
+     */
+    default FuentePaginada instantanea() {
+        return this;
+    }
+}
@@ -0,0 +1,474 @@
+package es.guillearana.ejercicioe.model;
+
+import es.guillearana.ejercicioe.model.PersonaRepositorio.PersonaEnPosicion;
+import es.guillearana.ejercicioe.model.PersonaRepositorio.Reemplazo;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Historial de cambios del repositorio que permite deshacer y rehacer las altas, modificaciones y bajas.
+ * Las bajas y modificaciones de varias personas a la vez se guardan como un solo paso.
+ *
+ * <p>
+ * Cada cambio se guarda como una orden que sabe aplicarse y aplicar su inversa: deshacer un alta es eliminar
+ * la persona, deshacer una baja es volver a insertarla en su posición y deshacer una modificación es volver a
+ * reemplazar la persona nueva por la anterior. Como {@link Persona} es inmutable, cada orden solo guarda
+ * referencias a las personas afectadas, nunca una copia de la lista, y deshacer o rehacer cuesta lo mismo que
+ * la operación original sobre el repositorio.
+ * </p>
+ *
+ * <p>
+ * El historial está limitado por número de pasos y por una estimación de la memoria que retienen las órdenes;
+ * al superar cualquiera de los dos límites se descartan los pasos más antiguos.
+ * </p>
+ *
+ * <p>
+ * Solo se registran los cambios hechos a través del historial. Si la lista ha cambiado por otro camino de forma
+ * incompatible (por ejemplo, se ha importado una persona igual a una que se quiere recuperar), la orden no se
+ * puede deshacer y se descarta.
+ * </p>
+ */
+public class HistorialCambios {
+
+    /** Memoria aproximada de una orden y de su entrada en el historial, en bytes. */
+    private static final long BYTES_ORDEN = 32;
+
+    /** Memoria aproximada de una persona sin contar sus textos, en bytes. */
+    private static final long BYTES_PERSONA = 40;
+
+    /** Memoria aproximada de un texto vacío (objeto y array), en bytes. */
+    private static final long BYTES_TEXTO = 40;
+
+    /**
+     * Cambio registrado en el historial.
+     */
+    private interface Orden {
+
+        /**
+         * Aplica la operación inversa del cambio.
+         *
+         * @param repositorio el repositorio.
+         * @return las personas que vuelven a la lista o cambian, o {@code null} si no se ha podido deshacer.
+         */
+        List<Persona> deshacer(PersonaRepositorio repositorio);
+
+        /**
+         * Vuelve a aplicar el cambio.
+         *
+         * @param repositorio el repositorio.
+         * @return las personas que vuelven a la lista o cambian, o {@code null} si no se ha podido rehacer.
+         */
+        List<Persona> rehacer(PersonaRepositorio repositorio);
+
+        /**
+         * Estima la memoria que retiene la orden.
+         *
+         * @return los bytes aproximados.
+         */
+        long bytes();
+    }
+
+    /**
+     * Alta de una persona al final de la lista.
+     *
+     * @param persona la persona agregada, con su identificador.
+     */
+    private record Alta(Persona persona) implements Orden {
+
+        @Override
+        public List<Persona> deshacer(PersonaRepositorio repositorio) {
+            return repositorio.eliminar(persona) ? List.of() : null;
+        }
+
+        @Override
+        public List<Persona> rehacer(PersonaRepositorio repositorio) {
+            return repositorio.agregar(persona) ? List.of(persona) : null;
+        }
+
+        @Override
+        public long bytes() {
+            return BYTES_ORDEN + memoria(persona);
+        }
+    }
+
+    /**
+     * Baja de una persona.
+     *
+     * @param persona la persona eliminada.
+     * @param indice  la posición que ocupaba.
+     */
+    private record Baja(Persona persona, int indice) implements Orden {
+
+        @Override
+        public List<Persona> deshacer(PersonaRepositorio repositorio) {
+            return repositorio.insertar(indice, persona) ? List.of(persona) : null;
+        }
+
+        @Override
+        public List<Persona> rehacer(PersonaRepositorio repositorio) {
+            return repositorio.eliminar(persona) ? List.of() : null;
+        }
+
+        @Override
+        public long bytes() {
+            return BYTES_ORDEN + memoria(persona);
+        }
+    }
+
+    /**
+     * Sustitución de una persona por otra.
+     *
+     * @param anterior la persona que había.
+     * @param nueva    la persona que la sustituyó.
+     */
+    private record Modificacion(Persona anterior, Persona nueva) implements Orden {
+
+        @Override
+        public List<Persona> deshacer(PersonaRepositorio repositorio) {
+            return repositorio.reemplazar(nueva, anterior) ? List.of(anterior) : null;
+        }
+
+        @Override
+        public List<Persona> rehacer(PersonaRepositorio repositorio) {
+            return repositorio.reemplazar(anterior, nueva) ? List.of(nueva) : null;
+        }
+
+        @Override
+        public long bytes() {
+            return BYTES_ORDEN + memoria(anterior) + memoria(nueva);
+        }
+    }
+
+    /**
+     * Baja de varias personas a la vez.
+     *
+     * @param eliminadas las personas eliminadas con la posición que ocupaban, en orden de posición.
+     */
+    private record BajaLote(List<PersonaEnPosicion> eliminadas) implements Orden {
+
+        @Override
+        public List<Persona> deshacer(PersonaRepositorio repositorio) {
+            List<Persona> insertadas = repositorio.insertarTodas(eliminadas);
+            return insertadas.isEmpty() ? null : insertadas;
+        }
+
+        @Override
+        public List<Persona> rehacer(PersonaRepositorio repositorio) {
+            List<Persona> personas = eliminadas.stream().map(PersonaEnPosicion::persona).toList();
+            return repositorio.eliminarTodas(personas).isEmpty() ? null : List.of();
+        }
+
+        @Override
+        public long bytes() {
+            long total = BYTES_ORDEN;
+            for (PersonaEnPosicion eliminada : eliminadas) {
+                total += BYTES_ORDEN + memoria(eliminada.persona());
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Sustitución de varias personas a la vez.
+     *
+     * @param reemplazos las personas anteriores y las que las sustituyeron.
+     */
+    private record ModificacionLote(List<Reemplazo> reemplazos) implements Orden {
+
+        @Override
+        public List<Persona> deshacer(PersonaRepositorio repositorio) {
+            List<Reemplazo> inversos = reemplazos.stream()
+                    .map(reemplazo -> new Reemplazo(reemplazo.nueva(), reemplazo.anterior())).toList();
+            return aplicar(repositorio, inversos);
+        }
+
+        @Override
+        public List<Persona> rehacer(PersonaRepositorio repositorio) {
+            return aplicar(repositorio, reemplazos);
+        }
+
+        @Override
+        public long bytes() {
+            long total = BYTES_ORDEN;
+            for (Reemplazo reemplazo : reemplazos) {
+                total += BYTES_ORDEN + memoria(reemplazo.anterior()) + memoria(reemplazo.nueva());
+            }
+            return total;
+        }
+
+        /**
+         * Aplica los reemplazos en el repositorio.
+         *
+         * @param repositorio el repositorio.
+         * @param lote        los reemplazos.
+         * @return las personas que han quedado en la lista, o {@code null} si no se ha aplicado ninguno.
+         */
+        private static List<Persona> aplicar(PersonaRepositorio repositorio, List<Reemplazo> lote) {
+            List<Reemplazo> aplicados = repositorio.reemplazarTodas(lote);
+            return aplicados.isEmpty() ? null : aplicados.stream().map(Reemplazo::nueva).toList();
+        }
+    }
+
+    /** Repositorio cuyos cambios se registran. */
+    private final PersonaRepositorio repositorio;
+
+    /** Número máximo de pasos guardados. */
+    private final int maximoPasos;
+
+    /** Memoria máxima aproximada que pueden retener los pasos guardados, en bytes. */
+    private final long maximoBytes;
+
+    /** Pasos que se pueden deshacer, del más antiguo al más reciente. */
+    private final Deque<Orden> pasosDeshacer = new ArrayDeque<>();
+
+    /** Pasos deshechos que se pueden rehacer, del más antiguo al más reciente. */
+    private final Deque<Orden> pasosRehacer = new ArrayDeque<>();
+
+    /** Memoria aproximada que retienen todos los pasos guardados. */
+    private long bytes;
+
+    /** Indica si hay algún paso que deshacer. */
+    private final ReadOnlyBooleanWrapper puedeDeshacer = new ReadOnlyBooleanWrapper(this, "puedeDeshacer");
+
+    /** Indica si hay algún paso que rehacer. */
+    private final ReadOnlyBooleanWrapper puedeRehacer = new ReadOnlyBooleanWrapper(this, "puedeRehacer");
+
+    /**
+     * Crea un historial vacío.
+     *
+     * @param repositorio el repositorio cuyos cambios se registran.
+     * @param maximoPasos el número máximo de pasos que se guardan.
+     * @param maximoBytes la memoria máxima aproximada que pueden retener los pasos, en bytes.
+     */
+    public HistorialCambios(PersonaRepositorio repositorio, int maximoPasos, long maximoBytes) {
+        if (maximoPasos < 1 || maximoBytes < 1) {
+            throw new IllegalArgumentException("Los límites del historial deben ser positivos");
+        }
+        this.repositorio = repositorio;
+        this.maximoPasos = maximoPasos;
+        this.maximoBytes = maximoBytes;
+    }
+
+    /**
+     * Agrega una persona al repositorio y registra el alta.
+     *
+     * @param persona la persona a agregar.
+     * @return {@code true} si se ha agregado, {@code false} si ya existía.
+     */
+    public boolean agregar(Persona persona) {
+        if (!repositorio.agregar(persona)) {
+            return false;
+        }
+        registrar(new Alta(guardada(persona)));
+        return true;
+    }
+
+    /**
+     * Reemplaza una persona en el repositorio y registra la modificación.
+     *
+     * @param anterior la persona a reemplazar.
+     * @param nueva    la persona que ocupa su lugar.
+     * @return {@code true} si se ha reemplazado; {@code false} en los mismos casos que
+     * {@link PersonaRepositorio#reemplazar(Persona, Persona)}.
+     */
+    public boolean reemplazar(Persona anterior, Persona nueva) {
+        int indice = repositorio.indiceDe(anterior);
+        if (indice < 0) {
+            return false;
+        }
+        Persona original = repositorio.getPersonas().get(indice);
+        if (!repositorio.reemplazar(original, nueva)) {
+            return false;
+        }
+        registrar(new Modificacion(original, repositorio.getPersonas().get(indice)));
+        return true;
+    }
+
+    /**
+     * Elimina una persona del repositorio y registra la baja con la posición que ocupaba.
+     *
+     * @param persona la persona a eliminar.
+     * @return {@code true} si se ha eliminado, {@code false} si no existía.
+     */
+    public boolean eliminar(Persona persona) {
+        int indice = repositorio.indiceDe(persona);
+        if (indice < 0) {
+            return false;
+        }
+        Persona eliminada = repositorio.getPersonas().get(indice);
+        repositorio.eliminar(eliminada);
+        registrar(new Baja(eliminada, indice));
+        return true;
+    }
+
+    /**
+     * Elimina varias personas del repositorio con un único cambio de la lista y registra la baja
+     * de todas ellas como un solo paso.
+     *
+     * @param eliminar las personas a eliminar.
+     * @return el número de personas eliminadas.
+     */
+    public int eliminarTodas(Collection<Persona> eliminar) {
+        List<PersonaEnPosicion> eliminadas = repositorio.eliminarTodas(eliminar);
+        if (!eliminadas.isEmpty()) {
+            registrar(new BajaLote(eliminadas));
+        }
+        return eliminadas.size();
+    }
+
+    /**
+     * Aplica varios reemplazos con un único cambio de la lista y registra todos ellos como un solo paso.
+     * Los reemplazos que no se pueden aplicar se descartan, como en {@link PersonaRepositorio#reemplazarTodas}.
+     *
+     * @param reemplazos los reemplazos a aplicar.
+     * @return las personas que han quedado en la lista tras los reemplazos aplicados.
+     */
+    public List<Persona> reemplazarTodas(List<Reemplazo> reemplazos) {
+        List<Reemplazo> aplicados = repositorio.reemplazarTodas(reemplazos);
+        if (!aplicados.isEmpty()) {
+            registrar(new ModificacionLote(aplicados));
+        }
+        return aplicados.stream().map(Reemplazo::nueva).toList();
+    }
+
+    /**
+     * Deshace el último cambio. Si no se puede deshacer porque la lista ha cambiado de forma
+     * incompatible, el paso se descarta.
+     *
+     * @return las personas que vuelven a la lista o cambian, o {@code null} si no había nada
+     * que deshacer o no se ha podido deshacer.
+     */
+    public List<Persona> deshacer() {
+        Orden orden = pasosDeshacer.pollLast();
+        if (orden == null) {
+            return null;
+        }
+        List<Persona> afectadas = orden.deshacer(repositorio);
+        if (afectadas == null) {
+            bytes -= orden.bytes();
+        } else {
+            pasosRehacer.addLast(orden);
+        }
+        actualizarEstado();
+        return afectadas;
+    }
+
+    /**
+     * Rehace el último cambio deshecho. Si no se puede rehacer, el paso se descarta.
+     *
+     * @return las personas que vuelven a la lista o cambian, o {@code null} si no había nada
+     * que rehacer o no se ha podido rehacer.
+     */
+    public List<Persona> rehacer() {
+        Orden orden = pasosRehacer.pollLast();
+        if (orden == null) {
+            return null;
+        }
+        List<Persona> afectadas = orden.rehacer(repositorio);
+        if (afectadas == null) {
+            bytes -= orden.bytes();
+        } else {
+            pasosDeshacer.addLast(orden);
+        }
+        actualizarEstado();
+        return afectadas;
+    }
+
+    /**
+     * Vacía el historial.
+     */
+    public void limpiar() {
+        pasosDeshacer.clear();
+        pasosRehacer.clear();
+        bytes = 0;
+        actualizarEstado();
+    }
+
+    /**
+     * Devuelve la memoria aproximada que retienen los pasos guardados.
+     *
+     * @return los bytes aproximados.
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Propiedad que indica si hay algún paso que deshacer.
+     *
+     * @return la propiedad de solo lectura.
+     */
+    public ReadOnlyBooleanProperty puedeDeshacerProperty() {
+        return puedeDeshacer.getReadOnlyProperty();
+    }
+
+    /**
+     * Propiedad que indica si hay algún paso que rehacer.
+     *
+     * @return la propiedad de solo lectura.
+     */
+    public ReadOnlyBooleanProperty puedeRehacerProperty() {
+        return puedeRehacer.getReadOnlyProperty();
+    }
+
+    /**
+     * Registra un cambio nuevo: descarta los pasos deshechos y, si se superan los límites, los más antiguos.
+     *
+     * @param orden el cambio a registrar.
+     */
+    private void registrar(Orden orden) {
+        for (Orden deshecha : pasosRehacer) {
+            bytes -= deshecha.bytes();
+        }
+        pasosRehacer.clear();
+        pasosDeshacer.addLast(orden);
+        bytes += orden.bytes();
+        while (!pasosDeshacer.isEmpty() && (pasosDeshacer.size() > maximoPasos || bytes > maximoBytes)) {
+            bytes -= pasosDeshacer.pollFirst().bytes();
+        }
+        actualizarEstado();
+    }
+
+    /**
+     * Actualiza las propiedades que indican si se puede deshacer o rehacer.
+     */
+    private void actualizarEstado() {
+        puedeDeshacer.set(!pasosDeshacer.isEmpty());
+        puedeRehacer.set(!pasosRehacer.isEmpty());
+    }
+
+    /**
+     * Devuelve la persona guardada en el repositorio igual a la indicada, que puede ser una copia con identificador.
+     *
+     * @param persona la persona.
+     * @return la persona tal y como está en la lista.
+     */
+    private Persona guardada(Persona persona) {
+        return repositorio.getPersonas().get(repositorio.indiceDe(persona));
+    }
+
+    /**
+     * Estima la memoria que retiene una persona, contando sus textos.
+     *
+     * @param persona la persona.
+     * @return los bytes aproximados.
+     */
+    private static long memoria(Persona persona) {
+        return BYTES_PERSONA + memoria(persona.getNombre()) + memoria(persona.getApellidos());
+    }
+
+    /**
+     * Estima la memoria de un texto, suponiendo dos bytes por carácter.
+     *
+     * @param texto el texto.
+     * @return los bytes aproximados.
+     */
+    private static long memoria(String texto) {
+        return texto == null ? 0 : BYTES_TEXTO + 2L * texto.length();
+    }
+}
@@ -0,0 +1,347 @@
+package es.guillearana.ejercicioe.model;
+
+import es.guillearana.ejercicioe.metricas.Metricas;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda por prefijo sobre el nombre y los apellidos de las personas, con filtro por edad.
+ *
+ * <p>
+ * Cada palabra del nombre y de los apellidos se normaliza (minúsculas y sin tildes) y se guarda en un
+ * {@link TreeMap} ordenado, de modo que todas las palabras que empiezan por un prefijo forman un rango
+ * contiguo que se obtiene con una búsqueda binaria. Las personas se agrupan además por edad, para poder
+ * filtrar por un rango de edades sin recorrer la lista.
+ * </p>
+ *
+ * <p>
+ * Como los nombres y apellidos se repiten mucho, cada palabra tal y como se escribió se asocia a su
+ * entrada del índice la primera vez que aparece, y a partir de ahí no se vuelve a normalizar mientras
+ * alguna persona la contenga: cuando una entrada se queda sin personas se quita junto con sus formas
+ * escritas, para que el índice no crezca con palabras que ya no están en la lista. Las
+ * personas de cada entrada se guardan en conjuntos por identidad, que ocupan menos memoria que un
+ * {@code HashSet} y no necesitan llamar a {@code equals}: el índice siempre recibe las mismas instancias
+ * que contiene la lista.
+ * </p>
+ *
+ * <p>
+ * El índice se mantiene al día escuchando los cambios de la lista vinculada: cada alta, modificación
+ * o baja solo actualiza las entradas de las personas afectadas.
+ * </p>
+ */
+public class IndiceBusqueda {
+
+    /** Marcas diacríticas que se eliminan al normalizar. */
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+
+    /** Entradas del índice por palabra normalizada, ordenadas para buscar por prefijo. */
+    private final TreeMap<String, Entrada> porPalabra = new TreeMap<>();
+
+    /** Entradas del índice por palabra tal y como aparece en los datos. */
+    private final Map<String, Entrada> porPalabraOriginal = new HashMap<>();
+
+    /** Personas agrupadas por edad. */
+    private final List<Set<Persona>> porEdad = new ArrayList<>();
+
+    /** Oyente que mantiene el índice al día. */
+    private final ListChangeListener<Persona> oyente = this::actualizar;
+
+    /**
+     * Entrada del índice: una palabra normalizada y las personas que la contienen.
+     */
+    private static final class Entrada {
+
+        /** Palabra normalizada. */
+        private final String palabra;
+
+        /** Personas que contienen la palabra. */
+        private final Set<Persona> personas = conjuntoPorIdentidad();
+
+        /** Formas en que aparece escrita la palabra, como claves de {@code porPalabraOriginal}. */
+        private final List<String> originales = new ArrayList<>(1);
+
+        Entrada(String palabra) {
+            this.palabra = palabra;
+        }
+    }
+
+    /**
+     * Crea un índice vacío.
+     */
+    public IndiceBusqueda() {
+        for (int edad = ValidadorPersona.EDAD_MINIMA; edad <= ValidadorPersona.EDAD_MAXIMA; edad++) {
+            porEdad.add(conjuntoPorIdentidad());
+        }
+    }
+
+    /**
+     * Indexa el contenido actual de la lista y empieza a seguir sus cambios.
+     *
+     * @param personas la lista a indexar.
+     */
+    public void vincular(ObservableList<Persona> personas) {
+        for (Persona persona : personas) {
+            agregar(persona);
+        }
+        personas.addListener(oyente);
+    }
+
+    /**
+     * Deja de seguir los cambios de la lista y vacía el índice.
+     *
+     * @param personas la lista vinculada.
+     */
+    public void desvincular(ObservableList<Persona> personas) {
+        personas.removeListener(oyente);
+        porPalabra.clear();
+        porPalabraOriginal.clear();
+        porEdad.forEach(Set::clear);
+    }
+
+    /**
+     * Busca las personas cuyas palabras empiezan por las del texto y cuya edad está en el rango indicado.
+     *
+     * <p>
+     * Cada palabra del texto debe ser prefijo de alguna palabra del nombre o los apellidos. Los candidatos
+     * se obtienen del rango del índice correspondiente a la palabra más larga del texto, que suele ser
+     * la más selectiva, y solo ellos se comprueban con el resto de condiciones. Si el texto está vacío,
+     * los candidatos salen del índice por edad.
+     * </p>
+     *
+     * @param texto       el texto a buscar; puede estar vacío.
+     * @param edadMinima  la edad mínima (incluida).
+     * @param edadMaxima  la edad máxima (incluida).
+     * @return las personas encontradas, agrupadas por la palabra que coincide.
+     */
+    public List<Persona> buscar(String texto, int edadMinima, int edadMaxima) {
+        long inicio = Metricas.inicio();
+        List<Persona> resultado = buscarEnIndice(texto, edadMinima, edadMaxima);
+        Metricas.registrar(Metricas.MODELO_BUSQUEDA, inicio);
+        return resultado;
+    }
+
+    /**
+     * Hace la búsqueda de {@link #buscar(String, int, int)}.
+     *
+     * @param texto       el texto a buscar; puede estar vacío.
+     * @param edadMinima  la edad mínima (incluida).
+     * @param edadMaxima  la edad máxima (incluida).
+     * @return las personas encontradas.
+     */
+    private List<Persona> buscarEnIndice(String texto, int edadMinima, int edadMaxima) {
+        List<String> palabras = new ArrayList<>();
+        if (texto != null) {
+            recorrerPalabras(normalizar(texto), palabras::add);
+        }
+        int minima = Math.max(edadMinima, ValidadorPersona.EDAD_MINIMA);
+        int maxima = Math.min(edadMaxima, ValidadorPersona.EDAD_MAXIMA);
+        if (minima > maxima) {
+            return new ArrayList<>();
+        }
+        if (palabras.isEmpty()) {
+            int total = 0;
+            for (int edad = minima; edad <= maxima; edad++) {
+                total += porEdad.get(edad).size();
+            }
+            List<Persona> resultado = new ArrayList<>(total);
+            for (int edad = minima; edad <= maxima; edad++) {
+                resultado.addAll(porEdad.get(edad));
+            }
+            return resultado;
+        }
+
+        String principal = palabras.get(0);
+        for (String palabra : palabras) {
+            if (palabra.length() > principal.length()) {
+                principal = palabra;
+            }
+        }
+        boolean todaLaEdad = minima == ValidadorPersona.EDAD_MINIMA && maxima == ValidadorPersona.EDAD_MAXIMA;
+        Collection<Entrada> entradas = porPalabra.subMap(principal, true, principal + Character.MAX_VALUE, false).values();
+        // Una persona puede aparecer en varias entradas del rango (por ejemplo, "García Garrido")
+        Set<Persona> vistas = entradas.size() > 1 ? conjuntoPorIdentidad() : null;
+        List<Persona> resultado = new ArrayList<>();
+        for (Entrada entrada : entradas) {
+            for (Persona persona : entrada.personas) {
+                if ((todaLaEdad || (persona.getEdad() >= minima && persona.getEdad() <= maxima))
+                        && (palabras.size() == 1 || coincidenTodas(persona, palabras))
+                        && (vistas == null || vistas.add(persona))) {
+                    resultado.add(persona);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Normaliza un texto para compararlo: minúsculas y sin tildes ni otras marcas diacríticas.
+     *
+     * @param texto el texto a normalizar.
+     * @return el texto normalizado.
+     */
+    public static String normalizar(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) >= 0x80) {
+                String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+                return DIACRITICOS.matcher(descompuesto).replaceAll("").toLowerCase(Locale.ROOT);
+            }
+        }
+        return texto.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Comprueba que cada palabra buscada es prefijo de alguna palabra de la persona.
+     *
+     * @param persona  la persona candidata.
+     * @param buscadas las palabras buscadas, normalizadas.
+     * @return {@code true} si todas las palabras coinciden.
+     */
+    private boolean coincidenTodas(Persona persona, List<String> buscadas) {
+        List<String> propias = new ArrayList<>(4);
+        entradas(persona, entrada -> propias.add(entrada.palabra));
+        for (String buscada : buscadas) {
+            boolean encontrada = false;
+            for (String propia : propias) {
+                if (propia.startsWith(buscada)) {
+                    encontrada = true;
+                    break;
+                }
+            }
+            if (!encontrada) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Añade una persona al índice.
+     *
+     * @param persona la persona a añadir.
+     */
+    private void agregar(Persona persona) {
+        entradas(persona, entrada -> entrada.personas.add(persona));
+        grupoEdad(persona).add(persona);
+    }
+
+    /**
+     * Quita una persona del índice. Las entradas que se quedan vacías se quitan también.
+     *
+     * @param persona la persona a quitar.
+     */
+    private void quitar(Persona persona) {
+        Consumer<String> quitarDePalabra = original -> {
+            Entrada entrada = porPalabraOriginal.get(original);
+            if (entrada != null && entrada.personas.remove(persona) && entrada.personas.isEmpty()) {
+                porPalabra.remove(entrada.palabra);
+                entrada.originales.forEach(porPalabraOriginal::remove);
+            }
+        };
+        recorrerPalabras(persona.getNombre(), quitarDePalabra);
+        recorrerPalabras(persona.getApellidos(), quitarDePalabra);
+        grupoEdad(persona).remove(persona);
+    }
+
+    /**
+     * Devuelve el número de palabras normalizadas distintas que hay en el índice.
+     *
+     * @return el número de entradas.
+     */
+    int numeroPalabras() {
+        return porPalabra.size();
+    }
+
+    /**
+     * Recorre las entradas del índice correspondientes a las palabras del nombre y los apellidos
+     * de una persona, creándolas si no existen.
+     *
+     * @param persona la persona.
+     * @param accion  la acción a realizar con cada entrada.
+     */
+    private void entradas(Persona persona, Consumer<Entrada> accion) {
+        Consumer<String> porPalabraLeida = original -> accion.accept(porPalabraOriginal.computeIfAbsent(original,
+                clave -> {
+                    Entrada entrada = porPalabra.computeIfAbsent(normalizar(clave), Entrada::new);
+                    entrada.originales.add(clave);
+                    return entrada;
+                }));
+        recorrerPalabras(persona.getNombre(), porPalabraLeida);
+        recorrerPalabras(persona.getApellidos(), porPalabraLeida);
+    }
+
+    /**
+     * Devuelve el grupo de personas de la misma edad que la indicada.
+     *
+     * @param persona la persona.
+     * @return el conjunto de personas de esa edad.
+     */
+    private Set<Persona> grupoEdad(Persona persona) {
+        int edad = Math.max(ValidadorPersona.EDAD_MINIMA, Math.min(ValidadorPersona.EDAD_MAXIMA, persona.getEdad()));
+        return porEdad.get(edad - ValidadorPersona.EDAD_MINIMA);
+    }
+
+    /**
+     * Aplica al índice los cambios de la lista. Las reordenaciones no afectan al índice.
+     *
+     * @param cambio el cambio de la lista.
+     */
+    private void actualizar(ListChangeListener.Change<? extends Persona> cambio) {
+        // Primero se quitan todas las eliminadas, por si la misma persona vuelve a entrar en otro tramo del cambio
+        while (cambio.next()) {
+            if (!cambio.wasPermutated()) {
+                cambio.getRemoved().forEach(this::quitar);
+            }
+        }
+        cambio.reset();
+        while (cambio.next()) {
+            if (!cambio.wasPermutated()) {
+                cambio.getAddedSubList().forEach(this::agregar);
+            }
+        }
+    }
+
+    /**
+     * Recorre las palabras de un texto, separadas por espacios en blanco.
+     *
+     * @param texto  el texto; puede ser {@code null}.
+     * @param accion la acción a realizar con cada palabra.
+     */
+    private static void recorrerPalabras(String texto, Consumer<String> accion) {
+        if (texto == null) {
+            return;
+        }
+        int inicio = -1;
+        for (int i = 0; i <= texto.length(); i++) {
+            boolean separador = i == texto.length() || Character.isWhitespace(texto.charAt(i));
+            if (separador && inicio >= 0) {
+                accion.accept(inicio == 0 && i == texto.length() ? texto : texto.substring(inicio, i));
+                inicio = -1;
+            } else if (!separador && inicio < 0) {
+                inicio = i;
+            }
+        }
+    }
+
+    /**
+     * Crea un conjunto que compara sus elementos por identidad.
+     *
+     * @return un conjunto vacío.
+     */
+    private static Set<Persona> conjuntoPorIdentidad() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
@@ -0,0 +1,127 @@
+package es.guillearana.ejercicioe.model;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lista observable de solo lectura que carga las personas por páginas desde una {@link FuentePaginada}.
+ *
+ * <p>
+ * La tabla solo pide las filas visibles, así que únicamente esas páginas (y la siguiente o la anterior
+ * cuando la fila pedida está cerca del borde) se convierten en objetos {@link Persona}. Las páginas se
+ * guardan en una caché LRU de tamaño fijo, por lo que la memoria usada no depende del número total de
+ * filas sino de cuántas páginas se conservan.
+ * </p>
+ */
+public class ListaPaginada extends ObservableListBase<Persona> {
+
+    /** Número de personas por página. */
+    public static final int TAMANO_PAGINA = 256;
+
+    /** Número de páginas que se conservan en memoria por defecto. */
+    public static final int PAGINAS_POR_DEFECTO = 64;
+
+    /** Distancia al borde de la página a partir de la cual se carga también la página vecina. */
+    private static final int MARGEN_PRECARGA = 32;
+
+    /** Origen de las personas. */
+    private final FuentePaginada fuente;
+
+    /** Páginas cargadas, ordenadas de menos a más recientemente usada. */
+    private final Map<Integer, Persona[]> paginas;
+
+    /**
+     * Crea una lista paginada con el número de páginas en caché por defecto.
+     *
+     * @param fuente el origen de las personas.
+     */
+    public ListaPaginada(FuentePaginada fuente) {
+        this(fuente, PAGINAS_POR_DEFECTO);
+    }
+
+    /**
+     * Crea una lista paginada.
+     *
+     * @param fuente       el origen de las personas.
+     * @param maximoPaginas el número máximo de páginas que se conservan en memoria.
+     */
+    public ListaPaginada(FuentePaginada fuente, int maximoPaginas) {
+        this.fuente = fuente;
+        this.paginas = new LinkedHashMap<>(maximoPaginas * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Persona[]> masAntigua) {
+                return size() > maximoPaginas;
+            }
+        };
+    }
+
+    /**
+     * Devuelve la persona de la posición indicada, cargando su página si no está en memoria.
+     *
+     * @param indice la posición de la persona.
+     * @return la persona de esa posición.
+     */
+    @Override
+    public Persona get(int indice) {
+        if (indice < 0 || indice >= size()) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fuera de la lista de tamaño " + size());
+        }
+        int numero = indice / TAMANO_PAGINA;
+        int desplazamiento = indice % TAMANO_PAGINA;
+        Persona[] pagina = pagina(numero);
+        if (desplazamiento >= TAMANO_PAGINA - MARGEN_PRECARGA) {
+            precargar(numero + 1);
+        } else if (desplazamiento < MARGEN_PRECARGA) {
+            precargar(numero - 1);
+        }
+        return pagina[desplazamiento];
+    }
+
+    /**
+     * Devuelve el número total de personas del origen.
+     *
+     * @return el tamaño de la lista.
+     */
+    @Override
+    public int size() {
+        return fuente.tamano();
+    }
+
+    /**
+     * Descarta todas las páginas cargadas en memoria.
+     */
+    public void vaciarCache() {
+        paginas.clear();
+    }
+
+    /**
+     * Devuelve una página, leyéndola del origen si no está en la caché.
+     *
+     * @param numero el número de página.
+     * @return las personas de la página.
+     */
+    private Persona[] pagina(int numero) {
+        Persona[] pagina = paginas.get(numero);
+        if (pagina == null) {
+            int desde = numero * TAMANO_PAGINA;
+            int cantidad = Math.min(TAMANO_PAGINA, size() - desde);
+            pagina = new Persona[cantidad];
+            fuente.leerPagina(desde, pagina, cantidad);
+            paginas.put(numero, pagina);
+        }
+        return pagina;
+    }
+
+    /**
+     * Carga una página vecina si existe y no está ya en la caché, sin alterar el orden LRU de las demás.
+     *
+     * @param numero el número de página.
+     */
+    private void precargar(int numero) {
+        if (numero >= 0 && numero * TAMANO_PAGINA < size() && !paginas.containsKey(numero)) {
+            pagina(numero);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package es.guillearana.ejercicioe.model;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Lista observable de personas que, además de las operaciones habituales, permite cambiar el orden
+ * de sus elementos notificando una única permutación.
+ *
+ * <p>
+ * {@code FXCollections.observableArrayList()} solo notifica permutaciones al ordenar con un comparador
+ * en el propio hilo de JavaFX. Esta lista permite aplicar de golpe un orden calculado en otro hilo o mover
+ * un solo elemento, y los oyentes (índices, almacén) ven una permutación en lugar de una baja y un alta.
+ * </p>
+ */
+final class ListaPersonas extends ModifiableObservableListBase<Persona> {
+
+    /** Elementos de la lista. */
+    private final ArrayList<Persona> elementos = new ArrayList<>();
+
+    @Override
+    public Persona get(int indice) {
+        return elementos.get(indice);
+    }
+
+    @Override
+    public int size() {
+        return elementos.size();
+    }
+
+    @Override
+    protected void doAdd(int indice, Persona persona) {
+        elementos.add(indice, persona);
+    }
+
+    @Override
+    protected Persona doSet(int indice, Persona persona) {
+        return elementos.set(indice, persona);
+    }
+
+    @Override
+    protected Persona doRemove(int indice) {
+        return elementos.remove(indice);
+    }
+
+    /**
+     * Sustituye el contenido por las mismas personas en otro orden, notificando una permutación.
+     *
+     * @param ordenadas   las personas en su nuevo orden.
+     * @param permutacion para cada posición actual, la posición que pasa a ocupar esa persona.
+     */
+    void reordenar(Persona[] ordenadas, int[] permutacion) {
+        if (ordenadas.length != elementos.size() || permutacion.length != elementos.size()) {
+            throw new IllegalArgumentException("El nuevo orden no tiene el mismo tamaño que la lista");
+        }
+        beginChange();
+        try {
+            for (int i = 0; i < ordenadas.length; i++) {
+                elementos.set(i, ordenadas[i]);
+            }
+            nextPermutation(0, ordenadas.length, permutacion);
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Mueve una persona a otra posición, desplazando una posición las que quedan entre medias.
+     *
+     * @param desde la posición actual de la persona.
+     * @param hasta la posición que ocupará.
+     */
+    void mover(int desde, int hasta) {
+        if (desde == hasta) {
+            return;
+        }
+        int inicio = Math.min(desde, hasta);
+        int fin = Math.max(desde, hasta) + 1;
+        int[] permutacion = new int[fin - inicio];
+        for (int i = inicio; i < fin; i++) {
+            if (i == desde) {
+                permutacion[i - inicio] = hasta;
+            } else {
+                permutacion[i - inicio] = desde < hasta ? i - 1 : i + 1;
+            }
+        }
+        beginChange();
+        try {
+            elementos.add(hasta, elementos.remove(desde));
+            nextPermutation(inicio, fin, permutacion);
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Elimina las personas de varias posiciones recorriendo la lista una sola vez,
+     * y lo notifica como un único cambio.
+     *
+     * @param indices las posiciones a eliminar, en orden creciente y sin repetir.
+     */
+    void eliminarPosiciones(int[] indices) {
+        if (indices.length == 0) {
+            return;
+        }
+        beginChange();
+        try {
+            int escritura = indices[0];
+            int siguiente = 0;
+            for (int lectura = indices[0]; lectura < elementos.size(); lectura++) {
+                Persona persona = elementos.get(lectura);
+                if (siguiente < indices.length && indices[siguiente] == lectura) {
+                    // Las eliminadas anteriores ya no están: en la lista resultante esta posición es la de escritura
+                    nextRemove(escritura, persona);
+                    siguiente++;
+                } else {
+                    elementos.set(escritura++, persona);
+                }
+            }
+            elementos.subList(escritura, elementos.size()).clear();
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Inserta varias personas en las posiciones indicadas recorriendo la lista una sola vez,
+     * y lo notifica como un único cambio. Cada posición se refiere a la lista ya con las inserciones
+     * anteriores, de modo que insertar las eliminadas con sus posiciones originales restaura la lista.
+     *
+     * @param indices  las posiciones finales de las personas, en orden creciente.
+     * @param personas las personas a insertar, en el mismo orden.
+     */
+    void insertarPosiciones(int[] indices, Persona[] personas) {
+        if (indices.length == 0) {
+            return;
+        }
+        beginChange();
+        try {
+            int total = elementos.size() + personas.length;
+            Persona[] resultado = new Persona[total];
+            int lectura = 0;
+            int siguiente = 0;
+            for (int i = 0; i < total; i++) {
+                if (siguiente < indices.length && (indices[siguiente] == i || lectura == elementos.size())) {
+                    resultado[i] = personas[siguiente++];
+                    nextAdd(i, i + 1);
+                } else {
+                    resultado[i] = elementos.get(lectura++);
+                }
+            }
+            elementos.clear();
+            elementos.addAll(Arrays.asList(resultado));
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Sustituye las personas de varias posiciones, notificándolo como un único cambio.
+     *
+     * @param indices las posiciones a sustituir, sin repetir.
+     * @param nuevas  las personas nuevas, en el mismo orden.
+     */
+    void reemplazarPosiciones(int[] indices, Persona[] nuevas) {
+        if (indices.length == 0) {
+            return;
+        }
+        // Se notifican en orden de posición: el constructor del cambio solo tiene que añadir al final
+        Integer[] orden = new Integer[indices.length];
+        Arrays.setAll(orden, i -> i);
+        Arrays.sort(orden, Comparator.comparingInt(i -> indices[i]));
+        beginChange();
+        try {
+            for (int i : orden) {
+                nextSet(indices[i], elementos.set(indices[i], nuevas[i]));
+            }
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Ordena la lista con el comparador indicado, notificando una permutación.
+     *
+     * @param comparador el comparador a usar.
+     */
+    @Override
+    public void sort(Comparator<? super Persona> comparador) {
+        Integer[] orden = new Integer[elementos.size()];
+        Arrays.setAll(orden, i -> i);
+        Arrays.sort(orden, (a, b) -> comparador.compare(elementos.get(a), elementos.get(b)));
+        Persona[] ordenadas = new Persona[orden.length];
+        int[] permutacion = new int[orden.length];
+        for (int i = 0; i < orden.length; i++) {
+            ordenadas[i] = elementos.get(orden[i]);
+            permutacion[orden[i]] = i;
+        }
+        reordenar(ordenadas, permutacion);
+    }
+
+    /**
+     * Copia el contenido de la lista en un array.
+     *
+     * @return las personas en su orden actual.
+     */
+    Persona[] copiar() {
+        return elementos.toArray(new Persona[0]);
+    }
+}
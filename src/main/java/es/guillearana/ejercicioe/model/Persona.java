@@ -1,22 +1,72 @@
 package es.guillearana.ejercicioe.model;
 
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
 import java.util.Objects;
 
 /**
  * La clase {@code Persona} representa a una persona con atributos como nombre, apellidos, edad e idPersona.
- * Esta clase proporciona métodos para acceder y modificar estos atributos, así como para comparar objetos
+ * Esta clase proporciona métodos para acceder a estos atributos y obtener copias modificadas, así como para comparar objetos
  * de tipo {@code Persona}.
  *
  * <p>
  * Los objetos de la clase {@code Persona} se consideran iguales si tienen el mismo nombre, apellidos y edad,
  * aunque su {@code idPersona} sea diferente.
  * </p>
+ *
+ * <p>
+ * Los objetos son inmutables: para cambiar un atributo se usan los métodos {@code con...}, que devuelven
+ * una copia con el valor nuevo. De esta forma una persona guardada en un {@code HashMap} o {@code HashSet}
+ * no puede cambiar de clave, y su código hash se calcula una sola vez en el constructor.
+ * </p>
+ *
+ * <p>
+ * El nombre y los apellidos se guardan a través de {@link PoolCadenas}, de modo que los textos repetidos en
+ * muchas personas ocupan una sola cadena.
+ * </p>
+ *
+ * <p>
+ * Para mostrarla en una tabla, la persona ofrece propiedades de solo lectura ({@link #nombreProperty()},
+ * {@link #apellidosProperty()} y {@link #edadProperty()}). Se crean la primera vez que se piden, es decir,
+ * solo para las filas que llegan a mostrarse, y después se reutilizan en cada pasada de la tabla.
+ * </p>
  */
-public class Persona {
-    private String nombre;
-    private String apellidos;
-    private int edad;
-    private int idPersona;
+public final class Persona {
+    private final String nombre;
+    private final String apellidos;
+    private final int edad;
+    private final int idPersona;
+
+    /** Código hash precalculado a partir de nombre, apellidos y edad. */
+    private final int hash;
+
+    /** Propiedades para la vista, creadas la primera vez que se piden. */
+    private Propiedades propiedades;
+
+    /**
+     * Propiedades de solo lectura de una persona. Se agrupan en un solo objeto para que las personas
+     * que nunca se muestran solo paguen una referencia nula.
+     */
+    private static final class Propiedades {
+
+        /** Propiedad con el nombre. */
+        private final ReadOnlyStringProperty nombre;
+
+        /** Propiedad con los apellidos. */
+        private final ReadOnlyStringProperty apellidos;
+
+        /** Propiedad con la edad. */
+        private final ReadOnlyIntegerProperty edad;
+
+        Propiedades(Persona persona) {
+            this.nombre = new ReadOnlyStringWrapper(persona, "nombre", persona.nombre).getReadOnlyProperty();
+            this.apellidos = new ReadOnlyStringWrapper(persona, "apellidos", persona.apellidos).getReadOnlyProperty();
+            this.edad = new ReadOnlyIntegerWrapper(persona, "edad", persona.edad).getReadOnlyProperty();
+        }
+    }
 
     /**
      * Retorna una representación en forma de cadena de la persona.
@@ -44,11 +94,15 @@ public class Persona {
      * como {@code HashSet} o {@code HashMap}.
      * </p>
      *
+     * <p>
+     * El valor se calcula en el constructor, por lo que este método solo lee un campo.
+     * </p>
+     *
      * @return el código hash generado a partir de los atributos de la persona.
      */
     @Override
     public int hashCode() {
-        return Objects.hash(this.apellidos, this.edad, this.nombre);
+        return this.hash;
     }
 
     /**
@@ -57,6 +111,8 @@ public class Persona {
      * <p>
      * Dos objetos de tipo {@code Persona} se consideran iguales si tienen el mismo
      * {@code nombre}, {@code apellidos} y {@code edad}, independientemente de su {@code idPersona}.
+     * Como los textos son compartidos, lo habitual es que los iguales sean la misma cadena y se comparen
+     * por referencia, sin recorrer los caracteres.
      * </p>
      *
      * @param obj el objeto a comparar con esta persona.
@@ -71,7 +127,8 @@ public class Persona {
             return false;
         }
         Persona other = (Persona) obj;
-        return Objects.equals(this.apellidos, other.apellidos) && this.edad == other.edad && Objects.equals(this.nombre, other.nombre);
+        // Objects.equals compara primero las referencias, que coinciden en los textos compartidos
+        return this.hash == other.hash && this.edad == other.edad && Objects.equals(this.apellidos, other.apellidos) && Objects.equals(this.nombre, other.nombre);
     }
 
     /**
@@ -87,9 +144,7 @@ public class Persona {
      * @param edad      La edad de la persona.
      */
     public Persona(String nombre, String apellidos, int edad) {
-        this.nombre = nombre;
-        this.apellidos = apellidos;
-        this.edad = edad;
+        this(0, nombre, apellidos, edad);
     }
 
     /**
@@ -107,9 +162,27 @@ public class Persona {
      */
     public Persona(int idPersona, String nombre, String apellidos, int edad) {
         this.idPersona = idPersona;
-        this.nombre = nombre;
-        this.apellidos = apellidos;
+        this.nombre = PoolCadenas.canonica(nombre);
+        this.apellidos = PoolCadenas.canonica(apellidos);
         this.edad = edad;
+        this.hash = calcularHash(this.nombre, this.apellidos, edad);
+    }
+
+    /**
+     * Calcula el código hash de la clave de igualdad de una persona.
+     * Produce el mismo valor que {@code Objects.hash(apellidos, edad, nombre)} sin crear un array de argumentos.
+     *
+     * @param nombre    El nombre de la persona.
+     * @param apellidos Los apellidos de la persona.
+     * @param edad      La edad de la persona.
+     * @return el código hash de la persona.
+     */
+    private static int calcularHash(String nombre, String apellidos, int edad) {
+        int resultado = 1;
+        resultado = 31 * resultado + Objects.hashCode(apellidos);
+        resultado = 31 * resultado + edad;
+        resultado = 31 * resultado + Objects.hashCode(nombre);
+        return resultado;
     }
 
     /**
@@ -122,12 +195,13 @@ public class Persona {
     }
 
     /**
-     * Establece el identificador único de la persona.
+     * Devuelve una copia de la persona con otro identificador.
      *
      * @param idPersona El nuevo {@code idPersona} de la persona.
+     * @return una persona con el identificador indicado y los demás atributos sin cambios.
      */
-    public void setIdPersona(int idPersona) {
-        this.idPersona = idPersona;
+    public Persona conIdPersona(int idPersona) {
+        return idPersona == this.idPersona ? this : new Persona(idPersona, this.nombre, this.apellidos, this.edad);
     }
 
     /**
@@ -140,12 +214,23 @@ public class Persona {
     }
 
     /**
-     * Establece el nombre de la persona.
+     * Devuelve el nombre como propiedad de solo lectura, para enlazarlo con la vista.
+     * Como la persona es inmutable, la propiedad nunca cambia.
+     *
+     * @return la propiedad con el nombre.
+     */
+    public ReadOnlyStringProperty nombreProperty() {
+        return propiedades().nombre;
+    }
+
+    /**
+     * Devuelve una copia de la persona con otro nombre.
      *
      * @param nombre El nuevo nombre de la persona.
+     * @return una persona con el nombre indicado y los demás atributos sin cambios.
      */
-    public void setNombre(String nombre) {
-        this.nombre = nombre;
+    public Persona conNombre(String nombre) {
+        return new Persona(this.idPersona, nombre, this.apellidos, this.edad);
     }
 
     /**
@@ -158,12 +243,22 @@ public class Persona {
     }
 
     /**
-     * Establece los apellidos de la persona.
+     * Devuelve los apellidos como propiedad de solo lectura, para enlazarlos con la vista.
+     *
+     * @return la propiedad con los apellidos.
+     */
+    public ReadOnlyStringProperty apellidosProperty() {
+        return propiedades().apellidos;
+    }
+
+    /**
+     * Devuelve una copia de la persona con otros apellidos.
      *
      * @param apellidos Los nuevos apellidos de la persona.
+     * @return una persona con los apellidos indicados y los demás atributos sin cambios.
      */
-    public void setApellidos(String apellidos) {
-        this.apellidos = apellidos;
+    public Persona conApellidos(String apellidos) {
+        return new Persona(this.idPersona, this.nombre, apellidos, this.edad);
     }
 
     /**
@@ -176,12 +271,33 @@ public class Persona {
     }
 
     /**
-     * Establece la edad de la persona.
+     * Devuelve la edad como propiedad de solo lectura, para enlazarla con la vista.
+     *
+     * @return la propiedad con la edad.
+     */
+    public ReadOnlyIntegerProperty edadProperty() {
+        return propiedades().edad;
+    }
+
+    /**
+     * Devuelve una copia de la persona con otra edad.
      *
      * @param edad La nueva edad de la persona.
+     * @return una persona con la edad indicada y los demás atributos sin cambios.
      */
-    public void setEdad(int edad) {
-        this.edad = edad;
+    public Persona conEdad(int edad) {
+        return new Persona(this.idPersona, this.nombre, this.apellidos, edad);
     }
-}
 
+    /**
+     * Devuelve las propiedades de la persona, creándolas la primera vez.
+     *
+     * @return las propiedades de la persona.
+     */
+    private Propiedades propiedades() {
+        if (propiedades == null) {
+            propiedades = new Propiedades(this);
+        }
+        return propiedades;
+    }
+}
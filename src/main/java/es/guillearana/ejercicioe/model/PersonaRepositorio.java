@@ -0,0 +1,575 @@
+package es.guillearana.ejercicioe.model;
+
+import es.guillearana.ejercicioe.metricas.Metricas;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Repositorio en memoria de objetos {@link Persona}.
+ *
+ * <p>
+ * Mantiene la lista observable que se muestra en la tabla junto con dos índices hash:
+ * uno por la clave de igualdad de {@link Persona} (nombre, apellidos y edad) que guarda la
+ * posición de cada persona en la lista, y otro secundario por {@code idPersona}.
+ * Así la comprobación de duplicados, la búsqueda y el reemplazo se resuelven en O(1)
+ * en lugar de recorrer la lista con {@code contains} o {@code indexOf}.
+ * </p>
+ *
+ * <p>
+ * Los índices se actualizan escuchando los cambios de la propia lista, de modo que siguen
+ * siendo correctos aunque la lista se reordene desde la tabla (por ejemplo, al ordenar por una columna).
+ * Cuando se elimina o se inserta una persona en medio de la lista, las posiciones siguientes no se
+ * recalculan en ese momento: se marcan como pendientes. Mientras el desplazamiento acumulado sea pequeño,
+ * la posición real se busca en una ventana alrededor de la guardada; cuando crece demasiado, todas las
+ * posiciones pendientes se recalculan de una vez, de modo que ese coste se reparte entre muchas eliminaciones.
+ * Como {@link Persona} es inmutable, la clave de una persona indexada no puede cambiar.
+ * </p>
+ *
+ * <p>
+ * Para ordenar listas grandes sin bloquear la interfaz, el nuevo orden se calcula en otro hilo a partir de
+ * una {@link #instantanea()} y se prepara con {@link #prepararOrden}, que también construye allí el índice
+ * de posiciones. Después {@link #aplicarOrden} lo intercambia en el hilo de JavaFX de una sola vez,
+ * siempre que la lista no haya cambiado entretanto.
+ * </p>
+ */
+public class PersonaRepositorio {
+
+    /** Desplazamiento acumulado máximo con el que se busca en una ventana en lugar de recalcular posiciones. */
+    private static final int VENTANA_MAXIMA = 256;
+
+    /** Lista observable con las personas, en el orden en que se muestran. */
+    private final ListaPersonas personas;
+
+    /** Índice de posiciones en la lista, por la clave de igualdad de la persona. */
+    private Map<Persona, Integer> posiciones = new HashMap<>();
+
+    /** Índice secundario por identificador de persona. */
+    private final Map<Integer, Persona> porId = new HashMap<>();
+
+    /** Las posiciones guardadas por debajo de este valor son exactas; las demás están pendientes de recalcular. */
+    private int posicionesValidas;
+
+    /** Máximo desplazamiento posible de una posición pendiente respecto a la guardada. */
+    private int desplazamiento;
+
+    /** Último identificador asignado a una persona. */
+    private int ultimoId;
+
+    /** Generador de identificadores del almacén; {@code null} si se numeran a partir de {@link #ultimoId}. */
+    private IntSupplier generadorIds;
+
+    /** Número de cambios notificados por la lista, para detectar si un orden preparado ha quedado obsoleto. */
+    private long version;
+
+    /** Indica que se está aplicando un orden cuyo índice de posiciones ya viene calculado. */
+    private boolean aplicandoOrden;
+
+    /**
+     * Nuevo orden de la lista preparado fuera del hilo de JavaFX, junto con su índice de posiciones.
+     */
+    public static final class Orden {
+
+        /** Las personas en su nuevo orden. */
+        private final Persona[] ordenadas;
+
+        /** Para cada posición actual, la posición que pasa a ocupar esa persona. */
+        private final int[] permutacion;
+
+        /** Índice de posiciones correspondiente al nuevo orden. */
+        private final Map<Persona, Integer> posiciones;
+
+        /** Versión de la lista a partir de la que se calculó el orden. */
+        private final long version;
+
+        private Orden(Persona[] ordenadas, int[] permutacion, Map<Persona, Integer> posiciones, long version) {
+            this.ordenadas = ordenadas;
+            this.permutacion = permutacion;
+            this.posiciones = posiciones;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Persona junto a la posición que ocupa, o que ocupaba, en la lista.
+     *
+     * @param indice  la posición.
+     * @param persona la persona.
+     */
+    public record PersonaEnPosicion(int indice, Persona persona) {
+    }
+
+    /**
+     * Sustitución de una persona por otra en la misma posición.
+     *
+     * @param anterior la persona a sustituir.
+     * @param nueva    la persona que ocupa su lugar.
+     */
+    public record Reemplazo(Persona anterior, Persona nueva) {
+    }
+
+    /**
+     * Crea un repositorio vacío.
+     */
+    public PersonaRepositorio() {
+        this.personas = new ListaPersonas();
+        this.personas.addListener(this::actualizarIndices);
+    }
+
+    /**
+     * Establece de dónde salen los identificadores de las personas nuevas, por ejemplo de una secuencia
+     * de la base de datos. Sin generador se numeran a continuación del mayor identificador conocido.
+     *
+     * @param generadorIds el generador, o {@code null} para numerarlas en memoria.
+     */
+    public void setGeneradorIds(IntSupplier generadorIds) {
+        this.generadorIds = generadorIds;
+    }
+
+    /**
+     * Devuelve la lista observable de personas para enlazarla con la vista.
+     *
+     * @return la lista de personas gestionada por el repositorio.
+     */
+    public ObservableList<Persona> getPersonas() {
+        return personas;
+    }
+
+    /**
+     * Devuelve el número de personas almacenadas.
+     *
+     * @return el número de personas.
+     */
+    public int tamano() {
+        return personas.size();
+    }
+
+    /**
+     * Devuelve la versión actual de la lista, que cambia con cada modificación o reordenación.
+     *
+     * @return la versión de la lista.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Copia las personas en su orden actual, para poder ordenarlas en otro hilo.
+     *
+     * @return las personas de la lista.
+     */
+    public Persona[] instantanea() {
+        return personas.copiar();
+    }
+
+    /**
+     * Prepara un nuevo orden de la lista calculado a partir de una {@link #instantanea()}.
+     * No accede al estado del repositorio, por lo que se puede llamar desde cualquier hilo.
+     *
+     * @param ordenadas   las personas de la instantánea en su nuevo orden.
+     * @param permutacion para cada posición de la instantánea, la posición que pasa a ocupar esa persona.
+     * @param version     la {@link #version()} de la lista cuando se tomó la instantánea.
+     * @return el orden preparado para {@link #aplicarOrden}.
+     */
+    public static Orden prepararOrden(Persona[] ordenadas, int[] permutacion, long version) {
+        Map<Persona, Integer> posiciones = new HashMap<>(ordenadas.length * 4 / 3 + 1);
+        for (int i = 0; i < ordenadas.length; i++) {
+            posiciones.put(ordenadas[i], i);
+        }
+        return new Orden(ordenadas, permutacion, posiciones, version);
+    }
+
+    /**
+     * Aplica un orden preparado, notificando una única permutación.
+     *
+     * @param orden el orden a aplicar.
+     * @return {@code true} si se ha aplicado, {@code false} si la lista ha cambiado desde la instantánea.
+     */
+    public boolean aplicarOrden(Orden orden) {
+        if (orden.version != version) {
+            return false;
+        }
+        aplicandoOrden = true;
+        try {
+            personas.reordenar(orden.ordenadas, orden.permutacion);
+        } finally {
+            aplicandoOrden = false;
+        }
+        posiciones = orden.posiciones;
+        posicionesValidas = personas.size();
+        desplazamiento = 0;
+        return true;
+    }
+
+    /**
+     * Mueve la persona de una posición a otra, desplazando las que quedan entre medias.
+     *
+     * @param desde la posición actual de la persona.
+     * @param hasta la posición que ocupará.
+     */
+    public void mover(int desde, int hasta) {
+        personas.mover(desde, hasta);
+    }
+
+    /**
+     * Indica si ya existe una persona igual (mismo nombre, apellidos y edad).
+     *
+     * @param persona la persona a buscar.
+     * @return {@code true} si existe una persona igual en el repositorio.
+     */
+    public boolean contiene(Persona persona) {
+        long inicio = Metricas.inicio();
+        boolean contiene = persona != null && posiciones.containsKey(persona);
+        Metricas.registrar(Metricas.MODELO_DUPLICADO, inicio);
+        return contiene;
+    }
+
+    /**
+     * Devuelve la posición en la lista de una persona igual a la indicada.
+     *
+     * @param persona la persona a buscar.
+     * @return la posición de la persona, o {@code -1} si no existe.
+     */
+    public int indiceDe(Persona persona) {
+        long inicio = Metricas.inicio();
+        int indice = buscarPosicion(persona);
+        Metricas.registrar(Metricas.MODELO_POSICION, inicio);
+        return indice;
+    }
+
+    /**
+     * Busca la posición de una persona, recalculando las posiciones pendientes si hace falta.
+     *
+     * @param persona la persona a buscar.
+     * @return la posición de la persona, o {@code -1} si no existe.
+     */
+    private int buscarPosicion(Persona persona) {
+        Integer indice = persona == null ? null : posiciones.get(persona);
+        if (indice == null) {
+            return -1;
+        }
+        if (indice >= posicionesValidas) {
+            int real = buscarEnVentana(persona, indice);
+            if (real >= 0) {
+                return real;
+            }
+            reindexar(posicionesValidas, personas.size());
+            posicionesValidas = personas.size();
+            desplazamiento = 0;
+            indice = posiciones.get(persona);
+        }
+        return indice;
+    }
+
+    /**
+     * Busca una persona por su identificador.
+     *
+     * @param idPersona el identificador de la persona.
+     * @return la persona con ese identificador, o {@code null} si no existe.
+     */
+    public Persona buscarPorId(int idPersona) {
+        return porId.get(idPersona);
+    }
+
+    /**
+     * Agrega una persona al final de la lista si no existe ya otra igual.
+     * Si la persona no tiene identificador se le asigna uno nuevo.
+     *
+     * @param persona la persona a agregar.
+     * @return {@code true} si se ha agregado, {@code false} si ya existía.
+     */
+    public boolean agregar(Persona persona) {
+        if (persona == null || contiene(persona)) {
+            return false;
+        }
+        personas.add(asignarId(persona));
+        return true;
+    }
+
+    /**
+     * Inserta una persona en una posición de la lista si no existe ya otra igual.
+     * Si la posición es mayor que el tamaño de la lista, la persona se agrega al final.
+     *
+     * @param indice  la posición que ocupará la persona.
+     * @param persona la persona a insertar.
+     * @return {@code true} si se ha insertado, {@code false} si ya existía.
+     */
+    public boolean insertar(int indice, Persona persona) {
+        if (persona == null || contiene(persona)) {
+            return false;
+        }
+        personas.add(Math.max(0, Math.min(indice, personas.size())), asignarId(persona));
+        return true;
+    }
+
+    /**
+     * Agrega de una sola vez todas las personas que no estén ya en el repositorio,
+     * descartando también los duplicados dentro de la propia colección.
+     * La lista notifica un único cambio para todo el lote.
+     *
+     * @param nuevas las personas a agregar.
+     * @return el número de personas agregadas.
+     */
+    public int agregarTodas(Collection<Persona> nuevas) {
+        List<Persona> lote = new ArrayList<>(nuevas.size());
+        Map<Persona, Boolean> vistas = new HashMap<>();
+        for (Persona persona : nuevas) {
+            if (persona != null && !contiene(persona) && vistas.putIfAbsent(persona, Boolean.TRUE) == null) {
+                lote.add(asignarId(persona));
+            }
+        }
+        personas.addAll(lote);
+        return lote.size();
+    }
+
+    /**
+     * Reemplaza una persona por otra en la misma posición de la lista.
+     *
+     * @param anterior la persona a reemplazar.
+     * @param nueva    la persona que ocupa su lugar.
+     * @return {@code true} si se ha reemplazado, {@code false} si la anterior no existe
+     * o la nueva coincide con otra persona distinta ya almacenada.
+     */
+    public boolean reemplazar(Persona anterior, Persona nueva) {
+        int indice = indiceDe(anterior);
+        if (indice < 0 || nueva == null) {
+            return false;
+        }
+        int indiceNueva = indiceDe(nueva);
+        if (indiceNueva >= 0 && indiceNueva != indice) {
+            return false;
+        }
+        if (nueva.getIdPersona() == 0) {
+            nueva = nueva.conIdPersona(personas.get(indice).getIdPersona());
+        }
+        personas.set(indice, nueva);
+        return true;
+    }
+
+    /**
+     * Elimina una persona del repositorio.
+     *
+     * @param persona la persona a eliminar.
+     * @return {@code true} si se ha eliminado, {@code false} si no existía.
+     */
+    public boolean eliminar(Persona persona) {
+        int indice = indiceDe(persona);
+        if (indice < 0) {
+            return false;
+        }
+        personas.remove(indice);
+        return true;
+    }
+
+    /**
+     * Elimina de una sola vez todas las personas indicadas que estén en el repositorio.
+     * La lista se recorre una única vez y notifica un único cambio para todo el lote.
+     *
+     * @param eliminar las personas a eliminar.
+     * @return las personas eliminadas con la posición que ocupaban, en orden de posición.
+     */
+    public List<PersonaEnPosicion> eliminarTodas(Collection<Persona> eliminar) {
+        int[] indices = eliminar.stream().mapToInt(this::indiceDe).filter(indice -> indice >= 0)
+                .sorted().distinct().toArray();
+        List<PersonaEnPosicion> eliminadas = new ArrayList<>(indices.length);
+        for (int indice : indices) {
+            eliminadas.add(new PersonaEnPosicion(indice, personas.get(indice)));
+        }
+        personas.eliminarPosiciones(indices);
+        return eliminadas;
+    }
+
+    /**
+     * Inserta de una sola vez varias personas en las posiciones indicadas, descartando las que ya existan.
+     * Es la inversa de {@link #eliminarTodas}: insertar lo que devolvió restaura la lista anterior.
+     * La lista notifica un único cambio para todo el lote.
+     *
+     * @param insertar las personas a insertar con su posición final, en orden de posición.
+     * @return las personas insertadas.
+     */
+    public List<Persona> insertarTodas(List<PersonaEnPosicion> insertar) {
+        List<PersonaEnPosicion> lote = new ArrayList<>(insertar.size());
+        Map<Persona, Boolean> vistas = new HashMap<>();
+        for (PersonaEnPosicion entrada : insertar) {
+            Persona persona = entrada.persona();
+            if (persona != null && !contiene(persona) && vistas.putIfAbsent(persona, Boolean.TRUE) == null) {
+                lote.add(entrada);
+            }
+        }
+        int[] indices = new int[lote.size()];
+        Persona[] insertadas = new Persona[lote.size()];
+        int anterior = -1;
+        for (int i = 0; i < indices.length; i++) {
+            // Si se ha descartado alguna, las posiciones siguientes se ajustan para seguir siendo crecientes
+            anterior = Math.max(anterior + 1, Math.min(lote.get(i).indice(), personas.size() + i));
+            indices[i] = anterior;
+            insertadas[i] = asignarId(lote.get(i).persona());
+        }
+        personas.insertarPosiciones(indices, insertadas);
+        return Arrays.asList(insertadas);
+    }
+
+    /**
+     * Aplica de una sola vez varios reemplazos, cada uno en la posición de la persona anterior.
+     * Se descartan los reemplazos cuya persona anterior no existe, los que darían lugar a una persona
+     * igual a otra ya almacenada y los que repiten persona dentro del propio lote.
+     * La lista notifica un único cambio para todo el lote.
+     *
+     * @param reemplazos los reemplazos a aplicar.
+     * @return los reemplazos aplicados, con las personas tal y como estaban y como han quedado en la lista.
+     */
+    public List<Reemplazo> reemplazarTodas(List<Reemplazo> reemplazos) {
+        List<Reemplazo> aplicados = new ArrayList<>(reemplazos.size());
+        int[] indices = new int[reemplazos.size()];
+        Persona[] nuevas = new Persona[reemplazos.size()];
+        Map<Persona, Boolean> vistas = new HashMap<>();
+        Map<Integer, Boolean> ocupadas = new HashMap<>();
+        for (Reemplazo reemplazo : reemplazos) {
+            int indice = indiceDe(reemplazo.anterior());
+            Persona nueva = reemplazo.nueva();
+            if (indice < 0 || nueva == null || ocupadas.putIfAbsent(indice, Boolean.TRUE) != null) {
+                continue;
+            }
+            int indiceNueva = indiceDe(nueva);
+            if (indiceNueva >= 0 && indiceNueva != indice || vistas.putIfAbsent(nueva, Boolean.TRUE) != null) {
+                ocupadas.remove(indice);
+                continue;
+            }
+            Persona original = personas.get(indice);
+            if (nueva.getIdPersona() == 0) {
+                nueva = nueva.conIdPersona(original.getIdPersona());
+            }
+            indices[aplicados.size()] = indice;
+            nuevas[aplicados.size()] = nueva;
+            aplicados.add(new Reemplazo(original, nueva));
+        }
+        personas.reemplazarPosiciones(Arrays.copyOf(indices, aplicados.size()), Arrays.copyOf(nuevas, aplicados.size()));
+        return aplicados;
+    }
+
+    /**
+     * Asigna un identificador nuevo a la persona si todavía no tiene uno.
+     *
+     * @param persona la persona a identificar.
+     * @return la persona con identificador, que puede ser una copia de la original.
+     */
+    private Persona asignarId(Persona persona) {
+        if (persona.getIdPersona() == 0) {
+            return persona.conIdPersona(generadorIds != null ? generadorIds.getAsInt() : ++ultimoId);
+        }
+        ultimoId = Math.max(ultimoId, persona.getIdPersona());
+        return persona;
+    }
+
+    /**
+     * Mantiene los índices sincronizados con los cambios de la lista.
+     *
+     * <p>
+     * Las personas eliminadas salen de los índices y las agregadas entran con su posición actual.
+     * Los reemplazos y las reordenaciones se recalculan en el acto porque no desplazan al resto;
+     * si el tamaño cambia en medio de la lista, las posiciones desde ese punto quedan pendientes.
+     * Los órdenes aplicados con {@link #aplicarOrden} traen su índice ya calculado y no se recorren.
+     * </p>
+     *
+     * @param cambio el cambio notificado por la lista.
+     */
+    private void actualizarIndices(ListChangeListener.Change<? extends Persona> cambio) {
+        version++;
+        if (aplicandoOrden) {
+            return;
+        }
+        // Primero se descartan todas las eliminadas, por si alguna es igual a otra agregada en el mismo cambio
+        while (cambio.next()) {
+            for (Persona eliminada : cambio.getRemoved()) {
+                posiciones.remove(eliminada);
+                porId.remove(eliminada.getIdPersona(), eliminada);
+            }
+        }
+        cambio.reset();
+        while (cambio.next()) {
+            for (Persona agregada : cambio.getAddedSubList()) {
+                porId.put(agregada.getIdPersona(), agregada);
+            }
+            boolean alFinal = cambio.getRemovedSize() == 0 && cambio.getTo() == personas.size();
+            if (cambio.wasPermutated()) {
+                reindexarPermutacion(cambio);
+            } else if (cambio.getAddedSize() == cambio.getRemovedSize()) {
+                reindexar(cambio.getFrom(), cambio.getTo());
+            } else if (alFinal) {
+                // Agregar al final no desplaza a nadie
+                reindexar(cambio.getFrom(), cambio.getTo());
+                if (posicionesValidas == cambio.getFrom()) {
+                    posicionesValidas = cambio.getTo();
+                }
+            } else {
+                // Las agregadas se indexan ya para que contiene() las encuentre; su posición se corregirá después
+                reindexar(cambio.getFrom(), cambio.getFrom() + cambio.getAddedSize());
+                posicionesValidas = Math.min(posicionesValidas, cambio.getFrom());
+                desplazamiento += Math.max(cambio.getAddedSize(), cambio.getRemovedSize());
+            }
+        }
+    }
+
+    /**
+     * Actualiza las posiciones tras una permutación. Las personas que solo se desplazan un puesto,
+     * como las que quedan entre medias al mover una sola persona, se dejan pendientes en lugar de recalcularse.
+     *
+     * @param cambio la permutación notificada por la lista.
+     */
+    private void reindexarPermutacion(ListChangeListener.Change<? extends Persona> cambio) {
+        boolean pendientes = false;
+        for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+            int nueva = cambio.getPermutation(i);
+            if (Math.abs(nueva - i) > 1) {
+                posiciones.put(personas.get(nueva), nueva);
+            } else if (nueva != i) {
+                pendientes = true;
+            }
+        }
+        if (pendientes) {
+            posicionesValidas = Math.min(posicionesValidas, cambio.getFrom());
+            desplazamiento++;
+        }
+    }
+
+    /**
+     * Busca la posición real de una persona cuya posición guardada está pendiente de recalcular,
+     * mirando solo las posiciones a las que ha podido desplazarse.
+     *
+     * @param persona   la persona a buscar.
+     * @param guardada  la posición guardada en el índice.
+     * @return la posición real, o {@code -1} si el desplazamiento es demasiado grande para buscar en ventana.
+     */
+    private int buscarEnVentana(Persona persona, int guardada) {
+        if (desplazamiento > VENTANA_MAXIMA) {
+            return -1;
+        }
+        int desde = Math.max(posicionesValidas, guardada - desplazamiento);
+        int hasta = Math.min(personas.size() - 1, guardada + desplazamiento);
+        for (int i = desde; i <= hasta; i++) {
+            if (personas.get(i).equals(persona)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Recalcula las posiciones de las personas en el rango indicado.
+     *
+     * @param desde primera posición (incluida).
+     * @param hasta última posición (excluida).
+     */
+    private void reindexar(int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            posiciones.put(personas.get(i), i);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package es.guillearana.ejercicioe.model;
+
+/**
+ * Tabla de cadenas canónicas para que los nombres y apellidos repetidos compartan una sola instancia.
+ *
+ * <p>
+ * Los textos llegan de los campos de la interfaz, de los ficheros importados o del almacén como instancias
+ * nuevas, de modo que cada "García" ocuparía su propio {@link String}. {@link Persona} pasa por aquí sus textos
+ * al construirse y se queda con la instancia que ya había, si la hay. Además de ahorrar memoria, las personas
+ * con el mismo texto comparten la referencia y {@link Persona#equals(Object)} las resuelve sin comparar caracteres.
+ * </p>
+ *
+ * <p>
+ * La tabla tiene un tamaño fijo y se consulta sin cerrojos: cada cadena solo puede estar en las dos posiciones
+ * de su grupo, elegido por su código hash. Al guardar una nueva se desplaza la más reciente del grupo a la
+ * segunda posición y se descarta la que estaba allí, así que los textos frecuentes se quedan y los raros van
+ * saliendo. Dos hilos que escriben a la vez en un grupo pueden perder una entrada; solo se deja de compartir
+ * esa cadena, porque {@code String} es inmutable y cualquier instancia vale. Una cadena descartada sigue viva
+ * mientras la use alguna persona, y la tabla no retiene más de su capacidad.
+ * </p>
+ *
+ * <p>
+ * El número de entradas se configura con la propiedad del sistema {@code ejercicioe.cadenas.capacidad}
+ * (131.072 por defecto; se redondea a potencia de dos). Con 0 no se comparte ninguna cadena.
+ * </p>
+ */
+public final class PoolCadenas {
+
+    /** Número de entradas de la tabla. Propiedad del sistema {@code ejercicioe.cadenas.capacidad}. */
+    private static final int CAPACIDAD = Integer.getInteger("ejercicioe.cadenas.capacidad", 1 << 17);
+
+    /** Cadenas canónicas, por grupos de dos; {@code null} si está desactivada. */
+    private static final String[] TABLA = CAPACIDAD <= 0
+            ? null
+            : new String[Integer.highestOneBit(Math.max(2, Math.min(CAPACIDAD, 1 << 30)) * 2 - 1)];
+
+    /** Máscara que lleva un código hash a la primera posición de su grupo. */
+    private static final int MASCARA = TABLA == null ? 0 : (TABLA.length - 1) & ~1;
+
+    /**
+     * Constructor privado: la clase solo contiene métodos estáticos.
+     */
+    private PoolCadenas() {
+    }
+
+    /**
+     * Devuelve la instancia compartida de una cadena, guardando esta si no había ninguna.
+     *
+     * @param cadena la cadena, que puede ser {@code null}.
+     * @return una cadena igual a la indicada, o {@code null} si lo era.
+     */
+    public static String canonica(String cadena) {
+        String[] tabla = TABLA;
+        if (tabla == null || cadena == null) {
+            return cadena;
+        }
+        int hash = cadena.hashCode();
+        int posicion = (hash ^ (hash >>> 16)) << 1 & MASCARA;
+        String primera = tabla[posicion];
+        if (cadena.equals(primera)) {
+            return primera;
+        }
+        String segunda = tabla[posicion + 1];
+        if (cadena.equals(segunda)) {
+            return segunda;
+        }
+        tabla[posicion + 1] = primera;
+        tabla[posicion] = cadena;
+        return cadena;
+    }
+
+    /**
+     * Indica si la tabla está activada.
+     *
+     * @return {@code true} si las cadenas se comparten.
+     */
+    public static boolean activada() {
+        return TABLA != null;
+    }
+}
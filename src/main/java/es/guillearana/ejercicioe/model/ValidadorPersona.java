@@ -0,0 +1,320 @@
+package es.guillearana.ejercicioe.model;
+
+/**
+ * Reglas de validación de los datos de una {@link Persona}.
+ *
+ * <p>
+ * Reúne en un único sitio las comprobaciones que antes hacía la ventana modal, para que
+ * la entrada manual, la importación masiva y el servidor HTTP apliquen exactamente las mismas reglas:
+ * el nombre y los apellidos son obligatorios (no basta con espacios), tienen una longitud máxima y solo admiten letras, cifras,
+ * espacios y la puntuación habitual en nombres, y la edad debe ser un número entre 0 y 120.
+ * </p>
+ *
+ * <p>
+ * Las comprobaciones de {@code comprobar} no reservan memoria ni lanzan excepciones: devuelven un
+ * conjunto de {@link ErrorValidacion} codificado como bits de un {@code int}, 0 si los datos son válidos, y la edad
+ * se lee carácter a carácter con {@link #leerEdad(CharSequence)} en lugar de con {@code Integer.parseInt}.
+ * Los mensajes solo se construyen con {@link #mensajes(int)} cuando hay que mostrarlos, de modo que validar
+ * millones de registros importados con datos sucios cuesta lo mismo que validar registros correctos
+ * ({@code ValidacionBenchmark}).
+ * </p>
+ */
+public final class ValidadorPersona {
+
+    /** Edad mínima admitida. */
+    public static final int EDAD_MINIMA = 0;
+
+    /** Edad máxima admitida. */
+    public static final int EDAD_MAXIMA = 120;
+
+    /** Número máximo de caracteres del nombre. */
+    public static final int LONGITUD_MAXIMA_NOMBRE = 100;
+
+    /** Número máximo de caracteres de los apellidos. */
+    public static final int LONGITUD_MAXIMA_APELLIDOS = 150;
+
+    /** Valor de {@link #leerEdad(CharSequence)} cuando el texto no es un número. */
+    public static final int EDAD_NO_NUMERICA = Integer.MIN_VALUE;
+
+    /** Categorías Unicode admitidas en nombres y apellidos, como bits de {@link Character#getType(int)}. */
+    private static final long CATEGORIAS_PERMITIDAS = 1L << Character.UPPERCASE_LETTER
+            | 1L << Character.LOWERCASE_LETTER
+            | 1L << Character.TITLECASE_LETTER
+            | 1L << Character.MODIFIER_LETTER
+            | 1L << Character.OTHER_LETTER
+            | 1L << Character.NON_SPACING_MARK
+            | 1L << Character.COMBINING_SPACING_MARK
+            | 1L << Character.DECIMAL_DIGIT_NUMBER
+            | 1L << Character.SPACE_SEPARATOR;
+
+    /** Signos de puntuación admitidos además de las categorías permitidas. */
+    private static final String PUNTUACION_PERMITIDA = "'’-.,()";
+
+    /** Regla de caracteres precalculada para los 256 primeros, que son casi todos los de los nombres. */
+    private static final boolean[] PERMITIDOS_LATIN1 = new boolean[256];
+
+    static {
+        for (char c = 0; c < PERMITIDOS_LATIN1.length; c++) {
+            PERMITIDOS_LATIN1[c] = permitido(c);
+        }
+    }
+
+    /**
+     * Errores de validación, cada uno con su bit en el código devuelto por los métodos {@code comprobar}.
+     */
+    public enum ErrorValidacion {
+        /** Nombre vacío. */
+        NOMBRE_VACIO("Debe ingresar un nombre."),
+        /** Nombre demasiado largo. */
+        NOMBRE_LARGO("El nombre no puede tener más de " + LONGITUD_MAXIMA_NOMBRE + " caracteres."),
+        /** Nombre con caracteres no admitidos. */
+        NOMBRE_CARACTERES("El nombre solo puede contener letras, cifras, espacios y " + PUNTUACION_PERMITIDA),
+        /** Apellidos vacíos. */
+        APELLIDOS_VACIOS("Debe ingresar apellidos."),
+        /** Apellidos demasiado largos. */
+        APELLIDOS_LARGOS("Los apellidos no pueden tener más de " + LONGITUD_MAXIMA_APELLIDOS + " caracteres."),
+        /** Apellidos con caracteres no admitidos. */
+        APELLIDOS_CARACTERES("Los apellidos solo pueden contener letras, cifras, espacios y " + PUNTUACION_PERMITIDA),
+        /** Edad vacía. */
+        EDAD_VACIA("Debe ingresar una edad."),
+        /** Edad que no es un número. */
+        EDAD_NO_NUMERO("La edad debe ser un número."),
+        /** Edad fuera del rango admitido. */
+        EDAD_FUERA_DE_RANGO("La edad debe estar entre " + EDAD_MINIMA + " y " + EDAD_MAXIMA + " años.");
+
+        /** Bit del error en el código. */
+        private final int bit = 1 << ordinal();
+
+        /** Mensaje para el usuario. */
+        private final String mensaje;
+
+        ErrorValidacion(String mensaje) {
+            this.mensaje = mensaje;
+        }
+
+        /**
+         * Devuelve el bit de este error en el código.
+         *
+         * @return el bit.
+         */
+        public int bit() {
+            return bit;
+        }
+
+        /**
+         * Devuelve el mensaje para el usuario.
+         *
+         * @return el mensaje, sin salto de línea final.
+         */
+        public String mensaje() {
+            return mensaje;
+        }
+
+        /**
+         * Indica si este error está en un código.
+         *
+         * @param errores el código.
+         * @return {@code true} si está.
+         */
+        public boolean en(int errores) {
+            return (errores & bit) != 0;
+        }
+    }
+
+    /**
+     * Constructor privado: la clase solo contiene métodos estáticos.
+     */
+    private ValidadorPersona() {
+    }
+
+    /**
+     * Comprueba los datos de una persona tal y como se introducen en texto.
+     *
+     * @param nombre    el nombre de la persona.
+     * @param apellidos los apellidos de la persona.
+     * @param edad      la edad de la persona, como texto.
+     * @return los errores encontrados como bits de {@link ErrorValidacion}; 0 si no hay errores.
+     */
+    public static int comprobar(CharSequence nombre, CharSequence apellidos, CharSequence edad) {
+        return comprobarNombre(nombre) | comprobarApellidos(apellidos) | comprobarEdad(edad);
+    }
+
+    /**
+     * Comprueba el nombre de una persona.
+     *
+     * @param nombre el nombre.
+     * @return los errores encontrados como bits de {@link ErrorValidacion}; 0 si es válido.
+     */
+    public static int comprobarNombre(CharSequence nombre) {
+        return comprobarTexto(nombre, LONGITUD_MAXIMA_NOMBRE,
+                ErrorValidacion.NOMBRE_VACIO, ErrorValidacion.NOMBRE_LARGO, ErrorValidacion.NOMBRE_CARACTERES);
+    }
+
+    /**
+     * Comprueba los apellidos de una persona.
+     *
+     * @param apellidos los apellidos.
+     * @return los errores encontrados como bits de {@link ErrorValidacion}; 0 si son válidos.
+     */
+    public static int comprobarApellidos(CharSequence apellidos) {
+        return comprobarTexto(apellidos, LONGITUD_MAXIMA_APELLIDOS,
+                ErrorValidacion.APELLIDOS_VACIOS, ErrorValidacion.APELLIDOS_LARGOS, ErrorValidacion.APELLIDOS_CARACTERES);
+    }
+
+    /**
+     * Comprueba la edad de una persona tal y como se introduce en texto.
+     *
+     * @param edad la edad, como texto.
+     * @return los errores encontrados como bits de {@link ErrorValidacion}; 0 si es válida.
+     */
+    public static int comprobarEdad(CharSequence edad) {
+        if (edad == null || edad.isEmpty()) {
+            return ErrorValidacion.EDAD_VACIA.bit;
+        }
+        int valor = leerEdad(edad);
+        if (valor == EDAD_NO_NUMERICA) {
+            return ErrorValidacion.EDAD_NO_NUMERO.bit;
+        }
+        return valor < EDAD_MINIMA || valor > EDAD_MAXIMA ? ErrorValidacion.EDAD_FUERA_DE_RANGO.bit : 0;
+    }
+
+    /**
+     * Lee una edad escrita en decimal, con signo opcional, sin lanzar excepciones. Acepta lo mismo que
+     * {@code Integer.parseInt} con cifras ASCII; los valores que no caben en un {@code int} se saturan,
+     * de modo que se rechazan por estar fuera del rango y no por no ser un número.
+     *
+     * @param texto el texto.
+     * @return la edad, o {@link #EDAD_NO_NUMERICA} si el texto es nulo, está vacío o no es un número.
+     */
+    public static int leerEdad(CharSequence texto) {
+        if (texto == null) {
+            return EDAD_NO_NUMERICA;
+        }
+        int longitud = texto.length();
+        int i = 0;
+        boolean negativo = false;
+        if (longitud > 0 && (texto.charAt(0) == '-' || texto.charAt(0) == '+')) {
+            negativo = texto.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == longitud) {
+            return EDAD_NO_NUMERICA;
+        }
+        long valor = 0;
+        for (; i < longitud; i++) {
+            int cifra = texto.charAt(i) - '0';
+            if (cifra < 0 || cifra > 9) {
+                return EDAD_NO_NUMERICA;
+            }
+            valor = Math.min(valor * 10 + cifra, Integer.MAX_VALUE);
+        }
+        return (int) (negativo ? -valor : valor);
+    }
+
+    /**
+     * Construye los mensajes de unos errores, en el orden de {@link ErrorValidacion}.
+     *
+     * @param errores los errores como bits de {@link ErrorValidacion}.
+     * @return un mensaje por línea, cada uno terminado en salto de línea; una cadena vacía si no hay errores.
+     */
+    public static String mensajes(int errores) {
+        if (errores == 0) {
+            return "";
+        }
+        StringBuilder texto = new StringBuilder();
+        for (ErrorValidacion error : ErrorValidacion.values()) {
+            if (error.en(errores)) {
+                texto.append(error.mensaje).append('\n');
+            }
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Valida los datos de una persona tal y como se introducen en texto.
+     *
+     * @param nombre    el nombre de la persona.
+     * @param apellidos los apellidos de la persona.
+     * @param edad      la edad de la persona, como texto.
+     * @return un mensaje con los errores encontrados, uno por línea; una cadena vacía si no hay errores.
+     */
+    public static String validar(String nombre, String apellidos, String edad) {
+        return mensajes(comprobar(nombre, apellidos, edad));
+    }
+
+    /**
+     * Valida el nombre de una persona.
+     *
+     * @param nombre el nombre.
+     * @return el mensaje de error terminado en salto de línea, o una cadena vacía si es válido.
+     */
+    public static String validarNombre(String nombre) {
+        return mensajes(comprobarNombre(nombre));
+    }
+
+    /**
+     * Valida los apellidos de una persona.
+     *
+     * @param apellidos los apellidos.
+     * @return el mensaje de error terminado en salto de línea, o una cadena vacía si son válidos.
+     */
+    public static String validarApellidos(String apellidos) {
+        return mensajes(comprobarApellidos(apellidos));
+    }
+
+    /**
+     * Valida la edad de una persona tal y como se introduce en texto.
+     *
+     * @param edad la edad, como texto.
+     * @return el mensaje de error terminado en salto de línea, o una cadena vacía si es válida.
+     */
+    public static String validarEdad(String edad) {
+        return mensajes(comprobarEdad(edad));
+    }
+
+    /**
+     * Comprueba un texto obligatorio con longitud máxima y caracteres admitidos.
+     *
+     * @param texto      el texto.
+     * @param maximo     el número máximo de caracteres.
+     * @param vacio      el error si está vacío o solo tiene espacios.
+     * @param largo      el error si supera el máximo.
+     * @param caracteres el error si contiene caracteres no admitidos.
+     * @return los errores encontrados como bits de {@link ErrorValidacion}; 0 si es válido.
+     */
+    private static int comprobarTexto(CharSequence texto, int maximo, ErrorValidacion vacio, ErrorValidacion largo, ErrorValidacion caracteres) {
+        if (texto == null || texto.isEmpty()) {
+            return vacio.bit;
+        }
+        int errores = texto.length() > maximo ? largo.bit : 0;
+        boolean soloEspacios = true;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            soloEspacios &= Character.isSpaceChar(c);
+            if (c < PERMITIDOS_LATIN1.length) {
+                if (!PERMITIDOS_LATIN1[c]) {
+                    return errores | caracteres.bit;
+                }
+                continue;
+            }
+            int punto = Character.codePointAt(texto, i);
+            if (punto > Character.MAX_VALUE) {
+                i++;
+            }
+            if (!permitido(punto)) {
+                return errores | caracteres.bit;
+            }
+        }
+        return soloEspacios ? vacio.bit : errores;
+    }
+
+    /**
+     * Indica si un carácter está admitido en nombres y apellidos.
+     *
+     * @param punto el punto de código del carácter.
+     * @return {@code true} si pertenece a una de las categorías permitidas o es uno de los signos admitidos.
+     */
+    private static boolean permitido(int punto) {
+        return (CATEGORIAS_PERMITIDAS & 1L << Character.getType(punto)) != 0 || PUNTUACION_PERMITIDA.indexOf(punto) >= 0;
+    }
+}
@@ -0,0 +1,65 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import es.guillearana.ejercicioe.model.FuentePaginada;
+import es.guillearana.ejercicioe.model.Persona;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.IntSupplier;
+
+/**
+ * Almacén donde se guardan las personas entre ejecuciones: el fichero binario de {@link AlmacenPersonas}
+ * o la base de datos embebida de {@link BaseDatosPersonas}.
+ *
+ * <p>
+ * Se puede cargar entero, leer por páginas para mostrarlo con una {@link es.guillearana.ejercicioe.model.ListaPaginada}
+ * y recibir los cambios de la lista a través de un {@link EscritorDiferido}.
+ * </p>
+ *
+ * <p>
+ * Un almacén tiene un solo propietario: la aplicación de escritorio o el servidor HTTP
+ * ({@code es.guillearana.ejercicioe.servicio.ServidorPersonas}), nunca los dos a la vez. La base de datos
+ * embebida rechaza una segunda apertura del mismo fichero; el fichero binario no lo comprueba.
+ * </p>
+ */
+public interface AlmacenPersistente extends FuentePaginada, Closeable {
+
+    /**
+     * Lee todas las personas almacenadas, ordenadas por identificador.
+     *
+     * @return las personas almacenadas.
+     * @throws IOException si no se pueden leer.
+     */
+    Persona[] cargar() throws IOException;
+
+    /**
+     * Crea un escritor que guarda en segundo plano, en este almacén, los cambios de una lista.
+     * Mientras el escritor esté abierto, solo él escribe en el almacén.
+     *
+     * @return el escritor, ya arrancado y sin vincular a ninguna lista.
+     */
+    EscritorDiferido crearEscritor();
+
+    /**
+     * Devuelve el generador de identificadores para las personas nuevas, si el almacén los asigna.
+     *
+     * @return el generador, o {@code null} si los asigna el repositorio en memoria.
+     */
+    default IntSupplier generadorIds() {
+        return null;
+    }
+
+    /**
+     * Abre el almacén configurado con la propiedad del sistema {@code ejercicioe.almacen}: {@code fichero}
+     * (por defecto) para el {@link AlmacenPersonas} o {@code bd} para la base de datos embebida de
+     * {@link BaseDatosPersonas}, cada uno en su ubicación por defecto.
+     *
+     * @return el almacén abierto.
+     * @throws IOException si no se puede abrir.
+     */
+    static AlmacenPersistente abrirPorDefecto() throws IOException {
+        return "bd".equals(System.getProperty("ejercicioe.almacen", "fichero"))
+                ? new BaseDatosPersonas(BaseDatosPersonas.urlPorDefecto())
+                : new AlmacenPersonas(AlmacenPersonas.rutaPorDefecto());
+    }
+}
@@ -0,0 +1,560 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import es.guillearana.ejercicioe.model.FuentePaginada;
+import es.guillearana.ejercicioe.model.Persona;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Almacén persistente de personas en un fichero binario compacto.
+ *
+ * <p>
+ * El fichero es un registro de operaciones (alta, modificación y baja) en el que cada entrada
+ * va precedida de su longitud. Los cambios de la lista se añaden siempre al final, sin reescribir
+ * el fichero; cuando las entradas obsoletas superan a las vigentes se compacta copiando solo los
+ * registros vivos a un fichero nuevo que sustituye al anterior.
+ * </p>
+ *
+ * <p>
+ * La lectura se hace a través de un {@link MappedByteBuffer}: al abrir el almacén solo se recorren
+ * las cabeceras de los registros (longitud, tipo e identificador) para saber qué registro vigente
+ * corresponde a cada {@code idPersona}. Las personas se decodifican directamente del fichero mapeado,
+ * de modo que el arranque depende sobre todo de la carga de páginas y no del análisis de cada objeto.
+ * </p>
+ *
+ * <p>
+ * Formato de cada registro:
+ * </p>
+ * <pre>
+ * int longitud | byte tipo | int idPersona | [byte edad | short n | n bytes nombre | short m | m bytes apellidos]
+ * </pre>
+ * <p>
+ * Los datos entre corchetes solo existen en las altas y modificaciones. Los textos van en UTF-8.
+ * </p>
+ *
+ * <p>
+ * Como {@link es.guillearana.ejercicioe.model.FuentePaginada}, el almacén permite leer las personas por posición (en orden de
+ * identificador) sin cargarlas todas, para mostrarlas con una {@link es.guillearana.ejercicioe.model.ListaPaginada}.
+ * </p>
+ *
+ * <p>
+ * Los cambios de la lista de personas no se escriben desde el hilo de JavaFX: los recoge un
+ * {@link EscritorDiferido}, que los guarda por lotes desde su propio hilo con {@link #guardarLote(Collection)}.
+ * Los métodos públicos están sincronizados, de modo que mientras el escritor guarda lotes otro hilo puede
+ * leer el almacén por páginas; cada lectura ve el almacén entre dos lotes. Para recorrerlo entero mientras se
+ * siguen guardando lotes, como hace la exportación, se lee de una {@link #instantanea()}.
+ * </p>
+ */
+public class AlmacenPersonas implements AlmacenPersistente {
+
+    /** Marca al inicio del fichero ("PERS"). */
+    private static final int MAGIA = 0x50455253;
+
+    /** Versión del formato. */
+    private static final int VERSION = 1;
+
+    /** Tamaño de la cabecera del fichero. */
+    private static final int CABECERA = 8;
+
+    /** Tipo de registro: alta de una persona. */
+    static final byte ALTA = 1;
+
+    /** Tipo de registro: modificación de una persona. */
+    static final byte MODIFICACION = 2;
+
+    /** Tipo de registro: baja de una persona. */
+    static final byte BAJA = 3;
+
+    /** Número mínimo de registros para plantearse compactar el fichero. */
+    private static final int MINIMO_COMPACTAR = 10_000;
+
+    /** Tamaño del buffer de escritura. */
+    private static final int TAMANO_BUFFER = 1 << 20;
+
+    /** Ruta del fichero de datos. */
+    private final Path ruta;
+
+    /** Canal abierto sobre el fichero de datos. */
+    private FileChannel canal;
+
+    /** Vista mapeada del fichero; puede no incluir los últimos registros añadidos. */
+    private MappedByteBuffer mapa;
+
+    /** Tamaño actual del fichero, donde se añade el siguiente registro. */
+    private long fin;
+
+    /**
+     * Posición del registro vigente de cada persona, indexada por {@code idPersona}.
+     * Un valor 0 indica que no hay persona con ese identificador (0 es la cabecera).
+     */
+    private int[] posicionPorId = new int[1024];
+
+    /** Posiciones de los registros vigentes en orden de identificador; se reconstruye tras cada escritura. */
+    private int[] indiceDenso;
+
+    /** Número de personas vigentes. */
+    private int vivos;
+
+    /** Número total de registros del fichero, vigentes u obsoletos. */
+    private int registros;
+
+    /** Buffer reutilizado para escribir registros. */
+    private final ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUFFER);
+
+    /**
+     * Abre o crea el almacén en la ruta indicada y lee el índice de registros.
+     *
+     * @param ruta la ruta del fichero de datos.
+     * @throws IOException si el fichero no se puede abrir o no tiene el formato esperado.
+     */
+    public AlmacenPersonas(Path ruta) throws IOException {
+        this.ruta = ruta;
+        Path carpeta = ruta.toAbsolutePath().getParent();
+        if (carpeta != null) {
+            Files.createDirectories(carpeta);
+        }
+        abrir();
+    }
+
+    /**
+     * Devuelve la ruta por defecto del almacén, en la carpeta personal del usuario.
+     *
+     * @return la ruta del fichero de datos por defecto.
+     */
+    public static Path rutaPorDefecto() {
+        return Path.of(System.getProperty("user.home"), ".ejercicioe", "personas.dat");
+    }
+
+    /**
+     * Devuelve el número de personas almacenadas.
+     *
+     * @return el número de personas vigentes.
+     */
+    @Override
+    public synchronized int tamano() {
+        return vivos;
+    }
+
+    /**
+     * Decodifica un tramo de personas vigentes, en orden de identificador.
+     *
+     * @param desde    la posición de la primera persona a leer.
+     * @param destino  el array donde se guardan las personas leídas.
+     * @param cantidad el número de personas a leer.
+     */
+    @Override
+    public synchronized void leerPagina(int desde, Persona[] destino, int cantidad) {
+        try {
+            mapearSiHaceFalta(fin);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (indiceDenso == null) {
+            indiceDenso = posicionesVigentes();
+        }
+        for (int i = 0; i < cantidad; i++) {
+            destino[i] = leer(mapa, indiceDenso[desde + i]);
+        }
+    }
+
+    /**
+     * Fija las personas vigentes para leerlas por páginas sin bloquear al escritor. Se copian las posiciones
+     * de sus registros y se conserva la vista mapeada actual: el fichero solo crece por el final, así que los
+     * lotes guardados después no tocan esos registros, y si se compacta la vista sigue sobre el fichero anterior.
+     *
+     * @return las personas vigentes en este momento, en orden de identificador.
+     */
+    @Override
+    public synchronized FuentePaginada instantanea() {
+        try {
+            mapearSiHaceFalta(fin);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int[] posiciones = posicionesVigentes();
+        ByteBuffer vista = mapa.duplicate();
+        return new FuentePaginada() {
+            @Override
+            public int tamano() {
+                return posiciones.length;
+            }
+
+            @Override
+            public void leerPagina(int desde, Persona[] destino, int cantidad) {
+                for (int i = 0; i < cantidad; i++) {
+                    destino[i] = leer(vista, posiciones[desde + i]);
+                }
+            }
+        };
+    }
+
+    /**
+     * Decodifica todas las personas vigentes, ordenadas por identificador.
+     * La decodificación se reparte entre los núcleos disponibles.
+     *
+     * @return las personas almacenadas.
+     * @throws IOException si no se puede mapear el fichero.
+     */
+    @Override
+    public synchronized Persona[] cargar() throws IOException {
+        mapearSiHaceFalta(fin);
+        int[] posiciones = posicionesVigentes();
+        Persona[] personas = new Persona[posiciones.length];
+        Arrays.parallelSetAll(personas, i -> leer(mapa, posiciones[i]));
+        return personas;
+    }
+
+    /**
+     * Crea un escritor que guarda en segundo plano, en este fichero, los cambios de una lista.
+     *
+     * @return el escritor, ya arrancado y sin vincular a ninguna lista.
+     */
+    @Override
+    public EscritorDiferido crearEscritor() {
+        return new EscritorDiferido(this::guardarLote);
+    }
+
+    /**
+     * Guarda el alta de una persona.
+     *
+     * @param persona la persona agregada.
+     * @throws IOException si no se puede escribir.
+     */
+    public synchronized void guardarAlta(Persona persona) throws IOException {
+        escribir(ALTA, persona);
+        volcar();
+    }
+
+    /**
+     * Guarda la modificación de una persona.
+     *
+     * @param persona la persona con los datos nuevos.
+     * @throws IOException si no se puede escribir.
+     */
+    public synchronized void guardarModificacion(Persona persona) throws IOException {
+        escribir(MODIFICACION, persona);
+        volcar();
+    }
+
+    /**
+     * Guarda la baja de una persona.
+     *
+     * @param persona la persona eliminada.
+     * @throws IOException si no se puede escribir.
+     */
+    public synchronized void guardarBaja(Persona persona) throws IOException {
+        escribir(BAJA, persona);
+        volcar();
+    }
+
+    /**
+     * Guarda un lote de cambios con una sola escritura y una sola sincronización con el disco, y compacta
+     * el fichero si hace falta. Los cambios cuyo texto no cabe en un registro se descartan con un aviso.
+     *
+     * <p>
+     * Si la escritura falla, el almacén vuelve a leer el índice del fichero tal como haya quedado, de modo
+     * que el lote se puede volver a guardar entero: repetir un registro que sí llegó al fichero no cambia
+     * el resultado.
+     * </p>
+     *
+     * @param cambios los cambios, en el orden en que se aplicaron a la lista.
+     * @throws IOException si no se puede escribir o sincronizar el fichero.
+     */
+    synchronized void guardarLote(Collection<Cambio> cambios) throws IOException {
+        if (canal == null) {
+            // Una reapertura anterior falló; se vuelve a intentar
+            abrir();
+        }
+        try {
+            for (Cambio cambio : cambios) {
+                try {
+                    escribir(cambio.tipo(), cambio.persona());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("No se guarda la persona " + cambio.persona().getIdPersona() + ": " + e.getMessage());
+                }
+            }
+            volcar();
+            canal.force(false);
+        } catch (IOException e) {
+            buffer.clear();
+            try {
+                cerrarCanal();
+                abrir();
+            } catch (IOException reapertura) {
+                e.addSuppressed(reapertura);
+            }
+            throw e;
+        }
+        compactarSiHaceFalta();
+    }
+
+    /**
+     * Compacta el fichero si las entradas obsoletas superan a las vigentes.
+     *
+     * @throws IOException si no se puede reescribir el fichero.
+     */
+    public synchronized void compactarSiHaceFalta() throws IOException {
+        if (registros >= MINIMO_COMPACTAR && registros > 2 * vivos) {
+            compactar();
+        }
+    }
+
+    /**
+     * Reescribe el fichero con solo los registros vigentes, copiándolos tal cual desde el fichero mapeado.
+     * El fichero nuevo sustituye al anterior de forma atómica.
+     *
+     * @throws IOException si no se puede reescribir el fichero.
+     */
+    public synchronized void compactar() throws IOException {
+        mapearSiHaceFalta(fin);
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        try (FileChannel destino = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.clear();
+            buffer.putInt(MAGIA).putInt(VERSION);
+            for (int posicion : posicionesVigentes()) {
+                int longitud = Integer.BYTES + mapa.getInt(posicion);
+                if (buffer.remaining() < longitud) {
+                    vaciar(destino);
+                }
+                buffer.put(buffer.position(), mapa, posicion, longitud);
+                buffer.position(buffer.position() + longitud);
+            }
+            vaciar(destino);
+            destino.force(true);
+        }
+        cerrarCanal();
+        Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        abrir();
+    }
+
+    /**
+     * Compacta el fichero si hace falta, fuerza los datos a disco y cierra el almacén.
+     *
+     * @throws IOException si ocurre un error al escribir o cerrar.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (canal == null) {
+            return;
+        }
+        compactarSiHaceFalta();
+        canal.force(true);
+        cerrarCanal();
+    }
+
+    /**
+     * Abre el fichero, escribe la cabecera si es nuevo y recorre los registros para construir el índice.
+     * Si el último registro está incompleto (por ejemplo, tras un cierre inesperado) se descarta.
+     *
+     * @throws IOException si el fichero no tiene el formato esperado.
+     */
+    private void abrir() throws IOException {
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fin = canal.size();
+        if (fin < CABECERA) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA).putInt(MAGIA).putInt(VERSION).flip();
+            canal.truncate(0);
+            canal.write(cabecera, 0);
+            fin = CABECERA;
+        }
+        if (fin > Integer.MAX_VALUE) {
+            throw new IOException("El fichero de personas supera el tamaño máximo admitido: " + ruta);
+        }
+        mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, fin);
+        if (mapa.getInt(0) != MAGIA || mapa.getInt(4) != VERSION) {
+            throw new IOException("El fichero no es un almacén de personas válido: " + ruta);
+        }
+
+        Arrays.fill(posicionPorId, 0);
+        vivos = 0;
+        registros = 0;
+        int posicion = CABECERA;
+        while (posicion + Integer.BYTES <= fin) {
+            int longitud = mapa.getInt(posicion);
+            if (longitud < 1 + Integer.BYTES || posicion + Integer.BYTES + (long) longitud > fin) {
+                break;
+            }
+            indexar(mapa.get(posicion + 4), mapa.getInt(posicion + 5), posicion);
+            posicion += Integer.BYTES + longitud;
+        }
+        if (posicion < fin) {
+            canal.truncate(posicion);
+            fin = posicion;
+        }
+    }
+
+    /**
+     * Actualiza el índice con un registro.
+     *
+     * @param tipo      el tipo de registro.
+     * @param idPersona el identificador de la persona.
+     * @param posicion  la posición del registro en el fichero.
+     */
+    private void indexar(byte tipo, int idPersona, int posicion) {
+        registros++;
+        indiceDenso = null;
+        if (idPersona >= posicionPorId.length) {
+            posicionPorId = Arrays.copyOf(posicionPorId, Math.max(idPersona + 1, posicionPorId.length * 2));
+        }
+        boolean existia = posicionPorId[idPersona] != 0;
+        if (tipo == BAJA) {
+            posicionPorId[idPersona] = 0;
+            if (existia) {
+                vivos--;
+            }
+        } else {
+            posicionPorId[idPersona] = posicion;
+            if (!existia) {
+                vivos++;
+            }
+        }
+    }
+
+    /**
+     * Devuelve las posiciones de los registros vigentes, en orden de identificador.
+     *
+     * @return las posiciones de los registros vigentes.
+     */
+    private int[] posicionesVigentes() {
+        int[] posiciones = new int[vivos];
+        int n = 0;
+        for (int posicion : posicionPorId) {
+            if (posicion != 0) {
+                posiciones[n++] = posicion;
+            }
+        }
+        return posiciones;
+    }
+
+    /**
+     * Decodifica la persona del registro que empieza en la posición indicada.
+     *
+     * @param mapa     la vista mapeada del fichero.
+     * @param posicion la posición del registro en el fichero mapeado.
+     * @return la persona almacenada.
+     */
+    private static Persona leer(ByteBuffer mapa, int posicion) {
+        int idPersona = mapa.getInt(posicion + 5);
+        int edad = mapa.get(posicion + 9) & 0xFF;
+        int p = posicion + 10;
+        int largoNombre = mapa.getShort(p) & 0xFFFF;
+        byte[] bytes = new byte[largoNombre];
+        mapa.get(p + 2, bytes);
+        String nombre = new String(bytes, StandardCharsets.UTF_8);
+        p += 2 + largoNombre;
+        int largoApellidos = mapa.getShort(p) & 0xFFFF;
+        bytes = largoApellidos == largoNombre ? bytes : new byte[largoApellidos];
+        mapa.get(p + 2, bytes);
+        String apellidos = new String(bytes, StandardCharsets.UTF_8);
+        return new Persona(idPersona, nombre, apellidos, edad);
+    }
+
+    /**
+     * Vuelve a mapear el fichero si la posición indicada queda fuera de la vista actual.
+     *
+     * @param hasta la posición que debe quedar incluida en el mapa.
+     * @throws IOException si no se puede mapear el fichero.
+     */
+    private void mapearSiHaceFalta(long hasta) throws IOException {
+        if (hasta > mapa.capacity()) {
+            mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, fin);
+        }
+    }
+
+    /**
+     * Codifica un registro en el buffer de escritura, vaciándolo antes si no hay sitio.
+     * Las posiciones de los registros son {@code int}, así que el fichero no puede pasar de
+     * {@link Integer#MAX_VALUE} bytes, igual que al abrirlo.
+     *
+     * @param tipo    el tipo de registro.
+     * @param persona la persona afectada.
+     * @throws IOException si no se puede escribir o el registro no cabe en el tamaño máximo del fichero.
+     */
+    private void escribir(byte tipo, Persona persona) throws IOException {
+        byte[] nombre = tipo == BAJA ? null : codificar(persona.getNombre());
+        byte[] apellidos = tipo == BAJA ? null : codificar(persona.getApellidos());
+        int longitud = 1 + Integer.BYTES + (tipo == BAJA ? 0 : 1 + 2 + nombre.length + 2 + apellidos.length);
+        if (buffer.remaining() < Integer.BYTES + longitud) {
+            volcar();
+        }
+        long siguiente = fin + buffer.position();
+        if (siguiente + Integer.BYTES + longitud > Integer.MAX_VALUE) {
+            throw new IOException("El fichero de personas no admite más registros sin superar el tamaño máximo de "
+                    + Integer.MAX_VALUE + " bytes: " + ruta);
+        }
+        int posicion = (int) siguiente;
+        buffer.putInt(longitud).put(tipo).putInt(persona.getIdPersona());
+        if (tipo != BAJA) {
+            buffer.put((byte) persona.getEdad())
+                    .putShort((short) nombre.length).put(nombre)
+                    .putShort((short) apellidos.length).put(apellidos);
+        }
+        indexar(tipo, persona.getIdPersona(), posicion);
+    }
+
+    /**
+     * Codifica un texto en UTF-8 comprobando que cabe en el registro.
+     *
+     * @param texto el texto a codificar.
+     * @return los bytes del texto.
+     */
+    private static byte[] codificar(String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Texto demasiado largo para el almacén: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    /**
+     * Añade al final del fichero los registros pendientes del buffer.
+     *
+     * @throws IOException si no se puede escribir.
+     */
+    private void volcar() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fin += canal.write(buffer, fin);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Escribe el contenido del buffer en el canal indicado y lo deja vacío.
+     *
+     * @param destino el canal de destino.
+     * @throws IOException si no se puede escribir.
+     */
+    private void vaciar(FileChannel destino) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            destino.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Cierra el canal y suelta la referencia al fichero mapeado.
+     *
+     * @throws IOException si no se puede cerrar el canal.
+     */
+    private void cerrarCanal() throws IOException {
+        mapa = null;
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+}
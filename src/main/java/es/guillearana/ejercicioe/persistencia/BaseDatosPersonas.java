@@ -0,0 +1,454 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import es.guillearana.ejercicioe.model.Persona;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Almacén de personas en una base de datos embebida en un fichero, a través de JDBC.
+ *
+ * <p>
+ * Por defecto usa H2 en {@code ~/.ejercicioe/personas.mv.db}; la URL se puede cambiar con la propiedad del
+ * sistema {@code ejercicioe.bd.url} para usar otra base de datos embebida con su controlador JDBC. Las personas
+ * están en la tabla {@code persona}, con un índice único sobre (apellidos, nombre, edad): la base de datos
+ * rechaza las mismas personas que {@link Persona#equals(Object)} considera iguales.
+ * </p>
+ *
+ * <p>
+ * Los identificadores los genera la base de datos con la secuencia {@code persona_id}, que avanza de
+ * {@value #BLOQUE_IDS} en {@value #BLOQUE_IDS}: cada valor reserva un bloque de identificadores que el
+ * repositorio en memoria va asignando a las personas nuevas, de modo que dar de alta una persona no tiene
+ * que esperar a la base de datos y el {@link EscritorDiferido} puede guardar el alta más tarde.
+ * </p>
+ *
+ * <p>
+ * Los cambios se guardan por lotes en una sola transacción, con una sentencia preparada por tipo de cambio
+ * y {@link PreparedStatement#addBatch()}. Las páginas se leen por conjunto de claves
+ * ({@code WHERE id_persona > ? ORDER BY id_persona}) a partir del último identificador de la página anterior,
+ * así que leer una página cuesta lo mismo al principio que al final de la tabla. Las conexiones se reutilizan
+ * con un {@link PoolConexiones} de {@code ejercicioe.bd.conexiones} conexiones (4 por defecto).
+ * </p>
+ */
+public class BaseDatosPersonas implements AlmacenPersistente {
+
+    /** Número de identificadores que reserva cada valor de la secuencia. */
+    static final int BLOQUE_IDS = 1000;
+
+    /** Número máximo de conexiones abiertas. Propiedad del sistema {@code ejercicioe.bd.conexiones}. */
+    private static final int CONEXIONES = Integer.getInteger("ejercicioe.bd.conexiones", 4);
+
+    /** Número de filas que se piden a la base de datos en cada viaje al cargar todas las personas. */
+    private static final int FILAS_POR_LECTURA = 1000;
+
+    /** Sentencias que crean el esquema si no existe. */
+    private static final String[] ESQUEMA = {
+            "CREATE TABLE IF NOT EXISTS persona ("
+                    + "id_persona INT PRIMARY KEY, "
+                    + "nombre VARCHAR NOT NULL, "
+                    + "apellidos VARCHAR NOT NULL, "
+                    + "edad INT NOT NULL)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS persona_clave ON persona (apellidos, nombre, edad)",
+            "CREATE SEQUENCE IF NOT EXISTS persona_id START WITH 1 INCREMENT BY " + BLOQUE_IDS
+    };
+
+    private static final String INSERTAR = "INSERT INTO persona (id_persona, nombre, apellidos, edad) VALUES (?, ?, ?, ?)";
+
+    private static final String ACTUALIZAR = "UPDATE persona SET nombre = ?, apellidos = ?, edad = ? WHERE id_persona = ?";
+
+    private static final String BORRAR = "DELETE FROM persona WHERE id_persona = ?";
+
+    private static final String LEER_DESDE = "SELECT id_persona, nombre, apellidos, edad FROM persona "
+            + "WHERE id_persona > ? ORDER BY id_persona FETCH FIRST ? ROWS ONLY";
+
+    private static final String SALTAR = "SELECT id_persona FROM persona "
+            + "WHERE id_persona > ? ORDER BY id_persona OFFSET ? ROWS FETCH NEXT 1 ROWS ONLY";
+
+    /** Conexiones con la base de datos. */
+    private final PoolConexiones pool;
+
+    /** Número de personas almacenadas. */
+    private volatile int vivos;
+
+    /**
+     * Último identificador antes de cada posición de página ya leída: para leer la página que empieza
+     * en la clave se piden las filas con identificador mayor que el valor. La posición 0 no tiene anterior.
+     */
+    private final TreeMap<Integer, Integer> limites = new TreeMap<>(Map.of(0, Integer.MIN_VALUE));
+
+    /** Siguiente identificador del bloque reservado. */
+    private int siguienteId;
+
+    /** Primer identificador fuera del bloque reservado. */
+    private int finBloque;
+
+    /**
+     * Abre o crea la base de datos y su esquema.
+     *
+     * @param url la URL JDBC de la base de datos.
+     * @throws IOException si no se puede abrir la base de datos o crear el esquema.
+     */
+    public BaseDatosPersonas(String url) throws IOException {
+        pool = new PoolConexiones(url, CONEXIONES);
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            try (Statement sentencia = conexion.createStatement()) {
+                for (String ddl : ESQUEMA) {
+                    sentencia.execute(ddl);
+                }
+                try (ResultSet filas = sentencia.executeQuery("SELECT COUNT(*) FROM persona")) {
+                    filas.next();
+                    vivos = filas.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            pool.close();
+            throw new IOException("No se ha podido abrir la base de datos " + url + ": " + e.getMessage(), e);
+        } finally {
+            if (conexion != null) {
+                pool.devolver(conexion);
+            }
+        }
+    }
+
+    /**
+     * Devuelve la URL de la base de datos por defecto, junto al almacén en fichero, o la de la propiedad
+     * del sistema {@code ejercicioe.bd.url}.
+     *
+     * @return la URL JDBC.
+     */
+    public static String urlPorDefecto() {
+        Path ruta = AlmacenPersonas.rutaPorDefecto().resolveSibling("personas");
+        return System.getProperty("ejercicioe.bd.url", "jdbc:h2:file:" + ruta.toAbsolutePath());
+    }
+
+    /**
+     * Devuelve el número de personas almacenadas.
+     *
+     * @return el número de personas.
+     */
+    @Override
+    public int tamano() {
+        return vivos;
+    }
+
+    /**
+     * Lee un tramo de personas en orden de identificador. Si ya se leyó la página anterior, la consulta
+     * empieza en su último identificador; si no, se salta hasta la posición desde el límite conocido más
+     * cercano recorriendo solo el índice de la clave primaria.
+     *
+     * @param desde    la posición de la primera persona a leer.
+     * @param destino  el array donde se guardan las personas leídas.
+     * @param cantidad el número de personas a leer.
+     */
+    @Override
+    public synchronized void leerPagina(int desde, Persona[] destino, int cantidad) {
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            int anterior = limiteAntesDe(conexion, desde);
+            int leidas = 0;
+            try (PreparedStatement sentencia = conexion.prepareStatement(LEER_DESDE)) {
+                sentencia.setInt(1, anterior);
+                sentencia.setInt(2, cantidad);
+                try (ResultSet filas = sentencia.executeQuery()) {
+                    while (filas.next()) {
+                        destino[leidas++] = leer(filas);
+                    }
+                }
+            }
+            if (leidas > 0) {
+                limites.put(desde + leidas, destino[leidas - 1].getIdPersona());
+            }
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("No se ha podido leer la página en " + desde, e));
+        } finally {
+            if (conexion != null) {
+                pool.devolver(conexion);
+            }
+        }
+    }
+
+    /**
+     * Lee todas las personas, ordenadas por identificador.
+     *
+     * @return las personas almacenadas.
+     * @throws IOException si no se pueden leer.
+     */
+    @Override
+    public Persona[] cargar() throws IOException {
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            List<Persona> personas = new ArrayList<>(vivos);
+            try (Statement sentencia = conexion.createStatement()) {
+                sentencia.setFetchSize(FILAS_POR_LECTURA);
+                try (ResultSet filas = sentencia.executeQuery(
+                        "SELECT id_persona, nombre, apellidos, edad FROM persona ORDER BY id_persona")) {
+                    while (filas.next()) {
+                        personas.add(leer(filas));
+                    }
+                }
+            }
+            return personas.toArray(Persona[]::new);
+        } catch (SQLException e) {
+            throw new IOException("No se han podido leer las personas: " + e.getMessage(), e);
+        } finally {
+            if (conexion != null) {
+                pool.devolver(conexion);
+            }
+        }
+    }
+
+    /**
+     * Crea un escritor que guarda en segundo plano, en esta base de datos, los cambios de una lista.
+     *
+     * @return el escritor, ya arrancado y sin vincular a ninguna lista.
+     */
+    @Override
+    public EscritorDiferido crearEscritor() {
+        return new EscritorDiferido(this::guardarLote);
+    }
+
+    /**
+     * Devuelve el generador de identificadores de la base de datos. Pide a la secuencia un bloque nuevo
+     * cada {@value #BLOQUE_IDS} identificadores.
+     *
+     * @return el generador.
+     */
+    @Override
+    public IntSupplier generadorIds() {
+        return this::siguienteId;
+    }
+
+    /**
+     * Guarda un lote de cambios en una sola transacción: primero las bajas, después las modificaciones
+     * y por último las altas, cada tipo con un único lote de sentencias. Una modificación de una persona
+     * que no está en la tabla se guarda como alta.
+     *
+     * <p>
+     * Como el lote junta los cambios de cada persona, el orden de las modificaciones puede no ser el de la lista;
+     * si dos personas intercambiaron sus datos, la primera actualización choca con el índice único. Tampoco se
+     * distingue un alta de una persona que ya estaba guardada, como la que se elimina y se recupera con deshacer
+     * dentro del mismo lote, y su inserción choca con la clave primaria. En ambos casos la transacción se deshace
+     * y se repite borrando primero por identificador todas las personas modificadas y agregadas, y volviendo
+     * a insertarlas.
+     * </p>
+     *
+     * @param cambios los cambios.
+     * @throws IOException si la transacción falla; la base de datos queda como antes del lote.
+     */
+    void guardarLote(Collection<Cambio> cambios) throws IOException {
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            conexion.setAutoCommit(false);
+            int diferencia;
+            try {
+                diferencia = aplicar(conexion, cambios, false);
+            } catch (SQLException e) {
+                if (!esClaveRepetida(e)) {
+                    throw e;
+                }
+                conexion.rollback();
+                diferencia = aplicar(conexion, cambios, true);
+            }
+            conexion.commit();
+            vivos += diferencia;
+            synchronized (this) {
+                limites.tailMap(0, false).clear();
+            }
+        } catch (SQLException e) {
+            throw new IOException("No se ha podido guardar el lote en la base de datos: " + e.getMessage(), e);
+        } finally {
+            if (conexion != null) {
+                pool.devolver(conexion);
+            }
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones. Con H2, al cerrarse la última se escribe y se cierra el fichero.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Ejecuta los cambios de un lote dentro de la transacción abierta.
+     *
+     * @param conexion   la conexión, sin confirmación automática.
+     * @param cambios    los cambios.
+     * @param reinsertar si las modificaciones se hacen borrando e insertando en lugar de actualizando,
+     *                   y las altas se insertan después de borrar su identificador.
+     * @return la variación del número de personas almacenadas.
+     * @throws SQLException si falla alguna sentencia.
+     */
+    private static int aplicar(Connection conexion, Collection<Cambio> cambios, boolean reinsertar) throws SQLException {
+        List<Persona> bajas = new ArrayList<>();
+        List<Persona> modificaciones = new ArrayList<>();
+        List<Persona> altas = new ArrayList<>();
+        for (Cambio cambio : cambios) {
+            switch (cambio.tipo()) {
+                case AlmacenPersonas.BAJA -> bajas.add(cambio.persona());
+                case AlmacenPersonas.MODIFICACION -> modificaciones.add(cambio.persona());
+                default -> altas.add(cambio.persona());
+            }
+        }
+        if (reinsertar) {
+            bajas.addAll(altas);
+            bajas.addAll(modificaciones);
+            altas.addAll(modificaciones);
+            modificaciones.clear();
+        }
+
+        int diferencia = 0;
+        try (PreparedStatement borrar = conexion.prepareStatement(BORRAR)) {
+            for (Persona persona : bajas) {
+                borrar.setInt(1, persona.getIdPersona());
+                borrar.addBatch();
+            }
+            diferencia -= filasAfectadas(borrar, bajas.size());
+        }
+        if (!modificaciones.isEmpty()) {
+            try (PreparedStatement actualizar = conexion.prepareStatement(ACTUALIZAR)) {
+                for (Persona persona : modificaciones) {
+                    actualizar.setString(1, persona.getNombre());
+                    actualizar.setString(2, persona.getApellidos());
+                    actualizar.setInt(3, persona.getEdad());
+                    actualizar.setInt(4, persona.getIdPersona());
+                    actualizar.addBatch();
+                }
+                int[] filas = actualizar.executeBatch();
+                for (int i = 0; i < filas.length; i++) {
+                    if (filas[i] == 0) {
+                        altas.add(modificaciones.get(i));
+                    }
+                }
+            }
+        }
+        try (PreparedStatement insertar = conexion.prepareStatement(INSERTAR)) {
+            for (Persona persona : altas) {
+                insertar.setInt(1, persona.getIdPersona());
+                insertar.setString(2, persona.getNombre());
+                insertar.setString(3, persona.getApellidos());
+                insertar.setInt(4, persona.getEdad());
+                insertar.addBatch();
+            }
+            diferencia += filasAfectadas(insertar, altas.size());
+        }
+        return diferencia;
+    }
+
+    /**
+     * Ejecuta el lote de una sentencia y suma las filas afectadas.
+     *
+     * @param sentencia la sentencia con el lote preparado.
+     * @param cambios   el número de cambios del lote.
+     * @return el número de filas afectadas.
+     * @throws SQLException si falla alguna sentencia del lote.
+     */
+    private static int filasAfectadas(PreparedStatement sentencia, int cambios) throws SQLException {
+        if (cambios == 0) {
+            return 0;
+        }
+        int total = 0;
+        for (int filas : sentencia.executeBatch()) {
+            total += Math.max(0, filas);
+        }
+        return total;
+    }
+
+    /**
+     * Indica si un error, o alguno de los que encadena, es una violación de una restricción de unicidad
+     * (estado SQL 23505).
+     *
+     * @param error el error.
+     * @return {@code true} si es una clave repetida.
+     */
+    private static boolean esClaveRepetida(SQLException error) {
+        for (Throwable causa : error) {
+            if (causa instanceof SQLException sql && "23505".equals(sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve el último identificador antes de una posición. Si no se conoce, lo busca saltando desde
+     * el límite conocido más cercano por debajo y lo guarda para las páginas siguientes.
+     *
+     * @param conexion la conexión.
+     * @param desde    la posición.
+     * @return el identificador de la persona en la posición anterior, o {@link Integer#MIN_VALUE} para la 0.
+     * @throws SQLException si falla la consulta.
+     */
+    private int limiteAntesDe(Connection conexion, int desde) throws SQLException {
+        Map.Entry<Integer, Integer> conocido = limites.floorEntry(desde);
+        if (conocido.getKey() == desde) {
+            return conocido.getValue();
+        }
+        try (PreparedStatement sentencia = conexion.prepareStatement(SALTAR)) {
+            sentencia.setInt(1, conocido.getValue());
+            sentencia.setInt(2, desde - conocido.getKey() - 1);
+            try (ResultSet filas = sentencia.executeQuery()) {
+                int anterior = filas.next() ? filas.getInt(1) : Integer.MAX_VALUE;
+                limites.put(desde, anterior);
+                return anterior;
+            }
+        }
+    }
+
+    /**
+     * Devuelve el siguiente identificador del bloque reservado, reservando otro si se ha agotado.
+     *
+     * @return el identificador.
+     */
+    private synchronized int siguienteId() {
+        if (siguienteId == finBloque) {
+            Connection conexion = null;
+            try {
+                conexion = pool.obtener();
+                try (Statement sentencia = conexion.createStatement();
+                     ResultSet filas = sentencia.executeQuery("VALUES NEXT VALUE FOR persona_id")) {
+                    filas.next();
+                    siguienteId = filas.getInt(1);
+                    finBloque = siguienteId + BLOQUE_IDS;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se ha podido reservar identificadores en la base de datos", e);
+            } finally {
+                if (conexion != null) {
+                    pool.devolver(conexion);
+                }
+            }
+        }
+        return siguienteId++;
+    }
+
+    /**
+     * Crea una persona a partir de la fila actual.
+     *
+     * @param filas el resultado, situado en una fila.
+     * @return la persona.
+     * @throws SQLException si no se pueden leer las columnas.
+     */
+    private static Persona leer(ResultSet filas) throws SQLException {
+        return new Persona(filas.getInt(1), filas.getString(2), filas.getString(3), filas.getInt(4));
+    }
+}
@@ -0,0 +1,13 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import es.guillearana.ejercicioe.model.Persona;
+
+/**
+ * Cambio de una persona pendiente de guardar en el {@link AlmacenPersonas}.
+ *
+ * @param tipo    el tipo de registro: {@link AlmacenPersonas#ALTA}, {@link AlmacenPersonas#MODIFICACION}
+ *                o {@link AlmacenPersonas#BAJA}.
+ * @param persona la persona afectada, con sus datos nuevos en altas y modificaciones.
+ */
+record Cambio(byte tipo, Persona persona) {
+}
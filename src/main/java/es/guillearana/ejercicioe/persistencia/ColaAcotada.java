@@ -0,0 +1,106 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cola acotada sin cerrojos para varios productores y un solo consumidor, sobre un array circular.
+ *
+ * <p>
+ * Cada casilla lleva un número de secuencia que indica si está libre para la vuelta actual del productor
+ * o ya tiene un elemento listo para el consumidor (algoritmo de D. Vyukov). Los productores reservan
+ * una casilla con un {@code compareAndSet} sobre la posición de escritura; el consumidor no necesita
+ * ninguna operación atómica más que publicar la casilla como libre. Ni añadir ni sacar reservan memoria.
+ * </p>
+ *
+ * @param <E> el tipo de los elementos.
+ */
+final class ColaAcotada<E> {
+
+    /** Elementos de la cola; cada casilla la protege su número de secuencia. */
+    private final Object[] elementos;
+
+    /**
+     * Número de secuencia de cada casilla: igual a la posición de escritura si está libre,
+     * o a esa posición más uno si tiene un elemento pendiente de sacar.
+     */
+    private final AtomicLongArray secuencias;
+
+    /** Máscara para convertir una posición en una casilla. */
+    private final int mascara;
+
+    /** Siguiente posición de escritura, compartida por los productores. */
+    private final AtomicLong escritura = new AtomicLong();
+
+    /** Siguiente posición de lectura; solo la usa el consumidor. */
+    private long lectura;
+
+    /**
+     * Crea una cola vacía.
+     *
+     * @param capacidad el número mínimo de elementos que caben; se redondea a la siguiente potencia de dos.
+     */
+    ColaAcotada(int capacidad) {
+        int tamano = Integer.highestOneBit(Math.max(2, capacidad - 1)) << 1;
+        elementos = new Object[tamano];
+        secuencias = new AtomicLongArray(tamano);
+        for (int i = 0; i < tamano; i++) {
+            secuencias.set(i, i);
+        }
+        mascara = tamano - 1;
+    }
+
+    /**
+     * Añade un elemento al final de la cola si hay sitio. Se puede llamar desde cualquier hilo.
+     *
+     * @param elemento el elemento, no nulo.
+     * @return {@code true} si se ha añadido, o {@code false} si la cola está llena.
+     */
+    boolean ofrecer(E elemento) {
+        long posicion = escritura.get();
+        while (true) {
+            int casilla = (int) posicion & mascara;
+            long diferencia = secuencias.get(casilla) - posicion;
+            if (diferencia == 0) {
+                if (escritura.compareAndSet(posicion, posicion + 1)) {
+                    elementos[casilla] = elemento;
+                    secuencias.set(casilla, posicion + 1);
+                    return true;
+                }
+                posicion = escritura.get();
+            } else if (diferencia < 0) {
+                // La casilla aún tiene el elemento de la vuelta anterior
+                return false;
+            } else {
+                posicion = escritura.get();
+            }
+        }
+    }
+
+    /**
+     * Saca el primer elemento de la cola. Solo puede llamarlo el hilo consumidor.
+     *
+     * @return el elemento, o {@code null} si la cola está vacía.
+     */
+    @SuppressWarnings("unchecked")
+    E sacar() {
+        int casilla = (int) lectura & mascara;
+        if (secuencias.get(casilla) != lectura + 1) {
+            return null;
+        }
+        E elemento = (E) elementos[casilla];
+        elementos[casilla] = null;
+        secuencias.set(casilla, lectura + elementos.length);
+        lectura++;
+        return elemento;
+    }
+
+    /**
+     * Devuelve el número de elementos que caben en la cola.
+     *
+     * @return la capacidad.
+     */
+    int capacidad() {
+        return elementos.length;
+    }
+}
@@ -0,0 +1,379 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import es.guillearana.ejercicioe.metricas.Metricas;
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Guarda en segundo plano los cambios de la lista de personas en un {@link AlmacenPersistente}.
+ *
+ * <p>
+ * El oyente de la lista, que se ejecuta en el hilo de JavaFX, solo convierte cada cambio en altas,
+ * modificaciones y bajas y las pone en una {@link ColaAcotada}. Un único hilo escritor las saca, junta
+ * los cambios de una misma persona (un alta seguida de una baja no llega al fichero, varias modificaciones
+ * se quedan en la última) y los guarda por lotes, con una sola sincronización con el disco (o una sola
+ * transacción) por lote. Los escritores se crean con {@link AlmacenPersistente#crearEscritor()}.
+ * Los cambios que no vienen de una lista, como los del servidor HTTP, se ponen en la misma cola desde
+ * cualquier hilo con {@link #guardarAlta(Persona)}, {@link #guardarModificacion(Persona)} y
+ * {@link #guardarBaja(Persona)}.
+ * </p>
+ *
+ * <p>
+ * Cuánto se puede perder si la aplicación termina de forma inesperada se ajusta con dos propiedades del sistema:
+ * </p>
+ * <ul>
+ *     <li>{@code ejercicioe.persistencia.intervalo}: milisegundos que el escritor espera desde el primer cambio
+ *     pendiente para juntar más en el mismo lote (50 por defecto). Con 0 escribe en cuanto hay cambios,
+ *     juntando solo los que llegan mientras sincroniza el lote anterior.</li>
+ *     <li>{@code ejercicioe.persistencia.lote}: número máximo de personas por lote (10.000 por defecto);
+ *     al alcanzarlo se escribe sin esperar al intervalo.</li>
+ * </ul>
+ *
+ * <p>
+ * Si la cola se llena ({@code ejercicioe.persistencia.cola}, 65.536 cambios por defecto), el hilo de JavaFX
+ * espera a que el escritor la vacíe: no se descarta ningún cambio. Si un lote no se puede guardar se avisa
+ * una vez con {@link #setAlFallar(Consumer)} y se reintenta cada segundo, juntando los cambios nuevos.
+ * Cuando vuelve a guardarse se avisa con {@link #setAlRecuperar(Runnable)}.
+ * Al cerrar se guardan todos los cambios pendientes antes de terminar.
+ * </p>
+ */
+public class EscritorDiferido implements AutoCloseable {
+
+    /** Milisegundos de espera para agrupar cambios. Propiedad del sistema {@code ejercicioe.persistencia.intervalo}. */
+    private static final long INTERVALO = Long.getLong("ejercicioe.persistencia.intervalo", 50);
+
+    /** Número máximo de personas por lote. Propiedad del sistema {@code ejercicioe.persistencia.lote}. */
+    private static final int LOTE = Integer.getInteger("ejercicioe.persistencia.lote", 10_000);
+
+    /** Capacidad de la cola de cambios. Propiedad del sistema {@code ejercicioe.persistencia.cola}. */
+    private static final int CAPACIDAD_COLA = Integer.getInteger("ejercicioe.persistencia.cola", 1 << 16);
+
+    /** Nanosegundos de espera antes de reintentar un lote que no se ha podido guardar. */
+    private static final long REINTENTO = TimeUnit.SECONDS.toNanos(1);
+
+    /** Destino de los lotes; solo lo usa el hilo escritor. */
+    private final Destino destino;
+
+    /** Cambios pendientes de sacar por el escritor. */
+    private final ColaAcotada<Cambio> cola = new ColaAcotada<>(CAPACIDAD_COLA);
+
+    /** Oyente que pone en la cola los cambios de la lista. */
+    private final ListChangeListener<Persona> oyente = this::encolar;
+
+    /** Nanosegundos de espera para agrupar cambios. */
+    private final long intervalo;
+
+    /** Número máximo de personas por lote. */
+    private final int lote;
+
+    /** Hilo escritor. */
+    private final Thread escritor;
+
+    /** Lista vinculada; {@code null} antes de vincular o después de cerrar. */
+    private ObservableList<Persona> personas;
+
+    /** Indica que se ha pedido cerrar: el escritor guarda lo pendiente y termina. */
+    private volatile boolean cerrando;
+
+    /** Acción que se avisa cuando un lote no se puede guardar. */
+    private volatile Consumer<IOException> alFallar = e -> { };
+
+    /** Acción que se avisa cuando se vuelven a guardar los cambios tras una racha de fallos. */
+    private volatile Runnable alRecuperar = () -> { };
+
+    /**
+     * Operación que guarda un lote de cambios en el almacén.
+     */
+    @FunctionalInterface
+    interface Destino {
+
+        /**
+         * Guarda un lote de cambios de una vez.
+         *
+         * @param cambios los cambios, en el orden en que se aplicaron a la lista.
+         * @throws IOException si el lote no se ha podido guardar; se reintenta entero.
+         */
+        void guardarLote(Collection<Cambio> cambios) throws IOException;
+    }
+
+    /**
+     * Crea el escritor con la configuración de las propiedades del sistema y arranca su hilo.
+     *
+     * @param destino la operación que guarda cada lote; a partir de ahora solo la usa el hilo escritor.
+     */
+    EscritorDiferido(Destino destino) {
+        this(destino, INTERVALO, LOTE);
+    }
+
+    /**
+     * Crea el escritor y arranca su hilo.
+     *
+     * @param destino     la operación que guarda cada lote; a partir de ahora solo la usa el hilo escritor.
+     * @param intervaloMs los milisegundos de espera para agrupar cambios en un lote.
+     * @param lote        el número máximo de personas por lote.
+     */
+    EscritorDiferido(Destino destino, long intervaloMs, int lote) {
+        this.destino = destino;
+        this.intervalo = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervaloMs));
+        this.lote = Math.max(1, lote);
+        escritor = new Thread(this::ejecutar, "escritor-personas");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Empieza a guardar los cambios de la lista indicada.
+     * Debe llamarse después de cargar las personas en la lista, para no volver a escribirlas.
+     *
+     * @param personas la lista cuyos cambios se guardan.
+     */
+    public void vincular(ObservableList<Persona> personas) {
+        this.personas = personas;
+        personas.addListener(oyente);
+    }
+
+    /**
+     * Guarda el alta de una persona que no procede de una lista vinculada. Se puede llamar desde cualquier hilo;
+     * los cambios de una misma persona deben ponerse en el orden en que se aplicaron.
+     *
+     * @param persona la persona agregada.
+     */
+    public void guardarAlta(Persona persona) {
+        ponerYAvisar(new Cambio(AlmacenPersonas.ALTA, persona));
+    }
+
+    /**
+     * Guarda la modificación de una persona que no procede de una lista vinculada, como {@link #guardarAlta(Persona)}.
+     *
+     * @param persona la persona con sus datos nuevos.
+     */
+    public void guardarModificacion(Persona persona) {
+        ponerYAvisar(new Cambio(AlmacenPersonas.MODIFICACION, persona));
+    }
+
+    /**
+     * Guarda la baja de una persona que no procede de una lista vinculada, como {@link #guardarAlta(Persona)}.
+     *
+     * @param persona la persona eliminada.
+     */
+    public void guardarBaja(Persona persona) {
+        ponerYAvisar(new Cambio(AlmacenPersonas.BAJA, persona));
+    }
+
+    /**
+     * Establece la acción que se avisa, desde el hilo escritor, cuando un lote no se puede guardar.
+     * Solo se avisa el primer fallo de cada racha; los reintentos no vuelven a avisar.
+     *
+     * @param alFallar la acción que recibe el error.
+     */
+    public void setAlFallar(Consumer<IOException> alFallar) {
+        this.alFallar = alFallar;
+    }
+
+    /**
+     * Establece la acción que se avisa, desde el hilo escritor, cuando se consigue guardar un lote
+     * después de una racha de fallos avisada con {@link #setAlFallar(Consumer)}.
+     *
+     * @param alRecuperar la acción.
+     */
+    public void setAlRecuperar(Runnable alRecuperar) {
+        this.alRecuperar = alRecuperar;
+    }
+
+    /**
+     * Deja de recoger cambios, espera a que el escritor guarde todos los pendientes y lo detiene.
+     * No cierra el almacén.
+     */
+    @Override
+    public void close() {
+        if (personas != null) {
+            personas.removeListener(oyente);
+            personas = null;
+        }
+        cerrando = true;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Convierte un cambio de la lista en cambios de personas y los pone en la cola.
+     * Las reordenaciones no se guardan; un reemplazo de la misma persona se guarda como modificación.
+     *
+     * @param cambio el cambio de la lista.
+     */
+    private void encolar(ListChangeListener.Change<? extends Persona> cambio) {
+        while (cambio.next()) {
+            if (cambio.wasPermutated()) {
+                continue;
+            }
+            List<? extends Persona> eliminadas = cambio.getRemoved();
+            List<? extends Persona> agregadas = cambio.getAddedSubList();
+            int comunes = Math.min(eliminadas.size(), agregadas.size());
+            for (int i = 0; i < comunes; i++) {
+                if (eliminadas.get(i).getIdPersona() == agregadas.get(i).getIdPersona()) {
+                    poner(new Cambio(AlmacenPersonas.MODIFICACION, agregadas.get(i)));
+                } else {
+                    poner(new Cambio(AlmacenPersonas.BAJA, eliminadas.get(i)));
+                    poner(new Cambio(AlmacenPersonas.ALTA, agregadas.get(i)));
+                }
+            }
+            for (int i = comunes; i < eliminadas.size(); i++) {
+                poner(new Cambio(AlmacenPersonas.BAJA, eliminadas.get(i)));
+            }
+            for (int i = comunes; i < agregadas.size(); i++) {
+                poner(new Cambio(AlmacenPersonas.ALTA, agregadas.get(i)));
+            }
+        }
+        LockSupport.unpark(escritor);
+    }
+
+    /**
+     * Pone un cambio en la cola y despierta al escritor.
+     *
+     * @param cambio el cambio.
+     */
+    private void ponerYAvisar(Cambio cambio) {
+        poner(cambio);
+        LockSupport.unpark(escritor);
+    }
+
+    /**
+     * Pone un cambio en la cola. Si está llena, despierta al escritor y espera a que haya sitio.
+     *
+     * @param cambio el cambio.
+     */
+    private void poner(Cambio cambio) {
+        while (!cola.ofrecer(cambio)) {
+            LockSupport.unpark(escritor);
+            LockSupport.parkNanos(this, 100_000);
+        }
+    }
+
+    /**
+     * Bucle del hilo escritor: junta los cambios de la cola y guarda un lote cuando pasa el intervalo
+     * desde el primer cambio pendiente, cuando se llena el lote o cuando se pide cerrar.
+     */
+    private void ejecutar() {
+        Map<Integer, Pendiente> pendientes = new LinkedHashMap<>();
+        long primerCambio = 0;
+        boolean fallando = false;
+        while (true) {
+            // Se lee antes de vaciar la cola: todo lo encolado antes de cerrar se ve en esta vuelta
+            boolean ultimaVuelta = cerrando;
+            boolean habiaPendientes = !pendientes.isEmpty();
+            drenar(pendientes);
+            if (pendientes.isEmpty()) {
+                if (ultimaVuelta) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            if (!habiaPendientes) {
+                primerCambio = System.nanoTime();
+            }
+            long espera = primerCambio + intervalo - System.nanoTime();
+            if (!ultimaVuelta && pendientes.size() < lote && espera > 0) {
+                LockSupport.parkNanos(this, espera);
+                continue;
+            }
+
+            long inicio = Metricas.inicio();
+            try {
+                destino.guardarLote(consolidar(pendientes));
+                Metricas.registrar(Metricas.PERSISTENCIA_LOTE, inicio);
+                pendientes.clear();
+                if (fallando) {
+                    fallando = false;
+                    alRecuperar.run();
+                }
+            } catch (IOException e) {
+                System.err.println("No se han podido guardar " + pendientes.size() + " cambios: " + e.getMessage());
+                e.printStackTrace();
+                if (!fallando) {
+                    fallando = true;
+                    alFallar.accept(e);
+                }
+                // Parte del lote puede haber llegado al fichero: ya no se puede anular un alta con su baja
+                pendientes.values().forEach(p -> p.primero = AlmacenPersonas.MODIFICACION);
+                if (ultimaVuelta) {
+                    System.err.println("Se pierden " + pendientes.size() + " cambios al cerrar");
+                    return;
+                }
+                LockSupport.parkNanos(this, REINTENTO);
+            }
+        }
+    }
+
+    /**
+     * Saca cambios de la cola y los junta con los pendientes, hasta vaciarla o llenar el lote.
+     *
+     * @param pendientes los cambios pendientes por identificador de persona, en orden de llegada.
+     */
+    private void drenar(Map<Integer, Pendiente> pendientes) {
+        Cambio cambio;
+        while (pendientes.size() < lote && (cambio = cola.sacar()) != null) {
+            Pendiente pendiente = pendientes.get(cambio.persona().getIdPersona());
+            if (pendiente == null) {
+                pendientes.put(cambio.persona().getIdPersona(), new Pendiente(cambio));
+            } else {
+                pendiente.ultimo = cambio;
+            }
+        }
+    }
+
+    /**
+     * Convierte los cambios pendientes en el lote que se escribe: el último cambio de cada persona,
+     * salvo las personas dadas de alta y de baja dentro del mismo lote, que no se escriben.
+     *
+     * @param pendientes los cambios pendientes.
+     * @return los cambios que se guardan.
+     */
+    private static List<Cambio> consolidar(Map<Integer, Pendiente> pendientes) {
+        List<Cambio> cambios = new ArrayList<>(pendientes.size());
+        for (Pendiente pendiente : pendientes.values()) {
+            if (pendiente.primero != AlmacenPersonas.ALTA || pendiente.ultimo.tipo() != AlmacenPersonas.BAJA) {
+                cambios.add(pendiente.ultimo);
+            }
+        }
+        return cambios;
+    }
+
+    /**
+     * Cambios pendientes de una persona: el tipo del primero, para saber si ya estaba en el fichero,
+     * y el último, que es el que se escribe.
+     */
+    private static final class Pendiente {
+
+        /** Tipo del primer cambio pendiente de la persona. */
+        private byte primero;
+
+        /** Último cambio pendiente de la persona. */
+        private Cambio ultimo;
+
+        /**
+         * Crea los cambios pendientes de una persona con su primer cambio.
+         *
+         * @param cambio el primer cambio.
+         */
+        private Pendiente(Cambio cambio) {
+            primero = cambio.tipo();
+            ultimo = cambio;
+        }
+    }
+}
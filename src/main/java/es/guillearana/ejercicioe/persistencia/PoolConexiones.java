@@ -0,0 +1,132 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conjunto de conexiones JDBC reutilizables a una misma base de datos.
+ *
+ * <p>
+ * Las conexiones se abren a medida que hacen falta, hasta un máximo; después, quien pide una espera
+ * a que otro la devuelva. Abrir una conexión con una base de datos embebida supone abrir su sesión
+ * y preparar de nuevo las sentencias, así que reutilizarlas ahorra ese coste en cada lote y cada página.
+ * </p>
+ */
+final class PoolConexiones implements AutoCloseable {
+
+    /** Segundos máximos de espera por una conexión libre. */
+    private static final long ESPERA_MAXIMA = 30;
+
+    /** URL JDBC de la base de datos. */
+    private final String url;
+
+    /** Conexiones libres. */
+    private final BlockingQueue<Connection> libres;
+
+    /** Todas las conexiones abiertas, libres o en uso. */
+    private final List<Connection> abiertas = new ArrayList<>();
+
+    /** Número máximo de conexiones abiertas a la vez. */
+    private final int maximo;
+
+    /** Indica si el conjunto se ha cerrado. */
+    private boolean cerrado;
+
+    /**
+     * Crea un conjunto vacío de conexiones.
+     *
+     * @param url    la URL JDBC de la base de datos.
+     * @param maximo el número máximo de conexiones abiertas a la vez.
+     */
+    PoolConexiones(String url, int maximo) {
+        this.url = url;
+        this.maximo = Math.max(1, maximo);
+        this.libres = new ArrayBlockingQueue<>(this.maximo);
+    }
+
+    /**
+     * Presta una conexión: una libre, una nueva si aún no se ha llegado al máximo, o la primera
+     * que se devuelva. La conexión está en modo de confirmación automática.
+     *
+     * @return la conexión, que debe devolverse con {@link #devolver(Connection)}.
+     * @throws SQLException si no se puede abrir la conexión o no queda ninguna libre a tiempo.
+     */
+    Connection obtener() throws SQLException {
+        Connection conexion = libres.poll();
+        if (conexion != null) {
+            return conexion;
+        }
+        synchronized (this) {
+            if (cerrado) {
+                throw new SQLException("El conjunto de conexiones está cerrado");
+            }
+            if (abiertas.size() < maximo) {
+                conexion = DriverManager.getConnection(url);
+                abiertas.add(conexion);
+                return conexion;
+            }
+        }
+        try {
+            conexion = libres.poll(ESPERA_MAXIMA, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión", e);
+        }
+        if (conexion == null) {
+            throw new SQLException("No hay conexiones libres tras " + ESPERA_MAXIMA + " s");
+        }
+        return conexion;
+    }
+
+    /**
+     * Devuelve una conexión prestada. Si se quedó a mitad de una transacción, se deshace.
+     *
+     * @param conexion la conexión obtenida con {@link #obtener()}.
+     */
+    void devolver(Connection conexion) {
+        try {
+            if (!conexion.getAutoCommit()) {
+                conexion.rollback();
+                conexion.setAutoCommit(true);
+            }
+            libres.add(conexion);
+        } catch (SQLException e) {
+            // La conexión no se puede reutilizar; se cierra y deja su sitio a una nueva
+            System.err.println("Se descarta una conexión con la base de datos: " + e.getMessage());
+            synchronized (this) {
+                abiertas.remove(conexion);
+            }
+            cerrarSinError(conexion);
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones, incluidas las que están prestadas.
+     */
+    @Override
+    public synchronized void close() {
+        cerrado = true;
+        abiertas.forEach(PoolConexiones::cerrarSinError);
+        abiertas.clear();
+        libres.clear();
+    }
+
+    /**
+     * Cierra una conexión escribiendo el error, si lo hay, en la salida de error.
+     *
+     * @param conexion la conexión.
+     */
+    private static void cerrarSinError(Connection conexion) {
+        try {
+            conexion.close();
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar una conexión con la base de datos: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package es.guillearana.ejercicioe.servicio;
+
+import es.guillearana.ejercicioe.model.IndiceBusqueda;
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Detecta personas parecidas, que probablemente son la misma con otra grafía: mayúsculas, tildes,
+ * letras que suenan igual ("Gonzalez" y "González", "Jimenez" y "Gimenez") o erratas ("Jsoe" y "Jose").
+ *
+ * <p>
+ * Comparar cada persona con todas las demás es cuadrático. En su lugar, de cada persona se calculan
+ * varias claves de bloque a partir de la clave fonética de su nombre y sus apellidos, y solo se puntúan
+ * las parejas que comparten alguna clave. Cada clave tolera un tipo de error distinto:
+ * </p>
+ * <ul>
+ *     <li>nombre y primer apellido por sonido, para tildes, mayúsculas y letras que suenan igual;</li>
+ *     <li>los dos apellidos por sonido y la inicial del nombre, para erratas en el nombre;</li>
+ *     <li>el nombre y el segundo apellido por sonido y la inicial del primero, para erratas en el primer apellido.</li>
+ * </ul>
+ *
+ * <p>
+ * La puntuación combina la similitud de Jaro-Winkler de los nombres, que favorece los prefijos comunes,
+ * la de Levenshtein de los apellidos, contando el intercambio de dos letras como una sola errata, y la edad,
+ * que puede diferir en un año como mucho. Las parejas con una puntuación igual o superior al umbral
+ * ({@code ejercicioe.duplicados.umbral}, 0,9 por defecto) se consideran parecidas.
+ * </p>
+ *
+ * <p>
+ * Hay dos formas de uso:
+ * </p>
+ * <ul>
+ *     <li>Altas sueltas: {@link #vincular} mantiene un índice de bloques sincronizado con la lista
+ *     y {@link #buscarParecidas} solo puntúa a las personas de los bloques de la nueva.</li>
+ *     <li>Revisión completa: {@link #buscarTodas} calcula las claves de todas las personas en paralelo, las agrupa
+ *     ordenando un array de enteros largos con el hash de la clave y la posición, y puntúa los bloques en paralelo.
+ *     Los bloques más grandes que {@link #BLOQUE_MAXIMO} se recorren con una ventana deslizante sobre
+ *     las personas ordenadas por apellidos y nombre, en lugar de comparar todas sus parejas.</li>
+ * </ul>
+ */
+public class DetectorDuplicados {
+
+    /** Puntuación mínima para considerar parecidas a dos personas. */
+    public static final double UMBRAL = Double.parseDouble(System.getProperty("ejercicioe.duplicados.umbral", "0.9"));
+
+    /** Tamaño a partir del cual un bloque se recorre con ventana deslizante en la revisión completa. */
+    private static final int BLOQUE_MAXIMO = 500;
+
+    /** Número de personas siguientes con las que se compara cada una en los bloques grandes. */
+    private static final int VENTANA = 50;
+
+    /** Número de claves de bloque de cada persona. */
+    private static final int CLAVES = 3;
+
+    /** Longitud máxima de una clave fonética. */
+    private static final int LONGITUD_FONETICA = 6;
+
+    /** Longitud mínima de un texto para que una sola errata se trate como tal. */
+    private static final int LONGITUD_ERRATA = 4;
+
+    /** Similitud mínima de dos textos que solo se diferencian en una errata. */
+    private static final double SIMILITUD_ERRATA = 0.9;
+
+    /** Peso del nombre en la puntuación. */
+    private static final double PESO_NOMBRE = 0.4;
+
+    /** Peso de los apellidos en la puntuación. */
+    private static final double PESO_APELLIDOS = 0.5;
+
+    /** Peso de la edad en la puntuación. */
+    private static final double PESO_EDAD = 0.1;
+
+    /**
+     * Pareja de personas parecidas.
+     *
+     * @param persona    la persona que ya estaba, o la primera en la lista.
+     * @param parecida   la persona parecida a ella.
+     * @param puntuacion la similitud entre ambas, entre 0 y 1.
+     */
+    public record Coincidencia(Persona persona, Persona parecida, double puntuacion) {
+    }
+
+    /**
+     * Datos normalizados de una persona para compararla.
+     *
+     * @param persona   la persona.
+     * @param nombre    el nombre normalizado.
+     * @param apellidos los apellidos normalizados.
+     * @param edad      la edad.
+     * @param claves    las claves de bloque.
+     */
+    private record Firma(Persona persona, String nombre, String apellidos, int edad, String[] claves) {
+    }
+
+    /** Umbral de este detector. */
+    private final double umbral;
+
+    /** Firmas de las personas de la lista vinculada agrupadas por clave de bloque. */
+    private final Map<String, List<Firma>> bloques = new HashMap<>();
+
+    /**
+     * Crea un detector con el umbral por defecto.
+     */
+    public DetectorDuplicados() {
+        this(UMBRAL);
+    }
+
+    /**
+     * Crea un detector con el umbral indicado.
+     *
+     * @param umbral la puntuación mínima, entre 0 y 1, para considerar parecidas a dos personas.
+     */
+    public DetectorDuplicados(double umbral) {
+        this.umbral = umbral;
+    }
+
+    /**
+     * Indexa las personas de la lista y mantiene el índice sincronizado con sus cambios.
+     * Las firmas iniciales se calculan en paralelo.
+     *
+     * @param personas la lista de personas.
+     */
+    public void vincular(ObservableList<Persona> personas) {
+        Persona[] iniciales = personas.toArray(new Persona[0]);
+        Firma[] firmas = new Firma[iniciales.length];
+        Arrays.parallelSetAll(firmas, i -> firmar(iniciales[i]));
+        for (Firma firma : firmas) {
+            agregar(firma);
+        }
+        personas.addListener(this::actualizar);
+    }
+
+    /**
+     * Busca las personas de la lista vinculada parecidas a la indicada.
+     *
+     * @param persona  la persona nueva o modificada.
+     * @param ignorar  la persona que se está modificando, que no cuenta como parecida; {@code null} al dar de alta.
+     * @return las coincidencias, de mayor a menor puntuación.
+     */
+    public List<Coincidencia> buscarParecidas(Persona persona, Persona ignorar) {
+        Firma firma = firmar(persona);
+        // Una misma persona puede estar en varios de los bloques: solo se puntúa una vez
+        Set<Persona> vistas = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Coincidencia> coincidencias = new ArrayList<>();
+        for (String clave : firma.claves()) {
+            for (Firma candidata : bloques.getOrDefault(clave, List.of())) {
+                if (candidata.persona() == ignorar || !vistas.add(candidata.persona())) {
+                    continue;
+                }
+                double puntuacion = puntuar(firma, candidata, umbral);
+                if (puntuacion >= umbral) {
+                    coincidencias.add(new Coincidencia(candidata.persona(), persona, puntuacion));
+                }
+            }
+        }
+        coincidencias.sort(Comparator.comparingDouble(Coincidencia::puntuacion).reversed());
+        return coincidencias;
+    }
+
+    /**
+     * Busca todas las parejas de personas parecidas, repartiendo el trabajo entre todos los núcleos.
+     *
+     * @param personas las personas a revisar.
+     * @param umbral   la puntuación mínima, entre 0 y 1, para considerar parecidas a dos personas.
+     * @return las coincidencias, de mayor a menor puntuación; en cada una, {@code persona} es la
+     * que aparece antes en el array.
+     */
+    public static List<Coincidencia> buscarTodas(Persona[] personas, double umbral) {
+        Firma[] firmas = new Firma[personas.length];
+        Arrays.parallelSetAll(firmas, i -> firmar(personas[i]));
+
+        // Hash de la clave en la mitad alta y posición en la baja: al ordenar, cada bloque queda contiguo.
+        // Dos claves con el mismo hash comparten bloque, lo que solo añade comparaciones
+        long[] entradas = new long[personas.length * CLAVES];
+        Arrays.parallelSetAll(entradas, k -> (long) firmas[k / CLAVES].claves()[k % CLAVES].hashCode() << 32 | k / CLAVES);
+        Arrays.parallelSort(entradas);
+
+        List<int[]> tramos = new ArrayList<>();
+        for (int inicio = 0, fin; inicio < entradas.length; inicio = fin) {
+            fin = inicio + 1;
+            while (fin < entradas.length && entradas[fin] >>> 32 == entradas[inicio] >>> 32) {
+                fin++;
+            }
+            if (fin - inicio > 1) {
+                tramos.add(new int[]{inicio, fin});
+            }
+        }
+
+        // Cada pareja se guarda como (menor << 32 | mayor) para descartar las encontradas en varios bloques
+        long[] parejas = tramos.parallelStream()
+                .flatMapToLong(tramo -> Arrays.stream(compararBloque(firmas, entradas, tramo[0], tramo[1], umbral)))
+                .sorted()
+                .distinct()
+                .toArray();
+
+        List<Coincidencia> coincidencias = new ArrayList<>(parejas.length);
+        for (long pareja : parejas) {
+            int primera = (int) (pareja >>> 32);
+            int segunda = (int) pareja;
+            coincidencias.add(new Coincidencia(personas[primera], personas[segunda], puntuar(firmas[primera], firmas[segunda], umbral)));
+        }
+        coincidencias.sort(Comparator.comparingDouble(Coincidencia::puntuacion).reversed());
+        return coincidencias;
+    }
+
+    /**
+     * Compara las personas de un bloque de la revisión completa.
+     *
+     * @param firmas   las firmas de todas las personas.
+     * @param entradas las entradas ordenadas por clave.
+     * @param desde    primera entrada del bloque (incluida).
+     * @param hasta    última entrada del bloque (excluida).
+     * @param umbral   la puntuación mínima.
+     * @return las parejas parecidas, como {@code menor << 32 | mayor}.
+     */
+    private static long[] compararBloque(Firma[] firmas, long[] entradas, int desde, int hasta, double umbral) {
+        int[] indices = IntStream.range(desde, hasta).map(k -> (int) entradas[k]).toArray();
+        int ventana = indices.length;
+        if (indices.length > BLOQUE_MAXIMO) {
+            // Vecindario ordenado: las personas parecidas quedan cerca al ordenar por apellidos y nombre
+            indices = IntStream.of(indices).boxed()
+                    .sorted(Comparator.comparing((Integer i) -> firmas[i].apellidos()).thenComparing(i -> firmas[i].nombre()))
+                    .mapToInt(Integer::intValue).toArray();
+            ventana = VENTANA;
+        }
+        long[] parejas = new long[8];
+        int encontradas = 0;
+        for (int i = 0; i < indices.length; i++) {
+            for (int j = i + 1; j < Math.min(indices.length, i + 1 + ventana); j++) {
+                int a = indices[i];
+                int b = indices[j];
+                if (a != b && puntuar(firmas[a], firmas[b], umbral) >= umbral) {
+                    if (encontradas == parejas.length) {
+                        parejas = Arrays.copyOf(parejas, encontradas * 2);
+                    }
+                    parejas[encontradas++] = (long) Math.min(a, b) << 32 | Math.max(a, b);
+                }
+            }
+        }
+        return Arrays.copyOf(parejas, encontradas);
+    }
+
+    /**
+     * Puntúa la similitud de dos personas. Si es evidente que no llegan al umbral, no se termina de calcular.
+     *
+     * @param a      la primera persona.
+     * @param b      la segunda persona.
+     * @param umbral la puntuación mínima que interesa.
+     * @return la similitud, entre 0 y 1; 0 si sus edades difieren en más de un año o no pueden llegar al umbral.
+     */
+    private static double puntuar(Firma a, Firma b, double umbral) {
+        int diferenciaEdad = Math.abs(a.edad() - b.edad());
+        if (diferenciaEdad > 1) {
+            return 0;
+        }
+        double edad = PESO_EDAD * (diferenciaEdad == 0 ? 1 : 0.5);
+        // Aunque los nombres coincidieran del todo, los apellidos necesitan al menos esta similitud
+        double minimaApellidos = (umbral - PESO_NOMBRE - edad) / PESO_APELLIDOS;
+        double apellidos = similitudEdicion(a.apellidos(), b.apellidos(), minimaApellidos);
+        if (apellidos < minimaApellidos) {
+            return 0;
+        }
+        return PESO_NOMBRE * jaroWinkler(a.nombre(), b.nombre()) + PESO_APELLIDOS * apellidos + edad;
+    }
+
+    /**
+     * Calcula la firma de una persona.
+     *
+     * @param persona la persona.
+     * @return sus datos normalizados y sus claves de bloque.
+     */
+    private static Firma firmar(Persona persona) {
+        String nombre = normalizarNombre(persona.getNombre());
+        String apellidos = normalizarNombre(persona.getApellidos());
+        String nombre1 = palabra(nombre, 0);
+        String apellido1 = palabra(apellidos, 0);
+        String apellido2 = palabra(apellidos, 1);
+        String foneticaNombre = claveFonetica(nombre1);
+        String foneticaApellido1 = claveFonetica(apellido1);
+        String foneticaApellido2 = claveFonetica(apellido2);
+        String[] claves = {
+                foneticaNombre + '|' + foneticaApellido1,
+                foneticaApellido1 + '|' + foneticaApellido2 + '|' + inicial(nombre1),
+                foneticaNombre + '|' + inicial(apellido1) + '|' + foneticaApellido2};
+        return new Firma(persona, nombre, apellidos, persona.getEdad(), claves);
+    }
+
+    /**
+     * Normaliza un nombre para compararlo: minúsculas, sin tildes, solo letras y con un único espacio entre palabras.
+     *
+     * @param texto el texto; puede ser {@code null}.
+     * @return el texto normalizado.
+     */
+    private static String normalizarNombre(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String normalizado = IndiceBusqueda.normalizar(texto);
+        StringBuilder resultado = new StringBuilder(normalizado.length());
+        for (int i = 0; i < normalizado.length(); i++) {
+            char c = normalizado.charAt(i);
+            if (Character.isLetter(c)) {
+                resultado.append(c);
+            } else if (!resultado.isEmpty() && resultado.charAt(resultado.length() - 1) != ' ') {
+                resultado.append(' ');
+            }
+        }
+        int longitud = resultado.length();
+        return longitud > 0 && resultado.charAt(longitud - 1) == ' ' ? resultado.substring(0, longitud - 1) : resultado.toString();
+    }
+
+    /**
+     * Calcula una clave fonética aproximada para el español: las letras que suenan igual tienen el mismo código,
+     * la {@code h} muda desaparece, las vocales se quitan salvo la inicial, las repeticiones se juntan
+     * y la clave se corta a {@link #LONGITUD_FONETICA} caracteres.
+     *
+     * @param palabra la palabra normalizada.
+     * @return la clave fonética; vacía si la palabra está vacía.
+     */
+    private static String claveFonetica(String palabra) {
+        StringBuilder clave = new StringBuilder(LONGITUD_FONETICA);
+        int n = palabra.length();
+        for (int i = 0; i < n && clave.length() < LONGITUD_FONETICA; i++) {
+            char c = palabra.charAt(i);
+            char siguiente = i + 1 < n ? palabra.charAt(i + 1) : ' ';
+            char codigo;
+            switch (c) {
+                case 'a', 'e', 'i', 'o', 'u' -> codigo = i == 0 ? 'a' : 0;
+                case 'b', 'v', 'w' -> codigo = 'b';
+                case 'z', 's' -> codigo = 's';
+                case 'c' -> {
+                    if (siguiente == 'h') {
+                        codigo = 'x';
+                        i++;
+                    } else {
+                        codigo = siguiente == 'e' || siguiente == 'i' ? 's' : 'k';
+                    }
+                }
+                case 'q' -> {
+                    codigo = 'k';
+                    if (siguiente == 'u') {
+                        i++;
+                    }
+                }
+                case 'g' -> {
+                    char tercera = i + 2 < n ? palabra.charAt(i + 2) : ' ';
+                    if (siguiente == 'e' || siguiente == 'i') {
+                        codigo = 'j';
+                    } else {
+                        codigo = 'g';
+                        if (siguiente == 'u' && (tercera == 'e' || tercera == 'i')) {
+                            i++;
+                        }
+                    }
+                }
+                case 'l' -> {
+                    codigo = siguiente == 'l' ? 'y' : 'l';
+                    if (siguiente == 'l') {
+                        i++;
+                    }
+                }
+                case 'y' -> codigo = i + 1 < n && "aeiou".indexOf(siguiente) >= 0 ? 'y' : (i == 0 ? 'a' : 0);
+                case 'h' -> codigo = 0;
+                default -> codigo = c;
+            }
+            if (codigo != 0 && (clave.isEmpty() || clave.charAt(clave.length() - 1) != codigo)) {
+                clave.append(codigo);
+            }
+        }
+        return clave.toString();
+    }
+
+    /**
+     * Calcula la similitud de Jaro-Winkler entre dos textos.
+     *
+     * @param a el primer texto.
+     * @param b el segundo texto.
+     * @return la similitud, entre 0 y 1.
+     */
+    private static double jaroWinkler(String a, String b) {
+        if (a.equals(b)) {
+            return 1;
+        }
+        int longitudA = a.length();
+        int longitudB = b.length();
+        if (longitudA == 0 || longitudB == 0) {
+            return 0;
+        }
+        int distancia = Math.max(0, Math.max(longitudA, longitudB) / 2 - 1);
+        boolean[] emparejadasA = new boolean[longitudA];
+        boolean[] emparejadasB = new boolean[longitudB];
+        int coincidencias = 0;
+        for (int i = 0; i < longitudA; i++) {
+            int desde = Math.max(0, i - distancia);
+            int hasta = Math.min(longitudB, i + distancia + 1);
+            for (int j = desde; j < hasta; j++) {
+                if (!emparejadasB[j] && a.charAt(i) == b.charAt(j)) {
+                    emparejadasA[i] = true;
+                    emparejadasB[j] = true;
+                    coincidencias++;
+                    break;
+                }
+            }
+        }
+        if (coincidencias == 0) {
+            return 0;
+        }
+        int transposiciones = 0;
+        for (int i = 0, j = 0; i < longitudA; i++) {
+            if (emparejadasA[i]) {
+                while (!emparejadasB[j]) {
+                    j++;
+                }
+                if (a.charAt(i) != b.charAt(j)) {
+                    transposiciones++;
+                }
+                j++;
+            }
+        }
+        double m = coincidencias;
+        double jaro = (m / longitudA + m / longitudB + (m - transposiciones / 2.0) / m) / 3;
+        int prefijo = 0;
+        while (prefijo < Math.min(4, Math.min(longitudA, longitudB)) && a.charAt(prefijo) == b.charAt(prefijo)) {
+            prefijo++;
+        }
+        return jaro + prefijo * 0.1 * (1 - jaro);
+    }
+
+    /**
+     * Calcula la similitud entre dos textos a partir de su distancia de edición: 1 menos la distancia
+     * dividida entre la longitud del más largo. Una sola errata (una letra cambiada, sobrante, que falta
+     * o dos letras intercambiadas) en un texto de al menos {@link #LONGITUD_ERRATA} letras puntúa como mínimo
+     * {@link #SIMILITUD_ERRATA}, para que no penalice más a los apellidos cortos.
+     *
+     * @param a      el primer texto.
+     * @param b      el segundo texto.
+     * @param minima la similitud mínima que interesa: por debajo de ella se devuelve 0 sin terminar el cálculo.
+     * @return la similitud, entre 0 y 1.
+     */
+    private static double similitudEdicion(String a, String b, double minima) {
+        if (a.equals(b)) {
+            return 1;
+        }
+        int maximo = Math.max(a.length(), b.length());
+        // Mayor distancia que aún da la similitud mínima; una errata siempre se calcula
+        int tope = Math.max(1, (int) ((1 - minima) * maximo + 1e-9));
+        if (Math.abs(a.length() - b.length()) > tope) {
+            return 0;
+        }
+        int distancia = distanciaEdicion(a, b, tope);
+        if (distancia > tope) {
+            return 0;
+        }
+        double similitud = 1 - distancia / (double) maximo;
+        return distancia == 1 && maximo >= LONGITUD_ERRATA ? Math.max(SIMILITUD_ERRATA, similitud) : similitud;
+    }
+
+    /**
+     * Calcula la distancia de Levenshtein entre dos textos contando además como una sola operación
+     * el intercambio de dos letras contiguas (distancia de alineamiento óptimo de cadenas).
+     * El cálculo se abandona en cuanto toda una fila de la tabla supera el tope.
+     *
+     * @param a    el primer texto.
+     * @param b    el segundo texto.
+     * @param tope la mayor distancia que interesa.
+     * @return el número mínimo de operaciones para convertir un texto en el otro, o {@code tope + 1} si lo supera.
+     */
+    private static int distanciaEdicion(String a, String b, int tope) {
+        int[] dosAntes = new int[b.length() + 1];
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int sustitucion = anterior[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                actual[j] = Math.min(sustitucion, Math.min(anterior[j], actual[j - 1]) + 1);
+                if (i > 1 && j > 1 && c == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    actual[j] = Math.min(actual[j], dosAntes[j - 2] + 1);
+                }
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            // El mínimo de cada fila nunca baja en las siguientes
+            if (minimoFila > tope) {
+                return tope + 1;
+            }
+            int[] libre = dosAntes;
+            dosAntes = anterior;
+            anterior = actual;
+            actual = libre;
+        }
+        return anterior[b.length()];
+    }
+
+    /**
+     * Devuelve una palabra de un texto normalizado.
+     *
+     * @param texto  el texto, con las palabras separadas por un espacio.
+     * @param numero la posición de la palabra, empezando en 0.
+     * @return la palabra, o una cadena vacía si no existe.
+     */
+    private static String palabra(String texto, int numero) {
+        int inicio = 0;
+        for (int i = 0; i < numero; i++) {
+            int espacio = texto.indexOf(' ', inicio);
+            if (espacio < 0) {
+                return "";
+            }
+            inicio = espacio + 1;
+        }
+        int fin = texto.indexOf(' ', inicio);
+        return texto.substring(inicio, fin < 0 ? texto.length() : fin);
+    }
+
+    /**
+     * Devuelve la primera letra de una palabra.
+     *
+     * @param palabra la palabra.
+     * @return la primera letra, o una cadena vacía si la palabra está vacía.
+     */
+    private static String inicial(String palabra) {
+        return palabra.isEmpty() ? "" : palabra.substring(0, 1);
+    }
+
+    /**
+     * Agrega una persona a los bloques de sus claves.
+     *
+     * @param firma la firma de la persona.
+     */
+    private void agregar(Firma firma) {
+        for (String clave : firma.claves()) {
+            bloques.computeIfAbsent(clave, k -> new ArrayList<>(2)).add(firma);
+        }
+    }
+
+    /**
+     * Quita una persona de los bloques de sus claves.
+     *
+     * @param persona la persona.
+     */
+    private void quitar(Persona persona) {
+        for (String clave : firmar(persona).claves()) {
+            List<Firma> bloque = bloques.get(clave);
+            if (bloque == null) {
+                continue;
+            }
+            for (int i = bloque.size() - 1; i >= 0; i--) {
+                if (bloque.get(i).persona() == persona) {
+                    bloque.remove(i);
+                    break;
+                }
+            }
+            if (bloque.isEmpty()) {
+                bloques.remove(clave);
+            }
+        }
+    }
+
+    /**
+     * Aplica al índice los cambios de la lista. Las reordenaciones no afectan al índice.
+     *
+     * @param cambio el cambio de la lista.
+     */
+    private void actualizar(ListChangeListener.Change<? extends Persona> cambio) {
+        // Primero se quitan todas las eliminadas, por si la misma persona vuelve a entrar en otro tramo del cambio
+        while (cambio.next()) {
+            if (!cambio.wasPermutated()) {
+                cambio.getRemoved().forEach(this::quitar);
+            }
+        }
+        cambio.reset();
+        while (cambio.next()) {
+            if (!cambio.wasPermutated()) {
+                cambio.getAddedSubList().forEach(persona -> agregar(firmar(persona)));
+            }
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package es.guillearana.ejercicioe.servicio;
+
+import es.guillearana.ejercicioe.model.FuentePaginada;
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tarea que exporta personas a un fichero CSV, JSON Lines o columnar binario en un hilo de fondo.
+ *
+ * <p>
+ * Las personas se leen por páginas de una {@link FuentePaginada} y se codifican directamente en UTF-8
+ * sobre un {@link ByteBuffer} directo que se vuelca en un {@link FileChannel} cada vez que se llena: no
+ * se construye ninguna cadena por fila y la memoria usada no depende del número de filas. En la vista
+ * paginada se exporta directamente desde el almacén, fijado con {@link FuentePaginada#instantanea()} al
+ * empezar para que los cambios posteriores no desplacen las páginas; en la vista normal, desde una copia
+ * de las referencias de la tabla, con su filtro y su orden, tomada en el hilo de JavaFX. El fichero se
+ * escribe primero con la extensión {@code .tmp} y solo sustituye al destino cuando está completo.
+ * </p>
+ *
+ * <p>
+ * Formatos, según la extensión del fichero:
+ * </p>
+ * <ul>
+ *     <li>{@code .csv}: cabecera {@code nombre,apellidos,edad} y una fila por persona; los campos con comas
+ *     o comillas van entre comillas dobles. Se puede volver a importar con {@link ImportadorPersonas}.</li>
+ *     <li>{@code .jsonl} o {@code .json}: un objeto {@code {"nombre":...,"apellidos":...,"edad":...}} por línea,
+ *     también importable.</li>
+ *     <li>{@code .col}: formato columnar binario descrito en {@link #escribirGrupo(Persona[], int)}.</li>
+ * </ul>
+ */
+public class ExportadorPersonas extends Task<ExportadorPersonas.Resultado> {
+
+    /** Marca al inicio del formato columnar ("PCOL"). */
+    static final int MAGIA_COLUMNAR = 0x50434F4C;
+
+    /** Versión del formato columnar. */
+    static final int VERSION_COLUMNAR = 1;
+
+    /** Número de filas de cada grupo del formato columnar, que también es el tamaño de página leído. */
+    static final int FILAS_POR_GRUPO = 65_536;
+
+    /** Tamaño del buffer de escritura. */
+    private static final int TAMANO_BUFFER = 1 << 20;
+
+    /**
+     * Formatos de exportación.
+     */
+    public enum Formato {
+        /** Valores separados por comas. */
+        CSV,
+        /** Un objeto JSON por línea. */
+        JSON_LINES,
+        /** Columnas binarias por grupos de filas, con diccionario de textos. */
+        COLUMNAR;
+
+        /**
+         * Elige el formato por la extensión del fichero.
+         *
+         * @param fichero el fichero de destino.
+         * @return el formato; CSV si la extensión no es de otro.
+         */
+        public static Formato deFichero(Path fichero) {
+            String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (nombre.endsWith(".jsonl") || nombre.endsWith(".json")) {
+                return JSON_LINES;
+            }
+            return nombre.endsWith(".col") ? COLUMNAR : CSV;
+        }
+    }
+
+    /**
+     * Resumen de una exportación terminada.
+     *
+     * @param filas        personas exportadas.
+     * @param bytes        tamaño del fichero.
+     * @param milisegundos duración de la exportación.
+     */
+    public record Resultado(long filas, long bytes, long milisegundos) {
+    }
+
+    /** Origen de las personas. */
+    private final FuentePaginada origen;
+
+    /** Fichero de destino. */
+    private final Path destino;
+
+    /** Formato del fichero. */
+    private final Formato formato;
+
+    /** Buffer donde se codifican las filas antes de escribirlas. */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANO_BUFFER);
+
+    /** Códigos de diccionario de un grupo del formato columnar, reutilizados entre grupos. */
+    private int[] codigos;
+
+    /** Diccionario de textos de un grupo del formato columnar, reutilizado entre grupos. */
+    private Map<String, Integer> diccionario;
+
+    /** Canal del fichero temporal. */
+    private FileChannel canal;
+
+    /** Bytes escritos en el canal. */
+    private long escritos;
+
+    /**
+     * Crea la tarea de exportación de una copia de las filas de la tabla.
+     *
+     * @param personas las personas a exportar, en el orden de la tabla.
+     * @param destino  el fichero de destino.
+     */
+    public ExportadorPersonas(Persona[] personas, Path destino) {
+        this(new FuentePaginada() {
+            @Override
+            public int tamano() {
+                return personas.length;
+            }
+
+            @Override
+            public void leerPagina(int desde, Persona[] pagina, int cantidad) {
+                System.arraycopy(personas, desde, pagina, 0, cantidad);
+            }
+        }, destino);
+    }
+
+    /**
+     * Crea la tarea de exportación de un origen paginado, como el almacén en la vista paginada.
+     *
+     * @param origen  el origen de las personas; se fija y se lee desde el hilo de la tarea.
+     * @param destino el fichero de destino.
+     */
+    public ExportadorPersonas(FuentePaginada origen, Path destino) {
+        this.origen = origen;
+        this.destino = destino;
+        this.formato = Formato.deFichero(destino);
+    }
+
+    /**
+     * Escribe todas las personas del origen, tal como están al empezar, en el fichero temporal y lo mueve
+     * al destino al terminar. Si se cancela o falla, el fichero temporal se borra y el destino no se toca.
+     *
+     * @return el resumen de la exportación.
+     * @throws Exception si no se puede escribir el fichero.
+     */
+    @Override
+    protected Resultado call() throws Exception {
+        long inicio = System.nanoTime();
+        FuentePaginada fuente = origen.instantanea();
+        int total = fuente.tamano();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        Persona[] pagina = new Persona[Math.min(FILAS_POR_GRUPO, Math.max(1, total))];
+        try (FileChannel abierto = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            canal = abierto;
+            escribirCabecera();
+            for (int desde = 0; desde < total; desde += pagina.length) {
+                if (isCancelled()) {
+                    break;
+                }
+                int cantidad = Math.min(pagina.length, total - desde);
+                fuente.leerPagina(desde, pagina, cantidad);
+                if (formato == Formato.COLUMNAR) {
+                    escribirGrupo(pagina, cantidad);
+                } else {
+                    for (int i = 0; i < cantidad; i++) {
+                        escribirFila(pagina[i]);
+                    }
+                }
+                updateProgress(desde + cantidad, total);
+                long ms = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+                updateMessage(String.format("%,d de %,d filas exportadas (%,d por segundo)",
+                        desde + cantidad, total, (desde + cantidad) * 1000L / ms));
+            }
+            escribirPie(total);
+            vaciar();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        if (isCancelled()) {
+            Files.deleteIfExists(temporal);
+            return null;
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Resultado(total, escritos, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Escribe la cabecera del formato.
+     *
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirCabecera() throws IOException {
+        switch (formato) {
+            case CSV -> escribirAscii("nombre,apellidos,edad\n");
+            case COLUMNAR -> {
+                reservar(8);
+                buffer.putInt(MAGIA_COLUMNAR).putInt(VERSION_COLUMNAR);
+            }
+            default -> {
+                // JSON Lines no tiene cabecera
+            }
+        }
+    }
+
+    /**
+     * Escribe el pie del formato columnar: un grupo vacío y el número total de filas.
+     *
+     * @param total el número de filas exportadas.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirPie(long total) throws IOException {
+        if (formato == Formato.COLUMNAR) {
+            reservar(12);
+            buffer.putInt(0).putLong(total);
+        }
+    }
+
+    /**
+     * Escribe una fila en CSV o JSON Lines.
+     *
+     * @param persona la persona.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirFila(Persona persona) throws IOException {
+        if (formato == Formato.CSV) {
+            escribirCsv(persona.getNombre());
+            escribirByte(',');
+            escribirCsv(persona.getApellidos());
+            escribirByte(',');
+            escribirEntero(persona.getEdad());
+        } else {
+            escribirAscii("{\"nombre\":\"");
+            escribirJson(persona.getNombre());
+            escribirAscii("\",\"apellidos\":\"");
+            escribirJson(persona.getApellidos());
+            escribirAscii("\",\"edad\":");
+            escribirEntero(persona.getEdad());
+            escribirByte('}');
+        }
+        escribirByte('\n');
+    }
+
+    /**
+     * Escribe un grupo de filas en formato columnar. Todos los números van en big-endian y los textos en UTF-8.
+     *
+     * <pre>
+     * int filas
+     * filas x varint edad
+     * filas x varint (idPersona - idPersona anterior), en zigzag; el primero respecto a 0
+     * texto nombres
+     * texto apellidos
+     *
+     * texto: int distintos | distintos x (varint n | n bytes) | filas x varint código
+     * </pre>
+     * <p>
+     * El fichero empieza por {@code int 0x50434F4C ("PCOL") | int versión} y termina con un grupo de 0 filas
+     * seguido de {@code long} total de filas. Como cada grupo tiene su propio diccionario, la memoria necesaria
+     * para escribirlo o leerlo solo depende de {@link #FILAS_POR_GRUPO}.
+     * </p>
+     *
+     * @param personas las personas del grupo.
+     * @param filas    el número de personas del grupo.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirGrupo(Persona[] personas, int filas) throws IOException {
+        if (codigos == null) {
+            codigos = new int[FILAS_POR_GRUPO];
+            diccionario = new HashMap<>();
+        }
+        reservar(4);
+        buffer.putInt(filas);
+        for (int i = 0; i < filas; i++) {
+            escribirVarint(personas[i].getEdad());
+        }
+        int anterior = 0;
+        for (int i = 0; i < filas; i++) {
+            int id = personas[i].getIdPersona();
+            escribirVarint((id - anterior) << 1 ^ (id - anterior) >> 31);
+            anterior = id;
+        }
+        escribirColumnaTexto(personas, filas, true);
+        escribirColumnaTexto(personas, filas, false);
+    }
+
+    /**
+     * Escribe una columna de texto de un grupo: su diccionario y el código de cada fila.
+     *
+     * @param personas las personas del grupo.
+     * @param filas    el número de personas del grupo.
+     * @param nombres  {@code true} para la columna de nombres, {@code false} para la de apellidos.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirColumnaTexto(Persona[] personas, int filas, boolean nombres) throws IOException {
+        diccionario.clear();
+        for (int i = 0; i < filas; i++) {
+            String texto = nombres ? personas[i].getNombre() : personas[i].getApellidos();
+            Integer codigo = diccionario.putIfAbsent(texto, diccionario.size());
+            codigos[i] = codigo != null ? codigo : diccionario.size() - 1;
+        }
+        reservar(4);
+        buffer.putInt(diccionario.size());
+        // Los textos se escriben en el orden de su código, que es el de su primera aparición
+        for (int i = 0, siguiente = 0; i < filas; i++) {
+            if (codigos[i] == siguiente) {
+                String texto = nombres ? personas[i].getNombre() : personas[i].getApellidos();
+                escribirVarint(longitudUtf8(texto));
+                escribirUtf8(texto);
+                siguiente++;
+            }
+        }
+        for (int i = 0; i < filas; i++) {
+            escribirVarint(codigos[i]);
+        }
+    }
+
+    /**
+     * Escribe un campo CSV, entre comillas si contiene comas, comillas o saltos de línea.
+     *
+     * @param texto el valor del campo.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirCsv(String texto) throws IOException {
+        boolean comillas = false;
+        for (int i = 0; i < texto.length() && !comillas; i++) {
+            char c = texto.charAt(i);
+            comillas = c == ',' || c == ';' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            escribirUtf8(texto);
+            return;
+        }
+        escribirByte('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"') {
+                escribirByte('"');
+            }
+            escribirCaracter(texto, i);
+            if (Character.isHighSurrogate(c) && i + 1 < texto.length()) {
+                i++;
+            }
+        }
+        escribirByte('"');
+    }
+
+    /**
+     * Escribe el contenido de una cadena JSON, escapando comillas, barras y caracteres de control.
+     *
+     * @param texto el texto.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirJson(String texto) throws IOException {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"' || c == '\\') {
+                escribirByte('\\');
+                escribirByte(c);
+            } else if (c < 0x20) {
+                escribirAscii(String.format("\\u%04x", (int) c));
+            } else {
+                escribirCaracter(texto, i);
+                if (Character.isHighSurrogate(c) && i + 1 < texto.length()) {
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe un texto en UTF-8 sin escapar.
+     *
+     * @param texto el texto.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirUtf8(String texto) throws IOException {
+        for (int i = 0; i < texto.length(); i++) {
+            escribirCaracter(texto, i);
+            if (Character.isHighSurrogate(texto.charAt(i)) && i + 1 < texto.length()) {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Escribe en UTF-8 el carácter de una posición; si es el comienzo de un par sustituto, el par completo.
+     * Un sustituto suelto se escribe como {@code ?}.
+     *
+     * @param texto    el texto.
+     * @param posicion la posición del carácter.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirCaracter(String texto, int posicion) throws IOException {
+        char c = texto.charAt(posicion);
+        reservar(4);
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+        } else if (!Character.isSurrogate(c)) {
+            buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && posicion + 1 < texto.length()
+                && Character.isLowSurrogate(texto.charAt(posicion + 1))) {
+            int punto = Character.toCodePoint(c, texto.charAt(posicion + 1));
+            buffer.put((byte) (0xF0 | punto >> 18)).put((byte) (0x80 | punto >> 12 & 0x3F))
+                    .put((byte) (0x80 | punto >> 6 & 0x3F)).put((byte) (0x80 | punto & 0x3F));
+        } else {
+            buffer.put((byte) '?');
+        }
+    }
+
+    /**
+     * Calcula cuántos bytes ocupa un texto en UTF-8, con el mismo tratamiento de sustitutos que
+     * {@link #escribirCaracter(String, int)}.
+     *
+     * @param texto el texto.
+     * @return el número de bytes.
+     */
+    private static int longitudUtf8(String texto) {
+        int bytes = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Escribe un texto que solo contiene caracteres ASCII.
+     *
+     * @param texto el texto.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirAscii(String texto) throws IOException {
+        reservar(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            buffer.put((byte) texto.charAt(i));
+        }
+    }
+
+    /**
+     * Escribe un entero en decimal sin crear cadenas.
+     *
+     * @param valor el entero.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirEntero(int valor) throws IOException {
+        reservar(11);
+        long resto = valor;
+        if (resto < 0) {
+            buffer.put((byte) '-');
+            resto = -resto;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= resto) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + resto / divisor % 10));
+        }
+    }
+
+    /**
+     * Escribe un entero sin signo en grupos de 7 bits, del menos al más significativo.
+     *
+     * @param valor el entero, interpretado sin signo.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirVarint(int valor) throws IOException {
+        reservar(5);
+        while ((valor & ~0x7F) != 0) {
+            buffer.put((byte) (valor & 0x7F | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+    }
+
+    /**
+     * Escribe un byte ASCII.
+     *
+     * @param c el carácter.
+     * @throws IOException si no se puede escribir.
+     */
+    private void escribirByte(char c) throws IOException {
+        reservar(1);
+        buffer.put((byte) c);
+    }
+
+    /**
+     * Vacía el buffer en el fichero si no quedan los bytes indicados libres.
+     *
+     * @param bytes los bytes que se van a escribir a continuación.
+     * @throws IOException si no se puede escribir.
+     */
+    private void reservar(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            vaciar();
+        }
+    }
+
+    /**
+     * Escribe en el fichero el contenido del buffer y lo deja vacío.
+     *
+     * @throws IOException si no se puede escribir.
+     */
+    private void vaciar() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            escritos += canal.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,500 @@
+package es.guillearana.ejercicioe.servicio;
+
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.PersonaRepositorio;
+import es.guillearana.ejercicioe.model.ValidadorPersona;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Tarea que importa personas desde un fichero CSV o JSON en un hilo de fondo.
+ *
+ * <p>
+ * El fichero se lee en flujo, sin cargarlo entero en memoria. Cada registro se valida con
+ * {@link ValidadorPersona} (las mismas reglas que la ventana modal). Las personas válidas se agrupan
+ * en lotes grandes que se publican en el hilo de JavaFX con {@link PersonaRepositorio#agregarTodas}, que
+ * descarta las que ya estaban en la lista, incluidas las de lotes anteriores del mismo fichero, y las
+ * repetidas dentro del lote, y notifica un único cambio por lote. El importador no guarda las personas
+ * ya leídas: la memoria que usa no depende del tamaño del fichero.
+ * </p>
+ *
+ * <p>
+ * Formatos admitidos:
+ * </p>
+ * <ul>
+ *     <li>CSV con las columnas {@code nombre, apellidos, edad}, separadas por coma o punto y coma y con cabecera opcional.</li>
+ *     <li>JSON con objetos {@code {"nombre": ..., "apellidos": ..., "edad": ...}}, ya sea en un array o uno por línea.</li>
+ * </ul>
+ */
+public class ImportadorPersonas extends Task<ImportadorPersonas.Resultado> {
+
+    /** Número de personas que se publican juntas en la lista. */
+    private static final int TAMANO_LOTE = 20_000;
+
+    /** Número máximo de lotes pendientes de publicar en el hilo de JavaFX. */
+    private static final int LOTES_PENDIENTES = 4;
+
+    /** Cada cuántos registros se actualiza el progreso. */
+    private static final int INTERVALO_PROGRESO = 10_000;
+
+    /** Fichero a importar. */
+    private final File fichero;
+
+    /** Repositorio donde se agregan las personas importadas. */
+    private final PersonaRepositorio repositorio;
+
+    /** Limita los lotes en vuelo para que el lector no se adelante demasiado a la interfaz. */
+    private final Semaphore lotesLibres = new Semaphore(LOTES_PENDIENTES);
+
+    /** Personas agregadas realmente a la lista (se actualiza en el hilo de JavaFX). */
+    private final AtomicLong agregadas = new AtomicLong();
+
+    /** Lote en construcción. */
+    private List<Persona> lote = new ArrayList<>(TAMANO_LOTE);
+
+    /** Registros leídos del fichero. */
+    private long leidos;
+
+    /** Registros descartados por no superar la validación. */
+    private long invalidos;
+
+    /** Instante de inicio de la importación, en nanosegundos. */
+    private long inicio;
+
+    /**
+     * Resumen de una importación terminada.
+     *
+     * @param leidos      registros leídos del fichero.
+     * @param agregadas   personas agregadas a la lista.
+     * @param invalidos   registros descartados por datos incorrectos.
+     * @param duplicados  registros descartados por estar repetidos en el fichero o en la lista.
+     * @param milisegundos duración de la importación.
+     */
+    public record Resultado(long leidos, long agregadas, long invalidos, long duplicados, long milisegundos) {
+    }
+
+    /**
+     * Crea la tarea de importación.
+     *
+     * @param fichero     el fichero CSV o JSON a importar.
+     * @param repositorio el repositorio donde se agregan las personas.
+     */
+    public ImportadorPersonas(File fichero, PersonaRepositorio repositorio) {
+        this.fichero = fichero;
+        this.repositorio = repositorio;
+    }
+
+    /**
+     * Lee el fichero y publica las personas válidas por lotes.
+     *
+     * @return el resumen de la importación.
+     * @throws Exception si no se puede leer el fichero.
+     */
+    @Override
+    protected Resultado call() throws Exception {
+        inicio = System.nanoTime();
+        long total = Math.max(1, fichero.length());
+        ContadorBytes contador = new ContadorBytes(Files.newInputStream(fichero.toPath()));
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(contador, StandardCharsets.UTF_8), 1 << 16)) {
+            Consumer<String[]> procesar = campos -> procesar(campos, contador.leidos, total);
+            if (esJson()) {
+                leerJson(lector, procesar);
+            } else {
+                leerCsv(lector, procesar);
+            }
+        }
+        publicar();
+        // Esperar a que la interfaz haya aplicado todos los lotes antes de dar el resultado
+        lotesLibres.acquire(LOTES_PENDIENTES);
+        lotesLibres.release(LOTES_PENDIENTES);
+        updateProgress(total, total);
+        updateMessage(mensajeProgreso());
+
+        // Los válidos que no se han agregado estaban repetidos en el fichero o en la lista
+        long duplicados = leidos - invalidos - agregadas.get();
+        return new Resultado(leidos, agregadas.get(), invalidos, duplicados, milisegundos());
+    }
+
+    /**
+     * Valida un registro y lo añade al lote actual.
+     *
+     * @param campos nombre, apellidos y edad del registro.
+     * @param bytes  bytes del fichero leídos hasta ahora.
+     * @param total  tamaño total del fichero.
+     */
+    private void procesar(String[] campos, long bytes, long total) {
+        if (isCancelled()) {
+            throw new ImportacionCancelada();
+        }
+        leidos++;
+        String nombre = campos[0].trim();
+        String apellidos = campos[1].trim();
+        String edad = campos[2].trim();
+        // Solo se cuentan los inválidos: los mensajes no se construyen
+        if (ValidadorPersona.comprobar(nombre, apellidos, edad) != 0) {
+            invalidos++;
+        } else {
+            lote.add(new Persona(nombre, apellidos, ValidadorPersona.leerEdad(edad)));
+            if (lote.size() == TAMANO_LOTE) {
+                publicar();
+            }
+        }
+        if (leidos % INTERVALO_PROGRESO == 0) {
+            updateProgress(bytes, total);
+            updateMessage(mensajeProgreso());
+        }
+    }
+
+    /**
+     * Envía el lote actual al hilo de JavaFX. Si ya hay demasiados lotes pendientes,
+     * espera a que la interfaz libere alguno.
+     */
+    private void publicar() {
+        if (lote.isEmpty()) {
+            return;
+        }
+        List<Persona> pendiente = lote;
+        lote = new ArrayList<>(TAMANO_LOTE);
+        lotesLibres.acquireUninterruptibly();
+        Platform.runLater(() -> {
+            try {
+                agregadas.addAndGet(repositorio.agregarTodas(pendiente));
+            } finally {
+                lotesLibres.release();
+            }
+        });
+    }
+
+    /**
+     * Indica si el fichero debe leerse como JSON, según su extensión.
+     *
+     * @return {@code true} si el fichero es JSON.
+     */
+    private boolean esJson() {
+        String nombre = fichero.getName().toLowerCase(Locale.ROOT);
+        return nombre.endsWith(".json") || nombre.endsWith(".jsonl");
+    }
+
+    /**
+     * Construye el mensaje de progreso con el número de registros y el ritmo de importación.
+     *
+     * @return el mensaje de progreso.
+     */
+    private String mensajeProgreso() {
+        long ms = Math.max(1, milisegundos());
+        return String.format("%,d registros leídos (%,d por segundo)", leidos, leidos * 1000 / ms);
+    }
+
+    /**
+     * Devuelve el tiempo transcurrido desde el inicio de la importación.
+     *
+     * @return los milisegundos transcurridos.
+     */
+    private long milisegundos() {
+        return (System.nanoTime() - inicio) / 1_000_000;
+    }
+
+    /**
+     * Lee un fichero CSV línea a línea. Detecta el separador en la primera línea
+     * y la ignora si es una cabecera.
+     *
+     * @param lector   el lector del fichero.
+     * @param procesar acción a realizar con cada registro.
+     * @throws IOException si ocurre un error de lectura.
+     */
+    static void leerCsv(BufferedReader lector, Consumer<String[]> procesar) throws IOException {
+        String linea = lector.readLine();
+        if (linea == null) {
+            return;
+        }
+        char separador = linea.indexOf(';') >= 0 ? ';' : ',';
+        if (linea.toLowerCase(Locale.ROOT).contains("nombre")) {
+            linea = lector.readLine();
+        }
+        String[] campos = new String[3];
+        for (; linea != null; linea = lector.readLine()) {
+            if (linea.isBlank()) {
+                continue;
+            }
+            dividirCsv(linea, separador, campos);
+            procesar.accept(campos);
+        }
+    }
+
+    /**
+     * Divide una línea CSV en sus tres campos, respetando los valores entre comillas dobles.
+     * Los campos que falten quedan vacíos.
+     *
+     * @param linea     la línea a dividir.
+     * @param separador el carácter separador.
+     * @param campos    array donde se guardan los campos.
+     */
+    static void dividirCsv(String linea, char separador, String[] campos) {
+        StringBuilder actual = new StringBuilder();
+        int campo = 0;
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length() && campo < campos.length; i++) {
+            char c = linea.charAt(i);
+            if (c == '"') {
+                if (entreComillas && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else {
+                    entreComillas = !entreComillas;
+                }
+            } else if (c == separador && !entreComillas) {
+                campos[campo++] = actual.toString();
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (campo < campos.length) {
+            campos[campo++] = actual.toString();
+        }
+        while (campo < campos.length) {
+            campos[campo++] = "";
+        }
+    }
+
+    /**
+     * Lee objetos JSON planos de un flujo de caracteres, tanto si están dentro de un array
+     * como si hay uno por línea. Solo se tienen en cuenta las claves {@code nombre},
+     * {@code apellidos} y {@code edad}; la edad puede venir como número o como texto.
+     *
+     * @param lector   el lector del fichero.
+     * @param procesar acción a realizar con cada objeto.
+     * @throws IOException si ocurre un error de lectura o el JSON está mal formado; en ese caso el mensaje
+     *                     indica la línea.
+     */
+    static void leerJson(Reader lector, Consumer<String[]> procesar) throws IOException {
+        ContadorLineas entrada = new ContadorLineas(lector);
+        String[] campos = new String[3];
+        StringBuilder texto = new StringBuilder();
+        int c;
+        while ((c = entrada.read()) != -1) {
+            if (c != '{') {
+                continue;
+            }
+            campos[0] = "";
+            campos[1] = "";
+            campos[2] = "";
+            while (true) {
+                c = saltarEspacios(entrada);
+                if (c == '}') {
+                    break;
+                }
+                if (c == ',') {
+                    continue;
+                }
+                if (c != '"') {
+                    throw entrada.malFormado("se esperaba una clave");
+                }
+                String clave = leerCadena(entrada, texto);
+                if (saltarEspacios(entrada) != ':') {
+                    throw entrada.malFormado("se esperaba ':' tras \"" + clave + "\"");
+                }
+                c = saltarEspacios(entrada);
+                String valor;
+                if (c == '"') {
+                    valor = leerCadena(entrada, texto);
+                } else {
+                    texto.setLength(0);
+                    while (c != -1 && c != ',' && c != '}' && !Character.isWhitespace(c)) {
+                        texto.append((char) c);
+                        c = entrada.read();
+                    }
+                    valor = texto.toString();
+                    if (c == '}') {
+                        asignarCampo(campos, clave, valor);
+                        break;
+                    }
+                }
+                asignarCampo(campos, clave, valor);
+            }
+            procesar.accept(campos);
+        }
+    }
+
+    /**
+     * Guarda el valor en la posición del campo correspondiente a la clave.
+     *
+     * @param campos array de campos (nombre, apellidos, edad).
+     * @param clave  la clave JSON.
+     * @param valor  el valor leído.
+     */
+    private static void asignarCampo(String[] campos, String clave, String valor) {
+        switch (clave) {
+            case "nombre" -> campos[0] = valor;
+            case "apellidos" -> campos[1] = valor;
+            case "edad" -> campos[2] = "null".equals(valor) ? "" : valor;
+            default -> {
+                // Las claves desconocidas se ignoran
+            }
+        }
+    }
+
+    /**
+     * Avanza hasta el siguiente carácter que no sea un espacio en blanco.
+     *
+     * @param lector el lector.
+     * @return el carácter leído, o {@code -1} al final del flujo.
+     * @throws IOException si ocurre un error de lectura.
+     */
+    private static int saltarEspacios(ContadorLineas lector) throws IOException {
+        int c;
+        do {
+            c = lector.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    /**
+     * Lee una cadena JSON cuya comilla inicial ya se ha consumido, resolviendo los escapes.
+     *
+     * @param lector el lector.
+     * @param texto  buffer reutilizable.
+     * @return el contenido de la cadena.
+     * @throws IOException si la cadena no está cerrada o tiene un escape Unicode no válido.
+     */
+    private static String leerCadena(ContadorLineas lector, StringBuilder texto) throws IOException {
+        texto.setLength(0);
+        int c;
+        while ((c = lector.read()) != '"') {
+            if (c == -1) {
+                throw lector.malFormado("cadena sin cerrar");
+            }
+            if (c == '\\') {
+                c = lector.read();
+                switch (c) {
+                    case 'n' -> texto.append('\n');
+                    case 't' -> texto.append('\t');
+                    case 'r' -> texto.append('\r');
+                    case 'b' -> texto.append('\b');
+                    case 'f' -> texto.append('\f');
+                    case 'u' -> {
+                        int codigo = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int hex = lector.read();
+                            // Solo dígitos ASCII: Character.digit también acepta otros alfabetos
+                            int digito = hex < 0x80 ? Character.digit(hex, 16) : -1;
+                            if (digito < 0) {
+                                throw lector.malFormado("escape \\u sin cuatro dígitos hexadecimales");
+                            }
+                            codigo = codigo << 4 | digito;
+                        }
+                        texto.append((char) codigo);
+                    }
+                    default -> texto.append((char) c);
+                }
+            } else {
+                texto.append((char) c);
+            }
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Excepción interna para detener la lectura cuando se cancela la tarea.
+     */
+    private static class ImportacionCancelada extends RuntimeException {
+
+        /** Versión de la serialización. */
+        private static final long serialVersionUID = 1L;
+
+        ImportacionCancelada() {
+            super("Importación cancelada", null, false, false);
+        }
+    }
+
+    /**
+     * Lector que cuenta las líneas leídas, para indicar dónde está el error en un JSON mal formado.
+     */
+    private static class ContadorLineas extends FilterReader {
+
+        /** Línea actual, empezando por 1. */
+        private long linea = 1;
+
+        ContadorLineas(Reader entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c == '\n') {
+                linea++;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = super.read(cbuf, off, len);
+            for (int i = off; i < off + n; i++) {
+                if (cbuf[i] == '\n') {
+                    linea++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Crea el error de un JSON mal formado en la línea actual.
+         *
+         * @param detalle la descripción del error.
+         * @return la excepción.
+         */
+        IOException malFormado(String detalle) {
+            return new IOException("JSON mal formado en la línea " + linea + ": " + detalle);
+        }
+    }
+
+    /**
+     * Flujo de entrada que cuenta los bytes leídos, para calcular el progreso.
+     */
+    private static class ContadorBytes extends FilterInputStream {
+
+        /** Bytes leídos hasta ahora. */
+        private volatile long leidos;
+
+        ContadorBytes(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                leidos++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                leidos += n;
+            }
+            return n;
+        }
+    }
+}
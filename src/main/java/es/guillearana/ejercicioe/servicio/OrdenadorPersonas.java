@@ -0,0 +1,371 @@
+package es.guillearana.ejercicioe.servicio;
+
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.PersonaRepositorio;
+import javafx.animation.PauseTransition;
+import javafx.concurrent.Task;
+import javafx.util.Duration;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Ordena la lista de personas del repositorio fuera del hilo de JavaFX.
+ *
+ * <p>
+ * Las peticiones de ordenación (por ejemplo, los clics en las cabeceras de la tabla) se agrupan durante
+ * un breve intervalo y solo se atiende la última. La ordenación se hace en un hilo de fondo a partir de una
+ * instantánea de la lista:
+ * </p>
+ * <ol>
+ *     <li>Se calcula una sola vez la {@link CollationKey} de cada nombre y apellido distinto, y se guarda
+ *     para las siguientes ordenaciones.</li>
+ *     <li>Los textos distintos se ordenan por su clave y cada uno recibe su rango, de modo que la ordenación
+ *     de las filas solo compara enteros.</li>
+ *     <li>Las filas se ordenan con {@link Arrays#parallelSort(Object[], Comparator)}.</li>
+ * </ol>
+ * <p>
+ * El resultado se aplica en el hilo de JavaFX con {@link PersonaRepositorio#aplicarOrden}, como una única
+ * permutación. Si la lista ha cambiado mientras tanto, la ordenación se repite.
+ * </p>
+ *
+ * <p>
+ * Cuando la lista ya está ordenada y solo cambia una persona, {@link #recolocar(Persona)} la lleva a su
+ * sitio con una búsqueda binaria en lugar de ordenar toda la lista otra vez.
+ * </p>
+ */
+public class OrdenadorPersonas {
+
+    /** Tiempo que se espera a que terminen de llegar peticiones antes de ordenar. */
+    private static final Duration ESPERA = Duration.millis(150);
+
+    /** Número máximo de claves de ordenación guardadas; al superarlo se vacía la caché. */
+    private static final int MAXIMO_CLAVES = 500_000;
+
+    /**
+     * Campo por el que se puede ordenar.
+     */
+    public enum Campo {
+        NOMBRE, APELLIDOS, EDAD
+    }
+
+    /**
+     * Criterio de ordenación: un campo y un sentido.
+     *
+     * @param campo      el campo por el que se ordena.
+     * @param ascendente {@code true} para orden ascendente.
+     */
+    public record Criterio(Campo campo, boolean ascendente) {
+    }
+
+    /**
+     * Fila de la instantánea preparada para ordenar: su posición y los rangos de sus campos.
+     *
+     * @param indice    la posición en la instantánea.
+     * @param nombre    el rango del nombre entre los nombres distintos.
+     * @param apellidos el rango de los apellidos entre los apellidos distintos.
+     * @param edad      la edad.
+     */
+    private record Fila(int indice, int nombre, int apellidos, int edad) {
+    }
+
+    /** Repositorio cuya lista se ordena. */
+    private final PersonaRepositorio repositorio;
+
+    /** Hilo en el que se ordena; las fases paralelas usan además el pool común. */
+    private final ExecutorService trabajador = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "ordenador-personas");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /** Temporizador que agrupa las peticiones seguidas. */
+    private final PauseTransition espera = new PauseTransition(ESPERA);
+
+    /** Claves de ordenación ya calculadas, por texto. */
+    private final Map<String, CollationKey> claves = new ConcurrentHashMap<>();
+
+    /** Comparador de textos de cada hilo, ya que {@link Collator} no es seguro para uso concurrente. */
+    private final ThreadLocal<Collator> comparadores = ThreadLocal.withInitial(Collator::getInstance);
+
+    /** Criterios pedidos. */
+    private List<Criterio> criterios = List.of();
+
+    /** Criterios con los que está ordenada la lista. */
+    private List<Criterio> criteriosAplicados = List.of();
+
+    /** Versión de la lista cuando se ordenó por última vez. */
+    private long versionAplicada = -1;
+
+    /** Número de la última ordenación lanzada; los resultados de las anteriores se descartan. */
+    private long generacion;
+
+    /** Acción que se ejecuta al aplicar una ordenación, con su duración en milisegundos. */
+    private LongConsumer alOrdenar = milisegundos -> { };
+
+    /**
+     * Crea el ordenador de la lista de un repositorio.
+     *
+     * @param repositorio el repositorio cuya lista se ordena.
+     */
+    public OrdenadorPersonas(PersonaRepositorio repositorio) {
+        this.repositorio = repositorio;
+        espera.setOnFinished(e -> lanzar());
+    }
+
+    /**
+     * Establece la acción que se ejecuta en el hilo de JavaFX cada vez que se aplica una ordenación completa.
+     *
+     * @param alOrdenar la acción, que recibe la duración de la ordenación en milisegundos.
+     */
+    public void setAlOrdenar(LongConsumer alOrdenar) {
+        this.alOrdenar = alOrdenar;
+    }
+
+    /**
+     * Pide ordenar la lista con los criterios indicados. La ordenación empieza cuando dejan de llegar
+     * peticiones durante un breve intervalo. Una lista de criterios vacía deja el orden actual.
+     *
+     * @param nuevos los criterios, del más al menos importante.
+     */
+    public void solicitar(List<Criterio> nuevos) {
+        criterios = List.copyOf(nuevos);
+        espera.playFromStart();
+    }
+
+    /**
+     * Indica si hay algún criterio de ordenación pedido.
+     *
+     * @return {@code true} si la lista debe mantenerse ordenada.
+     */
+    public boolean activo() {
+        return !criterios.isEmpty();
+    }
+
+    /**
+     * Devuelve un comparador de personas según los criterios pedidos, que usa las claves de ordenación guardadas.
+     *
+     * @return el comparador.
+     */
+    public Comparator<Persona> comparador() {
+        Comparator<Persona> resultado = (a, b) -> 0;
+        for (Criterio criterio : criterios) {
+            Comparator<Persona> porCampo = switch (criterio.campo()) {
+                case NOMBRE -> Comparator.comparing(persona -> clave(persona.getNombre()));
+                case APELLIDOS -> Comparator.comparing(persona -> clave(persona.getApellidos()));
+                case EDAD -> Comparator.comparingInt(Persona::getEdad);
+            };
+            resultado = resultado.thenComparing(criterio.ascendente() ? porCampo : porCampo.reversed());
+        }
+        return resultado;
+    }
+
+    /**
+     * Lleva a su sitio una persona recién agregada o modificada, si la lista estaba ordenada
+     * y ese ha sido su único cambio. En otro caso, pide una ordenación completa.
+     *
+     * @param persona la persona agregada o modificada.
+     */
+    public void recolocar(Persona persona) {
+        if (criterios.isEmpty()) {
+            return;
+        }
+        int actual = repositorio.indiceDe(persona);
+        if (!criterios.equals(criteriosAplicados) || repositorio.version() != versionAplicada + 1 || actual < 0) {
+            solicitar(criterios);
+            return;
+        }
+        // Búsqueda binaria entre el resto de personas, que siguen ordenadas
+        List<Persona> personas = repositorio.getPersonas();
+        Comparator<Persona> comparador = comparador();
+        int bajo = 0;
+        int alto = personas.size() - 1;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            Persona otra = personas.get(medio < actual ? medio : medio + 1);
+            if (comparador.compare(otra, persona) <= 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        repositorio.mover(actual, bajo);
+        versionAplicada = repositorio.version();
+    }
+
+    /**
+     * Lleva a su sitio varias personas que acaban de cambiar. Una sola se recoloca con
+     * {@link #recolocar(Persona)}; si son varias se vuelve a ordenar toda la lista en segundo plano,
+     * que cuesta lo mismo que recolocarlas una a una y solo notifica una permutación.
+     *
+     * @param cambiadas las personas agregadas o modificadas.
+     */
+    public void recolocarTodas(Collection<Persona> cambiadas) {
+        if (cambiadas.size() == 1) {
+            recolocar(cambiadas.iterator().next());
+        } else if (!cambiadas.isEmpty() && !criterios.isEmpty()) {
+            solicitar(criterios);
+        }
+    }
+
+    /**
+     * Detiene el hilo de ordenación.
+     */
+    public void cerrar() {
+        espera.stop();
+        trabajador.shutdownNow();
+    }
+
+    /**
+     * Lanza en segundo plano la ordenación con los criterios pedidos, salvo que la lista ya esté ordenada así.
+     */
+    private void lanzar() {
+        List<Criterio> pedidos = criterios;
+        long version = repositorio.version();
+        if (pedidos.isEmpty() || (pedidos.equals(criteriosAplicados) && version == versionAplicada)) {
+            return;
+        }
+        Persona[] instantanea = repositorio.instantanea();
+        long numero = ++generacion;
+        long inicio = System.nanoTime();
+        Task<PersonaRepositorio.Orden> tarea = new Task<>() {
+            @Override
+            protected PersonaRepositorio.Orden call() {
+                return ordenar(instantanea, pedidos, version);
+            }
+        };
+        tarea.setOnSucceeded(e -> {
+            if (numero != generacion) {
+                return;
+            }
+            if (!repositorio.aplicarOrden(tarea.getValue())) {
+                // La lista ha cambiado mientras se ordenaba
+                lanzar();
+                return;
+            }
+            criteriosAplicados = pedidos;
+            versionAplicada = repositorio.version();
+            alOrdenar.accept((System.nanoTime() - inicio) / 1_000_000);
+        });
+        tarea.setOnFailed(e -> {
+            System.err.println("Error al ordenar las personas: " + tarea.getException().getMessage());
+            tarea.getException().printStackTrace();
+        });
+        trabajador.execute(tarea);
+    }
+
+    /**
+     * Calcula el orden de una instantánea de la lista. Se ejecuta fuera del hilo de JavaFX.
+     *
+     * @param instantanea las personas en su orden actual.
+     * @param criterios   los criterios de ordenación.
+     * @param version     la versión de la lista de la instantánea.
+     * @return el orden preparado para aplicarlo en el repositorio.
+     */
+    PersonaRepositorio.Orden ordenar(Persona[] instantanea, List<Criterio> criterios, long version) {
+        Map<String, Integer> nombres = null;
+        Map<String, Integer> apellidos = null;
+        for (Criterio criterio : criterios) {
+            if (criterio.campo() == Campo.NOMBRE && nombres == null) {
+                nombres = rangos(instantanea, Persona::getNombre);
+            } else if (criterio.campo() == Campo.APELLIDOS && apellidos == null) {
+                apellidos = rangos(instantanea, Persona::getApellidos);
+            }
+        }
+        Map<String, Integer> rangosNombre = nombres;
+        Map<String, Integer> rangosApellidos = apellidos;
+        Fila[] filas = new Fila[instantanea.length];
+        Arrays.parallelSetAll(filas, i -> new Fila(i,
+                rangosNombre == null ? 0 : rangosNombre.get(texto(instantanea[i].getNombre())),
+                rangosApellidos == null ? 0 : rangosApellidos.get(texto(instantanea[i].getApellidos())),
+                instantanea[i].getEdad()));
+
+        Comparator<Fila> comparador = (a, b) -> 0;
+        for (Criterio criterio : criterios) {
+            Comparator<Fila> porCampo = switch (criterio.campo()) {
+                case NOMBRE -> Comparator.comparingInt(Fila::nombre);
+                case APELLIDOS -> Comparator.comparingInt(Fila::apellidos);
+                case EDAD -> Comparator.comparingInt(Fila::edad);
+            };
+            comparador = comparador.thenComparing(criterio.ascendente() ? porCampo : porCampo.reversed());
+        }
+        // La ordenación es estable: a igualdad de criterios se conserva el orden actual
+        Arrays.parallelSort(filas, comparador);
+
+        Persona[] ordenadas = new Persona[filas.length];
+        int[] permutacion = new int[filas.length];
+        for (int i = 0; i < filas.length; i++) {
+            ordenadas[i] = instantanea[filas[i].indice()];
+            permutacion[filas[i].indice()] = i;
+        }
+        return PersonaRepositorio.prepararOrden(ordenadas, permutacion, version);
+    }
+
+    /**
+     * Asigna a cada texto distinto de un campo su rango según el orden alfabético del idioma actual.
+     * Los textos que el comparador considera iguales reciben el mismo rango.
+     *
+     * @param instantanea las personas.
+     * @param campo       el campo de texto.
+     * @return el rango de cada texto.
+     */
+    private Map<String, Integer> rangos(Persona[] instantanea, Function<Persona, String> campo) {
+        Set<String> distintos = new HashSet<>();
+        for (Persona persona : instantanea) {
+            distintos.add(texto(campo.apply(persona)));
+        }
+        CollationKey[] ordenadas = distintos.parallelStream().map(this::clave).toArray(CollationKey[]::new);
+        Arrays.parallelSort(ordenadas);
+        Map<String, Integer> rangos = new HashMap<>(ordenadas.length * 4 / 3 + 1);
+        int rango = 0;
+        for (int i = 0; i < ordenadas.length; i++) {
+            if (i > 0 && ordenadas[i].compareTo(ordenadas[i - 1]) != 0) {
+                rango++;
+            }
+            rangos.put(ordenadas[i].getSourceString(), rango);
+        }
+        return rangos;
+    }
+
+    /**
+     * Devuelve la clave de ordenación de un texto, calculándola si no estaba guardada.
+     *
+     * @param texto el texto.
+     * @return su clave de ordenación.
+     */
+    private CollationKey clave(String texto) {
+        String valor = texto(texto);
+        CollationKey clave = claves.get(valor);
+        if (clave == null) {
+            if (claves.size() >= MAXIMO_CLAVES) {
+                claves.clear();
+            }
+            clave = comparadores.get().getCollationKey(valor);
+            claves.put(valor, clave);
+        }
+        return clave;
+    }
+
+    /**
+     * Sustituye los textos nulos por la cadena vacía.
+     *
+     * @param texto el texto.
+     * @return el texto, o la cadena vacía si es {@code null}.
+     */
+    private static String texto(String texto) {
+        return texto == null ? "" : texto;
+    }
+}
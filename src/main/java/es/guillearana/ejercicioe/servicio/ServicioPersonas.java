@@ -0,0 +1,263 @@
+package es.guillearana.ejercicioe.servicio;
+
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.model.ValidadorPersona;
+import es.guillearana.ejercicioe.persistencia.EscritorDiferido;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Gestión de personas sin interfaz gráfica, segura para usarse desde muchos hilos a la vez.
+ *
+ * <p>
+ * Aplica las mismas reglas que la ventana modal y la importación: los datos se validan con
+ * {@link ValidadorPersona} y no se admiten dos personas iguales según {@link Persona#equals(Object)}
+ * (mismo nombre, apellidos y edad). Las personas se identifican por su {@code idPersona}.
+ * </p>
+ *
+ * <p>
+ * Las lecturas no toman ningún cerrojo: las personas están en un {@link ConcurrentSkipListMap} ordenado
+ * por identificador, que se puede recorrer mientras otros hilos escriben, y como {@link Persona} es inmutable
+ * cada lectura ve una persona completa, anterior o posterior a cada cambio. La comprobación de duplicados
+ * es un {@link ConcurrentHashMap#putIfAbsent} sobre la clave de igualdad, de modo que dos altas iguales
+ * simultáneas no pueden entrar las dos. Las modificaciones y bajas de una misma persona se ordenan con un
+ * cerrojo elegido por su identificador entre {@link #CERROJOS}, así que solo esperan entre sí las escrituras
+ * que caen en el mismo cerrojo.
+ * </p>
+ *
+ * <p>
+ * Si se crea con un {@link EscritorDiferido}, cada cambio se le pasa antes de que otro hilo pueda ver la persona
+ * afectada (el alta antes de publicarla, las modificaciones y bajas dentro de su cerrojo), de modo que los
+ * cambios de una misma persona llegan al almacén en el orden en que se aplicaron.
+ * </p>
+ */
+public class ServicioPersonas {
+
+    /** Número de cerrojos entre los que se reparten las escrituras; potencia de dos. */
+    private static final int CERROJOS = 64;
+
+    /** Personas por identificador, en orden de identificador. */
+    private final ConcurrentSkipListMap<Integer, Persona> porId = new ConcurrentSkipListMap<>();
+
+    /** Identificador de cada persona por su clave de igualdad, para detectar duplicados. */
+    private final ConcurrentHashMap<Persona, Integer> porClave = new ConcurrentHashMap<>();
+
+    /** Cerrojos de las modificaciones y bajas, por identificador. */
+    private final ReentrantLock[] cerrojos = new ReentrantLock[CERROJOS];
+
+    /** Último identificador asignado. */
+    private final AtomicInteger ultimoId = new AtomicInteger();
+
+    /** Generador de identificadores de las personas nuevas. */
+    private final IntSupplier generadorIds;
+
+    /** Escritor que guarda los cambios en el almacén, o {@code null} si no se guardan. */
+    private final EscritorDiferido escritor;
+
+    /**
+     * Resultado de una operación de escritura.
+     */
+    public enum Estado {
+        /** La operación se ha realizado. */
+        CORRECTO,
+        /** Los datos no cumplen las reglas de validación. */
+        INVALIDA,
+        /** Ya existe otra persona igual. */
+        DUPLICADA,
+        /** No existe ninguna persona con ese identificador. */
+        NO_ENCONTRADA
+    }
+
+    /**
+     * Resultado de una operación de escritura.
+     *
+     * @param estado  cómo ha terminado la operación.
+     * @param persona la persona agregada, modificada o eliminada; {@code null} si no se ha realizado.
+     * @param errores los mensajes de validación, uno por línea; cadena vacía si no hay.
+     */
+    public record Resultado(Estado estado, Persona persona, String errores) {
+    }
+
+    /**
+     * Crea el servicio con unas personas iniciales. Las que no tienen identificador reciben uno nuevo
+     * y las repetidas se descartan.
+     *
+     * @param iniciales las personas iniciales.
+     */
+    public ServicioPersonas(Collection<Persona> iniciales) {
+        this(iniciales, null, null);
+    }
+
+    /**
+     * Crea el servicio con las personas de un almacén, guardando en él los cambios.
+     * Las personas iniciales no se vuelven a guardar; las que no tienen identificador reciben uno nuevo
+     * y las repetidas se descartan.
+     *
+     * @param iniciales    las personas iniciales.
+     * @param generadorIds el generador de identificadores del almacén, que debe poder usarse desde varios hilos;
+     *                     {@code null} para asignarlos consecutivos a partir del mayor de las personas iniciales.
+     * @param escritor     el escritor de los cambios en el almacén, o {@code null} para no guardarlos.
+     */
+    public ServicioPersonas(Collection<Persona> iniciales, IntSupplier generadorIds, EscritorDiferido escritor) {
+        this.generadorIds = generadorIds != null ? generadorIds : ultimoId::incrementAndGet;
+        this.escritor = escritor;
+        for (int i = 0; i < cerrojos.length; i++) {
+            cerrojos[i] = new ReentrantLock();
+        }
+        for (Persona persona : iniciales) {
+            ultimoId.accumulateAndGet(persona.getIdPersona(), Math::max);
+        }
+        for (Persona persona : iniciales) {
+            Persona identificada = persona.getIdPersona() == 0 ? persona.conIdPersona(this.generadorIds.getAsInt()) : persona;
+            if (porClave.putIfAbsent(identificada, identificada.getIdPersona()) == null) {
+                porId.put(identificada.getIdPersona(), identificada);
+            }
+        }
+    }
+
+    /**
+     * Devuelve el número de personas.
+     *
+     * @return el número de personas.
+     */
+    public int tamano() {
+        return porId.size();
+    }
+
+    /**
+     * Busca una persona por su identificador.
+     *
+     * @param idPersona el identificador.
+     * @return la persona, o {@code null} si no existe.
+     */
+    public Persona buscar(int idPersona) {
+        return porId.get(idPersona);
+    }
+
+    /**
+     * Devuelve un tramo de personas en orden de identificador, para recorrerlas todas por páginas.
+     *
+     * @param despuesDe el identificador tras el que se empieza; 0 para empezar por el principio.
+     * @param limite    el número máximo de personas.
+     * @return las personas con identificador mayor que {@code despuesDe}.
+     */
+    public List<Persona> listar(int despuesDe, int limite) {
+        List<Persona> pagina = new ArrayList<>(Math.min(limite, 1024));
+        for (Persona persona : porId.tailMap(despuesDe, false).values()) {
+            if (pagina.size() == limite) {
+                break;
+            }
+            pagina.add(persona);
+        }
+        return pagina;
+    }
+
+    /**
+     * Agrega una persona nueva a partir de sus datos en texto.
+     *
+     * @param nombre    el nombre.
+     * @param apellidos los apellidos.
+     * @param edad      la edad, como texto.
+     * @return el resultado, con la persona agregada y su identificador si es correcto.
+     */
+    public Resultado agregar(String nombre, String apellidos, String edad) {
+        int errores = ValidadorPersona.comprobar(nombre, apellidos, edad);
+        if (errores != 0) {
+            return new Resultado(Estado.INVALIDA, null, ValidadorPersona.mensajes(errores));
+        }
+        Persona persona = new Persona(nombre, apellidos, ValidadorPersona.leerEdad(edad));
+        // La consulta previa evita gastar identificadores en los duplicados evidentes; la reserva sigue siendo atómica
+        if (porClave.containsKey(persona)) {
+            return new Resultado(Estado.DUPLICADA, null, "");
+        }
+        persona = persona.conIdPersona(generadorIds.getAsInt());
+        if (porClave.putIfAbsent(persona, persona.getIdPersona()) != null) {
+            return new Resultado(Estado.DUPLICADA, null, "");
+        }
+        if (escritor != null) {
+            escritor.guardarAlta(persona);
+        }
+        porId.put(persona.getIdPersona(), persona);
+        return new Resultado(Estado.CORRECTO, persona, "");
+    }
+
+    /**
+     * Sustituye los datos de una persona, conservando su identificador.
+     *
+     * @param idPersona el identificador de la persona.
+     * @param nombre    el nuevo nombre.
+     * @param apellidos los nuevos apellidos.
+     * @param edad      la nueva edad, como texto.
+     * @return el resultado, con la persona modificada si es correcto.
+     */
+    public Resultado modificar(int idPersona, String nombre, String apellidos, String edad) {
+        int errores = ValidadorPersona.comprobar(nombre, apellidos, edad);
+        if (errores != 0) {
+            return new Resultado(Estado.INVALIDA, null, ValidadorPersona.mensajes(errores));
+        }
+        Persona nueva = new Persona(idPersona, nombre, apellidos, ValidadorPersona.leerEdad(edad));
+        ReentrantLock cerrojo = cerrojo(idPersona);
+        cerrojo.lock();
+        try {
+            Persona anterior = porId.get(idPersona);
+            if (anterior == null) {
+                return new Resultado(Estado.NO_ENCONTRADA, null, "");
+            }
+            if (!nueva.equals(anterior)) {
+                // Se reserva la clave nueva antes de soltar la anterior para que nadie pueda ocuparla entretanto
+                if (porClave.putIfAbsent(nueva, idPersona) != null) {
+                    return new Resultado(Estado.DUPLICADA, null, "");
+                }
+                porId.put(idPersona, nueva);
+                porClave.remove(anterior, idPersona);
+                if (escritor != null) {
+                    escritor.guardarModificacion(nueva);
+                }
+            }
+            return new Resultado(Estado.CORRECTO, nueva, "");
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Elimina una persona.
+     *
+     * @param idPersona el identificador de la persona.
+     * @return el resultado, con la persona eliminada si existía.
+     */
+    public Resultado eliminar(int idPersona) {
+        ReentrantLock cerrojo = cerrojo(idPersona);
+        cerrojo.lock();
+        try {
+            Persona anterior = porId.remove(idPersona);
+            if (anterior == null) {
+                return new Resultado(Estado.NO_ENCONTRADA, null, "");
+            }
+            porClave.remove(anterior, idPersona);
+            if (escritor != null) {
+                escritor.guardarBaja(anterior);
+            }
+            return new Resultado(Estado.CORRECTO, anterior, "");
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Devuelve el cerrojo que ordena las escrituras de un identificador.
+     *
+     * @param idPersona el identificador.
+     * @return el cerrojo.
+     */
+    private ReentrantLock cerrojo(int idPersona) {
+        return cerrojos[idPersona & (CERROJOS - 1)];
+    }
+}
@@ -0,0 +1,425 @@
+package es.guillearana.ejercicioe.servicio;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import es.guillearana.ejercicioe.metricas.Metricas;
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.persistencia.AlmacenPersistente;
+import es.guillearana.ejercicioe.persistencia.EscritorDiferido;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Servidor HTTP local que publica un {@link ServicioPersonas} como API JSON, para que otras herramientas
+ * puedan consultar y modificar la lista de personas sin la interfaz gráfica.
+ *
+ * <p>
+ * Usa el {@link HttpServer} del JDK y atiende cada petición en su propio hilo virtual, de modo que una
+ * petición esperando a la red no ocupa un hilo del sistema. Solo escucha en la interfaz local.
+ * Desde {@link #main(String[])} sirve y modifica el mismo almacén de personas que la aplicación de escritorio.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code GET /personas?despuesDe=ID&limite=N}: personas con identificador mayor que {@code despuesDe}
+ *     (0 por defecto), como mucho {@code limite} (100 por defecto, {@value #LIMITE_MAXIMO} como máximo).</li>
+ *     <li>{@code GET /personas/ID}: una persona, o 404.</li>
+ *     <li>{@code POST /personas} con {@code {"nombre":...,"apellidos":...,"edad":...}}: 201 con la persona creada,
+ *     400 con los errores de validación o 409 si ya existe una igual.</li>
+ *     <li>{@code PUT /personas/ID} con el mismo cuerpo: 200, 400, 404 o 409.</li>
+ *     <li>{@code DELETE /personas/ID}: 204 o 404.</li>
+ * </ul>
+ */
+public class ServidorPersonas implements AutoCloseable {
+
+    /** Ruta de la colección de personas. */
+    private static final String RUTA = "/personas";
+
+    /** Número de personas por página si no se indica otro. */
+    private static final int LIMITE_POR_DEFECTO = 100;
+
+    /** Número máximo de personas por página. */
+    static final int LIMITE_MAXIMO = 10_000;
+
+    /** Tamaño máximo del cuerpo de una petición. */
+    private static final int CUERPO_MAXIMO = 64 * 1024;
+
+    static {
+        // El servidor del JDK envía las cabeceras y el cuerpo por separado: con el algoritmo de Nagle y el ACK
+        // retardado del cliente, cada respuesta esperaba unos 40 ms. Se puede volver a activar con la misma propiedad.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /** Servicio al que se delegan las peticiones. */
+    private final ServicioPersonas servicio;
+
+    /** Servidor HTTP. */
+    private final HttpServer servidor;
+
+    /** Ejecutor de las peticiones, con un hilo virtual por petición. */
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Crea el servidor y empieza a atender peticiones.
+     *
+     * @param servicio el servicio de personas.
+     * @param puerto   el puerto local; 0 para elegir uno libre.
+     * @throws IOException si no se puede abrir el puerto.
+     */
+    public ServidorPersonas(ServicioPersonas servicio, int puerto) throws IOException {
+        this.servicio = servicio;
+        this.servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+        servidor.setExecutor(hilos);
+        servidor.createContext(RUTA, this::atender);
+        servidor.start();
+    }
+
+    /**
+     * Devuelve el puerto en el que escucha el servidor.
+     *
+     * @return el puerto.
+     */
+    public int puerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Deja de aceptar peticiones y espera a que terminen las que están en curso.
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        hilos.close();
+    }
+
+    /**
+     * Arranca el servidor sin interfaz gráfica sobre el almacén de personas de la aplicación, elegido con la
+     * propiedad del sistema {@code ejercicioe.almacen} como en el escritorio. El puerto se toma de la propiedad
+     * {@code ejercicioe.servidor.puerto} (8080 por defecto).
+     *
+     * <p>
+     * El servidor es el propietario del almacén mientras se ejecuta: carga todas las personas y guarda cada
+     * cambio con el mismo {@link EscritorDiferido} que la aplicación de escritorio, que no debe estar abierta
+     * a la vez sobre el mismo almacén. Al terminar se guardan los cambios pendientes y se cierra el almacén.
+     * </p>
+     *
+     * @param args opcionalmente, un fichero CSV o JSON con personas que se agregan al almacén.
+     * @throws IOException si no se puede abrir el almacén, leer el fichero o abrir el puerto.
+     */
+    public static void main(String[] args) throws IOException {
+        AlmacenPersistente almacen = AlmacenPersistente.abrirPorDefecto();
+        EscritorDiferido escritor = almacen.crearEscritor();
+        ServicioPersonas servicio = new ServicioPersonas(Arrays.asList(almacen.cargar()), almacen.generadorIds(), escritor);
+        if (args.length > 0) {
+            // Se cargan con las mismas reglas que cualquier alta: las inválidas y las repetidas se descartan
+            Path fichero = Path.of(args[0]);
+            String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+            Consumer<String[]> agregar = campos -> servicio.agregar(campos[0].trim(), campos[1].trim(), campos[2].trim());
+            try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+                if (nombre.endsWith(".json") || nombre.endsWith(".jsonl")) {
+                    ImportadorPersonas.leerJson(lector, agregar);
+                } else {
+                    ImportadorPersonas.leerCsv(lector, agregar);
+                }
+            }
+        }
+        Metricas.iniciar();
+        ServidorPersonas servidor = new ServidorPersonas(servicio, Integer.getInteger("ejercicioe.servidor.puerto", 8080));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.close();
+            escritor.close();
+            try {
+                almacen.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el almacén de personas: " + e.getMessage());
+                e.printStackTrace();
+            }
+            Metricas.detener();
+        }, "cierre-servidor"));
+        System.out.printf("Servidor de personas en http://localhost:%d%s con %,d personas%n",
+                servidor.puerto(), RUTA, servicio.tamano());
+    }
+
+    /**
+     * Atiende una petición a la colección o a una persona.
+     *
+     * @param intercambio la petición y su respuesta.
+     */
+    private void atender(HttpExchange intercambio) {
+        long inicio = Metricas.inicio();
+        try (intercambio) {
+            URI uri = intercambio.getRequestURI();
+            String resto = uri.getPath().substring(RUTA.length());
+            String metodo = intercambio.getRequestMethod();
+            if (resto.isEmpty() || resto.equals("/")) {
+                switch (metodo) {
+                    case "GET" -> listar(intercambio, uri.getRawQuery());
+                    case "POST" -> agregar(intercambio);
+                    default -> responder(intercambio, 405, null);
+                }
+                return;
+            }
+            int idPersona = leerEntero(resto.substring(1), -1);
+            if (idPersona <= 0) {
+                responder(intercambio, 404, null);
+                return;
+            }
+            switch (metodo) {
+                case "GET" -> {
+                    Persona persona = servicio.buscar(idPersona);
+                    responder(intercambio, persona == null ? 404 : 200, persona == null ? null : json(new StringBuilder(), persona));
+                }
+                case "PUT" -> modificar(intercambio, idPersona);
+                case "DELETE" -> responder(intercambio, servicio.eliminar(idPersona).persona() == null ? 404 : 204, null);
+                default -> responder(intercambio, 405, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            // La respuesta ya puede estar a medias o el cliente haberse ido: solo queda registrarlo
+            System.err.println("Error al atender la petición " + intercambio.getRequestURI() + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            Metricas.registrar(Metricas.SERVIDOR_PETICION, inicio);
+        }
+    }
+
+    /**
+     * Responde con una página de personas.
+     *
+     * @param intercambio la petición.
+     * @param consulta    la consulta de la URI, sin decodificar; puede ser {@code null}.
+     * @throws IOException si no se puede escribir la respuesta.
+     */
+    private void listar(HttpExchange intercambio, String consulta) throws IOException {
+        int despuesDe = 0;
+        int limite = LIMITE_POR_DEFECTO;
+        if (consulta != null) {
+            for (String parametro : consulta.split("&")) {
+                int igual = parametro.indexOf('=');
+                String clave = igual < 0 ? parametro : parametro.substring(0, igual);
+                String valor = igual < 0 ? "" : parametro.substring(igual + 1);
+                if (clave.equals("despuesDe")) {
+                    despuesDe = Math.max(0, leerEntero(valor, 0));
+                } else if (clave.equals("limite")) {
+                    limite = Math.max(0, Math.min(LIMITE_MAXIMO, leerEntero(valor, LIMITE_POR_DEFECTO)));
+                }
+            }
+        }
+        List<Persona> pagina = servicio.listar(despuesDe, limite);
+        StringBuilder texto = new StringBuilder(64 * pagina.size() + 2).append('[');
+        for (int i = 0; i < pagina.size(); i++) {
+            if (i > 0) {
+                texto.append(',');
+            }
+            json(texto, pagina.get(i));
+        }
+        responder(intercambio, 200, texto.append(']'));
+    }
+
+    /**
+     * Agrega la persona del cuerpo de la petición.
+     *
+     * @param intercambio la petición.
+     * @throws IOException si no se puede leer la petición o escribir la respuesta.
+     */
+    private void agregar(HttpExchange intercambio) throws IOException {
+        String[] campos = leerPersona(intercambio);
+        if (campos != null) {
+            ServicioPersonas.Resultado resultado = servicio.agregar(campos[0], campos[1], campos[2]);
+            if (resultado.estado() == ServicioPersonas.Estado.CORRECTO) {
+                intercambio.getResponseHeaders().set("Location", RUTA + "/" + resultado.persona().getIdPersona());
+            }
+            responderResultado(intercambio, resultado, 201);
+        }
+    }
+
+    /**
+     * Sustituye los datos de una persona por los del cuerpo de la petición.
+     *
+     * @param intercambio la petición.
+     * @param idPersona   el identificador de la persona.
+     * @throws IOException si no se puede leer la petición o escribir la respuesta.
+     */
+    private void modificar(HttpExchange intercambio, int idPersona) throws IOException {
+        String[] campos = leerPersona(intercambio);
+        if (campos != null) {
+            responderResultado(intercambio, servicio.modificar(idPersona, campos[0], campos[1], campos[2]), 200);
+        }
+    }
+
+    /**
+     * Lee el objeto JSON del cuerpo de la petición. Si no se puede, responde con el error.
+     *
+     * @param intercambio la petición.
+     * @return nombre, apellidos y edad sin espacios a los lados, o {@code null} si ya se ha respondido con un error.
+     * @throws IOException si no se puede leer la petición o escribir la respuesta.
+     */
+    private String[] leerPersona(HttpExchange intercambio) throws IOException {
+        byte[] cuerpo;
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            cuerpo = entrada.readNBytes(CUERPO_MAXIMO + 1);
+        }
+        if (cuerpo.length > CUERPO_MAXIMO) {
+            responder(intercambio, 413, null);
+            return null;
+        }
+        String[][] leida = new String[1][];
+        try {
+            ImportadorPersonas.leerJson(new StringReader(new String(cuerpo, StandardCharsets.UTF_8)), campos -> {
+                if (leida[0] == null) {
+                    leida[0] = new String[]{campos[0].trim(), campos[1].trim(), campos[2].trim()};
+                }
+            });
+        } catch (IOException e) {
+            responder(intercambio, 400, error(e.getMessage()));
+            return null;
+        }
+        if (leida[0] == null) {
+            responder(intercambio, 400, error("Se esperaba un objeto JSON"));
+        }
+        return leida[0];
+    }
+
+    /**
+     * Responde según el resultado de una escritura.
+     *
+     * @param intercambio la petición.
+     * @param resultado   el resultado del servicio.
+     * @param correcto    el código de respuesta si la escritura se ha realizado.
+     * @throws IOException si no se puede escribir la respuesta.
+     */
+    private void responderResultado(HttpExchange intercambio, ServicioPersonas.Resultado resultado, int correcto)
+            throws IOException {
+        switch (resultado.estado()) {
+            case CORRECTO -> responder(intercambio, correcto, json(new StringBuilder(), resultado.persona()));
+            case INVALIDA -> responder(intercambio, 400, error(resultado.errores().strip()));
+            case DUPLICADA -> responder(intercambio, 409, error("Ya existe una persona con esos datos."));
+            case NO_ENCONTRADA -> responder(intercambio, 404, null);
+        }
+    }
+
+    /**
+     * Envía la respuesta.
+     *
+     * @param intercambio la petición.
+     * @param codigo      el código de estado HTTP.
+     * @param cuerpo      el cuerpo JSON, o {@code null} si no lleva.
+     * @throws IOException si no se puede escribir la respuesta.
+     */
+    private static void responder(HttpExchange intercambio, int codigo, CharSequence cuerpo) throws IOException {
+        if (cuerpo == null) {
+            intercambio.sendResponseHeaders(codigo, -1);
+            return;
+        }
+        byte[] bytes = cuerpo.toString().getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(codigo, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    /**
+     * Escribe una persona como objeto JSON.
+     *
+     * @param texto   donde se escribe.
+     * @param persona la persona.
+     * @return el mismo {@code texto}.
+     */
+    static StringBuilder json(StringBuilder texto, Persona persona) {
+        texto.append("{\"idPersona\":").append(persona.getIdPersona()).append(",\"nombre\":");
+        cadena(texto, persona.getNombre()).append(",\"apellidos\":");
+        return cadena(texto, persona.getApellidos()).append(",\"edad\":").append(persona.getEdad()).append('}');
+    }
+
+    /**
+     * Crea el cuerpo de una respuesta de error, con un mensaje por línea.
+     *
+     * @param mensajes los mensajes separados por saltos de línea.
+     * @return el objeto JSON {@code {"errores":[...]}}.
+     */
+    private static StringBuilder error(String mensajes) {
+        StringBuilder texto = new StringBuilder("{\"errores\":[");
+        String[] lineas = mensajes.split("\n");
+        for (int i = 0; i < lineas.length; i++) {
+            if (i > 0) {
+                texto.append(',');
+            }
+            cadena(texto, lineas[i]);
+        }
+        return texto.append("]}");
+    }
+
+    /**
+     * Escribe una cadena JSON entre comillas, escapando comillas, barras y caracteres de control.
+     *
+     * @param texto donde se escribe.
+     * @param valor la cadena.
+     * @return el mismo {@code texto}.
+     */
+    private static StringBuilder cadena(StringBuilder texto, String valor) {
+        texto.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"' || c == '\\') {
+                texto.append('\\').append(c);
+            } else if (c < 0x20) {
+                texto.append(String.format("\\u%04x", (int) c));
+            } else {
+                texto.append(c);
+            }
+        }
+        return texto.append('"');
+    }
+
+    /**
+     * Convierte un texto en entero sin lanzar excepciones, como {@code ValidadorPersona.leerEdad}:
+     * se evalúa en cada ruta con identificador y en cada parámetro de página, y un texto incorrecto
+     * no debe costar una excepción por petición.
+     *
+     * @param texto       el texto.
+     * @param porDefecto  el valor si el texto no es un entero o no cabe en un {@code int}.
+     * @return el entero.
+     */
+    private static int leerEntero(String texto, int porDefecto) {
+        int longitud = texto.length();
+        int i = 0;
+        boolean negativo = false;
+        if (longitud > 0 && (texto.charAt(0) == '-' || texto.charAt(0) == '+')) {
+            negativo = texto.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == longitud) {
+            return porDefecto;
+        }
+        long valor = 0;
+        for (; i < longitud; i++) {
+            int cifra = texto.charAt(i) - '0';
+            if (cifra < 0 || cifra > 9) {
+                return porDefecto;
+            }
+            valor = valor * 10 + cifra;
+            if (valor > Integer.MAX_VALUE + 1L) {
+                return porDefecto;
+            }
+        }
+        valor = negativo ? -valor : valor;
+        return valor > Integer.MAX_VALUE ? porDefecto : (int) valor;
+    }
+}
@@ -2,11 +2,15 @@ module es.guillearana.ejercicioe {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.desktop;
+    requires java.management;
+    requires java.sql;
+    requires jdk.httpserver;
 
 
     opens es.guillearana.ejercicioe to javafx.fxml;
     exports es.guillearana.ejercicioe;
     exports es.guillearana.ejercicioe.controlador;
+    exports es.guillearana.ejercicioe.metricas; // Los MXBean deben ser accesibles para java.management.
     opens es.guillearana.ejercicioe.controlador to javafx.fxml;
     opens es.guillearana.ejercicioe.model to javafx.fxml, javafx.base; // Permite acceso a clases del paquete model desde javafx.fxml y javafx.base.
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package es.guillearana.ejercicioe.eventos;
+
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Comprueba que un suscriptor bloqueado de {@link FlujoCambios} no frena los cambios de la lista ni el cierre.
+ */
+class FlujoCambiosTest {
+
+    /** Cambios de la prueba: muchos más de los que caben en el anillo. */
+    private static final int CAMBIOS = 1000;
+
+    /**
+     * Con el anillo lleno y el suscriptor bloqueado, los cambios de la lista no esperan; cuando el suscriptor
+     * sigue, recibe todos los eventos en orden y sin huecos.
+     *
+     * @throws IOException no se produce: no hay fichero de cambios.
+     */
+    @Test
+    void losCambiosNoEsperanAUnSuscriptorBloqueado() throws IOException {
+        FlujoCambios flujo = new FlujoCambios(4, null);
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        flujo.vincular(personas);
+        CountDownLatch seguir = new CountDownLatch(1);
+        List<EventoPersona> recibidos = new CopyOnWriteArrayList<>();
+        flujo.suscribir("suscriptor-bloqueado", 1, evento -> {
+            esperar(seguir);
+            recibidos.add(evento);
+        });
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int id = 1; id <= CAMBIOS; id++) {
+                personas.add(new Persona(id, "Nombre" + id, "Apellido", 30));
+            }
+        });
+        seguir.countDown();
+        flujo.close();
+
+        assertEquals(CAMBIOS, recibidos.size());
+        for (int i = 0; i < CAMBIOS; i++) {
+            assertEquals(i + 1, recibidos.get(i).secuencia());
+            assertEquals(EventoPersona.Tipo.ALTA, recibidos.get(i).tipo());
+            assertEquals(i + 1, recibidos.get(i).nueva().getIdPersona());
+        }
+    }
+
+    /**
+     * Un suscriptor que no termina nunca no impide cerrar el flujo.
+     *
+     * @throws IOException no se produce: no hay fichero de cambios.
+     */
+    @Test
+    void cierraAunqueUnSuscriptorNoTermine() throws IOException {
+        FlujoCambios flujo = new FlujoCambios(4, null);
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        flujo.vincular(personas);
+        CountDownLatch seguir = new CountDownLatch(1);
+        flujo.suscribir("suscriptor-bloqueado", 1, evento -> esperar(seguir));
+        try {
+            for (int id = 1; id <= CAMBIOS; id++) {
+                personas.add(new Persona(id, "Nombre" + id, "Apellido", 30));
+            }
+            assertTimeoutPreemptively(Duration.ofSeconds(10), flujo::close);
+        } finally {
+            seguir.countDown();
+        }
+    }
+
+    /**
+     * Espera a que se abra el cerrojo indicado.
+     *
+     * @param cerrojo el cerrojo.
+     */
+    private static void esperar(CountDownLatch cerrojo) {
+        try {
+            cerrojo.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package es.guillearana.ejercicioe.model;
+
+import es.guillearana.ejercicioe.model.PersonaRepositorio.Reemplazo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba que {@link HistorialCambios} deshace y rehace cada tipo de paso dejando la lista como estaba,
+ * y que descarta los pasos más antiguos al llegar a su límite de pasos o de memoria.
+ */
+class HistorialCambiosTest {
+
+    /** Límite de memoria que no se alcanza en las pruebas. */
+    private static final long SIN_LIMITE = Long.MAX_VALUE;
+
+    /**
+     * Deshacer todos los pasos, de uno en uno, recorre los estados de la lista hacia atrás, y rehacerlos
+     * los recorre hacia delante.
+     */
+    @Test
+    void deshaceYRehaceCadaTipoDePaso() {
+        PersonaRepositorio repositorio = new PersonaRepositorio();
+        HistorialCambios historial = new HistorialCambios(repositorio, 100, SIN_LIMITE);
+        Persona ana = new Persona("Ana", "García", 30);
+        Persona luis = new Persona("Luis", "Pérez", 41);
+        Persona eva = new Persona("Eva", "Díaz", 25);
+        Persona jose = new Persona("José", "Ruiz", 52);
+        List<List<Persona>> estados = new ArrayList<>();
+        estados.add(List.copyOf(repositorio.getPersonas()));
+
+        for (Persona persona : List.of(ana, luis, eva, jose)) {
+            assertTrue(historial.agregar(persona));
+            estados.add(List.copyOf(repositorio.getPersonas()));
+        }
+        assertTrue(historial.reemplazar(luis, luis.conEdad(42)));
+        estados.add(List.copyOf(repositorio.getPersonas()));
+        assertTrue(historial.eliminar(ana));
+        estados.add(List.copyOf(repositorio.getPersonas()));
+        assertEquals(2, historial.eliminarTodas(List.of(luis.conEdad(42), jose)));
+        estados.add(List.copyOf(repositorio.getPersonas()));
+        assertTrue(historial.agregar(ana));
+        estados.add(List.copyOf(repositorio.getPersonas()));
+        assertTrue(historial.agregar(jose));
+        estados.add(List.copyOf(repositorio.getPersonas()));
+        assertEquals(List.of(eva.conNombre("Eva María"), jose.conApellidos("Ruiz Sanz")), historial.reemplazarTodas(List.of(
+                new Reemplazo(eva, eva.conNombre("Eva María")), new Reemplazo(jose, jose.conApellidos("Ruiz Sanz")))));
+        estados.add(List.copyOf(repositorio.getPersonas()));
+
+        for (int i = estados.size() - 2; i >= 0; i--) {
+            assertTrue(historial.puedeDeshacerProperty().get());
+            assertTrue(historial.deshacer() != null, "paso " + i);
+            assertEquals(estados.get(i), repositorio.getPersonas(), "deshacer hasta el estado " + i);
+        }
+        assertFalse(historial.puedeDeshacerProperty().get());
+        assertNull(historial.deshacer());
+
+        for (int i = 1; i < estados.size(); i++) {
+            assertTrue(historial.puedeRehacerProperty().get());
+            assertTrue(historial.rehacer() != null, "paso " + i);
+            assertEquals(estados.get(i), repositorio.getPersonas(), "rehacer hasta el estado " + i);
+        }
+        assertFalse(historial.puedeRehacerProperty().get());
+        assertNull(historial.rehacer());
+    }
+
+    /**
+     * Un cambio nuevo tras deshacer descarta los pasos deshechos y la memoria que retenían.
+     */
+    @Test
+    void unCambioNuevoDescartaLosPasosDeshechos() {
+        PersonaRepositorio repositorio = new PersonaRepositorio();
+        HistorialCambios historial = new HistorialCambios(repositorio, 100, SIN_LIMITE);
+        historial.agregar(new Persona("Ana", "García", 30));
+        // Orden (32) + persona (40) + "Ana" (40 + 6) + "García" (40 + 12)
+        assertEquals(170, historial.bytes());
+        historial.agregar(new Persona("Luis", "Pérez", 41));
+        long dosPasos = historial.bytes();
+
+        historial.deshacer();
+        assertTrue(historial.puedeRehacerProperty().get());
+        assertEquals(dosPasos, historial.bytes());
+        historial.agregar(new Persona("Eva", "Díaz", 25));
+
+        assertFalse(historial.puedeRehacerProperty().get());
+        assertNull(historial.rehacer());
+        // Orden (32) + persona (40) + "Eva" (40 + 6) + "Díaz" (40 + 8)
+        assertEquals(170 + 166, historial.bytes());
+    }
+
+    /**
+     * Al superar el número máximo de pasos se descartan los más antiguos.
+     */
+    @Test
+    void descartaLosPasosMasAntiguosAlLlegarAlMaximoDePasos() {
+        PersonaRepositorio repositorio = new PersonaRepositorio();
+        HistorialCambios historial = new HistorialCambios(repositorio, 3, SIN_LIMITE);
+        for (int i = 1; i <= 5; i++) {
+            historial.agregar(new Persona("Nombre" + i, "Apellido", 30));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(historial.deshacer() != null);
+        }
+        assertFalse(historial.puedeDeshacerProperty().get());
+        assertNull(historial.deshacer());
+        assertEquals(List.of(new Persona("Nombre1", "Apellido", 30), new Persona("Nombre2", "Apellido", 30)),
+                repositorio.getPersonas());
+    }
+
+    /**
+     * Al superar la memoria máxima se descartan los pasos más antiguos, y un paso que no cabe solo no se guarda.
+     */
+    @Test
+    void descartaLosPasosMasAntiguosAlLlegarALaMemoriaMaxima() {
+        long paso = 170;
+        PersonaRepositorio repositorio = new PersonaRepositorio();
+        HistorialCambios historial = new HistorialCambios(repositorio, 100, 2 * paso + paso / 2);
+        for (int i = 1; i <= 5; i++) {
+            historial.agregar(new Persona("Ana", "García", 30 + i));
+            assertTrue(historial.bytes() <= 2 * paso + paso / 2);
+        }
+        assertEquals(2 * paso, historial.bytes());
+
+        assertTrue(historial.deshacer() != null);
+        assertTrue(historial.deshacer() != null);
+        assertNull(historial.deshacer());
+        assertEquals(3, repositorio.tamano());
+
+        historial.eliminarTodas(List.copyOf(repositorio.getPersonas()));
+        assertTrue(repositorio.getPersonas().isEmpty());
+        assertEquals(0, historial.bytes());
+        assertFalse(historial.puedeDeshacerProperty().get());
+        assertFalse(historial.puedeRehacerProperty().get());
+    }
+}
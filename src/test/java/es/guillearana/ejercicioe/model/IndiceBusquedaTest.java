@@ -0,0 +1,71 @@
+package es.guillearana.ejercicioe.model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba que {@link IndiceBusqueda} se mantiene al día con los cambios de la lista sin acumular palabras.
+ */
+class IndiceBusquedaTest {
+
+    /** Edad máxima admitida, para buscar sin filtrar por edad. */
+    private static final int TODAS = ValidadorPersona.EDAD_MAXIMA;
+
+    /**
+     * Las palabras que desaparecen de la lista al modificar las personas salen del índice.
+     */
+    @Test
+    void quitaLasPalabrasQueYaNoTieneNingunaPersona() {
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        IndiceBusqueda indice = new IndiceBusqueda();
+        indice.vincular(personas);
+        for (int id = 1; id <= 1000; id++) {
+            personas.add(new Persona(id, "Nombre" + id, "Apellido" + id, 30));
+        }
+        assertEquals(2000, indice.numeroPalabras());
+
+        for (int i = 0; i < personas.size(); i++) {
+            Persona persona = personas.get(i);
+            personas.set(i, persona.conNombre("Ana").conApellidos("García López"));
+        }
+        assertEquals(3, indice.numeroPalabras());
+        assertEquals(List.of(), indice.buscar("nombre", 0, TODAS));
+        assertEquals(1000, indice.buscar("garc", 0, TODAS).size());
+
+        personas.clear();
+        assertEquals(0, indice.numeroPalabras());
+        assertEquals(List.of(), indice.buscar("ana", 0, TODAS));
+    }
+
+    /**
+     * Una palabra escrita de varias formas comparte su entrada, que se conserva mientras quede alguna persona
+     * con cualquiera de ellas y se vuelve a crear si reaparece.
+     */
+    @Test
+    void conservaLaPalabraMientrasQuedeAlgunaDeSusFormas() {
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        IndiceBusqueda indice = new IndiceBusqueda();
+        indice.vincular(personas);
+        Persona conTilde = new Persona(1, "Ana", "García", 30);
+        Persona sinTilde = new Persona(2, "Eva", "GARCIA", 40);
+        personas.addAll(conTilde, sinTilde);
+        assertEquals(3, indice.numeroPalabras());
+
+        personas.remove(conTilde);
+        assertEquals(List.of(sinTilde), indice.buscar("garcía", 0, TODAS));
+
+        personas.remove(sinTilde);
+        assertEquals(0, indice.numeroPalabras());
+
+        Persona otra = new Persona(3, "Luis", "García", 50);
+        personas.add(otra);
+        assertEquals(List.of(otra), indice.buscar("garcia", 0, TODAS));
+        assertTrue(indice.buscar("eva", 0, TODAS).isEmpty());
+    }
+}
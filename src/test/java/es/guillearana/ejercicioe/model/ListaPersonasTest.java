@@ -0,0 +1,204 @@
+package es.guillearana.ejercicioe.model;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba los cambios que notifica {@link ListaPersonas} en sus operaciones de golpe: cada una se notifica
+ * como un único cambio, y aplicar ese cambio a la lista anterior da la lista resultante.
+ */
+class ListaPersonasTest {
+
+    /** Personas de la prueba, en su orden inicial. */
+    private static final Persona A = new Persona(1, "Ana", "García", 30);
+    private static final Persona B = new Persona(2, "Luis", "Pérez", 41);
+    private static final Persona C = new Persona(3, "Eva", "Díaz", 25);
+    private static final Persona D = new Persona(4, "José", "Ruiz", 52);
+    private static final Persona E = new Persona(5, "María", "Gómez", 19);
+    private static final Persona F = new Persona(6, "Tomás", "Sanz", 67);
+
+    /**
+     * Parte de un cambio notificado, copiada mientras el cambio es válido.
+     *
+     * @param permutacion para una permutación, la nueva posición de cada elemento del tramo; si no, vacía.
+     * @param desde       el inicio del tramo.
+     * @param hasta       el final del tramo.
+     * @param eliminadas  las personas eliminadas.
+     * @param agregadas   las personas agregadas.
+     */
+    private record Parte(List<Integer> permutacion, int desde, int hasta, List<Persona> eliminadas,
+                         List<Persona> agregadas) {
+    }
+
+    /**
+     * Reordenar notifica una sola permutación de toda la lista.
+     */
+    @Test
+    void reordenarNotificaUnaPermutacion() {
+        ListaPersonas lista = lista(A, B, C, D);
+        List<Parte> partes = observar(lista, () -> lista.reordenar(new Persona[]{C, A, D, B}, new int[]{1, 3, 0, 2}));
+
+        assertEquals(List.of(new Parte(List.of(1, 3, 0, 2), 0, 4, List.of(), List.of())), partes);
+        assertEquals(List.of(C, A, D, B), lista);
+    }
+
+    /**
+     * Mover notifica una permutación solo del tramo entre las dos posiciones, en los dos sentidos.
+     */
+    @Test
+    void moverNotificaUnaPermutacionDelTramo() {
+        ListaPersonas lista = lista(A, B, C, D, E);
+        List<Parte> partes = observar(lista, () -> lista.mover(1, 3));
+        assertEquals(List.of(new Parte(List.of(3, 1, 2), 1, 4, List.of(), List.of())), partes);
+        assertEquals(List.of(A, C, D, B, E), lista);
+
+        partes = observar(lista, () -> lista.mover(3, 0));
+        assertEquals(List.of(new Parte(List.of(1, 2, 3, 0), 0, 4, List.of(), List.of())), partes);
+        assertEquals(List.of(B, A, C, D, E), lista);
+
+        assertEquals(List.of(), observar(lista, () -> lista.mover(2, 2)));
+    }
+
+    /**
+     * Eliminar varias posiciones notifica un único cambio con las bajas en posiciones de la lista resultante.
+     */
+    @Test
+    void eliminarPosicionesNotificaUnUnicoCambio() {
+        ListaPersonas lista = lista(A, B, C, D, E, F);
+        List<Parte> partes = observar(lista, () -> lista.eliminarPosiciones(new int[]{1, 3, 4}));
+
+        assertEquals(List.of(
+                new Parte(List.of(), 1, 1, List.of(B), List.of()),
+                new Parte(List.of(), 2, 2, List.of(D, E), List.of())), partes);
+        assertEquals(List.of(A, C, F), lista);
+    }
+
+    /**
+     * Insertar en varias posiciones notifica un único cambio, y con las posiciones de una baja la deshace.
+     */
+    @Test
+    void insertarPosicionesRestauraUnaBajaConUnUnicoCambio() {
+        ListaPersonas lista = lista(A, C, F);
+        List<Parte> partes = observar(lista, () -> lista.insertarPosiciones(new int[]{1, 3, 4}, new Persona[]{B, D, E}));
+
+        assertEquals(List.of(
+                new Parte(List.of(), 1, 2, List.of(), List.of(B)),
+                new Parte(List.of(), 3, 5, List.of(), List.of(D, E))), partes);
+        assertEquals(List.of(A, B, C, D, E, F), lista);
+
+        // Las posiciones más allá del final se rellenan al final, en orden
+        partes = observar(lista, () -> lista.insertarPosiciones(new int[]{10, 11}, new Persona[]{
+                new Persona(7, "Lucía", "López", 33), new Persona(8, "Pedro", "Sanz", 44)}));
+        assertEquals(1, partes.size());
+        assertEquals(6, partes.get(0).desde());
+        assertEquals(8, partes.get(0).hasta());
+    }
+
+    /**
+     * Reemplazar varias posiciones, aunque se pidan desordenadas, notifica un único cambio con las
+     * sustituciones en orden de posición.
+     */
+    @Test
+    void reemplazarPosicionesNotificaLasSustitucionesEnOrden() {
+        ListaPersonas lista = lista(A, B, C, D);
+        Persona x = A.conNombre("Ángela");
+        Persona y = D.conEdad(53);
+        List<Parte> partes = observar(lista, () -> lista.reemplazarPosiciones(new int[]{3, 0}, new Persona[]{y, x}));
+
+        assertEquals(List.of(
+                new Parte(List.of(), 0, 1, List.of(A), List.of(x)),
+                new Parte(List.of(), 3, 4, List.of(D), List.of(y))), partes);
+        assertEquals(List.of(x, B, C, y), lista);
+    }
+
+    /**
+     * Ordenar con un comparador notifica una permutación en lugar de bajas y altas.
+     */
+    @Test
+    void ordenarNotificaUnaPermutacion() {
+        ListaPersonas lista = lista(A, B, C, D, E, F);
+        List<Parte> partes = observar(lista, () -> lista.sort(Comparator.comparingInt(Persona::getEdad)));
+
+        assertEquals(1, partes.size());
+        assertEquals(List.of(E, C, A, B, D, F), lista);
+    }
+
+    /**
+     * Crea una lista con las personas indicadas.
+     *
+     * @param personas las personas.
+     * @return la lista.
+     */
+    private static ListaPersonas lista(Persona... personas) {
+        ListaPersonas lista = new ListaPersonas();
+        lista.addAll(personas);
+        return lista;
+    }
+
+    /**
+     * Ejecuta una operación sobre la lista y devuelve las partes del cambio que notifica. Comprueba que la
+     * operación notifica como mucho un cambio y que aplicarlo a la lista anterior da la lista resultante.
+     *
+     * @param lista     la lista.
+     * @param operacion la operación.
+     * @return las partes del cambio, vacía si no se ha notificado ninguno.
+     */
+    private static List<Parte> observar(ListaPersonas lista, Runnable operacion) {
+        List<Persona> anterior = new ArrayList<>(lista);
+        List<Parte> partes = new ArrayList<>();
+        int[] cambios = {0};
+        ListChangeListener<Persona> oyente = cambio -> {
+            cambios[0]++;
+            while (cambio.next()) {
+                List<Integer> permutacion = new ArrayList<>();
+                if (cambio.wasPermutated()) {
+                    for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                        permutacion.add(cambio.getPermutation(i));
+                    }
+                }
+                partes.add(new Parte(permutacion, cambio.getFrom(), cambio.getTo(),
+                        List.copyOf(cambio.getRemoved()), List.copyOf(cambio.getAddedSubList())));
+            }
+        };
+        lista.addListener(oyente);
+        try {
+            operacion.run();
+        } finally {
+            lista.removeListener(oyente);
+        }
+        assertTrue(cambios[0] <= 1, "se han notificado " + cambios[0] + " cambios");
+        assertEquals(new ArrayList<>(lista), aplicar(anterior, partes));
+        return partes;
+    }
+
+    /**
+     * Aplica las partes de un cambio a una copia de la lista anterior, como haría un oyente que mantiene
+     * su propia copia.
+     *
+     * @param anterior la lista anterior.
+     * @param partes   las partes del cambio.
+     * @return la lista resultante.
+     */
+    private static List<Persona> aplicar(List<Persona> anterior, List<Parte> partes) {
+        List<Persona> resultado = new ArrayList<>(anterior);
+        for (Parte parte : partes) {
+            if (!parte.permutacion().isEmpty()) {
+                List<Persona> tramo = new ArrayList<>(resultado.subList(parte.desde(), parte.hasta()));
+                for (int i = 0; i < tramo.size(); i++) {
+                    resultado.set(parte.permutacion().get(i), tramo.get(i));
+                }
+            } else {
+                resultado.subList(parte.desde(), parte.desde() + parte.eliminadas().size()).clear();
+                resultado.addAll(parte.desde(), parte.agregadas());
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,265 @@
+package es.guillearana.ejercicioe.model;
+
+import es.guillearana.ejercicioe.model.PersonaRepositorio.PersonaEnPosicion;
+import es.guillearana.ejercicioe.model.PersonaRepositorio.Reemplazo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara {@link PersonaRepositorio} con una lista normal en secuencias de altas, modificaciones, bajas y
+ * reordenaciones, para comprobar que su índice de posiciones, con las posiciones pendientes y la búsqueda
+ * en ventana, y el intercambio de órdenes preparados en otro hilo dan siempre el mismo resultado.
+ */
+class PersonaRepositorioTest {
+
+    /** Nombres de las personas generadas; pocos, para que se repitan personas. */
+    private static final String[] NOMBRES = {"Ana", "Luis", "Eva", "José", "María", "Tomás", "Lucía", "Pedro"};
+
+    /** Apellidos de las personas generadas. */
+    private static final String[] APELLIDOS = {"García", "Pérez", "López", "Díaz", "Ruiz", "Gómez", "Sanz"};
+
+    /**
+     * Muchas bajas en medio de la lista sin consultar posiciones entre ellas: primero con un desplazamiento
+     * que se resuelve buscando en ventana y después con uno que obliga a recalcular las posiciones.
+     */
+    @Test
+    void encuentraLasPosicionesTrasBajasEnMedioSinConsultar() {
+        for (int bajas : new int[]{10, 200, 600}) {
+            PersonaRepositorio repositorio = new PersonaRepositorio();
+            List<Persona> modelo = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                Persona persona = new Persona("Nombre" + i, "Apellido", i % 100);
+                assertTrue(repositorio.agregar(persona));
+                modelo.add(persona);
+            }
+            for (int i = 0; i < bajas; i++) {
+                Persona eliminada = modelo.remove(500 + i);
+                assertTrue(repositorio.eliminar(eliminada));
+            }
+            comprobar(repositorio, modelo);
+        }
+    }
+
+    /**
+     * Secuencias aleatorias, con semilla fija, de todas las operaciones del repositorio comparadas con una
+     * lista normal. Las posiciones se consultan solo de vez en cuando, para que se acumulen las pendientes.
+     */
+    @Test
+    void secuenciasAleatoriasCoincidenConUnaLista() {
+        for (long semilla = 1; semilla <= 20; semilla++) {
+            Random aleatorio = new Random(semilla);
+            PersonaRepositorio repositorio = new PersonaRepositorio();
+            List<Persona> modelo = new ArrayList<>();
+            for (int paso = 0; paso < 1500; paso++) {
+                aplicarOperacion(aleatorio, repositorio, modelo);
+                assertEquals(modelo, repositorio.getPersonas(), "semilla " + semilla + ", paso " + paso);
+                if (aleatorio.nextInt(20) == 0) {
+                    comprobar(repositorio, modelo);
+                } else if (!modelo.isEmpty()) {
+                    Persona persona = modelo.get(aleatorio.nextInt(modelo.size()));
+                    assertEquals(modelo.indexOf(persona), repositorio.indiceDe(persona));
+                }
+            }
+            comprobar(repositorio, modelo);
+        }
+    }
+
+    /**
+     * Un orden preparado a partir de una instantánea no se aplica si la lista cambia entretanto.
+     */
+    @Test
+    void descartaUnOrdenPreparadoSiLaListaHaCambiado() {
+        PersonaRepositorio repositorio = new PersonaRepositorio();
+        Persona ana = new Persona("Ana", "García", 30);
+        Persona luis = new Persona("Luis", "Pérez", 41);
+        repositorio.agregar(ana);
+        repositorio.agregar(luis);
+        long version = repositorio.version();
+        Persona[] instantanea = repositorio.instantanea();
+        PersonaRepositorio.Orden orden = PersonaRepositorio.prepararOrden(
+                new Persona[]{instantanea[1], instantanea[0]}, new int[]{1, 0}, version);
+
+        repositorio.agregar(new Persona("Eva", "Díaz", 25));
+        assertFalse(repositorio.aplicarOrden(orden));
+        assertEquals(List.of(ana, luis, new Persona("Eva", "Díaz", 25)), repositorio.getPersonas());
+        comprobar(repositorio, new ArrayList<>(repositorio.getPersonas()));
+    }
+
+    /**
+     * Aplica una operación elegida al azar al repositorio y la misma operación, escrita de la forma más
+     * sencilla, a la lista modelo.
+     *
+     * @param aleatorio   el generador de números aleatorios.
+     * @param repositorio el repositorio.
+     * @param modelo      la lista modelo.
+     */
+    private static void aplicarOperacion(Random aleatorio, PersonaRepositorio repositorio, List<Persona> modelo) {
+        int operacion = aleatorio.nextInt(modelo.size() < 50 ? 3 : 11);
+        switch (operacion) {
+            case 0, 1 -> {
+                Persona persona = persona(aleatorio);
+                boolean nueva = !modelo.contains(persona);
+                assertEquals(nueva, repositorio.agregar(persona));
+                if (nueva) {
+                    modelo.add(persona);
+                }
+            }
+            case 2 -> {
+                Persona persona = persona(aleatorio);
+                int indice = aleatorio.nextInt(modelo.size() + 10);
+                boolean nueva = !modelo.contains(persona);
+                assertEquals(nueva, repositorio.insertar(indice, persona));
+                if (nueva) {
+                    modelo.add(Math.min(indice, modelo.size()), persona);
+                }
+            }
+            case 3, 4 -> {
+                Persona persona = aleatorio.nextBoolean() ? modelo.get(aleatorio.nextInt(modelo.size())) : persona(aleatorio);
+                assertEquals(modelo.remove(persona), repositorio.eliminar(persona));
+            }
+            case 5 -> {
+                Persona anterior = modelo.get(aleatorio.nextInt(modelo.size()));
+                Persona nueva = persona(aleatorio);
+                int indice = modelo.indexOf(anterior);
+                int indiceNueva = modelo.indexOf(nueva);
+                boolean posible = indiceNueva < 0 || indiceNueva == indice;
+                assertEquals(posible, repositorio.reemplazar(anterior, nueva));
+                if (posible) {
+                    modelo.set(indice, nueva);
+                }
+            }
+            case 6 -> {
+                int desde = aleatorio.nextInt(modelo.size());
+                int hasta = aleatorio.nextInt(modelo.size());
+                repositorio.mover(desde, hasta);
+                modelo.add(hasta, modelo.remove(desde));
+            }
+            case 7 -> {
+                Persona[] instantanea = repositorio.instantanea();
+                List<Integer> orden = new ArrayList<>();
+                for (int i = 0; i < instantanea.length; i++) {
+                    orden.add(i);
+                }
+                Collections.shuffle(orden, aleatorio);
+                Persona[] ordenadas = new Persona[instantanea.length];
+                int[] permutacion = new int[instantanea.length];
+                for (int i = 0; i < instantanea.length; i++) {
+                    ordenadas[i] = instantanea[orden.get(i)];
+                    permutacion[orden.get(i)] = i;
+                }
+                assertTrue(repositorio.aplicarOrden(
+                        PersonaRepositorio.prepararOrden(ordenadas, permutacion, repositorio.version())));
+                modelo.clear();
+                Collections.addAll(modelo, ordenadas);
+            }
+            case 8 -> {
+                List<Persona> anteriores = new ArrayList<>(modelo);
+                List<Persona> eliminar = new ArrayList<>();
+                for (int i = aleatorio.nextInt(40); i >= 0; i--) {
+                    eliminar.add(aleatorio.nextInt(4) == 0 ? persona(aleatorio) : modelo.get(aleatorio.nextInt(modelo.size())));
+                }
+                List<PersonaEnPosicion> eliminadas = repositorio.eliminarTodas(eliminar);
+                List<PersonaEnPosicion> esperadas = new ArrayList<>();
+                for (int i = 0; i < anteriores.size(); i++) {
+                    if (eliminar.contains(anteriores.get(i))) {
+                        esperadas.add(new PersonaEnPosicion(i, anteriores.get(i)));
+                    }
+                }
+                assertEquals(esperadas, eliminadas);
+                modelo.removeAll(eliminar);
+                if (aleatorio.nextBoolean()) {
+                    // Insertar lo eliminado con sus posiciones restaura la lista, como al deshacer
+                    assertEquals(eliminadas.size(), repositorio.insertarTodas(eliminadas).size());
+                    modelo.clear();
+                    modelo.addAll(anteriores);
+                }
+            }
+            default -> {
+                List<Reemplazo> reemplazos = new ArrayList<>();
+                for (int i = aleatorio.nextInt(20); i >= 0; i--) {
+                    reemplazos.add(new Reemplazo(modelo.get(aleatorio.nextInt(modelo.size())), persona(aleatorio)));
+                }
+                List<Reemplazo> aplicados = repositorio.reemplazarTodas(reemplazos);
+                assertEquals(reemplazarEnModelo(modelo, reemplazos), aplicados);
+            }
+        }
+    }
+
+    /**
+     * Aplica varios reemplazos a la lista modelo con las reglas de {@link PersonaRepositorio#reemplazarTodas}:
+     * todas las posiciones se buscan en la lista anterior al lote, y se descartan los que repiten posición
+     * o persona nueva y los que chocan con otra persona de la lista.
+     *
+     * @param modelo     la lista modelo.
+     * @param reemplazos los reemplazos pedidos.
+     * @return los reemplazos aplicados.
+     */
+    private static List<Reemplazo> reemplazarEnModelo(List<Persona> modelo, List<Reemplazo> reemplazos) {
+        List<Persona> anteriores = new ArrayList<>(modelo);
+        Set<Integer> ocupadas = new HashSet<>();
+        Set<Persona> nuevas = new HashSet<>();
+        List<Reemplazo> aplicados = new ArrayList<>();
+        for (Reemplazo reemplazo : reemplazos) {
+            int indice = anteriores.indexOf(reemplazo.anterior());
+            if (indice < 0 || ocupadas.contains(indice)) {
+                continue;
+            }
+            int indiceNueva = anteriores.indexOf(reemplazo.nueva());
+            if (indiceNueva >= 0 && indiceNueva != indice || nuevas.contains(reemplazo.nueva())) {
+                continue;
+            }
+            ocupadas.add(indice);
+            nuevas.add(reemplazo.nueva());
+            aplicados.add(new Reemplazo(anteriores.get(indice), reemplazo.nueva()));
+            modelo.set(indice, reemplazo.nueva());
+        }
+        return aplicados;
+    }
+
+    /**
+     * Comprueba el repositorio entero contra la lista modelo: contenido, posiciones, duplicados e identificadores.
+     *
+     * @param repositorio el repositorio.
+     * @param modelo      la lista modelo.
+     */
+    private static void comprobar(PersonaRepositorio repositorio, List<Persona> modelo) {
+        assertEquals(modelo, repositorio.getPersonas());
+        assertEquals(modelo.size(), repositorio.tamano());
+        Map<Integer, Persona> porId = new HashMap<>();
+        for (int i = 0; i < modelo.size(); i++) {
+            Persona guardada = repositorio.getPersonas().get(i);
+            assertEquals(i, repositorio.indiceDe(modelo.get(i)));
+            assertTrue(repositorio.contiene(modelo.get(i)));
+            assertSame(guardada, repositorio.buscarPorId(guardada.getIdPersona()));
+            assertEquals(null, porId.put(guardada.getIdPersona(), guardada), "identificador repetido");
+        }
+        Persona ausente = new Persona("Nadie", "Ninguno", 99);
+        assertEquals(-1, repositorio.indiceDe(ausente));
+        assertFalse(repositorio.contiene(ausente));
+    }
+
+    /**
+     * Genera una persona sin identificador con nombre, apellidos y edad de un conjunto pequeño.
+     *
+     * @param aleatorio el generador de números aleatorios.
+     * @return la persona.
+     */
+    private static Persona persona(Random aleatorio) {
+        return new Persona(NOMBRES[aleatorio.nextInt(NOMBRES.length)],
+                APELLIDOS[aleatorio.nextInt(APELLIDOS.length)] + " " + APELLIDOS[aleatorio.nextInt(APELLIDOS.length)],
+                aleatorio.nextInt(10));
+    }
+}
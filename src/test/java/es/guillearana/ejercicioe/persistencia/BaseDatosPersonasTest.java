@@ -0,0 +1,67 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comprueba que {@link BaseDatosPersonas} guarda los lotes que junta {@link EscritorDiferido}.
+ */
+class BaseDatosPersonasTest {
+
+    /** Directorio temporal de cada prueba. */
+    @TempDir
+    Path directorio;
+
+    /**
+     * Eliminar una persona guardada y recuperarla con deshacer dentro del mismo lote deja un alta de una
+     * persona que ya está en la tabla; el lote debe guardarse igualmente, junto con el resto de sus cambios.
+     *
+     * @throws IOException si falla la base de datos.
+     */
+    @Test
+    void guardaUnaBajaDeshechaDentroDelMismoLote() throws IOException {
+        String url = "jdbc:h2:file:" + directorio.resolve("personas").toAbsolutePath();
+        Persona ana = new Persona(1, "Ana", "García López", 30);
+        Persona luis = new Persona(2, "Luis", "Pérez Ruiz", 41);
+        Persona eva = new Persona(3, "Eva", "Díaz Gómez", 25);
+
+        BaseDatosPersonas base = new BaseDatosPersonas(url);
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        EscritorDiferido escritor = new EscritorDiferido(base::guardarLote, 60_000, 10_000);
+        escritor.vincular(personas);
+        personas.addAll(ana, luis);
+        escritor.close();
+
+        escritor = new EscritorDiferido(base::guardarLote, 60_000, 10_000);
+        escritor.vincular(personas);
+        personas.remove(ana);
+        personas.add(0, ana);
+        personas.add(eva);
+        personas.set(1, luis.conEdad(42));
+        escritor.close();
+        assertEquals(3, base.tamano());
+        base.close();
+
+        BaseDatosPersonas reabierta = new BaseDatosPersonas(url);
+        try {
+            List<Persona> guardadas = Arrays.stream(reabierta.cargar())
+                    .sorted(Comparator.comparingInt(Persona::getIdPersona)).toList();
+            assertEquals(List.of(ana, luis.conEdad(42), eva), guardadas);
+            assertEquals(List.of(1, 2, 3), guardadas.stream().map(Persona::getIdPersona).toList());
+            assertEquals(3, reabierta.tamano());
+        } finally {
+            reabierta.close();
+        }
+    }
+}
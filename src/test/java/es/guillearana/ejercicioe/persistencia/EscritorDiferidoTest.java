@@ -0,0 +1,137 @@
+package es.guillearana.ejercicioe.persistencia;
+
+import es.guillearana.ejercicioe.model.Persona;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba que los cambios que {@link EscritorDiferido} guarda en un {@link AlmacenPersonas} sobreviven
+ * a un cierre inesperado que deja un registro a medias al final del fichero.
+ */
+class EscritorDiferidoTest {
+
+    /** Directorio temporal de cada prueba. */
+    @TempDir
+    Path directorio;
+
+    /**
+     * Los lotes confirmados se recuperan al reabrir, incluidas un alta y una baja de la misma persona
+     * en un lote y una baja seguida de su recuperación en otro, y el registro a medias se descarta.
+     *
+     * @throws IOException si falla el fichero.
+     */
+    @Test
+    void recuperaLosCambiosConfirmadosTrasUnRegistroAMedias() throws IOException {
+        Path ruta = directorio.resolve("personas.dat");
+        Persona ana = new Persona(1, "Ana", "García López", 30);
+        Persona luis = new Persona(2, "Luis", "Pérez Ruiz", 41);
+        Persona eva = new Persona(3, "Eva", "Díaz Gómez", 25);
+        Persona temporal = new Persona(4, "Tomás", "Moreno Sanz", 52);
+
+        AlmacenPersonas almacen = new AlmacenPersonas(ruta);
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        // Intervalo largo: todos los cambios de cada escritor van en un único lote, que se guarda al cerrar
+        EscritorDiferido escritor = new EscritorDiferido(almacen::guardarLote, 60_000, 10_000);
+        escritor.vincular(personas);
+        personas.addAll(ana, luis, eva);
+        escritor.close();
+
+        escritor = new EscritorDiferido(almacen::guardarLote, 60_000, 10_000);
+        escritor.vincular(personas);
+        personas.add(temporal);
+        personas.remove(temporal);
+        personas.remove(luis);
+        personas.add(luis);
+        personas.set(personas.indexOf(eva), eva.conEdad(26));
+        personas.remove(ana);
+        escritor.close();
+        almacen.close();
+
+        ByteBuffer registroAMedias = ByteBuffer.allocate(7).putInt(40).put(AlmacenPersonas.ALTA).putShort((short) 9);
+        Files.write(ruta, registroAMedias.array(), StandardOpenOption.APPEND);
+        long tamanoConRegistroAMedias = Files.size(ruta);
+
+        try (AlmacenPersonas reabierto = new AlmacenPersonas(ruta)) {
+            assertEquals(List.of(luis, eva.conEdad(26)), ordenadas(reabierto.cargar()));
+            assertEquals(List.of(2, 3), Arrays.stream(reabierto.cargar()).map(Persona::getIdPersona).sorted().toList());
+        }
+        assertEquals(tamanoConRegistroAMedias - registroAMedias.capacity(), Files.size(ruta));
+    }
+
+    /**
+     * Un lote que falla se reintenta junto con los cambios posteriores, y un alta guardada antes del fallo
+     * no se anula en silencio si después se da de baja.
+     *
+     * @throws IOException si falla el fichero.
+     */
+    @Test
+    void reintentaLosLotesFallidosSinPerderCambios() throws IOException {
+        Path ruta = directorio.resolve("personas.dat");
+        Persona ana = new Persona(1, "Ana", "García López", 30);
+        Persona luis = new Persona(2, "Luis", "Pérez Ruiz", 41);
+        AtomicInteger fallos = new AtomicInteger();
+        AtomicInteger recuperaciones = new AtomicInteger();
+
+        AlmacenPersonas almacen = new AlmacenPersonas(ruta);
+        ObservableList<Persona> personas = FXCollections.observableArrayList();
+        EscritorDiferido escritor = new EscritorDiferido(cambios -> {
+            almacen.guardarLote(cambios);
+            if (fallos.getAndIncrement() == 0) {
+                // El lote ha llegado al fichero, pero el escritor no lo sabe
+                throw new IOException("Fallo simulado");
+            }
+        }, 0, 10_000);
+        escritor.setAlRecuperar(recuperaciones::incrementAndGet);
+        escritor.vincular(personas);
+        personas.add(ana);
+        esperar(() -> fallos.get() >= 1);
+        personas.remove(ana);
+        personas.add(luis);
+        esperar(() -> recuperaciones.get() == 1);
+        escritor.close();
+        almacen.close();
+
+        try (AlmacenPersonas reabierto = new AlmacenPersonas(ruta)) {
+            assertEquals(List.of(luis), ordenadas(reabierto.cargar()));
+        }
+    }
+
+    /**
+     * Devuelve las personas ordenadas por identificador.
+     *
+     * @param personas las personas.
+     * @return la lista ordenada.
+     */
+    private static List<Persona> ordenadas(Persona[] personas) {
+        return Arrays.stream(personas).sorted(Comparator.comparingInt(Persona::getIdPersona)).toList();
+    }
+
+    /**
+     * Espera, como mucho cinco segundos, a que se cumpla una condición.
+     *
+     * @param condicion la condición.
+     */
+    private static void esperar(BooleanSupplier condicion) {
+        long limite = System.nanoTime() + 5_000_000_000L;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "La condición no se ha cumplido a tiempo");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package es.guillearana.ejercicioe.servicio;
+
+import es.guillearana.ejercicioe.model.Persona;
+import es.guillearana.ejercicioe.persistencia.AlmacenPersonas;
+import es.guillearana.ejercicioe.persistencia.EscritorDiferido;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comprueba que {@link ExportadorPersonas} exporta un almacén que sigue recibiendo lotes mientras se exporta.
+ */
+class ExportadorPersonasTest {
+
+    /** Personas del almacén: más de una página de exportación. */
+    private static final int PERSONAS = ExportadorPersonas.FILAS_POR_GRUPO + 34_464;
+
+    /** Directorio temporal de cada prueba. */
+    @TempDir
+    Path directorio;
+
+    /**
+     * Entre la primera página y la segunda se guardan lotes que dan de baja la mitad de las personas y dan
+     * de alta otras, lo que además compacta el fichero; la exportación contiene exactamente las personas que
+     * había al empezar, en orden de identificador, sin saltarse ni repetir ninguna.
+     *
+     * @throws Exception si falla la exportación o el almacén.
+     */
+    @Test
+    void exportaElAlmacenComoEstabaAlEmpezarMientrasSeGuardanLotes() throws Exception {
+        AlmacenPersonas almacen = new AlmacenPersonas(directorio.resolve("personas.dat"));
+        EscritorDiferido escritor = almacen.crearEscritor();
+        for (int id = 1; id <= PERSONAS; id++) {
+            escritor.guardarAlta(persona(id));
+        }
+        escritor.close();
+
+        Path destino = directorio.resolve("personas.csv");
+        ExportadorPersonas exportador = new ExportadorPersonas(almacen, destino) {
+            /** Indica si ya se han guardado los lotes. */
+            private boolean cambiado;
+
+            @Override
+            protected void updateProgress(long hechas, long total) {
+            }
+
+            @Override
+            protected void updateMessage(String mensaje) {
+                if (!cambiado) {
+                    cambiado = true;
+                    EscritorDiferido otro = almacen.crearEscritor();
+                    for (int id = 1; id <= PERSONAS; id += 2) {
+                        otro.guardarBaja(persona(id));
+                    }
+                    for (int id = PERSONAS + 1; id <= PERSONAS + 1000; id++) {
+                        otro.guardarAlta(persona(id));
+                    }
+                    otro.close();
+                }
+            }
+        };
+        try {
+            ExportadorPersonas.Resultado resultado = exportador.call();
+            assertEquals(PERSONAS, resultado.filas());
+            assertEquals(PERSONAS / 2 + 1000, almacen.tamano());
+        } finally {
+            almacen.close();
+        }
+
+        List<String> nombres = new ArrayList<>();
+        try (BufferedReader lector = Files.newBufferedReader(destino)) {
+            ImportadorPersonas.leerCsv(lector, campos -> nombres.add(campos[0]));
+        }
+        assertEquals(PERSONAS, nombres.size());
+        for (int i = 0; i < PERSONAS; i++) {
+            assertEquals(persona(i + 1).getNombre(), nombres.get(i));
+        }
+    }
+
+    /**
+     * Crea la persona de prueba de un identificador.
+     *
+     * @param id el identificador.
+     * @return la persona.
+     */
+    private static Persona persona(int id) {
+        return new Persona(id, "Nombre" + id, "Apellido", id % 100);
+    }
+}
@@ -0,0 +1,66 @@
+package es.guillearana.ejercicioe.servicio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba la lectura de JSON de {@link ImportadorPersonas}.
+ */
+class ImportadorPersonasTest {
+
+    /**
+     * Los escapes Unicode válidos se resuelven.
+     *
+     * @throws IOException no se produce: el JSON es válido.
+     */
+    @Test
+    void resuelveLosEscapesUnicode() throws IOException {
+        List<String[]> registros = leer("{\"nombre\": \"Jos\\u00E9\", \"apellidos\": \"Pe\\u00f1a\", \"edad\": 30}\n");
+        assertEquals(1, registros.size());
+        assertEquals("José", registros.get(0)[0]);
+        assertEquals("Peña", registros.get(0)[1]);
+        assertEquals("30", registros.get(0)[2]);
+    }
+
+    /**
+     * Un escape Unicode con dígitos que no son hexadecimales es un error del JSON que indica la línea.
+     */
+    @Test
+    void rechazaUnEscapeUnicodeMalFormadoIndicandoLaLinea() {
+        String json = "{\"nombre\": \"Ana\", \"apellidos\": \"García\", \"edad\": 30}\n"
+                + "{\"nombre\": \"Luis\", \"apellidos\": \"Pérez\", \"edad\": 41}\n"
+                + "{\"nombre\": \"Eva\\u00zz\", \"apellidos\": \"Díaz\", \"edad\": 25}\n";
+        IOException error = assertThrows(IOException.class, () -> leer(json));
+        assertTrue(error.getMessage().contains("línea 3"), error.getMessage());
+    }
+
+    /**
+     * Un escape Unicode cortado por el final del fichero es un error del JSON.
+     */
+    @Test
+    void rechazaUnEscapeUnicodeIncompleto() {
+        IOException error = assertThrows(IOException.class, () -> leer("{\"nombre\": \"Eva\\u00"));
+        assertTrue(error.getMessage().contains("línea 1"), error.getMessage());
+    }
+
+    /**
+     * Lee un texto JSON y devuelve una copia de los campos de cada registro.
+     *
+     * @param json el texto.
+     * @return los registros leídos.
+     * @throws IOException si el JSON está mal formado.
+     */
+    private static List<String[]> leer(String json) throws IOException {
+        List<String[]> registros = new ArrayList<>();
+        ImportadorPersonas.leerJson(new StringReader(json), campos -> registros.add(campos.clone()));
+        return registros;
+    }
+}